@@ -0,0 +1,259 @@
+package logic.parser;
+
+import logic.Language;
+import model.SymbolTable;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Concurrency stress test of the parse pipeline, run as
+ * "java logic.parser.ParserStress [threads] [theorems] [grammar|prolog|prolog-pool]", by default 16 threads, 5000
+ * theorems and the in-process parser. Random theorems, all distinct, are generated in both Coq and LaTeX notation
+ * together with the proposition they stand for, and are parsed from many threads at once by a single parser per
+ * language shared by all threads. Every result is checked against the proposition expected, and the test exits
+ * with status 1 if any parse fails or differs.
+ */
+public class ParserStress {
+    private static final int VARIABLES = 50;
+    private static final int MAX_DEPTH = 6;
+    private static final int SHOWN_FAILURES = 10;
+    private static final long SEED = 42;
+
+    /**
+     * Node of a generated theorem, which is a variable if the connective is null.
+     */
+    private record Formula(Connective connective, String variable, Formula left, Formula right) {
+    }
+
+    /**
+     * Theorem to parse, with the proposition it stands for.
+     * @param coq the theorem in Coq notation.
+     * @param latex the theorem in LaTeX notation.
+     * @param expected the proposition expected, as shown by {@code Proposition.toString}.
+     */
+    private record Theorem(String coq, String latex, String expected) {
+    }
+
+    /**
+     * Runs the stress test.
+     * @param args the number of threads, the number of theorems and the back end, all optional.
+     * @throws Exception if the test cannot run.
+     */
+    public static void main(String[] args) throws Exception {
+        int threads = args.length > 0 ? Integer.parseInt(args[0]) : 16;
+        int count = args.length > 1 ? Integer.parseInt(args[1]) : 5000;
+        String backendName = args.length > 2 ? args[2] : "grammar";
+
+        List<String> variables = new ArrayList<>();
+        for (int i = 0; i < VARIABLES; i++) {
+            variables.add("v" + i);
+        }
+        List<Theorem> theorems = generate(count, variables, new Random(SEED));
+
+        PrologWorkerPool pool = null;
+        ParserBackend backend = switch (backendName) {
+            case "prolog" -> ParserBackend.PROLOG;
+            case "prolog-pool" -> pool = new PrologWorkerPool(threads, Duration.ofSeconds(5));
+            default -> ParserBackend.GRAMMAR;
+        };
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            if (pool != null) {
+                pool.start(Duration.ofSeconds(30));
+            }
+            SymbolTable symbols = new SymbolTable(variables);
+            Parser coq = Parser.createParser(Language.Coq, symbols, backend);
+            Parser latex = Parser.createParser(Language.LaTeX, symbols, backend);
+            List<Callable<String>> tasks = new ArrayList<>();
+            for (Theorem t : theorems) {
+                tasks.add(() -> check(t, coq, latex));
+            }
+            long start = System.nanoTime();
+            List<Future<String>> results = executor.invokeAll(tasks);
+            long time = System.nanoTime() - start;
+
+            int failures = 0;
+            for (Future<String> result : results) {
+                String failure;
+                try {
+                    failure = result.get();
+                } catch (ExecutionException e) {
+                    failure = e.getCause().toString();
+                }
+                if (failure != null && failures++ < SHOWN_FAILURES) {
+                    System.out.println(failure);
+                }
+            }
+            System.out.printf("%d theorems parsed twice on %d threads with the %s back end in %d ms, %d failures%n",
+                    theorems.size(), threads, backendName, time / 1_000_000, failures);
+            if (failures > 0) {
+                System.exit(1);
+            }
+        } catch (IOException e) {
+            System.err.println(e.getMessage());
+            System.exit(1);
+        } finally {
+            executor.shutdown();
+            if (pool != null) {
+                pool.close();
+            }
+        }
+    }
+
+    /**
+     * Parses a theorem in both notations and compares the results with the proposition expected.
+     * @param theorem the theorem.
+     * @param coq the parser of Coq notation.
+     * @param latex the parser of LaTeX notation.
+     * @return a description of the failure, or null if both results are as expected.
+     * @throws Exception if a parse fails.
+     */
+    private static String check(Theorem theorem, Parser coq, Parser latex) throws Exception {
+        String fromCoq = coq.parse(theorem.coq()).toString();
+        if (!fromCoq.equals(theorem.expected())) {
+            return String.format("%s%n  expected %s%n  got      %s", theorem.coq(), theorem.expected(), fromCoq);
+        }
+        String fromLatex = latex.parse(theorem.latex()).toString();
+        if (!fromLatex.equals(theorem.expected())) {
+            return String.format("%s%n  expected %s%n  got      %s", theorem.latex(), theorem.expected(), fromLatex);
+        }
+        return null;
+    }
+
+    /**
+     * Generates distinct random theorems.
+     * @param count the number of theorems.
+     * @param variables the variables to use.
+     * @param random the source of randomness.
+     * @return the theorems.
+     */
+    private static List<Theorem> generate(int count, List<String> variables, Random random) {
+        Set<String> seen = new HashSet<>();
+        List<Theorem> theorems = new ArrayList<>(count);
+        while (theorems.size() < count) {
+            Formula f = formula(1 + random.nextInt(MAX_DEPTH), variables, random);
+            String coq = coq(f, false);
+            if (seen.add(coq)) {
+                StringBuilder expected = new StringBuilder();
+                peirce(f, expected);
+                theorems.add(new Theorem(coq, latex(f, false), expected.toString()));
+            }
+        }
+        return theorems;
+    }
+
+    private static Formula formula(int depth, List<String> variables, Random random) {
+        if (depth == 0 || random.nextInt(4) == 0) {
+            return new Formula(null, variables.get(random.nextInt(variables.size())), null, null);
+        }
+        Connective c = switch (random.nextInt(5)) {
+            case 0 -> Connective.AND;
+            case 1 -> Connective.OR;
+            case 2 -> Connective.NOT;
+            case 3 -> Connective.IMPLY;
+            default -> Connective.BICONDITIONAL;
+        };
+        Formula left = formula(depth - 1, variables, random);
+        Formula right = c == Connective.NOT ? null : formula(depth - 1, variables, random);
+        return new Formula(c, null, left, right);
+    }
+
+    /**
+     * Writes a formula in Coq notation, with every operand that is not a variable in parentheses.
+     * @param f the formula.
+     * @param operand whether the formula is an operand of a connective.
+     * @return the theorem.
+     */
+    private static String coq(Formula f, boolean operand) {
+        if (f.connective() == null) {
+            return f.variable();
+        }
+        String s = switch (f.connective()) {
+            case AND -> coq(f.left(), true) + " /\\ " + coq(f.right(), true);
+            case OR -> coq(f.left(), true) + " \\/ " + coq(f.right(), true);
+            case NOT -> "~" + coq(f.left(), true);
+            case IMPLY -> coq(f.left(), true) + " -> " + coq(f.right(), true);
+            default -> coq(f.left(), true) + " <-> " + coq(f.right(), true);
+        };
+        return operand ? "(" + s + ")" : s;
+    }
+
+    /**
+     * Writes a formula in LaTeX notation, with every operand that is not a variable in parentheses.
+     * @param f the formula.
+     * @param operand whether the formula is an operand of a connective.
+     * @return the theorem.
+     */
+    private static String latex(Formula f, boolean operand) {
+        if (f.connective() == null) {
+            return f.variable();
+        }
+        String s = switch (f.connective()) {
+            case AND -> latex(f.left(), true) + " \\land " + latex(f.right(), true);
+            case OR -> latex(f.left(), true) + " \\lor " + latex(f.right(), true);
+            case NOT -> "\\neg " + latex(f.left(), true);
+            case IMPLY -> latex(f.left(), true) + " \\to " + latex(f.right(), true);
+            default -> latex(f.left(), true) + " \\leftrightarrow " + latex(f.right(), true);
+        };
+        return operand ? "(" + s + ")" : s;
+    }
+
+    /**
+     * Writes the literals of the proposition a formula stands for, as shown by {@code Proposition.toString}.
+     * @param f the formula.
+     * @param sb the builder to write to.
+     */
+    private static void peirce(Formula f, StringBuilder sb) {
+        if (f.connective() == null) {
+            sb.append(f.variable()).append(' ');
+            return;
+        }
+        switch (f.connective()) {
+            case AND -> {
+                peirce(f.left(), sb);
+                peirce(f.right(), sb);
+            }
+            case OR -> {
+                sb.append("[ [ ");
+                peirce(f.left(), sb);
+                sb.append("] [ ");
+                peirce(f.right(), sb);
+                sb.append("] ] ");
+            }
+            case NOT -> {
+                sb.append("[ ");
+                peirce(f.left(), sb);
+                sb.append("] ");
+            }
+            case IMPLY -> {
+                sb.append("[ ");
+                peirce(f.left(), sb);
+                sb.append("[ ");
+                peirce(f.right(), sb);
+                sb.append("] ] ");
+            }
+            default -> {
+                sb.append("[ ");
+                peirce(f.left(), sb);
+                sb.append("[ ");
+                peirce(f.right(), sb);
+                sb.append("] ] [ ");
+                peirce(f.right(), sb);
+                sb.append("[ ");
+                peirce(f.left(), sb);
+                sb.append("] ] ");
+            }
+        }
+    }
+}
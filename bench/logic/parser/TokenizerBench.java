@@ -0,0 +1,99 @@
+package logic.parser;
+
+import logic.Language;
+import logic.exceptions.TheoremParseException;
+import model.SymbolTable;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Benchmark of the tokenizers of Coq and LaTeX notation on theorems from 64 KB up to a few megabytes, run as "java
+ * -Xms1g logic.parser.TokenizerBench [largest size in KB]", by default 4096, where the heap is large enough for garbage
+ * collection not to dominate the larger sizes. After warming up on a 1 MB theorem, the best time of some runs is shown
+ * for every size with the time per character, which stays flat as the size grows if tokenizing is linear.
+ */
+public class TokenizerBench {
+    private static final int SMALLEST_KB = 64;
+    private static final int WARMUP_KB = 1024;
+    private static final int WARMUP_RUNS = 10;
+    private static final int RUNS = 5;
+    private static final int VARIABLES = 1000;
+    private static final long SEED = 42;
+
+    /**
+     * Runs the benchmark.
+     * @param args the largest size of the theorems in KB, optional.
+     * @throws TheoremParseException if a theorem generated cannot be tokenized.
+     */
+    public static void main(String[] args) throws TheoremParseException {
+        int largest = args.length > 0 ? Integer.parseInt(args[0]) : 4096;
+        List<String> variables = new ArrayList<>();
+        for (int i = 0; i < VARIABLES; i++) {
+            variables.add("var" + i);
+        }
+        SymbolTable symbols = new SymbolTable(variables);
+        Parser coq = Parser.createParser(Language.Coq, symbols);
+        Parser latex = Parser.createParser(Language.LaTeX, symbols);
+        String[] coqNotations = {" /\\ ", " \\/ ", "~", " -> ", " <-> "};
+        String[] latexNotations = {" \\land ", " \\lor ", "\\neg ", " \\to ", " \\leftrightarrow ", " \\wedge ",
+                " \\implies "};
+        run("Coq", coq, coqNotations, variables, largest);
+        run("LaTeX", latex, latexNotations, variables, largest);
+    }
+
+    private static void run(String name, Parser parser, String[] notations, List<String> variables, int largest)
+            throws TheoremParseException {
+        String warmup = theorem(WARMUP_KB * 1024, notations, variables, new Random(SEED));
+        for (int i = 0; i < WARMUP_RUNS; i++) {
+            parser.tokenize(warmup);
+        }
+        double first = 0;
+        double last = 0;
+        for (int kb = SMALLEST_KB; kb <= largest; kb *= 2) {
+            String theorem = theorem(kb * 1024, notations, variables, new Random(SEED));
+            int tokens = parser.tokenize(theorem).length;
+            long best = Long.MAX_VALUE;
+            for (int i = 0; i < RUNS; i++) {
+                long start = System.nanoTime();
+                parser.tokenize(theorem);
+                best = Math.min(best, System.nanoTime() - start);
+            }
+            double perChar = (double) best / theorem.length();
+            if (kb == SMALLEST_KB) {
+                first = perChar;
+            }
+            last = perChar;
+            System.out.printf("%-5s %6d KB, %8d tokens: %8.2f ms, %6.2f ns/char%n", name, kb, tokens, best / 1e6,
+                    perChar);
+        }
+        System.out.printf("%-5s time per character grows %.2fx from the smallest to the largest theorem%n", name,
+                last / first);
+    }
+
+    /**
+     * Generates a theorem of random variables, notations and parentheses, which need not be well-formed since only
+     * its tokens are read.
+     * @param length the least number of characters.
+     * @param notations the notations to use, with the blanks around them.
+     * @param variables the variables to use.
+     * @param random the source of randomness.
+     * @return the theorem.
+     */
+    private static String theorem(int length, String[] notations, List<String> variables, Random random) {
+        StringBuilder sb = new StringBuilder(length + 64);
+        while (sb.length() < length) {
+            if (random.nextInt(8) == 0) {
+                sb.append('(');
+            }
+            sb.append(variables.get(random.nextInt(variables.size())));
+            if (random.nextInt(8) == 0) {
+                sb.append(')');
+            }
+            sb.append(notations[random.nextInt(notations.length)]);
+        }
+        sb.append(variables.get(0));
+        return sb.toString();
+    }
+}
@@ -0,0 +1,160 @@
+package model;
+
+import logic.Language;
+import logic.exceptions.TheoremParseException;
+import logic.parser.Parser;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Benchmark of the check whether a literal appears in the areas enclosing a proposition, which decides whether pasting
+ * it there is an iteration, run as "java model.AncestorIndexBench [depth] [width] [checks]", by default on a diagram of
+ * 20 nested areas of 1000 small cuts each, checking 10k small cuts from the innermost area, half of which are copies of
+ * cuts in some area and the others appear nowhere. After a warm-up round, the check through the hash index of every
+ * area is compared with a scan of every literal of every area, as done before the index, and both have to give the same
+ * results, also while literals are inserted into the innermost area between checks, which outdates the indices of all
+ * the areas.
+ */
+public class AncestorIndexBench {
+    private static final String[] VARIABLES = {"a", "b", "c", "d", "e", "f", "g", "h"};
+    private static final int MAX_CUT_SIZE = 4;
+    private static final long SEED = 42;
+
+    /**
+     * Runs the benchmark.
+     * @param args the number of nested areas, the number of cuts in each of them and the number of checks, all
+     *             optional.
+     * @throws TheoremParseException if the diagram generated cannot be parsed.
+     */
+    public static void main(String[] args) throws TheoremParseException {
+        int depth = args.length > 0 ? Integer.parseInt(args[0]) : 20;
+        int width = args.length > 1 ? Integer.parseInt(args[1]) : 1000;
+        int checks = args.length > 2 ? Integer.parseInt(args[2]) : 10_000;
+        SymbolTable symbols = new SymbolTable(List.of(VARIABLES));
+        Parser parser = Parser.createParser(Language.Coq, symbols);
+        Random random = new Random(SEED);
+        Proposition base = parser.parseFrame(frame(depth, width, random));
+        List<Proposition> areas = new ArrayList<>();
+        for (Proposition p = base; p != null; p = nested(p)) {
+            areas.add(p);
+        }
+        Proposition inner = areas.get(areas.size() - 1);
+        System.out.printf("%d tokens in %d nested areas%n", base.getLength(), areas.size());
+
+        List<Literal> candidates = new ArrayList<>();
+        for (int i = 0; i < checks; i++) {
+            if (random.nextBoolean()) {
+                Proposition area = areas.get(random.nextInt(areas.size()));
+                int small = area == inner ? area.getLiterals().size() : area.getLiterals().size() - 1;
+                candidates.add(area.getLiterals().get(random.nextInt(small)).copy());
+            } else {
+                String absent = "[ " + cut(MAX_CUT_SIZE + 1, random) + "] ";
+                candidates.add(parser.parseFrame(absent).getLiterals().get(0));
+            }
+        }
+        for (Literal candidate : candidates) {
+            inner.appearsInAncestors(candidate);
+            scan(areas, candidate);
+        }
+
+        boolean[] indexed = new boolean[checks];
+        long start = System.nanoTime();
+        for (int i = 0; i < checks; i++) {
+            indexed[i] = inner.appearsInAncestors(candidates.get(i));
+        }
+        long indexTime = System.nanoTime() - start;
+        boolean[] scanned = new boolean[checks];
+        start = System.nanoTime();
+        for (int i = 0; i < checks; i++) {
+            scanned[i] = scan(areas, candidates.get(i));
+        }
+        long scanTime = System.nanoTime() - start;
+        int found = 0;
+        int differ = 0;
+        for (int i = 0; i < checks; i++) {
+            found += indexed[i] ? 1 : 0;
+            differ += indexed[i] != scanned[i] ? 1 : 0;
+        }
+        System.out.printf("index %8.2f us/check, scan %8.2f us/check, %.0fx faster, %d of %d found%n",
+                indexTime / 1e3 / checks, scanTime / 1e3 / checks, (double) scanTime / indexTime, found, checks);
+
+        int edits = Math.max(1, checks / 100);
+        start = System.nanoTime();
+        for (int i = 0; i < edits; i++) {
+            Literal l = new GroundLiteral(inner, symbols, random.nextInt(VARIABLES.length));
+            inner.replaceLiterals(random.nextInt(inner.getLiterals().size() + 1), 0, List.of(l));
+            Literal candidate = candidates.get(random.nextInt(checks));
+            if (inner.appearsInAncestors(candidate) != scan(areas, candidate)) {
+                differ++;
+            }
+        }
+        System.out.printf("insert and check %8.2f us/edit over %d edits, including the scan%n",
+                (System.nanoTime() - start) / 1e3 / edits, edits);
+        System.out.printf("%d results differ between the index and the scan%n", differ);
+        if (differ > 0) {
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Checks whether a same literal appears in some areas by comparing it with every literal of every area, as done
+     * before the index.
+     * @param areas the areas, i.e. the innermost area and all those enclosing it.
+     * @param literal the literal to check.
+     * @return true if it is found.
+     */
+    private static boolean scan(List<Proposition> areas, Literal literal) {
+        for (int i = areas.size() - 1; i >= 0; i--) {
+            for (Literal l : areas.get(i).getLiterals()) {
+                if (l.isSameLiteral(literal) && l != literal) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Gets the area nested in the last cut of an area.
+     * @param p the area.
+     * @return the nested area, or null if the area is the innermost one.
+     */
+    private static Proposition nested(Proposition p) {
+        List<Literal> literals = p.getLiterals();
+        if (literals.isEmpty() || !(literals.get(literals.size() - 1) instanceof CutLiteral last)) {
+            return null;
+        }
+        return last.getContent().getLiterals().size() > MAX_CUT_SIZE ? last.getContent() : null;
+    }
+
+    /**
+     * Generates nested areas in the frame format, each with small random cuts followed by the cut of the next area.
+     * @param depth the number of areas.
+     * @param width the number of small cuts in every area.
+     * @param random the source of randomness.
+     * @return the diagram.
+     */
+    private static String frame(int depth, int width, Random random) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < depth; i++) {
+            for (int j = 0; j < width; j++) {
+                sb.append("[ ").append(cut(1 + random.nextInt(MAX_CUT_SIZE), random)).append("] ");
+            }
+            if (i < depth - 1) {
+                sb.append("[ ");
+            }
+        }
+        sb.append("] ".repeat(depth - 1));
+        return sb.toString();
+    }
+
+    private static String cut(int size, Random random) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < size; i++) {
+            sb.append(VARIABLES[random.nextInt(VARIABLES.length)]).append(' ');
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,199 @@
+package model;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.function.BiConsumer;
+
+/**
+ * Benchmark of random access into a long history, run as "java model.HistorySeekBench [steps] [seeks]", by default a
+ * history of 12k random steps that branches off a recent step every 500 steps, and 20k seeks. The same history is built
+ * with checkpoints at every step, every 32 steps, adaptive checkpoints, and every 8 steps within a memory budget of
+ * 4 MB, and for each the memory retained, the average time of getting the proposition of a random node and of jumping
+ * to a random node and undoing a step are shown. Some steps only reorder the literals of a cut, and the proposition of
+ * every node sought is checked against the one built by the step by its hash. The same history is then built again
+ * keeping every proposition, and the proposition of every node, rebuilt in random order from the checkpoints left, has
+ * to be the one built by its step with the literals in the same order.
+ */
+public class HistorySeekBench {
+    private static final String[] VARIABLES = {"a", "b", "c", "d"};
+    private static final int BRANCH_INTERVAL = 500;
+    private static final long SEED = 42;
+
+    /**
+     * Checkpoint settings of a run.
+     * @param name the name shown.
+     * @param interval the number of steps between checkpoints, or {@code HistoryTree.ADAPTIVE_CHECKPOINTS}.
+     * @param budget the memory budget of the checkpoints, in bytes.
+     */
+    private record Settings(String name, int interval, long budget) {
+    }
+
+    /**
+     * Runs the benchmark.
+     * @param args the number of steps of the history and the number of seeks, both optional.
+     */
+    public static void main(String[] args) {
+        int steps = args.length > 0 ? Integer.parseInt(args[0]) : 12_000;
+        int seeks = args.length > 1 ? Integer.parseInt(args[1]) : 20_000;
+        List<Settings> runs = List.of(
+                new Settings("every step", 1, HistoryTree.UNLIMITED_MEMORY),
+                new Settings("every 32 steps", HistoryTree.DEFAULT_CHECKPOINT_INTERVAL, HistoryTree.UNLIMITED_MEMORY),
+                new Settings("adaptive", HistoryTree.ADAPTIVE_CHECKPOINTS, HistoryTree.UNLIMITED_MEMORY),
+                new Settings("every 8 steps, 4 MB", 8, 4L << 20));
+        boolean failed = false;
+        for (Settings settings : runs) {
+            failed |= !run(settings, steps, seeks);
+        }
+        if (failed) {
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Builds the history with some checkpoint settings and seeks through it.
+     * @param settings the checkpoint settings.
+     * @param steps the number of steps.
+     * @param seeks the number of seeks.
+     * @return true if every proposition sought is the one built by its step.
+     */
+    private static boolean run(Settings settings, int steps, int seeks) {
+        long before = usedMemory();
+        Map<Integer, Long> hashes = new HashMap<>();
+        long start = System.nanoTime();
+        HistoryTree tree = build(settings, steps, (id, state) -> hashes.put(id, state.getStructuralHash()));
+        long build = System.nanoTime() - start;
+        int tokens = tree.getCurrent().getState().getLength();
+        long retained = usedMemory() - before;
+
+        List<HistoryTree.Node> nodes = tree.preorder();
+        Random random = new Random(SEED);
+        int wrong = 0;
+        start = System.nanoTime();
+        for (int i = 0; i < seeks; i++) {
+            HistoryTree.Node node = nodes.get(random.nextInt(nodes.size()));
+            if (node.getState().getStructuralHash() != hashes.get(node.getId())) {
+                wrong++;
+            }
+        }
+        long seek = System.nanoTime() - start;
+        int jumps = Math.max(1, seeks / 10);
+        start = System.nanoTime();
+        for (int i = 0; i < jumps; i++) {
+            tree.moveTo(nodes.get(random.nextInt(nodes.size())));
+            tree.undo();
+            HistoryTree.Node node = tree.getCurrent();
+            if (node.getState().getStructuralHash() != hashes.get(node.getId())) {
+                wrong++;
+            }
+        }
+        long jump = System.nanoTime() - start;
+        System.out.printf("%-20s %6d nodes, final %6d tokens, built in %5d ms, retained %7d KB, %s%n", settings.name(),
+                nodes.size(), tokens, build / 1_000_000, retained >> 10, tree.getStatistics());
+        System.out.printf("%-20s seek %8.1f us, jump and undo %8.1f us, %d wrong propositions%n", "",
+                seek / 1e3 / seeks, jump / 1e3 / jumps, wrong);
+
+        tree = null;
+        Map<Integer, PersistentProposition> states = new HashMap<>();
+        HistoryTree rebuilt = build(settings, steps, states::put);
+        List<HistoryTree.Node> order = new ArrayList<>(rebuilt.preorder());
+        Collections.shuffle(order, random);
+        int differ = 0;
+        for (HistoryTree.Node node : order) {
+            if (!node.getState().toString().equals(states.get(node.getId()).toString())) {
+                differ++;
+            }
+        }
+        System.out.printf("%-20s %d of %d rebuilt propositions differ from those built by the steps%n", "", differ,
+                order.size());
+        return wrong == 0 && differ == 0;
+    }
+
+    /**
+     * Builds the same random history for every run, branching off a recent step every {@code BRANCH_INTERVAL} steps.
+     * @param settings the checkpoint settings.
+     * @param steps the number of steps.
+     * @param built the consumer of the id of every node added and the proposition built by its step.
+     * @return the history.
+     */
+    private static HistoryTree build(Settings settings, int steps,
+                                     BiConsumer<Integer, PersistentProposition> built) {
+        SymbolTable symbols = new SymbolTable(List.of(VARIABLES));
+        List<PersistentLiteral> atoms = new ArrayList<>();
+        for (String v : VARIABLES) {
+            atoms.add(PersistentLiteral.ground(symbols, symbols.lookup(v)));
+        }
+        HistoryTree tree = new HistoryTree(PersistentProposition.EMPTY);
+        tree.setCheckpointInterval(settings.interval());
+        tree.setMemoryBudget(settings.budget());
+        Random random = new Random(SEED);
+        built.accept(tree.getRoot().getId(), PersistentProposition.EMPTY);
+        PersistentProposition current = PersistentProposition.EMPTY;
+        for (int i = 0; i < steps; i++) {
+            if (i % BRANCH_INTERVAL == BRANCH_INTERVAL - 1) {
+                tree.moveTo(tree.getNode(Math.max(0, tree.size() - 1 - random.nextInt(BRANCH_INTERVAL))));
+                current = tree.getCurrent().getState();
+            }
+            PersistentProposition next = grow(current, atoms, random);
+            Inference step = new Inference(Patch.between(current, next), InferenceRule.INSERTION);
+            built.accept(tree.add(step, next).getId(), next);
+            current = next;
+        }
+        return tree;
+    }
+
+    /**
+     * Makes a random step that inserts a variable or a cut of one into a random area, encloses a literal in a double
+     * cut, or reverses the order of the literals of an area.
+     * @param p the proposition before the step.
+     * @param atoms the literals of the variables.
+     * @param random the source of randomness.
+     * @return the proposition after the step.
+     */
+    private static PersistentProposition grow(PersistentProposition p, List<PersistentLiteral> atoms, Random random) {
+        List<Integer> path = new ArrayList<>();
+        PersistentProposition area = p;
+        while (random.nextInt(3) != 0) {
+            List<Integer> cuts = new ArrayList<>();
+            for (int i = 0; i < area.size(); i++) {
+                if (area.get(i).isCut()) {
+                    cuts.add(i);
+                }
+            }
+            if (cuts.isEmpty()) {
+                break;
+            }
+            int cut = cuts.get(random.nextInt(cuts.size()));
+            path.add(cut);
+            area = area.get(cut).getContent();
+        }
+        int[] areaPath = path.stream().mapToInt(Integer::intValue).toArray();
+        if (random.nextInt(8) == 0 && area.size() > 1) {
+            List<PersistentLiteral> reversed = new ArrayList<>(area.getLiterals());
+            Collections.reverse(reversed);
+            return new Patch(areaPath, 0, area.getLiterals(), reversed).applyTo(p);
+        }
+        int at = random.nextInt(area.size() + 1);
+        if (random.nextInt(4) == 0 && at < area.size()) {
+            PersistentLiteral l = area.get(at);
+            PersistentLiteral doubleCut = PersistentLiteral.cut(PersistentProposition.of(
+                    List.of(PersistentLiteral.cut(PersistentProposition.of(List.of(l))))));
+            return new Patch(areaPath, at, List.of(l), List.of(doubleCut)).applyTo(p);
+        }
+        PersistentLiteral atom = atoms.get(random.nextInt(atoms.size()));
+        PersistentLiteral inserted = random.nextBoolean() ? atom : PersistentLiteral.cut(PersistentProposition.of(
+                List.of(atom)));
+        return new Patch(areaPath, at, List.of(), List.of(inserted)).applyTo(p);
+    }
+
+    private static long usedMemory() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 4; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
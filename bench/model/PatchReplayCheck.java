@@ -0,0 +1,141 @@
+package model;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Regression check of the patches found between propositions, run as "java model.PatchReplayCheck [steps]", by default
+ * 100k random steps. Every step reorders the literals of a random area, swaps two of them, inserts a literal or
+ * removes one, so that many steps change only the order of the literals of a cut. The patch between the propositions
+ * before and after every step, found both from the base proposition and from the area changed, is replayed on the
+ * persistent and the mutable proposition before the step, and its inverse on the one after, and each result has to
+ * be the proposition expected in the same order. The check exits with status 1 if any replay differs.
+ */
+public class PatchReplayCheck {
+    private static final String[] VARIABLES = {"a", "b", "c"};
+    private static final int MAX_SIZE = 60;
+    private static final int SHOWN_FAILURES = 10;
+    private static final long SEED = 42;
+
+    /**
+     * Runs the check.
+     * @param args the number of steps, optional.
+     */
+    public static void main(String[] args) {
+        int steps = args.length > 0 ? Integer.parseInt(args[0]) : 100_000;
+        SymbolTable symbols = new SymbolTable(List.of(VARIABLES));
+        PersistentLiteral a = PersistentLiteral.ground(symbols, symbols.lookup("a"));
+        PersistentLiteral b = PersistentLiteral.ground(symbols, symbols.lookup("b"));
+        PersistentProposition ab = PersistentProposition.of(List.of(
+                PersistentLiteral.cut(PersistentProposition.of(List.of(a, b)))));
+        PersistentProposition ba = PersistentProposition.of(List.of(
+                PersistentLiteral.cut(PersistentProposition.of(List.of(b, a)))));
+        int failures = check(ab, ba, new int[0]) ? 0 : 1;
+
+        List<PersistentLiteral> atoms = new ArrayList<>();
+        for (String v : VARIABLES) {
+            atoms.add(PersistentLiteral.ground(symbols, symbols.lookup(v)));
+        }
+        Random random = new Random(SEED);
+        PersistentProposition current = PersistentProposition.EMPTY;
+        int reorders = 0;
+        for (int i = 0; i < steps; i++) {
+            if (current.getLength() > MAX_SIZE) {
+                current = PersistentProposition.EMPTY;
+            }
+            List<Integer> path = new ArrayList<>();
+            PersistentProposition next = step(current, path, atoms, random);
+            if (next.hasSameLiterals(current)) {
+                reorders++;
+            }
+            if (!check(current, next, path.stream().mapToInt(Integer::intValue).toArray())
+                    && failures++ < SHOWN_FAILURES) {
+                System.out.printf("%s%n  to %s%n", current, next);
+            }
+            current = next;
+        }
+        System.out.printf("%d steps replayed, %d of which only reorder literals, %d failures%n", steps + 1, reorders,
+                failures);
+        if (failures > 0) {
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Replays the patches between two propositions in both directions.
+     * @param from the proposition before the step.
+     * @param to the proposition after the step.
+     * @param path the path to the area changed by the step.
+     * @return true if every replay gives the proposition expected.
+     */
+    private static boolean check(PersistentProposition from, PersistentProposition to, int[] path) {
+        for (Patch patch : List.of(Patch.between(from, to), Patch.between(from, to, path))) {
+            if (!patch.applyTo(from).toString().equals(to.toString())
+                    || !patch.inverse().applyTo(to).toString().equals(from.toString())
+                    || patch.hashAfter(from) != to.getStructuralHash()) {
+                return false;
+            }
+            Proposition mutable = from.toProposition();
+            patch.applyTo(mutable);
+            if (!mutable.toString().equals(to.toString())) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Makes a random step in a random area.
+     * @param p the proposition before the step.
+     * @param path the list to which the path to the area changed is added.
+     * @param atoms the literals of the variables.
+     * @param random the source of randomness.
+     * @return the proposition after the step.
+     */
+    private static PersistentProposition step(PersistentProposition p, List<Integer> path,
+                                              List<PersistentLiteral> atoms, Random random) {
+        PersistentProposition area = p;
+        while (random.nextInt(3) != 0) {
+            List<Integer> cuts = new ArrayList<>();
+            for (int i = 0; i < area.size(); i++) {
+                if (area.get(i).isCut()) {
+                    cuts.add(i);
+                }
+            }
+            if (cuts.isEmpty()) {
+                break;
+            }
+            int cut = cuts.get(random.nextInt(cuts.size()));
+            path.add(cut);
+            area = area.get(cut).getContent();
+        }
+        int[] areaPath = path.stream().mapToInt(Integer::intValue).toArray();
+        int[] all = new int[area.size()];
+        for (int i = 0; i < all.length; i++) {
+            all[i] = i;
+        }
+        List<PersistentLiteral> literals = new ArrayList<>(area.getLiterals());
+        switch (random.nextInt(4)) {
+            case 0 -> Collections.shuffle(literals, random);
+            case 1 -> {
+                if (!literals.isEmpty()) {
+                    Collections.swap(literals, random.nextInt(literals.size()), random.nextInt(literals.size()));
+                }
+            }
+            case 2 -> {
+                if (!literals.isEmpty()) {
+                    literals.remove(random.nextInt(literals.size()));
+                }
+            }
+            default -> {
+                PersistentLiteral atom = atoms.get(random.nextInt(atoms.size()));
+                literals.add(random.nextInt(literals.size() + 1), random.nextBoolean() ? atom
+                        : PersistentLiteral.cut(PersistentProposition.of(List.of(atom, atoms.get(random.nextInt(
+                        atoms.size()))))));
+            }
+        }
+        return p.replace(areaPath, all, 0, literals);
+    }
+}
@@ -0,0 +1,158 @@
+package model;
+
+import logic.Language;
+import logic.exceptions.InvalidSelectionException;
+import logic.exceptions.TheoremParseException;
+import logic.parser.Parser;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Benchmark of the position queries on a large diagram, run as "java model.PositionBench [tokens] [queries]", by
+ * default a random diagram of 100k tokens nested up to 40 cuts deep and 100k queries of every kind. It shows the
+ * average time of finding the proposition under the cursor, of finding the selected literals, of the start index and
+ * selection checks of a literal, and of a cursor query right after inserting a literal, which outdates the cached
+ * offsets. The start index of every literal is then checked against one counted token by token.
+ */
+public class PositionBench {
+    private static final int MAX_DEPTH = 40;
+    private static final int MAX_SELECTION = 20;
+    private static final long SEED = 42;
+
+    /**
+     * Runs the benchmark.
+     * @param args the number of tokens of the diagram and the number of queries of every kind, both optional.
+     * @throws TheoremParseException if the diagram generated cannot be parsed.
+     * @throws InvalidSelectionException if a literal cannot be inserted.
+     */
+    public static void main(String[] args) throws TheoremParseException, InvalidSelectionException {
+        int tokens = args.length > 0 ? Integer.parseInt(args[0]) : 100_000;
+        int queries = args.length > 1 ? Integer.parseInt(args[1]) : 100_000;
+        SymbolTable symbols = new SymbolTable(List.of("a", "b", "c"));
+        Proposition p = Parser.createParser(Language.Coq, symbols).parseFrame(frame(tokens, new Random(SEED)));
+        List<Literal> all = new ArrayList<>();
+        collect(p, all);
+        System.out.printf("%d tokens, %d literals%n", p.getLength(), all.size());
+
+        Random random = new Random(SEED);
+        long checksum = 0;
+        long start = System.nanoTime();
+        for (int i = 0; i < queries; i++) {
+            Proposition c = p.getCursorProp(random.nextInt(p.getLength() + 1));
+            checksum += c.getStartIndex() + c.getLength();
+        }
+        report("cursor proposition", System.nanoTime() - start, queries);
+
+        int invalid = 0;
+        start = System.nanoTime();
+        for (int i = 0; i < queries; i++) {
+            int s = random.nextInt(p.getLength() + 1);
+            int e = Math.min(p.getLength(), s + random.nextInt(MAX_SELECTION));
+            try {
+                checksum += p.getSelectedLiterals(s, e).size();
+            } catch (InvalidSelectionException ex) {
+                invalid++;
+            }
+        }
+        report("selected literals", System.nanoTime() - start, queries);
+
+        start = System.nanoTime();
+        for (int i = 0; i < queries; i++) {
+            Literal l = all.get(random.nextInt(all.size()));
+            int pos = random.nextInt(p.getLength() + 1);
+            checksum += l.getStartIndex() + (l.cursorIn(pos) ? 1 : 0) + (l.isSelected(pos, pos + 1) ? 1 : 0);
+        }
+        report("literal start and checks", System.nanoTime() - start, queries);
+
+        start = System.nanoTime();
+        for (int i = 0; i < queries; i++) {
+            int pos = random.nextInt(p.getLength() + 1);
+            Proposition c = p.getCursorProp(pos);
+            List<Literal> inserted = new ArrayList<>();
+            inserted.add(new GroundLiteral(c, symbols, symbols.lookup("a")));
+            p.insertLiterals(pos, inserted);
+            checksum += p.getCursorProp(random.nextInt(p.getLength() + 1)).getStartIndex();
+        }
+        report("insert and cursor proposition", System.nanoTime() - start, queries);
+        System.out.printf("%d invalid selections, checksum %d%n", invalid, checksum);
+
+        all.clear();
+        collect(p, all);
+        Map<Literal, Integer> expected = new IdentityHashMap<>();
+        count(p, 0, expected);
+        int wrong = 0;
+        for (Literal l : all) {
+            if (l.getStartIndex() != expected.get(l)) {
+                wrong++;
+            }
+        }
+        System.out.printf("%d of %d start indices differ from those counted token by token%n", wrong, all.size());
+        if (wrong > 0) {
+            System.exit(1);
+        }
+    }
+
+    private static void report(String name, long time, int queries) {
+        System.out.printf("%-30s %8.0f ns/query%n", name, (double) time / queries);
+    }
+
+    /**
+     * Generates a random diagram in the frame format.
+     * @param tokens the least number of tokens.
+     * @param random the source of randomness.
+     * @return the diagram.
+     */
+    private static String frame(int tokens, Random random) {
+        String[] variables = {"a", "b", "c"};
+        StringBuilder sb = new StringBuilder();
+        int depth = 0;
+        for (int i = 0; i < tokens; i++) {
+            int k = random.nextInt(4);
+            if (k == 0 && depth < MAX_DEPTH) {
+                sb.append("[ ");
+                depth++;
+            } else if (k == 1 && depth > 0) {
+                sb.append("] ");
+                depth--;
+            } else {
+                sb.append(variables[random.nextInt(variables.length)]).append(' ');
+            }
+        }
+        sb.append("] ".repeat(depth));
+        return sb.toString();
+    }
+
+    private static void collect(Proposition p, List<Literal> all) {
+        for (Literal l : p.getLiterals()) {
+            all.add(l);
+            if (l instanceof CutLiteral cut) {
+                collect(cut.getContent(), all);
+            }
+        }
+    }
+
+    /**
+     * Counts the tokens of a proposition one by one, without the cached offsets, recording the start index of
+     * every literal.
+     * @param p the proposition.
+     * @param start the start index of the proposition.
+     * @param starts the start indices of the literals.
+     * @return the index after the proposition.
+     */
+    private static int count(Proposition p, int start, Map<Literal, Integer> starts) {
+        int pos = start;
+        for (Literal l : p.getLiterals()) {
+            starts.put(l, pos);
+            if (l instanceof CutLiteral cut) {
+                pos = count(cut.getContent(), pos + 1, starts) + 1;
+            } else {
+                pos++;
+            }
+        }
+        return pos;
+    }
+}
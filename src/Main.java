@@ -1,14 +1,58 @@
+import cli.Cli;
 import logic.Logic;
+import logic.parser.ParserBackend;
+import logic.parser.PrologWorkerPool;
 import model.Model;
 import ui.Ui;
 
+import java.io.IOException;
+import java.time.Duration;
+
 /**
  * Main app of the application.
  */
 public class Main {
+    private static final String PARSER_PROPERTY = "peirce.parser";
+    private static final int PROLOG_WORKERS = 2;
+
+    /**
+     * Starts the application, or runs a command without the user interface if arguments are given, see
+     * {@link Cli}.
+     * @param args the command and its arguments, if any.
+     */
     public static void main(String args[]) {
+        if (args.length > 0) {
+            System.setProperty("java.awt.headless", "true");
+            System.exit(new Cli(System.out, System.err, System.in).run(args));
+        }
         Model model = new Model();
         Logic logic = new Logic(model);
         new Ui().construct(logic);
+        setupParser(logic, System.getProperty(PARSER_PROPERTY, "grammar"));
+    }
+
+    /**
+     * Sets up the parser back end chosen by the system property "peirce.parser", which is "grammar" (default)
+     * for the in-process parser, "prolog" to launch SWI-Prolog for every parse, or "prolog-pool" to keep a pool
+     * of SWI-Prolog processes running.
+     * @param logic the logic component to set up.
+     * @param backend the name of the back end.
+     */
+    private static void setupParser(Logic logic, String backend) {
+        switch (backend) {
+            case "prolog" -> logic.setParserBackend(ParserBackend.PROLOG);
+            case "prolog-pool" -> {
+                PrologWorkerPool pool = new PrologWorkerPool(PROLOG_WORKERS, Duration.ofSeconds(5));
+                try {
+                    pool.start(Duration.ofSeconds(30));
+                    Runtime.getRuntime().addShutdownHook(new Thread(pool::close));
+                    logic.setParserBackend(pool);
+                } catch (IOException e) {
+                    pool.close();
+                    System.err.println(e.getMessage());
+                }
+            }
+            default -> logic.setParserBackend(ParserBackend.GRAMMAR);
+        }
     }
 }
@@ -0,0 +1,578 @@
+package cli;
+
+import logic.Language;
+import logic.Logic;
+import logic.exceptions.FilePathException;
+import logic.exceptions.FileReadException;
+import logic.exceptions.ScriptException;
+import logic.exceptions.TheoremParseException;
+import logic.parser.Parser;
+import logic.script.ProofScript;
+import logic.search.ParallelProofSearch;
+import logic.search.ProofSearch;
+import model.Inference;
+import model.Model;
+import model.PersistentProposition;
+import model.Proposition;
+import model.SymbolTable;
+import storage.BinaryStorage;
+import storage.LinkedStorage;
+import storage.ProofIndex;
+import storage.ProofVerifier;
+import storage.PropositionStore;
+import storage.Storage;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Command-line front end of the application, which drives the logic and storage components directly and never
+ * loads AWT or Swing, so that it starts fast enough to be run for every file of a batch job. The commands are:
+ * "
+ * verify [--workers N] [files or directories]*
+ * convert [--workers N] --to txt|peirce|linked [files or directories]*
+ * gc [files or directories]*
+ * open [files]*
+ * normalize [--language Coq|LaTeX] [formulas or diagrams]*
+ * run [--workers N] [--to txt|peirce|linked] [scripts]*
+ * prove [--workers N] [--deterministic] [--nodes N] [--time MS] [--to txt|peirce|linked] [proof files or scripts]*
+ * "
+ * where directories stand for all proof files in them and their subdirectories, gc removes the propositions that
+ * none of the files in the linked format given refer to from their stores, see {@link PropositionStore}, normalize
+ * reads one formula or diagram per line from the standard input if none is given, run carries out proof scripts, see
+ * {@link ProofScript}, open times how long the proofs take to open as they do in the user interface, see {@link
+ * Logic#getOpenTime()}, and prove searches for the rest of the proofs, see {@link ProofSearch}, in parallel if there
+ * are more workers than one, see {@link ParallelProofSearch}. Both run and prove save the proofs next to their
+ * sources if a format is chosen. The exit status is 0 if every file or formula is fine, 1 if some is not, and 2 if
+ * the command is not used correctly.
+ */
+public class Cli {
+    public static final int OK = 0;
+    public static final int FAILED = 1;
+    public static final int USAGE = 2;
+
+    private static final String USAGE_MSG = "Usage:\n"
+            + "  verify [--workers N] [files or directories]...\n"
+            + "  convert [--workers N] --to txt|peirce|linked [files or directories]...\n"
+            + "  gc [files or directories]...\n"
+            + "  open [files]...\n"
+            + "  normalize [--language Coq|LaTeX] [formulas or diagrams]...\n"
+            + "  run [--workers N] [--to txt|peirce|linked] [scripts]...\n"
+            + "  prove [--workers N] [--deterministic] [--nodes N] [--time MS] [--to txt|peirce|linked]\n"
+            + "        [proof files or scripts]...";
+    private static final Pattern VARIABLE = Pattern.compile("(?<![\\\\a-zA-Z0-9_])[a-zA-Z_][a-zA-Z0-9_]*");
+
+    private final PrintStream out;
+    private final PrintStream err;
+    private final InputStream in;
+    private int workers = Runtime.getRuntime().availableProcessors();
+    private String format;
+    private Language language = Language.Coq;
+    private long nodeBudget = ProofSearch.DEFAULT_NODE_BUDGET;
+    private long timeBudget = ProofSearch.DEFAULT_TIME_BUDGET;
+    private boolean deterministic = false;
+    private final List<String> operands = new ArrayList<>();
+
+    /**
+     * Creates a command-line front end.
+     * @param out the stream to print results to.
+     * @param err the stream to print errors to.
+     * @param in the stream to read formulas from if none is given.
+     */
+    public Cli(PrintStream out, PrintStream err, InputStream in) {
+        this.out = out;
+        this.err = err;
+        this.in = in;
+    }
+
+    /**
+     * Runs a command.
+     * @param args the name of the command followed by its options and operands.
+     * @return the exit status.
+     */
+    public int run(String[] args) {
+        if (args.length == 0 || !parseOptions(args)) {
+            err.println(USAGE_MSG);
+            return USAGE;
+        }
+        try {
+            return switch (args[0]) {
+                case "verify" -> verify();
+                case "convert" -> convert();
+                case "gc" -> collectGarbage();
+                case "open" -> open();
+                case "normalize" -> normalize();
+                case "run" -> runScripts();
+                case "prove" -> prove();
+                default -> {
+                    err.println(USAGE_MSG);
+                    yield USAGE;
+                }
+            };
+        } catch (FilePathException e) {
+            err.println(e.getMessage());
+            return FAILED;
+        }
+    }
+
+    /**
+     * Reads the options and operands following the name of the command.
+     * @param args the name of the command followed by its options and operands.
+     * @return false if some option is unknown or has an invalid value.
+     */
+    private boolean parseOptions(String[] args) {
+        for (int i = 1; i < args.length; i++) {
+            if (!args[i].startsWith("--")) {
+                operands.add(args[i]);
+                continue;
+            }
+            if (args[i].equals("--deterministic")) {
+                deterministic = true;
+                continue;
+            }
+            if (i + 1 == args.length) {
+                return false;
+            }
+            String value = args[++i];
+            switch (args[i - 1]) {
+                case "--workers" -> {
+                    try {
+                        workers = Integer.parseInt(value);
+                    } catch (NumberFormatException e) {
+                        return false;
+                    }
+                    if (workers < 1) {
+                        return false;
+                    }
+                }
+                case "--nodes", "--time" -> {
+                    long budget;
+                    try {
+                        budget = Long.parseLong(value);
+                    } catch (NumberFormatException e) {
+                        return false;
+                    }
+                    if (budget < 1) {
+                        return false;
+                    }
+                    if (args[i - 1].equals("--nodes")) {
+                        nodeBudget = budget;
+                    } else {
+                        timeBudget = budget;
+                    }
+                }
+                case "--to" -> {
+                    if (!value.equals("txt") && !value.equals("peirce") && !value.equals("linked")) {
+                        return false;
+                    }
+                    format = value;
+                }
+                case "--language" -> {
+                    switch (value) {
+                        case "Coq" -> language = Language.Coq;
+                        case "LaTeX" -> language = Language.LaTeX;
+                        default -> {
+                            return false;
+                        }
+                    }
+                }
+                default -> {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Checks the proof files given, printing the result of every file given by name and of every file in a
+     * directory that is not valid, followed by the throughput for directories.
+     * @return the exit status, which is {@code FAILED} if some proof is not valid.
+     * @throws FilePathException if a directory cannot be listed.
+     */
+    private int verify() throws FilePathException {
+        ForkJoinPool pool = new ForkJoinPool(workers);
+        try {
+            ProofVerifier verifier = new ProofVerifier(pool);
+            int status = OK;
+            for (String path : operands) {
+                if (Files.isDirectory(Paths.get(path))) {
+                    ProofVerifier.Report report = verifier.verifyDirectory(path);
+                    for (ProofVerifier.Result r : report.results()) {
+                        if (r.status() != ProofVerifier.Status.VALID) {
+                            out.println(r);
+                            status = FAILED;
+                        }
+                    }
+                    out.println(path + ": " + report);
+                } else {
+                    ProofVerifier.Result r = verifier.verify(path);
+                    out.println(r);
+                    if (r.status() != ProofVerifier.Status.VALID) {
+                        status = FAILED;
+                    }
+                }
+            }
+            return status;
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    /**
+     * Converts the proof files given to the format chosen, writing every file next to its source with the extension
+     * of the format. Files already in the format are skipped.
+     * @return the exit status, which is {@code FAILED} if some file cannot be converted.
+     * @throws FilePathException if a directory cannot be listed.
+     */
+    private int convert() throws FilePathException {
+        if (format == null) {
+            err.println(USAGE_MSG);
+            return USAGE;
+        }
+        String extension = extensionOf(format);
+        List<Callable<String>> tasks = new ArrayList<>();
+        for (Path source : expand(operands)) {
+            String name = source.toString();
+            if (name.endsWith(extension)) {
+                continue;
+            }
+            String target = withExtension(name, extension);
+            tasks.add(() -> {
+                try {
+                    Storage.convert(name, target);
+                    return null;
+                } catch (FilePathException | FileReadException e) {
+                    return name + ": " + e.getMessage();
+                }
+            });
+        }
+        long start = System.nanoTime();
+        int failed = 0;
+        ExecutorService pool = Executors.newFixedThreadPool(workers);
+        try {
+            for (Future<String> result : pool.invokeAll(tasks)) {
+                String error = result.get();
+                if (error != null) {
+                    err.println(error);
+                    failed++;
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return FAILED;
+        } catch (ExecutionException e) {
+            throw new IllegalStateException(e.getCause());
+        } finally {
+            pool.shutdown();
+        }
+        out.printf("%d files converted, %d failed in %.1f ms%n", tasks.size() - failed, failed,
+                (System.nanoTime() - start) / 1e6);
+        return failed == 0 ? OK : FAILED;
+    }
+
+    /**
+     * Removes the propositions that none of the files in the linked format given refer to from the stores of those
+     * files, printing the areas removed from every store. Every file that uses a store has to be given, since the
+     * propositions only referred to by other files are removed as well. Nothing is removed if some file cannot be
+     * read.
+     * @return the exit status, which is {@code FAILED} if some file or store cannot be read or written.
+     * @throws FilePathException if a directory cannot be listed.
+     */
+    private int collectGarbage() throws FilePathException {
+        Map<PropositionStore, List<String>> users = new LinkedHashMap<>();
+        for (Path file : expand(operands)) {
+            String name = file.toString();
+            if (!LinkedStorage.isLinked(name)) {
+                continue;
+            }
+            try {
+                users.computeIfAbsent(LinkedStorage.storeOf(name), s -> new ArrayList<>()).add(name);
+            } catch (FilePathException | FileReadException e) {
+                err.println(name + ": " + e.getMessage());
+                return FAILED;
+            }
+        }
+        int status = OK;
+        for (Map.Entry<PropositionStore, List<String>> e : users.entrySet()) {
+            PropositionStore store = e.getKey();
+            try {
+                int removed = LinkedStorage.collectGarbage(store, e.getValue());
+                out.printf("%s: %d areas removed for %d files, %s%n", store.getDirectory(), removed,
+                        e.getValue().size(), store.getStatistics());
+            } catch (FilePathException | FileReadException f) {
+                err.println(store.getDirectory() + ": " + f.getMessage());
+                status = FAILED;
+            }
+        }
+        return status;
+    }
+
+    /**
+     * Opens the proof files given one by one the way the user interface does, replaying their journals if any, and
+     * prints the time every file takes until its current proposition and goal are ready to be shown.
+     * @return the exit status, which is {@code FAILED} if some file cannot be opened.
+     */
+    private int open() {
+        int status = OK;
+        for (String name : operands) {
+            try {
+                Logic logic = new Logic(new Model(Storage.newSymbolTable(name)));
+                logic.open(name);
+                out.printf("%s: opened in %.1f ms%n", name, logic.getOpenTime() / 1e6);
+            } catch (FilePathException | FileReadException e) {
+                err.println(name + ": " + e.getMessage());
+                status = FAILED;
+            }
+        }
+        return status;
+    }
+
+    /**
+     * Prints the formulas or diagrams given, or read from the standard input, as diagrams in canonical form, see
+     * {@link PersistentProposition#normalize()}, one per line. A line that is a valid diagram is read as one, and
+     * other lines are read as formulas in the language chosen. The variables are the names found in the line.
+     * @return the exit status, which is {@code FAILED} if some line cannot be parsed.
+     */
+    private int normalize() {
+        List<String> lines = operands;
+        if (lines.isEmpty()) {
+            lines = new ArrayList<>();
+            try {
+                BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+                for (String line = reader.readLine(); line != null; line = reader.readLine()) {
+                    if (!line.isBlank()) {
+                        lines.add(line);
+                    }
+                }
+            } catch (IOException e) {
+                err.println(e.getMessage());
+                return FAILED;
+            }
+        }
+        int status = OK;
+        for (String line : lines) {
+            Set<String> variables = new LinkedHashSet<>();
+            Matcher m = VARIABLE.matcher(line);
+            while (m.find()) {
+                variables.add(m.group());
+            }
+            Parser parser = Parser.createParser(language, new SymbolTable(variables));
+            Proposition diagram;
+            try {
+                diagram = parser.parseFrame(line);
+            } catch (TheoremParseException e) {
+                try {
+                    diagram = parser.parse(line);
+                } catch (TheoremParseException f) {
+                    err.println(line + ": " + f.getMessage());
+                    status = FAILED;
+                    continue;
+                }
+            }
+            out.println(PersistentProposition.of(diagram).normalize().toString().trim());
+        }
+        return status;
+    }
+
+    /**
+     * Carries out the proof scripts given, each on a logic component of its own, printing the error of every script
+     * that fails followed by the throughput. If a format is chosen, the proof of every script that succeeds is saved
+     * next to it with the extension of the format.
+     * @return the exit status, which is {@code FAILED} if some script cannot be read or carried out, or its proof
+     *         cannot be saved.
+     */
+    private int runScripts() {
+        String extension = format == null ? null : extensionOf(format);
+        List<Callable<ProofScript.Run>> tasks = new ArrayList<>();
+        for (String name : operands) {
+            tasks.add(() -> {
+                Logic logic = new Logic(new Model());
+                ProofScript.Run run;
+                try {
+                    run = ProofScript.read(name).execute(logic);
+                } catch (FilePathException | ScriptException e) {
+                    err.println(name + ": " + e.getMessage());
+                    return null;
+                }
+                if (extension != null) {
+                    String target = withExtension(name, extension);
+                    try {
+                        Storage.write(target, logic);
+                    } catch (IOException e) {
+                        err.println(target + ": " + e.getMessage());
+                        return null;
+                    }
+                }
+                return run;
+            });
+        }
+        long start = System.nanoTime();
+        int failed = 0;
+        int commands = 0;
+        ExecutorService pool = Executors.newFixedThreadPool(workers);
+        try {
+            for (Future<ProofScript.Run> result : pool.invokeAll(tasks)) {
+                ProofScript.Run run = result.get();
+                if (run == null) {
+                    failed++;
+                } else {
+                    commands += run.commands();
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return FAILED;
+        } catch (ExecutionException e) {
+            throw new IllegalStateException(e.getCause());
+        } finally {
+            pool.shutdown();
+        }
+        long time = System.nanoTime() - start;
+        out.printf("%d scripts run, %d failed, %d commands in %.1f ms (%.0f commands/s)%n", tasks.size() - failed,
+                failed, commands, time / 1e6, commands / (time / 1e9));
+        return failed == 0 ? OK : FAILED;
+    }
+
+    /**
+     * Searches for the rest of the proof of every proof file or script given from its current proposition, printing
+     * the outcome and the steps found, and the nodes searched by every worker of a parallel search. If a format is
+     * chosen, the proof of every file whose search succeeds is saved next to it with the extension of the format,
+     * including the steps found.
+     * @return the exit status, which is {@code FAILED} if some file cannot be read, no proof is found for it, or its
+     *         proof cannot be saved.
+     */
+    private int prove() {
+        String extension = format == null ? null : extensionOf(format);
+        ForkJoinPool pool = workers > 1 ? new ForkJoinPool(workers) : null;
+        try {
+            return prove(extension, pool);
+        } finally {
+            if (pool != null) {
+                pool.shutdown();
+            }
+        }
+    }
+
+    private int prove(String extension, ForkJoinPool pool) {
+        int status = OK;
+        for (String name : operands) {
+            Logic logic;
+            try {
+                if (name.endsWith(".txt") || name.endsWith(BinaryStorage.EXTENSION)
+                        || name.endsWith(LinkedStorage.EXTENSION)) {
+                    logic = new Logic(new Model(Storage.newSymbolTable(name)));
+                    Storage.loadFile(name, logic);
+                } else {
+                    logic = new Logic(new Model());
+                    ProofScript.read(name).execute(logic);
+                    if (logic.canModifyDeclaration()) {
+                        logic.switchMode();
+                    }
+                }
+            } catch (FilePathException | FileReadException | ScriptException e) {
+                err.println(name + ": " + e.getMessage());
+                status = FAILED;
+                continue;
+            }
+            ProofSearch search = ProofSearch.of(logic);
+            search.setNodeBudget(nodeBudget);
+            search.setTimeBudget(timeBudget);
+            ProofSearch.Result result;
+            if (pool == null) {
+                result = search.run();
+                out.println(name + ": " + result);
+            } else {
+                ParallelProofSearch parallel = new ParallelProofSearch(search, pool);
+                parallel.setDeterministic(deterministic);
+                ParallelProofSearch.Result report = parallel.run();
+                result = report.search();
+                out.println(name + ": " + report);
+            }
+            if (result.status() != ProofSearch.Status.FOUND) {
+                status = FAILED;
+                continue;
+            }
+            PersistentProposition state = logic.getSnapshot();
+            for (Inference step : result.steps()) {
+                state = step.getPatch().applyTo(state);
+                out.println("  " + step.userDisplay(state));
+            }
+            if (extension != null) {
+                logic.applySteps(result.steps());
+                String target = withExtension(name, extension);
+                try {
+                    Storage.write(target, logic);
+                } catch (IOException e) {
+                    err.println(target + ": " + e.getMessage());
+                    status = FAILED;
+                }
+            }
+        }
+        return status;
+    }
+
+    /**
+     * Gets the extension of the files in a format.
+     * @param format the format chosen, which is "txt", "peirce" or "linked".
+     * @return the extension, starting with a dot.
+     */
+    private static String extensionOf(String format) {
+        return switch (format) {
+            case "peirce" -> BinaryStorage.EXTENSION;
+            case "linked" -> LinkedStorage.EXTENSION;
+            default -> ".txt";
+        };
+    }
+
+    /**
+     * Replaces the extension of a file name.
+     * @param name the file name.
+     * @param extension the new extension, starting with a dot.
+     * @return the file name with the new extension, or with it appended if the name has no extension.
+     */
+    private static String withExtension(String name, String extension) {
+        int dot = name.lastIndexOf('.');
+        return (dot > name.lastIndexOf('/') ? name.substring(0, dot) : name) + extension;
+    }
+
+    /**
+     * Replaces the directories among the paths by the proof files in them.
+     * @param paths the paths to files and directories.
+     * @return the paths to the files.
+     * @throws FilePathException if a directory cannot be listed.
+     */
+    private static List<Path> expand(List<String> paths) throws FilePathException {
+        List<Path> files = new ArrayList<>();
+        for (String p : paths) {
+            Path path = Paths.get(p);
+            if (Files.isDirectory(path)) {
+                files.addAll(ProofIndex.listProofFiles(path));
+            } else {
+                files.add(path);
+            }
+        }
+        return files;
+    }
+}
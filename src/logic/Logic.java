@@ -2,6 +2,7 @@ package logic;
 
 import logic.exceptions.FilePathException;
 import logic.exceptions.FileReadException;
+import logic.exceptions.HistoryNodeException;
 import logic.exceptions.InvalidInferenceException;
 import logic.exceptions.InvalidSelectionException;
 import logic.exceptions.RedoException;
@@ -9,36 +10,56 @@ import logic.exceptions.TheoremParseException;
 import logic.exceptions.UndoException;
 import logic.exceptions.VariableNameException;
 import logic.parser.Parser;
+import logic.parser.ParserBackend;
 import model.CutLiteral;
+import model.HistoryTree;
 import model.Inference;
 import model.InferenceRule;
 import model.Literal;
 import model.Model;
+import model.Patch;
+import model.PersistentLiteral;
+import model.PersistentProposition;
 import model.Proposition;
+import model.SymbolTable;
+import storage.Journal;
+import storage.LazyHistory;
 import storage.Storage;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
-import java.util.Stack;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
 import java.util.regex.Pattern;
 
 /**
  * Component in the application that handles with logic.
  */
 public class Logic {
-    public static String[] languages = List.of("Coq", "LaTeX").toArray(new String[0]);
-    public static Pattern variableRegex = Pattern.compile("[a-zA-Z_][a-zA-Z0-9_]*");
-    public static Pattern fileNameRegex = Pattern.compile(
-            "(([a-zA-Z0-9_][a-zA-Z0-9_ ]*)[/])*[a-zA-Z0-9_][a-zA-Z0-9_ ]*.txt");
+    public static final String[] languages = List.of("Coq", "LaTeX").toArray(new String[0]);
+    public static final Pattern variableRegex = Pattern.compile("[a-zA-Z_][a-zA-Z0-9_]*");
+    public static final Pattern fileNameRegex = Pattern.compile(
+            "(([a-zA-Z0-9_][a-zA-Z0-9_ ]*)[/])*[a-zA-Z0-9_][a-zA-Z0-9_ ]*(\\.txt|\\.peirce|\\.peircelink)");
+    public static final int HISTORY_PAGE = 64;
 
     private final Model model;
     private Language language;
+    private ParserBackend parserBackend;
     private Mode mode;
-    private final Stack<Inference> history;
-    private final Stack<Inference> reverseHistory;
+    private HistoryTree history;
     private String filePath;
     private String theoremString;
     private final List<String> premiseStrings;
+    private PersistentProposition snapshot;
+    private Proposition snapshotSource;
+    private int checkpointInterval;
+    private long historyMemoryBudget;
+    private Journal journal;
+    private LazyHistory unloadedHistory;
+    private long openTime;
+    private final List<Runnable> historyListeners;
 
     /**
      * Initializes a Logic component based on the model, and initially the default language is Coq, and
@@ -48,11 +69,19 @@ public class Logic {
     public Logic(Model model) {
         this.model = model;
         this.language = Language.Coq;
+        this.parserBackend = ParserBackend.GRAMMAR;
         this.mode = Mode.DECLARATION;
-        this.history = new Stack<>();
-        this.reverseHistory = new Stack<>();
+        this.history = null;
         this.filePath = "theorem.txt";
         this.premiseStrings = new ArrayList<>();
+        this.snapshot = null;
+        this.snapshotSource = null;
+        this.checkpointInterval = HistoryTree.DEFAULT_CHECKPOINT_INTERVAL;
+        this.historyMemoryBudget = HistoryTree.UNLIMITED_MEMORY;
+        this.journal = null;
+        this.unloadedHistory = null;
+        this.openTime = 0;
+        this.historyListeners = new CopyOnWriteArrayList<>();
     }
 
     /**
@@ -64,7 +93,7 @@ public class Logic {
         if (varName.equals("")) {
             throw new VariableNameException("Variable name cannot be empty");
         }
-        if (getVariables().contains(varName)) {
+        if (model.getSymbolTable().isDeclared(varName)) {
             throw new VariableNameException("This variable name already exists");
         }
         if (!variableRegex.matcher(varName).matches()) {
@@ -119,6 +148,14 @@ public class Logic {
         return model.getVariables();
     }
 
+    /**
+     * Gets the symbol table that the variables of propositions refer to.
+     * @return the symbol table of the model.
+     */
+    public SymbolTable getSymbolTable() {
+        return model.getSymbolTable();
+    }
+
     /**
      * Gets the list of premises that is recognized by the application at any point of time.
      * @return the list of premises.
@@ -178,23 +215,35 @@ public class Logic {
     }
 
     /**
-     * Parses a string of theorem to a proposition structure.
+     * Sets the back end used to parse theorems.
+     * @param parserBackend the back end, e.g. {@code ParserBackend.PROLOG} to parse with SWI-Prolog.
+     */
+    public void setParserBackend(ParserBackend parserBackend) {
+        this.parserBackend = parserBackend;
+    }
+
+    /**
+     * Parses a string of theorem to a proposition structure, reusing the result parsed before from the same
+     * theorem with the same language and variables if it is still cached.
      * @param theorem the string of the theorem.
      * @return the Proposition corresponding to the theorem constructed.
      * @throws TheoremParseException if the input theorem is invalid.
      */
     public Proposition parse(String theorem) throws TheoremParseException {
-        return Parser.createParser(getLanguage(), getVariables()).parse(theorem);
+        return model.getParseCache().parse(getLanguage(), model.getVariablesFingerprint(), theorem,
+                () -> Parser.createParser(getLanguage(), model.getSymbolTable(), parserBackend).parse(theorem));
     }
 
     /**
-     * Parses a string of canonical diagram expression to a proposition structure.
+     * Parses a string of canonical diagram expression to a proposition structure, reusing the result parsed
+     * before from the same string with the same variables if it is still cached.
      * @param diagram the canonical diagram string.
      * @return the Proposition corresponding to the diagram.
      * @throws TheoremParseException if the input diagram is invalid.
      */
     public Proposition parseFrame(String diagram) throws TheoremParseException {
-        return Parser.createParser(getLanguage(), getVariables()).parseFrame(diagram);
+        return model.getParseCache().parseFrame(getLanguage(), model.getVariablesFingerprint(), diagram,
+                () -> Parser.createParser(getLanguage(), model.getSymbolTable(), parserBackend).parseFrame(diagram));
     }
 
     /**
@@ -231,6 +280,69 @@ public class Logic {
         return model.getProposition();
     }
 
+    /**
+     * Gets the persistent snapshot of the current proposition. The snapshot is updated along with every inference
+     * step, sharing the unchanged subtrees with the snapshot before, and is only converted from the proposition
+     * again if the proposition has been replaced by some other means.
+     * @return the snapshot of the current proposition.
+     */
+    public PersistentProposition getSnapshot() {
+        Proposition current = getProposition();
+        if (snapshotSource != current) {
+            snapshot = PersistentProposition.of(current);
+            snapshotSource = current;
+        }
+        return snapshot;
+    }
+
+    /**
+     * Sets the proposition held by the model together with its snapshot.
+     * @param prop the new proposition.
+     * @param snapshot the snapshot of the new proposition.
+     */
+    private void setProposition(Proposition prop, PersistentProposition snapshot) {
+        model.setProposition(prop);
+        this.snapshot = snapshot;
+        this.snapshotSource = prop;
+    }
+
+    /**
+     * Records in the snapshot a change just made to an area of the current proposition.
+     * @param before the snapshot before the change.
+     * @param parent the area changed.
+     * @param path the path from the base proposition to the area.
+     * @param removed the indices of the literals removed from the area before the change, in ascending order.
+     * @param inserted the literals inserted into the area, which are next to each other.
+     * @param insertedSnapshots the snapshots of the literals inserted.
+     * @return the snapshot after the change.
+     */
+    private PersistentProposition commitChange(PersistentProposition before, Proposition parent, int[] path,
+                                               int[] removed, List<Literal> inserted,
+                                               List<PersistentLiteral> insertedSnapshots) {
+        int insertAt = inserted.isEmpty() ? 0 : parent.indexOf(inserted.get(0));
+        PersistentProposition after = insertAt < 0
+                ? PersistentProposition.of(getProposition())
+                : before.replace(path, removed, insertAt, insertedSnapshots);
+        snapshot = after;
+        snapshotSource = getProposition();
+        return after;
+    }
+
+    /**
+     * Gets the indices of some literals of a proposition.
+     * @param parent the proposition.
+     * @param literals the literals of the proposition.
+     * @return the indices in ascending order.
+     */
+    private static int[] indicesOf(Proposition parent, List<Literal> literals) {
+        int[] indices = new int[literals.size()];
+        for (int i = 0; i < indices.length; i++) {
+            indices[i] = parent.indexOf(literals.get(i));
+        }
+        Arrays.sort(indices);
+        return indices;
+    }
+
     /**
      * Gets the token index of the cursor position, and the cursor must be in the gaps of tokens (including
      * start and end).
@@ -267,20 +379,358 @@ public class Logic {
     }
 
     /**
-     * Inserts an application of inference rule to the history.
-     * @param inference the inference step to insert.
+     * Inserts an application of inference rule to the history, recording only the change it makes. The step has to
+     * start from the proposition of the current node, since its change is replayed on that proposition.
+     * @param from the snapshot before the step.
+     * @param to the snapshot after the step.
+     * @param path the path to the area that encloses all changes of the step.
+     * @param rule the inference rule applied.
      */
-    public void insertHistory(Inference inference) {
-        history.push(inference);
-        reverseHistory.removeAllElements();
+    private void insertHistory(PersistentProposition from, PersistentProposition to, int[] path,
+                               InferenceRule rule) {
+        if (history == null) {
+            history = newHistory(from);
+        }
+        PersistentProposition head = history.getCurrent().getState();
+        if (head != from) {
+            Patch mismatch = Patch.between(head, from);
+            if (!mismatch.getRemoved().isEmpty() || !mismatch.getInserted().isEmpty()) {
+                throw new IllegalStateException("The step does not start from the current node of history.");
+            }
+        }
+        Patch patch = Patch.between(from, to, path);
+        HistoryTree.Node node = history.add(new Inference(patch, rule), to);
+        if (snapshot == to) {
+            snapshot = node.getState();
+        }
+        if (journal != null) {
+            journal.record(this);
+        }
+        notifyHistoryListeners();
+    }
+
+    /**
+     * Inserts an application of inference rule loaded from its canonical strings to the history. The initial
+     * proposition of every step after the first one is taken to be the resulting proposition of the step before,
+     * which is always the case for proofs saved by the application.
+     * @param from the initial proposition string in canonical representation of Peirce Alpha diagram.
+     * @param to the resulting proposition string in canonical representation of Peirce Alpha diagram.
+     * @param rule the inference rule applied.
+     * @throws TheoremParseException if some string is not a valid diagram.
+     */
+    public void insertHistory(String from, String to, InferenceRule rule) throws TheoremParseException {
+        PersistentProposition original = history == null
+                ? PersistentProposition.of(parseFrame(from))
+                : history.getCurrent().getState();
+        insertHistory(original, PersistentProposition.of(parseFrame(to)), new int[0], rule);
+    }
+
+    /**
+     * Starts a new history tree loaded from file, leaving the current proposition unchanged until
+     * {@link #updateProposition()} is called.
+     * @param initial the canonical string of the proposition before any steps.
+     * @throws TheoremParseException if the string is not a valid diagram.
+     */
+    public void startHistory(String initial) throws TheoremParseException {
+        history = newHistory(PersistentProposition.of(parseFrame(initial)));
+    }
+
+    /**
+     * Starts a new history tree at the latest proposition loaded from file, where the steps before it are loaded
+     * only when needed. The current proposition is unchanged until {@link #updateProposition()} is called.
+     * @param latest the canonical string of the proposition after the last step.
+     * @param earlier the steps before, which are not loaded yet.
+     * @throws TheoremParseException if the string is not a valid diagram.
+     */
+    public void startHistory(String latest, LazyHistory earlier) throws TheoremParseException {
+        startHistory(latest);
+        unloadedHistory = earlier.size() == 0 ? null : earlier;
+    }
+
+    /**
+     * Gets the steps before the initial proposition of the history tree that are not loaded yet.
+     * @return the steps, or null if all steps are loaded.
+     */
+    public LazyHistory getUnloadedHistory() {
+        return unloadedHistory;
+    }
+
+    /**
+     * Gets the number of steps before the initial proposition of the history tree that are not loaded yet.
+     * @return the number of steps.
+     */
+    public int getUnloadedHistorySize() {
+        return unloadedHistory == null ? 0 : unloadedHistory.size();
+    }
+
+    /**
+     * Loads steps before the initial proposition of the history tree from file, which becomes the proposition
+     * before the earliest step loaded. If a step cannot be read, the steps before it are dropped.
+     * @param count the largest number of steps to load.
+     * @throws FileReadException if a step in the file is not of the correct format.
+     */
+    public void loadEarlierHistory(int count) throws FileReadException {
+        if (unloadedHistory == null || history == null) {
+            return;
+        }
+        List<PersistentProposition> states = new ArrayList<>();
+        List<InferenceRule> rules = new ArrayList<>();
+        try {
+            for (int i = 0; i < count && unloadedHistory.size() > 0; i++) {
+                LazyHistory.Step step = unloadedHistory.previous();
+                states.add(PersistentProposition.of(parseFrame(step.from())));
+                rules.add(step.rule());
+            }
+        } catch (TheoremParseException | FileReadException e) {
+            unloadedHistory = null;
+            prependHistory(states, rules);
+            throw new FileReadException();
+        }
+        if (unloadedHistory.size() == 0) {
+            unloadedHistory = null;
+        }
+        prependHistory(states, rules);
+    }
+
+    /**
+     * Adds steps loaded from file before the initial proposition of the history tree.
+     * @param states the propositions before the steps, from the latest step backwards.
+     * @param rules the rules of the steps, from the latest step backwards.
+     */
+    private void prependHistory(List<PersistentProposition> states, List<InferenceRule> rules) {
+        if (states.isEmpty()) {
+            return;
+        }
+        List<Inference> steps = new ArrayList<>(states.size());
+        PersistentProposition to = history.getRoot().getState();
+        for (int i = 0; i < states.size(); i++) {
+            steps.add(new Inference(Patch.between(states.get(i), to), rules.get(i)));
+            to = states.get(i);
+        }
+        Collections.reverse(steps);
+        history.prepend(to, steps);
+    }
+
+    /**
+     * Loads all steps of the history from file, e.g. before saving the whole proof.
+     */
+    public void loadAllHistory() {
+        try {
+            loadEarlierHistory(Integer.MAX_VALUE);
+        } catch (FileReadException e) {
+            assert unloadedHistory == null;
+        }
+    }
+
+    /**
+     * Starts a new history tree loaded from file, leaving the current proposition unchanged until
+     * {@link #updateProposition()} is called.
+     * @param initial the proposition before any steps.
+     */
+    public void startHistory(PersistentProposition initial) {
+        history = newHistory(initial);
+    }
+
+    /**
+     * Adds a step loaded from file to the history tree by the change it makes, leaving the current proposition
+     * unchanged until {@link #updateProposition()} is called.
+     * @param parentId the id of the node the step starts from.
+     * @param patch the change made by the step, which applies to the proposition of the parent node.
+     * @param rule the inference rule applied.
+     * @return the id of the node added.
+     * @throws HistoryNodeException if there is no node of the given id.
+     */
+    public int addHistoryStep(int parentId, Patch patch, InferenceRule rule) throws HistoryNodeException {
+        HistoryTree.Node parent = getHistoryNode(parentId);
+        history.moveTo(parent);
+        return history.add(new Inference(patch, rule), patch.applyTo(parent.getState())).getId();
+    }
+
+    private HistoryTree newHistory(PersistentProposition initial) {
+        HistoryTree tree = new HistoryTree(initial);
+        tree.setCheckpointInterval(checkpointInterval);
+        tree.setMemoryBudget(historyMemoryBudget);
+        return tree;
+    }
+
+    /**
+     * Sets the number of steps between the propositions kept in history, which applies to the steps made
+     * afterwards. Other propositions are reconstructed from the nearest kept one when needed.
+     * @param interval the number of steps, or {@code HistoryTree.ADAPTIVE_CHECKPOINTS} to decide by the size of
+     *                 the changes relative to the diagram.
+     */
+    public void setCheckpointInterval(int interval) {
+        checkpointInterval = interval;
+        if (history != null) {
+            history.setCheckpointInterval(interval);
+        }
+    }
+
+    /**
+     * Sets the estimated memory the propositions kept in history may take.
+     * @param bytes the budget in bytes, or {@code HistoryTree.UNLIMITED_MEMORY}.
+     */
+    public void setHistoryMemoryBudget(long bytes) {
+        historyMemoryBudget = bytes;
+        if (history != null) {
+            history.setMemoryBudget(bytes);
+        }
+    }
+
+    /**
+     * Adds a step loaded from file to the history tree, leaving the current proposition unchanged until
+     * {@link #updateProposition()} is called.
+     * @param parentId the id of the node the step starts from.
+     * @param to the resulting proposition string in canonical representation of Peirce Alpha diagram.
+     * @param rule the inference rule applied.
+     * @return the id of the node added.
+     * @throws TheoremParseException if the string is not a valid diagram.
+     * @throws HistoryNodeException if there is no node of the given id.
+     */
+    public int addHistoryNode(int parentId, String to, InferenceRule rule)
+            throws TheoremParseException, HistoryNodeException {
+        HistoryTree.Node parent = getHistoryNode(parentId);
+        history.moveTo(parent);
+        insertHistory(parent.getState(), PersistentProposition.of(parseFrame(to)), new int[0], rule);
+        return history.getCurrent().getId();
     }
 
     /**
      * Clears history.
      */
     public void clearHistory() {
-        history.clear();
-        reverseHistory.clear();
+        history = null;
+        unloadedHistory = null;
+    }
+
+    /**
+     * Gets the history tree of the proof.
+     * @return the tree of all steps explored, or null if no steps have been made.
+     */
+    public HistoryTree getHistoryTree() {
+        return history;
+    }
+
+    /**
+     * Adds a function to call on the thread that changes the proof whenever a step is made, undone or redone, the
+     * current node is moved, or a branch is removed.
+     * @param listener the function to call.
+     */
+    public void addHistoryListener(Runnable listener) {
+        historyListeners.add(listener);
+    }
+
+    /**
+     * Removes a function added by {@link #addHistoryListener(Runnable)}.
+     * @param listener the function not to call any more.
+     */
+    public void removeHistoryListener(Runnable listener) {
+        historyListeners.remove(listener);
+    }
+
+    /**
+     * Calls the functions listening to changes of the history.
+     */
+    private void notifyHistoryListeners() {
+        for (Runnable listener : historyListeners) {
+            listener.run();
+        }
+    }
+
+    /**
+     * Gets the propositions from the initial one to the current one in the history.
+     * @return the proposition before the first step followed by the resulting proposition of every step, or an
+     *         empty list if there are no steps.
+     */
+    public List<PersistentProposition> getHistorySnapshots() {
+        if (history == null) {
+            return new ArrayList<>();
+        }
+        return history.getPathStates();
+    }
+
+    /**
+     * Gets the node of the history tree with the given id.
+     * @param id the id of the node.
+     * @return the node.
+     * @throws HistoryNodeException if there is no such node.
+     */
+    private HistoryTree.Node getHistoryNode(int id) throws HistoryNodeException {
+        HistoryTree.Node node = history == null ? null : history.getNode(id);
+        if (node == null) {
+            throw new HistoryNodeException("There is no such step in the history.");
+        }
+        return node;
+    }
+
+    /**
+     * Moves the current proposition to a node of the history reached by a single step, in place if the current
+     * proposition is the one before the step.
+     * @param before the proposition of the node moved away from.
+     * @param target the node moved to.
+     * @param patch the change from the proposition before to that of the target.
+     */
+    private void followStep(PersistentProposition before, HistoryTree.Node target, Patch patch) {
+        PersistentProposition result = target.getState();
+        if (getSnapshot() == before) {
+            patch.applyTo(getProposition());
+            snapshot = result;
+        } else {
+            setProposition(result.toProposition(), result);
+        }
+    }
+
+    /**
+     * Jumps to any step of the history tree, including those in other branches.
+     * @param id the id of the node to jump to.
+     * @throws HistoryNodeException if there is no such node.
+     */
+    public void jumpTo(int id) throws HistoryNodeException {
+        HistoryTree.Node target = getHistoryNode(id);
+        HistoryTree.Node current = history.getCurrent();
+        history.moveTo(target);
+        if (target.getParent() == current) {
+            followStep(current.getState(), target, target.getStep().getPatch());
+        } else if (current.getParent() == target) {
+            followStep(current.getState(), target, current.getStep().getPatch().inverse());
+        } else if (target != current) {
+            setProposition(target.getState().toProposition(), target.getState());
+        }
+        if (journal != null) {
+            journal.record(this);
+        }
+        notifyHistoryListeners();
+    }
+
+    /**
+     * Gets the ends of all branches of the history tree.
+     * @return the nodes without children, or an empty list if no steps have been made.
+     */
+    public List<HistoryTree.Node> getBranches() {
+        return history == null ? new ArrayList<>() : history.getLeaves();
+    }
+
+    /**
+     * Removes a step and all steps after it from the history tree. If the current proposition is removed, the
+     * proposition before the removed step becomes the current one.
+     * @param id the id of the node to remove.
+     * @throws HistoryNodeException if there is no such node or it is the initial proposition.
+     */
+    public void pruneBranch(int id) throws HistoryNodeException {
+        HistoryTree.Node node = getHistoryNode(id);
+        if (node == history.getRoot()) {
+            throw new HistoryNodeException("The initial proposition cannot be removed.");
+        }
+        HistoryTree.Node current = history.getCurrent();
+        history.prune(node);
+        if (history.getCurrent() != current) {
+            PersistentProposition state = history.getCurrent().getState();
+            setProposition(state.toProposition(), state);
+        }
+        if (journal != null) {
+            journal.recordPrune(this, node);
+        }
+        notifyHistoryListeners();
     }
 
     public void clear() {
@@ -294,10 +744,11 @@ public class Logic {
      * Updates the proposition in the model by the last step in history.
      */
     public void updateProposition() {
-        if (history.isEmpty()) {
-            model.setProposition(new Proposition());
+        if (history == null) {
+            setProposition(new Proposition(), PersistentProposition.EMPTY);
         } else {
-            model.setProposition(history.peek().getResultingProposition(getVariables()));
+            PersistentProposition state = history.getCurrent().getState();
+            setProposition(state.toProposition(), state);
         }
     }
 
@@ -321,19 +772,22 @@ public class Logic {
      * @throws InvalidInferenceException if the selected part is not in the form "[ [ proposition ] ]".
      */
     public void removeDoubleCut(List<Literal> literals, Proposition parent) throws InvalidInferenceException {
-        String from = getProposition().toString();
+        PersistentProposition from = getSnapshot();
         if (literals.size() != 1) {
             throw new InvalidInferenceException("Please select a single literal to remove double cuts.");
         }
         Literal original = literals.get(0);
         List<Literal> result = original.getAfterRemoveDoubleCut();
+        int[] path = parent.getPath();
+        int[] removed = indicesOf(parent, literals);
         for (Literal l : result) {
             l.increaseLevelBy(-2);
             l.setParent(parent);
         }
         parent.replaceLiterals(literals, result);
-        String to = getProposition().toString();
-        insertHistory(new Inference(from, to, InferenceRule.DOUBLE_CUT_ELIM));
+        List<PersistentLiteral> inner = from.at(path).get(removed[0]).getContent().get(0).getContent().getLiterals();
+        PersistentProposition to = commitChange(from, parent, path, removed, result, inner);
+        insertHistory(from, to, path, InferenceRule.DOUBLE_CUT_ELIM);
     }
 
     /**
@@ -373,7 +827,13 @@ public class Logic {
      * @throws InvalidSelectionException if the selected part is not a valid proposition.
      */
     public void addDoubleCut(List<Literal> literals, Proposition parent, int s) throws InvalidSelectionException {
-        String from = getProposition().toString();
+        PersistentProposition from = getSnapshot();
+        int[] path = parent.getPath();
+        int[] removed = indicesOf(parent, literals);
+        List<PersistentLiteral> enclosed = new ArrayList<>();
+        for (Literal l : literals) {
+            enclosed.add(from.at(path).get(parent.indexOf(l)));
+        }
         CutLiteral res = new CutLiteral(parent, null);
         Proposition outer = new Proposition(parent.getLevel() + 1, res);
         res.setContent(outer);
@@ -393,8 +853,10 @@ public class Logic {
             inner.addLiterals(literals);
             parent.replaceLiterals(literals, newLiterals);
         }
-        String to = getProposition().toString();
-        insertHistory(new Inference(from, to, InferenceRule.DOUBLE_CUT_INTRO));
+        PersistentLiteral doubleCut = PersistentLiteral.cut(PersistentProposition.of(List.of(
+                PersistentLiteral.cut(PersistentProposition.of(enclosed)))));
+        PersistentProposition to = commitChange(from, parent, path, removed, newLiterals, List.of(doubleCut));
+        insertHistory(from, to, path, InferenceRule.DOUBLE_CUT_INTRO);
     }
 
     /**
@@ -417,7 +879,7 @@ public class Logic {
      * @throws InvalidInferenceException if the part selected is not deletable.
      */
     public void cut(List<Literal> literals, Proposition parent) throws InvalidInferenceException {
-        String from = getProposition().toString();
+        PersistentProposition from = getSnapshot();
         boolean erasureApplied = false;
         boolean deiterationApplied = false;
         for (Literal l : literals) {
@@ -427,17 +889,19 @@ public class Logic {
                 case DEITERATION -> deiterationApplied = true;
             }
         }
+        int[] path = parent.getPath();
+        int[] removed = indicesOf(parent, literals);
         parent.replaceLiterals(literals, new ArrayList<>());
-        String to = getProposition().toString();
+        PersistentProposition to = commitChange(from, parent, path, removed, List.of(), List.of());
         if (erasureApplied) {
             if (deiterationApplied) {
-                insertHistory(new Inference(from, to, InferenceRule.REMOVE_BOTH));
+                insertHistory(from, to, path, InferenceRule.REMOVE_BOTH);
             } else {
-                insertHistory(new Inference(from, to, InferenceRule.ERASURE));
+                insertHistory(from, to, path, InferenceRule.ERASURE);
             }
         } else {
             if (deiterationApplied) {
-                insertHistory(new Inference(from, to, InferenceRule.DEITERATION));
+                insertHistory(from, to, path, InferenceRule.DEITERATION);
             }
         }
     }
@@ -467,7 +931,7 @@ public class Logic {
      */
     public void paste(Proposition toInsert, Proposition parent, int pos) throws
             InvalidSelectionException, InvalidInferenceException {
-        String from = getProposition().toString();
+        PersistentProposition from = getSnapshot();
         boolean insertionApplied = false;
         boolean iterationApplied = false;
         for (Literal l : toInsert.getLiterals()) {
@@ -479,17 +943,23 @@ public class Logic {
             l.setParent(parent);
         }
         toInsert.increaseLevelBy(parent.getLevel());
-        parent.insertLiterals(pos, toInsert.getLiterals());
-        String to = getProposition().toString();
+        List<Literal> inserted = toInsert.getLiterals();
+        List<PersistentLiteral> insertedSnapshots = new ArrayList<>();
+        for (Literal l : inserted) {
+            insertedSnapshots.add(PersistentLiteral.of(l));
+        }
+        parent.insertLiterals(pos, inserted);
+        int[] path = parent.getPath();
+        PersistentProposition to = commitChange(from, parent, path, new int[0], inserted, insertedSnapshots);
         if (insertionApplied) {
             if (iterationApplied) {
-                insertHistory(new Inference(from, to, InferenceRule.INSERT_BOTH));
+                insertHistory(from, to, path, InferenceRule.INSERT_BOTH);
             } else {
-                insertHistory(new Inference(from, to, InferenceRule.INSERTION));
+                insertHistory(from, to, path, InferenceRule.INSERTION);
             }
         } else {
             if (iterationApplied) {
-                insertHistory(new Inference(from, to, InferenceRule.ITERATION));
+                insertHistory(from, to, path, InferenceRule.ITERATION);
             }
         }
     }
@@ -507,8 +977,9 @@ public class Logic {
      * @return the string as described.
      */
     public String getLastLog() {
-        if (!history.isEmpty()) {
-            return history.peek().userDisplay();
+        if (history != null && history.getCurrent() != history.getRoot()) {
+            HistoryTree.Node current = history.getCurrent();
+            return current.getStep().userDisplay(current.getState());
         } else {
             return "";
         }
@@ -519,42 +990,139 @@ public class Logic {
      * @throws UndoException if there are no steps to undo.
      */
     public void undo() throws UndoException {
-        if (history.isEmpty()) {
+        if (history != null && history.getCurrent() == history.getRoot() && unloadedHistory != null) {
+            try {
+                loadEarlierHistory(HISTORY_PAGE);
+            } catch (FileReadException e) {
+                throw new UndoException();
+            }
+        }
+        HistoryTree.Node undone = history == null ? null : history.undo();
+        if (undone == null) {
             throw new UndoException();
         }
-        reverseHistory.push(history.pop());
-        Proposition prop = reverseHistory.peek().getOriginalProposition(getVariables());
-        model.setProposition(prop);
+        followStep(undone.getState(), history.getCurrent(), undone.getStep().getPatch().inverse());
+        if (journal != null) {
+            journal.record(this);
+        }
+        notifyHistoryListeners();
     }
 
     /**
-     * Redoes the last step undone.
+     * Redoes the last step undone, or the last step visited after the current one.
      * @return the inference step inserted back.
      * @throws RedoException if there are no steps to redo.
      */
     public Inference redo() throws RedoException {
-        if (reverseHistory.isEmpty()) {
+        HistoryTree.Node before = history == null ? null : history.getCurrent();
+        HistoryTree.Node redone = history == null ? null : history.redo();
+        if (redone == null) {
             throw new RedoException();
         }
-        history.push(reverseHistory.pop());
-        Proposition prop = history.peek().getResultingProposition(getVariables());
-        model.setProposition(prop);
-        return history.peek();
+        followStep(before.getState(), redone, redone.getStep().getPatch());
+        if (journal != null) {
+            journal.record(this);
+        }
+        notifyHistoryListeners();
+        return redone.getStep();
     }
 
     /**
-     * Gets the proof step history that is currently in the application.
-     * @return the history stack.
+     * Gets the proof steps from the initial proposition to the current one.
+     * @return the steps on the current branch of the history tree up to the current node.
      */
-    public Stack<Inference> getHistory() {
-        return history;
+    public List<Inference> getHistory() {
+        List<Inference> steps = new ArrayList<>();
+        if (history != null) {
+            for (HistoryTree.Node n : history.getPath()) {
+                if (n.getStep() != null) {
+                    steps.add(n.getStep());
+                }
+            }
+        }
+        return steps;
     }
 
     /**
-     * Saves the current proof to file.
+     * Makes inference steps found by other means than the user interface, e.g. by proof search, one after another
+     * from the current proposition, recording them in history the same way as the steps made by the user.
+     * @param steps the steps, the first of which applies to the current proposition.
+     */
+    public void applySteps(List<Inference> steps) {
+        for (Inference step : steps) {
+            PersistentProposition from = getSnapshot();
+            Patch patch = step.getPatch();
+            PersistentProposition to = patch.applyTo(from);
+            patch.applyTo(getProposition());
+            snapshot = to;
+            snapshotSource = getProposition();
+            insertHistory(from, to, patch.getPath(), step.getRule());
+        }
+    }
+
+    /**
+     * Saves the current proof to file, in the format decided by the extension of the file name, see
+     * {@link Storage#save(String, Logic)}. In the journaled save mode, only the records of the steps since the last
+     * save are forced to disk.
      */
     public void save() {
-        Storage.saveProof(filePath, this);
+        if (journal != null) {
+            journal.save(this);
+        } else {
+            Storage.save(filePath, this);
+        }
+    }
+
+    /**
+     * Starts the journaled save mode, where every step is appended to a journal next to the proof file instead of
+     * rewriting the whole file, and the journal is compacted into the file from time to time.
+     * @param syncBatch the number of steps recorded before forcing them to disk, e.g.
+     *                  {@code Journal.DEFAULT_SYNC_BATCH}.
+     * @param compactInterval the number of steps recorded before saving the whole proof again, e.g.
+     *                        {@code Journal.DEFAULT_COMPACT_INTERVAL}.
+     */
+    public void startJournal(int syncBatch, int compactInterval) {
+        startJournal(syncBatch, compactInterval, Runnable::run);
+    }
+
+    /**
+     * Starts the journaled save mode the same way as {@link #startJournal(int, int)}, where the journal and the
+     * proof file are written by an executor instead of the calling thread.
+     * @param syncBatch the number of steps recorded before forcing them to disk.
+     * @param compactInterval the number of steps recorded before saving the whole proof again.
+     * @param io the executor that runs the file operations one at a time in the order given.
+     */
+    public void startJournal(int syncBatch, int compactInterval, Executor io) {
+        stopJournal();
+        journal = new Journal(filePath, syncBatch, compactInterval, io);
+        journal.compact(this);
+    }
+
+    /**
+     * Stops the journaled save mode, saving the whole proof and removing the journal, see
+     * {@link Journal#close(Logic)}, without waiting for the executor of the journal.
+     */
+    public void stopJournal() {
+        if (journal != null) {
+            journal.close(this);
+            journal = null;
+        }
+    }
+
+    /**
+     * Checks whether steps are saved to a journal.
+     * @return true if the journaled save mode is on.
+     */
+    public boolean isJournaled() {
+        return journal != null;
+    }
+
+    /**
+     * Gets the journal that steps are saved to.
+     * @return the journal, or null if the journaled save mode is off.
+     */
+    public Journal getJournal() {
+        return journal;
     }
 
     /**
@@ -565,7 +1133,8 @@ public class Logic {
     public void preparePath(String path) throws FilePathException {
         if (!fileNameRegex.matcher(path).matches()) {
             throw new FilePathException("The file path seems not correct. Please make sure you use " +
-                    "/ as delimiters and save the file as a .txt file.");
+                    "/ as delimiters and save the file as a .txt file, a .peirce file for the binary format, or a " +
+                    ".peircelink file for the linked format.");
         }
         String[] paths = path.split("/");
         StringBuilder folder = new StringBuilder();
@@ -574,17 +1143,50 @@ public class Logic {
             folder.append("/");
         }
         Storage.createDirectory(folder.toString());
+        Journal old = journal;
+        stopJournal();
         filePath = path;
+        if (old != null) {
+            startJournal(old.getSyncBatch(), old.getCompactInterval(), old.getExecutor());
+        }
+    }
+
+    /**
+     * Gets the path of the file that the proof is saved to.
+     * @return the file path.
+     */
+    public String getFilePath() {
+        return filePath;
+    }
+
+    /**
+     * Gets the time taken by the last {@link #open(String)} until the current proposition and the goal are ready
+     * to be shown.
+     * @return the time in nanoseconds.
+     */
+    public long getOpenTime() {
+        return openTime;
     }
 
     /**
-     * Opens the file at the given path.
+     * Opens the file at the given path, replaying the steps in its journal if it was saved in the journaled save
+     * mode and not closed properly. The journal of the proof open before is stopped without waiting for its
+     * executor, so a file that executor may still be writing has to be opened by a task run after it, see
+     * {@link storage.AutosaveService#open}.
      * @param path the file path.
      * @throws FilePathException if the file path is invalid.
      * @throws FileReadException if the file content format is invalid.
      */
     public void open(String path) throws FilePathException, FileReadException {
+        Journal old = journal;
+        stopJournal();
+        long start = System.nanoTime();
         filePath = path;
         Storage.loadFile(path, this);
+        Journal.recover(path, this);
+        openTime = System.nanoTime() - start;
+        if (old != null) {
+            startJournal(old.getSyncBatch(), old.getCompactInterval(), old.getExecutor());
+        }
     }
 }
@@ -0,0 +1,10 @@
+package logic.exceptions;
+
+/**
+ * Exception for invalid jumps in, or pruning of, the history tree.
+ */
+public class HistoryNodeException extends Exception {
+    public HistoryNodeException(String message) {
+        super(message);
+    }
+}
@@ -1,7 +1,7 @@
 package logic.exceptions;
 
 public class InvalidSelectionException extends Exception {
-    public static String ERR_MSG = "The part you selected to delete is not a valid proposition";
+    public static final String ERR_MSG = "The part you selected to delete is not a valid proposition";
 
     public InvalidSelectionException() {
         super(ERR_MSG);
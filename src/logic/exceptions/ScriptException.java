@@ -0,0 +1,21 @@
+package logic.exceptions;
+
+/**
+ * Exception for a line of a proof script that cannot be read or carried out.
+ */
+public class ScriptException extends Exception {
+    private final int line;
+
+    public ScriptException(int line, String msg) {
+        super(String.format("Line %d: %s", line, msg));
+        this.line = line;
+    }
+
+    /**
+     * Gets the line of the script where the exception happened.
+     * @return the line number, counting from 1.
+     */
+    public int getLine() {
+        return line;
+    }
+}
@@ -0,0 +1,8 @@
+package logic.parser;
+
+/**
+ * Logical connectives and brackets that may appear as notation tokens of a theorem.
+ */
+enum Connective {
+    AND, OR, NOT, IMPLY, BICONDITIONAL, LEFT_PARENTHESIS, RIGHT_PARENTHESIS;
+}
@@ -2,64 +2,66 @@ package logic.parser;
 
 import logic.Language;
 import logic.exceptions.TheoremParseException;
+import model.SymbolTable;
 
 import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.List;
 
 /**
  * Parser of Coq.
  */
 public class CoqParser extends Parser {
-    public static String[] coqNotations = new String[]{"/\\", "\\/", "~", "<->", "->", "(", ")"};
+    private static final String[] coqNotations = new String[]{"/\\", "\\/", "~", "<->", "->", "(", ")"};
+    private static final NotationTrie NOTATION_TRIE = new NotationTrie(coqNotations);
 
-    public CoqParser(List<String> variables) {
-        super(variables);
+    public CoqParser(SymbolTable symbols, ParserBackend backend) {
+        super(symbols, backend);
     }
 
     @Override
-    protected String[] tokenize(String theorem) throws TheoremParseException {
+    protected String[] tokenize(CharSequence theorem) throws TheoremParseException {
         List<String> tokens = new ArrayList<>();
         int length = theorem.length();
         int pointer = 0;
         while (pointer < length) {
-            String substring = theorem.substring(pointer);
-            if (startsWithBlank(substring)) {
+            if (isBlank(theorem.charAt(pointer))) {
                 pointer++;
-            } else {
-                boolean startsWithNotation = false;
-                for (String notation : coqNotations) {
-                    if (substring.startsWith(notation)) {
-                        startsWithNotation = true;
-                        pointer += notation.length();
-                        tokens.add(notation);
-                        break;
-                    }
-                }
-                if (!startsWithNotation) {
-                    int varLength = substring.length();
-                    if (substring.indexOf(' ') > 0) {
-                        varLength = substring.indexOf(' ');
-                    }
-                    for (String notation : coqNotations) {
-                        int index = substring.indexOf(notation);
-                        if (index > 0 && index < varLength) {
-                            varLength = index;
-                        }
-                    }
-                    tokens.add(substring.substring(0, varLength));
-                    pointer += varLength;
-                }
+                continue;
             }
-        }
-        for (String t : tokens) {
-            if (!variables.contains(t) && !Arrays.asList(coqNotations).contains(t)) {
+            String notation = NOTATION_TRIE.match(theorem, pointer);
+            if (notation != null) {
+                tokens.add(notation);
+                pointer += notation.length();
+                continue;
+            }
+            int end = pointer + 1;
+            while (end < length && theorem.charAt(end) != ' ' && NOTATION_TRIE.match(theorem, end) == null) {
+                end++;
+            }
+            String variable = theorem.subSequence(pointer, end).toString();
+            if (!symbols.isDeclared(variable)) {
                 throw new TheoremParseException(INVALID_TOKENS_ERR_MSG);
             }
+            tokens.add(variable);
+            pointer = end;
         }
         return tokens.toArray(new String[0]);
     }
 
+    @Override
+    protected Connective connectiveOf(String token) {
+        return switch (token) {
+            case "/\\" -> Connective.AND;
+            case "\\/" -> Connective.OR;
+            case "~" -> Connective.NOT;
+            case "->" -> Connective.IMPLY;
+            case "<->" -> Connective.BICONDITIONAL;
+            case "(" -> Connective.LEFT_PARENTHESIS;
+            case ")" -> Connective.RIGHT_PARENTHESIS;
+            default -> null;
+        };
+    }
+
     @Override
     protected Language languageUsed() {
         return Language.Coq;
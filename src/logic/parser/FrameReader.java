@@ -0,0 +1,135 @@
+package logic.parser;
+
+import logic.exceptions.TheoremParseException;
+import model.CutLiteral;
+import model.GroundLiteral;
+import model.Proposition;
+import model.SymbolTable;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+/**
+ * Streaming reader of canonical Peirce diagram strings, i.e. "[", "]" and variable names separated by blanks.
+ * The characters are scanned in place and the proposition is built as the tokens are recognized, so neither the
+ * input nor its tokens need to be held in memory as strings.
+ */
+class FrameReader {
+    private static final String ERROR_MARK = "!!ERROR";
+
+    private final SymbolTable symbols;
+    private final StringBuilder word;
+    private final Deque<CutLiteral> stack;
+    private Proposition proposition;
+    private int level;
+    private boolean first;
+
+    /**
+     * Creates a reader for a single diagram.
+     * @param symbols the symbol table to resolve variable names with.
+     */
+    FrameReader(SymbolTable symbols) {
+        this.symbols = symbols;
+        this.word = new StringBuilder();
+        this.stack = new ArrayDeque<>();
+        this.proposition = new Proposition();
+        this.level = 0;
+        this.first = true;
+    }
+
+    /**
+     * Reads the diagram from a character sequence.
+     * @param peirce the canonical diagram string.
+     * @return the proposition corresponding to the diagram.
+     * @throws TheoremParseException if the sequence is not a valid Peirce diagram string.
+     */
+    Proposition read(CharSequence peirce) throws TheoremParseException {
+        int length = peirce.length();
+        for (int i = 0; i < length; i++) {
+            accept(peirce.charAt(i));
+        }
+        return finish();
+    }
+
+    /**
+     * Reads the diagram from a stream of characters until its end.
+     * @param reader the reader of the canonical diagram string, which is not closed by this method.
+     * @return the proposition corresponding to the diagram.
+     * @throws TheoremParseException if the stream is not a valid Peirce diagram string.
+     * @throws IOException if the stream cannot be read.
+     */
+    Proposition read(Reader reader) throws TheoremParseException, IOException {
+        char[] buffer = new char[8192];
+        int n;
+        while ((n = reader.read(buffer)) != -1) {
+            for (int i = 0; i < n; i++) {
+                accept(buffer[i]);
+            }
+        }
+        return finish();
+    }
+
+    /**
+     * Consumes the next character of the diagram string.
+     * @param c the character.
+     * @throws TheoremParseException if a completed token is invalid.
+     */
+    private void accept(char c) throws TheoremParseException {
+        if (c == ' ' || c == '\n' || c == '\t' || c == '\r') {
+            endWord();
+        } else {
+            word.append(c);
+        }
+    }
+
+    /**
+     * Handles the token that has just been completed, if any.
+     * @throws TheoremParseException if the token is invalid.
+     */
+    private void endWord() throws TheoremParseException {
+        if (word.length() == 0) {
+            return;
+        }
+        if (first && ERROR_MARK.contentEquals(word)) {
+            throw new TheoremParseException(Parser.INVALID_SYNTAX_ERR_MSG);
+        }
+        first = false;
+        if (word.length() == 1 && word.charAt(0) == '[') {
+            level++;
+            CutLiteral thisLiteral = new CutLiteral(proposition, null);
+            stack.push(thisLiteral);
+            proposition.addLiteral(thisLiteral);
+            proposition = new Proposition(level, thisLiteral);
+        } else if (word.length() == 1 && word.charAt(0) == ']') {
+            if (stack.isEmpty()) {
+                throw new TheoremParseException(Parser.INVALID_SYNTAX_ERR_MSG);
+            }
+            level--;
+            CutLiteral thisLiteral = stack.pop();
+            thisLiteral.setContent(proposition);
+            proposition = thisLiteral.getParent();
+        } else {
+            int id = symbols.lookup(word.toString());
+            if (id == SymbolTable.UNDECLARED) {
+                throw new TheoremParseException(Parser.INVALID_TOKENS_ERR_MSG);
+            }
+            proposition.addLiteral(new GroundLiteral(proposition, symbols, id));
+        }
+        word.setLength(0);
+    }
+
+    /**
+     * Completes the diagram.
+     * @return the base proposition.
+     * @throws TheoremParseException if the last token is invalid or some cut is not closed.
+     */
+    private Proposition finish() throws TheoremParseException {
+        endWord();
+        if (level != 0) {
+            throw new TheoremParseException(Parser.INVALID_SYNTAX_ERR_MSG);
+        }
+        return proposition;
+    }
+}
@@ -0,0 +1,193 @@
+package logic.parser;
+
+import logic.exceptions.TheoremParseException;
+import model.CutLiteral;
+import model.GroundLiteral;
+import model.Literal;
+import model.Proposition;
+import model.SymbolTable;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Parser back end that implements the grammar of "syntax.pl" in Java, so that no Prolog process is needed.
+ */
+class GrammarBackend implements ParserBackend {
+    @Override
+    public Proposition parseTokens(Parser parser, String[] tokens) throws TheoremParseException {
+        return new Builder(parser, tokens).build();
+    }
+
+    /**
+     * Recursive descent parser over the tokens of a single theorem. Each rule returns the literals of the
+     * Peirce diagram corresponding to the functor that the Prolog grammar would construct, i.e. the rules
+     * coq_prop/latex_prop and coq_term/latex_term combined with functor_to_peirce. The literals returned are
+     * detached and have levels relative to a base proposition, in the same way as {@code Literal.copy}.
+     */
+    private static class Builder {
+        private final Parser parser;
+        private final String[] tokens;
+        private int pointer;
+
+        private Builder(Parser parser, String[] tokens) {
+            this.parser = parser;
+            this.tokens = tokens;
+            this.pointer = 0;
+        }
+
+        /**
+         * Builds the proposition from all the tokens.
+         * @return the base proposition.
+         * @throws TheoremParseException if the tokens are not a valid proposition.
+         */
+        private Proposition build() throws TheoremParseException {
+            List<Literal> literals = prop();
+            if (pointer != tokens.length) {
+                throw new TheoremParseException(Parser.INVALID_SYNTAX_ERR_MSG);
+            }
+            Proposition proposition = new Proposition();
+            for (Literal l : literals) {
+                l.setParent(proposition);
+                proposition.addLiteral(l);
+            }
+            return proposition;
+        }
+
+        /**
+         * Parses a proposition, i.e. a term, a negated term, or two terms connected by a binary connective.
+         * @return the literals of the proposition.
+         * @throws TheoremParseException if the syntax is invalid.
+         */
+        private List<Literal> prop() throws TheoremParseException {
+            if (peek() == Connective.NOT) {
+                pointer++;
+                return negate(term());
+            }
+            List<Literal> x = term();
+            Connective connective = peek();
+            if (connective == null) {
+                return x;
+            }
+            switch (connective) {
+                case AND -> {
+                    pointer++;
+                    List<Literal> y = term();
+                    List<Literal> result = new ArrayList<>(x);
+                    result.addAll(y);
+                    return result;
+                }
+                case OR -> {
+                    pointer++;
+                    List<Literal> y = term();
+                    List<Literal> result = new ArrayList<>(negate(x));
+                    result.addAll(negate(y));
+                    return negate(result);
+                }
+                case IMPLY -> {
+                    pointer++;
+                    List<Literal> y = term();
+                    return implies(x, y);
+                }
+                case BICONDITIONAL -> {
+                    pointer++;
+                    List<Literal> y = term();
+                    List<Literal> result = new ArrayList<>(implies(copy(x), copy(y)));
+                    result.addAll(implies(y, x));
+                    return result;
+                }
+                default -> {
+                    return x;
+                }
+            }
+        }
+
+        /**
+         * Parses a term, i.e. a variable or a proposition in parentheses.
+         * @return the literals of the term.
+         * @throws TheoremParseException if the syntax is invalid.
+         */
+        private List<Literal> term() throws TheoremParseException {
+            if (pointer >= tokens.length) {
+                throw new TheoremParseException(Parser.INVALID_SYNTAX_ERR_MSG);
+            }
+            Connective connective = peek();
+            if (connective == null) {
+                SymbolTable symbols = parser.getSymbols();
+                int id = symbols.lookup(tokens[pointer]);
+                if (id == SymbolTable.UNDECLARED) {
+                    throw new TheoremParseException(Parser.INVALID_TOKENS_ERR_MSG);
+                }
+                List<Literal> result = new ArrayList<>();
+                result.add(new GroundLiteral(null, symbols, id));
+                pointer++;
+                return result;
+            }
+            if (connective == Connective.LEFT_PARENTHESIS) {
+                pointer++;
+                List<Literal> result = prop();
+                if (peek() != Connective.RIGHT_PARENTHESIS) {
+                    throw new TheoremParseException(Parser.INVALID_SYNTAX_ERR_MSG);
+                }
+                pointer++;
+                return result;
+            }
+            throw new TheoremParseException(Parser.INVALID_SYNTAX_ERR_MSG);
+        }
+
+        /**
+         * Gets the connective of the current token.
+         * @return the connective, or null if there are no tokens left or the token is a variable.
+         */
+        private Connective peek() {
+            if (pointer >= tokens.length) {
+                return null;
+            }
+            return parser.connectiveOf(tokens[pointer]);
+        }
+
+        /**
+         * Constructs "[ x [ y ] ]".
+         * @param x the literals of the antecedent.
+         * @param y the literals of the consequent.
+         * @return the literals of the implication.
+         */
+        private static List<Literal> implies(List<Literal> x, List<Literal> y) {
+            List<Literal> inner = new ArrayList<>(x);
+            inner.addAll(negate(y));
+            return negate(inner);
+        }
+
+        /**
+         * Encloses the literals in a cut.
+         * @param literals the detached literals to enclose.
+         * @return the list containing the only cut literal.
+         */
+        private static List<Literal> negate(List<Literal> literals) {
+            CutLiteral cut = new CutLiteral(null, null);
+            Proposition content = new Proposition(1, cut);
+            for (Literal l : literals) {
+                l.setParent(content);
+                l.increaseLevelBy(1);
+                content.addLiteral(l);
+            }
+            cut.setContent(content);
+            List<Literal> result = new ArrayList<>();
+            result.add(cut);
+            return result;
+        }
+
+        /**
+         * Copies the literals, which is needed when the same sub-proposition appears twice in the diagram.
+         * @param literals the literals to copy.
+         * @return the copied literals.
+         */
+        private static List<Literal> copy(List<Literal> literals) {
+            List<Literal> result = new ArrayList<>();
+            for (Literal l : literals) {
+                result.add(l.copy());
+            }
+            return result;
+        }
+    }
+}
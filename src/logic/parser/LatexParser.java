@@ -2,16 +2,16 @@ package logic.parser;
 
 import logic.Language;
 import logic.exceptions.TheoremParseException;
+import model.SymbolTable;
 
 import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.List;
 
 /**
  * Parser of LaTeX.
  */
 public class LatexParser extends Parser {
-    public static String[] latexNotations = new String[]{
+    private static final String[] latexNotations = new String[]{
             "\\land", "\\wedge", // Conjunction
             "\\lor", "\\vee", // Disjunction
             "\\lnot", "\\neg", "\\sim", // Negation
@@ -19,50 +19,74 @@ public class LatexParser extends Parser {
             "\\Leftrightarrow", "\\equiv", "\\leftrightarrow", "\\iff", // Bi-conditional
             "(", ")"
     };
+    private static final NotationTrie NOTATION_TRIE = new NotationTrie(latexNotations);
+    private static final boolean[] DELIMITERS = new boolean[128];
 
-    public LatexParser(List<String> variables) {
-        super(variables);
+    static {
+        for (char c : new char[]{'\\', ' ', '\n', '\t', '(', ')'}) {
+            DELIMITERS[c] = true;
+        }
+    }
+
+    public LatexParser(SymbolTable symbols, ParserBackend backend) {
+        super(symbols, backend);
     }
 
     @Override
-    protected String[] tokenize(String theorem) throws TheoremParseException {
+    protected String[] tokenize(CharSequence theorem) throws TheoremParseException {
         List<String> tokens = new ArrayList<>();
         int length = theorem.length();
         int pointer = 0;
         while (pointer < length) {
-            String substring = theorem.substring(pointer);
-            if (startsWithBlank(substring)) {
+            char c = theorem.charAt(pointer);
+            if (isBlank(c)) {
                 pointer++;
-            } else if (substring.startsWith("(")) {
+            } else if (c == '(') {
                 pointer++;
                 tokens.add("(");
-            } else if (substring.startsWith(")")) {
+            } else if (c == ')') {
                 pointer++;
                 tokens.add(")");
             } else {
-                int index = getNextIndex(substring);
-                tokens.add(substring.substring(0, index));
-                pointer += index;
-            }
-        }
-        for (String t : tokens) {
-            if (!variables.contains(t) && !Arrays.asList(latexNotations).contains(t)) {
-                throw new TheoremParseException(INVALID_TOKENS_ERR_MSG);
+                int end = pointer + 1;
+                while (end < length && !isDelimiter(theorem.charAt(end))) {
+                    end++;
+                }
+                String token = NOTATION_TRIE.lookup(theorem, pointer, end);
+                if (token == null) {
+                    token = theorem.subSequence(pointer, end).toString();
+                    if (!symbols.isDeclared(token)) {
+                        throw new TheoremParseException(INVALID_TOKENS_ERR_MSG);
+                    }
+                }
+                tokens.add(token);
+                pointer = end;
             }
         }
         return tokens.toArray(new String[0]);
     }
 
-    private int getNextIndex(String substring) {
-        int index = substring.length();
-        String[] delimits = new String[]{"\\", " ", "\n", "\t", "(", ")"};
-        for (String delimit : delimits) {
-            int thisIndex = substring.indexOf(delimit);
-            if (thisIndex > 0 && thisIndex < index) {
-                index = thisIndex;
-            }
-        }
-        return index;
+    /**
+     * Checks whether a character ends the token before it.
+     * @param c the character to check.
+     * @return true if it is a backslash, a parenthesis, or a blank character.
+     */
+    private static boolean isDelimiter(char c) {
+        return c < DELIMITERS.length && DELIMITERS[c];
+    }
+
+    @Override
+    protected Connective connectiveOf(String token) {
+        return switch (token) {
+            case "\\land", "\\wedge" -> Connective.AND;
+            case "\\lor", "\\vee" -> Connective.OR;
+            case "\\lnot", "\\neg", "\\sim" -> Connective.NOT;
+            case "\\Rightarrow", "\\to", "\\rightarrow", "\\supset", "\\implies" -> Connective.IMPLY;
+            case "\\Leftrightarrow", "\\equiv", "\\leftrightarrow", "\\iff" -> Connective.BICONDITIONAL;
+            case "(" -> Connective.LEFT_PARENTHESIS;
+            case ")" -> Connective.RIGHT_PARENTHESIS;
+            default -> null;
+        };
     }
 
     @Override
@@ -0,0 +1,91 @@
+package logic.parser;
+
+/**
+ * Trie over the notations of a language, stored as a transition table of ASCII characters, which recognizes
+ * notations in a character sequence without creating substrings.
+ */
+final class NotationTrie {
+    private static final int ALPHABET = 128;
+
+    private int[][] next;
+    private String[] notations;
+    private int size;
+
+    /**
+     * Builds the trie of the given notations, all of which consist of ASCII characters only.
+     * @param notations the notations of the language.
+     */
+    NotationTrie(String[] notations) {
+        next = new int[8][];
+        this.notations = new String[8];
+        size = 0;
+        newState();
+        for (String notation : notations) {
+            int state = 0;
+            for (int i = 0; i < notation.length(); i++) {
+                char c = notation.charAt(i);
+                assert c < ALPHABET;
+                if (next[state][c] == 0) {
+                    int child = newState();
+                    next[state][c] = child;
+                }
+                state = next[state][c];
+            }
+            this.notations[state] = notation;
+        }
+    }
+
+    private int newState() {
+        if (size == next.length) {
+            int[][] grownNext = new int[size * 2][];
+            System.arraycopy(next, 0, grownNext, 0, size);
+            next = grownNext;
+            String[] grownNotations = new String[size * 2];
+            System.arraycopy(notations, 0, grownNotations, 0, size);
+            notations = grownNotations;
+        }
+        next[size] = new int[ALPHABET];
+        return size++;
+    }
+
+    /**
+     * Finds the longest notation that starts at the given index of the sequence.
+     * @param s the character sequence.
+     * @param from the index to start matching.
+     * @return the notation found, or null if no notation starts at the index.
+     */
+    String match(CharSequence s, int from) {
+        String found = null;
+        int state = 0;
+        for (int i = from; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (c >= ALPHABET || next[state][c] == 0) {
+                break;
+            }
+            state = next[state][c];
+            if (notations[state] != null) {
+                found = notations[state];
+            }
+        }
+        return found;
+    }
+
+    /**
+     * Finds the notation that is exactly the given range of the sequence.
+     * @param s the character sequence.
+     * @param from the start index of the range.
+     * @param to the end index of the range (exclusive).
+     * @return the notation, or null if the range is not a notation.
+     */
+    String lookup(CharSequence s, int from, int to) {
+        int state = 0;
+        for (int i = from; i < to; i++) {
+            char c = s.charAt(i);
+            if (c >= ALPHABET || next[state][c] == 0) {
+                return null;
+            }
+            state = next[state][c];
+        }
+        return notations[state];
+    }
+}
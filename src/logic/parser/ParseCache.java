@@ -0,0 +1,177 @@
+package logic.parser;
+
+import logic.Language;
+import logic.exceptions.TheoremParseException;
+import model.CutLiteral;
+import model.GroundLiteral;
+import model.Literal;
+import model.Proposition;
+
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Bounded cache of parse results with least recently used eviction. Entries are keyed by the language, a
+ * fingerprint of the set of recognized variables, and the input string, and hold a parsed proposition that is
+ * never handed out, so that every lookup returns a fresh copy of it.
+ */
+public class ParseCache {
+    public static final int DEFAULT_CAPACITY = 256;
+
+    private final int capacity;
+    private final LinkedHashMap<Key, Entry> entries;
+    private long hits;
+    private long misses;
+
+    /**
+     * Creates a cache with the default capacity.
+     */
+    public ParseCache() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Creates a cache.
+     * @param capacity the largest number of parse results to keep.
+     */
+    public ParseCache(int capacity) {
+        this.capacity = capacity;
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, Entry> eldest) {
+                return size() > ParseCache.this.capacity;
+            }
+        };
+        this.hits = 0;
+        this.misses = 0;
+    }
+
+    /**
+     * Parses a theorem, or copies the proposition parsed before from the same theorem.
+     * @param language the language of the theorem.
+     * @param variables the fingerprint of the set of variables recognizable.
+     * @param theorem the string of the theorem.
+     * @param parser the parse to run if the result is not cached.
+     * @return the proposition corresponding to the theorem, which the caller is free to modify.
+     * @throws TheoremParseException if the theorem is invalid, in which case nothing is cached.
+     */
+    public Proposition parse(Language language, String variables, String theorem, Loader parser)
+            throws TheoremParseException {
+        return get(new Key(language, variables, false, theorem), parser);
+    }
+
+    /**
+     * Parses a canonical diagram string, or copies the proposition parsed before from the same string.
+     * @param language the language in use.
+     * @param variables the fingerprint of the set of variables recognizable.
+     * @param diagram the canonical diagram string.
+     * @param parser the parse to run if the result is not cached.
+     * @return the proposition corresponding to the diagram, which the caller is free to modify.
+     * @throws TheoremParseException if the diagram is invalid, in which case nothing is cached.
+     */
+    public Proposition parseFrame(Language language, String variables, String diagram, Loader parser)
+            throws TheoremParseException {
+        return get(new Key(language, variables, true, diagram), parser);
+    }
+
+    private Proposition get(Key key, Loader parser) throws TheoremParseException {
+        Entry entry;
+        synchronized (this) {
+            entry = entries.get(key);
+            if (entry != null) {
+                hits++;
+            } else {
+                misses++;
+            }
+        }
+        if (entry == null) {
+            Proposition parsed = parser.load();
+            entry = new Entry(parsed.copy(), variablesIn(parsed));
+            synchronized (this) {
+                entries.put(key, entry);
+            }
+            return parsed;
+        }
+        return entry.template.copy();
+    }
+
+    /**
+     * Removes the entries whose proposition contains the given variable, which cannot be parsed anymore once
+     * the variable is no longer recognized.
+     * @param variable the name of the variable removed.
+     */
+    public synchronized void invalidateVariable(String variable) {
+        entries.values().removeIf(e -> e.variables.contains(variable));
+    }
+
+    /**
+     * Removes the entries whose proposition contains some variable out of the given ones.
+     * @param variables the variables that are still recognized.
+     */
+    public synchronized void retainVariables(Collection<String> variables) {
+        Set<String> retained = new HashSet<>(variables);
+        entries.values().removeIf(e -> !retained.containsAll(e.variables));
+    }
+
+    /**
+     * Removes all entries.
+     */
+    public synchronized void clear() {
+        entries.clear();
+    }
+
+    /**
+     * Gets the statistics of the cache.
+     * @return the number of hits, misses, and entries at this point in time.
+     */
+    public synchronized Statistics getStatistics() {
+        return new Statistics(hits, misses, entries.size());
+    }
+
+    /**
+     * Gets the names of the variables appearing in the proposition.
+     * @param proposition the proposition to look into.
+     * @return the set of variable names.
+     */
+    private static Set<String> variablesIn(Proposition proposition) {
+        Set<String> variables = new HashSet<>();
+        collectVariables(proposition, variables);
+        return variables;
+    }
+
+    private static void collectVariables(Proposition proposition, Set<String> variables) {
+        for (Literal l : proposition.getLiterals()) {
+            if (l instanceof GroundLiteral) {
+                variables.add(((GroundLiteral) l).getVariableName());
+            } else {
+                collectVariables(((CutLiteral) l).getContent(), variables);
+            }
+        }
+    }
+
+    /**
+     * The parse to run when a result is not cached.
+     */
+    public interface Loader {
+        Proposition load() throws TheoremParseException;
+    }
+
+    /**
+     * Statistics of the cache lookups.
+     */
+    public record Statistics(long hits, long misses, int size) {
+        @Override
+        public String toString() {
+            return String.format("%d hits, %d misses, %d entries", hits, misses, size);
+        }
+    }
+
+    private record Key(Language language, String variables, boolean frame, String input) {
+    }
+
+    private record Entry(Proposition template, Set<String> variables) {
+    }
+}
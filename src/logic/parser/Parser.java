@@ -2,66 +2,87 @@ package logic.parser;
 
 import logic.Language;
 import logic.exceptions.TheoremParseException;
-import model.CutLiteral;
-import model.GroundLiteral;
 import model.Proposition;
-import static ui.Ui.PARSE_OUTPUT;
-import static ui.Ui.SYNTAX_PL;
-import static ui.Ui.TOKEN_OUTPUT;
+import model.SymbolTable;
 
-import java.io.File;
-import java.io.FileNotFoundException;
-import java.io.FileWriter;
 import java.io.IOException;
-import java.util.List;
-import java.util.Scanner;
-import java.util.Stack;
+import java.io.Reader;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
 
 /**
  * Parser that parses proposition.
+ * A parser only reads the symbol table of the variables it recognizes, which is thread-safe, and keeps no other
+ * state between calls, and every back end is reentrant, so the same parser instance can be used from many threads
+ * at once.
  */
 public abstract class Parser {
-    public static String INVALID_TOKENS_ERR_MSG = "Please check your proposition, some tokens are invalid.";
-    public static String INVALID_SYNTAX_ERR_MSG = "Please check your proposition, the syntax seems incorrect.";
-    public static String EMPTY_ERR_MSG = "Please enter your theorem to prove.";
+    public static final String INVALID_TOKENS_ERR_MSG = "Please check your proposition, some tokens are invalid.";
+    public static final String INVALID_SYNTAX_ERR_MSG = "Please check your proposition, the syntax seems incorrect.";
+    public static final String EMPTY_ERR_MSG = "Please enter your theorem to prove.";
+    private static final int FRAME_BUFFER_SIZE = 1 << 16;
 
-    protected final List<String> variables;
+    protected final SymbolTable symbols;
+    private final ParserBackend backend;
 
     /**
      * Creates a parser instance.
-     * @param variables the list of variables recognizable.
+     * @param symbols the symbol table of the variables recognizable.
+     * @param backend the back end that parses the tokens.
      */
-    public Parser(List<String> variables) {
-        this.variables = variables;
+    public Parser(SymbolTable symbols, ParserBackend backend) {
+        this.symbols = symbols;
+        this.backend = backend;
     }
 
     /**
-     * Tokenizes an input theorem.
+     * Tokenizes an input theorem in a single pass over its characters.
      * @param theorem the input string of the theorem.
      * @return the tokens of the theorem.
      * @throws TheoremParseException if some tokens are invalid.
      */
-    protected abstract String[] tokenize(String theorem) throws TheoremParseException;
+    protected abstract String[] tokenize(CharSequence theorem) throws TheoremParseException;
 
     /**
-     * Checks whether the given string starts with some blank character.
-     * @param s the string to check.
-     * @return true if it starts with white space, new line, or tab.
+     * Gets the connective that a token of the language stands for.
+     * @param token the token of the theorem.
+     * @return the connective of the token, or null if the token is not a notation of the language.
      */
-    protected boolean startsWithBlank(String s) {
-        return s.startsWith(" ") || s.startsWith("\n") || s.startsWith("\t");
+    protected abstract Connective connectiveOf(String token);
+
+    /**
+     * Checks whether the given character is blank.
+     * @param c the character to check.
+     * @return true if it is white space, new line, or tab.
+     */
+    protected static boolean isBlank(char c) {
+        return c == ' ' || c == '\n' || c == '\t';
+    }
+
+    /**
+     * Creates a parser of the corresponding language that parses in process.
+     * @param language the language of the theorem written.
+     * @param symbols the symbol table of valid variable tokens.
+     * @return a parser of the language.
+     */
+    public static Parser createParser(Language language, SymbolTable symbols) {
+        return createParser(language, symbols, ParserBackend.GRAMMAR);
     }
 
     /**
      * Creates a parser of the corresponding language.
      * @param language the language of the theorem written.
-     * @param variables the list of valid variable tokens.
+     * @param symbols the symbol table of valid variable tokens.
+     * @param backend the back end that parses the tokens, e.g. {@code ParserBackend.PROLOG}.
      * @return a parser of the language.
      */
-    public static Parser createParser(Language language, List<String> variables) {
+    public static Parser createParser(Language language, SymbolTable symbols, ParserBackend backend) {
         return switch (language) {
-            case Coq -> new CoqParser(variables);
-            case LaTeX -> new LatexParser(variables);
+            case Coq -> new CoqParser(symbols, backend);
+            case LaTeX -> new LatexParser(symbols, backend);
         };
     }
 
@@ -76,21 +97,7 @@ public abstract class Parser {
             throw new TheoremParseException(EMPTY_ERR_MSG);
         }
         String[] tokens = tokenize(theorem);
-        writeTokensToFile(tokens);
-        try {
-            Runtime.getRuntime().exec(String.format("swipl -f %s", SYNTAX_PL)).waitFor();
-        } catch (Exception e) {
-            throw new TheoremParseException(INVALID_SYNTAX_ERR_MSG);
-        }
-        File frameFile = new File(PARSE_OUTPUT);
-        Scanner sc = null;
-        try {
-            sc = new Scanner(frameFile);
-        } catch (FileNotFoundException e) {
-            assert false;
-        }
-        String peirce = sc.nextLine();
-        return parseFrame(peirce);
+        return backend.parseTokens(this, tokens);
     }
 
     /**
@@ -99,61 +106,48 @@ public abstract class Parser {
      * @return the Proposition corresponding to the string.
      * @throws TheoremParseException if the string is not a valid Peirce diagram string.
      */
-    public Proposition parseFrame(String peirce) throws TheoremParseException {
-        String[] peirceFrames = peirce.split(" ");
-        if (peirceFrames[0].equals("!!ERROR")) {
-            throw new TheoremParseException(INVALID_SYNTAX_ERR_MSG);
-        }
-        int level = 0;
-        Proposition proposition = new Proposition();
-        Stack<CutLiteral> stack = new Stack<>();
-        for(int i = 0; i < peirceFrames.length; i++) {
-            if (peirceFrames[i].equals("[")) {
-                level++;
-                CutLiteral thisLiteral = new CutLiteral(proposition, null);
-                stack.push(thisLiteral);
-                proposition.addLiteral(thisLiteral);
-                proposition = new Proposition(level, thisLiteral);
-            } else if (peirceFrames[i].equals("]")) {
-                level--;
-                CutLiteral thisLiteral = stack.pop();
-                thisLiteral.setContent(proposition);
-                proposition = thisLiteral.getParent();
-            } else {
-                if (!variables.contains(peirceFrames[i])) {
-                    throw new TheoremParseException(INVALID_TOKENS_ERR_MSG);
-                }
-                proposition.addLiteral(new GroundLiteral(proposition, peirceFrames[i]));
-            }
-        }
-        if (level != 0) {
-            throw new TheoremParseException(INVALID_SYNTAX_ERR_MSG);
-        }
-        return proposition;
+    public Proposition parseFrame(CharSequence peirce) throws TheoremParseException {
+        return new FrameReader(symbols).read(peirce);
     }
 
     /**
-     * Gets the language used by the parse.
-     * @return the language.
+     * Parses the stream of characters representing the frame to proposition, without reading the whole stream
+     * into memory first.
+     * @param peirce the reader of the string to parse, which is not closed by this method.
+     * @return the Proposition corresponding to the string.
+     * @throws TheoremParseException if the string is not a valid Peirce diagram string.
+     * @throws IOException if the stream cannot be read.
      */
-    abstract protected Language languageUsed();
+    public Proposition parseFrame(Reader peirce) throws TheoremParseException, IOException {
+        return new FrameReader(symbols).read(peirce);
+    }
 
     /**
-     * Writes tokens to the file at "prolog/tokens.txt".
-     * @param tokens the array of tokens strings.
+     * Parses the file containing a canonical Peirce diagram string to proposition, reading it through a buffered
+     * channel so that the size of the file is not limited by the size of a string.
+     * @param path the path of the file, encoded in UTF-8.
+     * @return the Proposition corresponding to the content of the file.
+     * @throws TheoremParseException if the content is not a valid Peirce diagram string.
+     * @throws IOException if the file cannot be read.
      */
-    protected void writeTokensToFile(String[] tokens) {
-        try {
-            FileWriter fw = new FileWriter(TOKEN_OUTPUT);
-            fw.write(languageUsed().toString());
-            fw.write("\n");
-            for (String t : tokens) {
-                fw.write(t);
-                fw.write("\n");
-            }
-            fw.close();
-        } catch (IOException e) {
-            assert false;
+    public Proposition parseFrame(Path path) throws TheoremParseException, IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ);
+             Reader reader = Channels.newReader(channel, StandardCharsets.UTF_8.newDecoder(), FRAME_BUFFER_SIZE)) {
+            return parseFrame(reader);
         }
-    };
+    }
+
+    /**
+     * Gets the symbol table of the variables recognized by this parser.
+     * @return the symbol table.
+     */
+    protected SymbolTable getSymbols() {
+        return symbols;
+    }
+
+    /**
+     * Gets the language used by the parse.
+     * @return the language.
+     */
+    abstract protected Language languageUsed();
 }
@@ -0,0 +1,30 @@
+package logic.parser;
+
+import logic.exceptions.TheoremParseException;
+import model.Proposition;
+
+/**
+ * Back end that turns the tokens of a theorem into the corresponding Peirce proposition.
+ * Implementations must be reentrant and must not share files or other mutable state between calls, since
+ * {@code Parser} instances may be used from many threads at once.
+ */
+public interface ParserBackend {
+    /**
+     * Back end that parses in process with the Java implementation of the grammar.
+     */
+    ParserBackend GRAMMAR = new GrammarBackend();
+
+    /**
+     * Back end that launches SWI-Prolog on "syntax.pl" for every theorem to parse, talking to it through pipes.
+     */
+    ParserBackend PROLOG = new PrologBackend();
+
+    /**
+     * Parses the tokens of a theorem to Peirce proposition.
+     * @param parser the parser that tokenized the theorem, which decides the language and variables recognized.
+     * @param tokens the tokens of the theorem.
+     * @return the proposition constructed based on the tokens.
+     * @throws TheoremParseException if the tokens do not form a valid proposition.
+     */
+    Proposition parseTokens(Parser parser, String[] tokens) throws TheoremParseException;
+}
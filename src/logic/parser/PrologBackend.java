@@ -0,0 +1,72 @@
+package logic.parser;
+
+import logic.exceptions.TheoremParseException;
+import model.Proposition;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Parser back end that launches SWI-Prolog on "syntax.pl" for every theorem, sending the tokens to the "serve"
+ * loop through the standard input of the process and reading the resulting diagram from its standard output.
+ * No files are shared between parses, so this back end can be used from many threads at once.
+ */
+class PrologBackend implements ParserBackend {
+    public static final String ERROR_RESPONSE = "!!ERROR";
+
+    @Override
+    public Proposition parseTokens(Parser parser, String[] tokens) throws TheoremParseException {
+        String response;
+        try {
+            Process process = new ProcessBuilder(command())
+                    .redirectError(ProcessBuilder.Redirect.DISCARD)
+                    .start();
+            try (Writer in = new OutputStreamWriter(process.getOutputStream(), StandardCharsets.UTF_8)) {
+                in.write(request(parser, tokens));
+                in.write("\n");
+            }
+            try (BufferedReader out = new BufferedReader(
+                    new InputStreamReader(process.getInputStream(), StandardCharsets.UTF_8))) {
+                response = out.readLine();
+            }
+            process.waitFor();
+        } catch (IOException e) {
+            throw new TheoremParseException(Parser.INVALID_SYNTAX_ERR_MSG);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new TheoremParseException(Parser.INVALID_SYNTAX_ERR_MSG);
+        }
+        if (response == null || response.equals(ERROR_RESPONSE)) {
+            throw new TheoremParseException(Parser.INVALID_SYNTAX_ERR_MSG);
+        }
+        return parser.parseFrame(response);
+    }
+
+    /**
+     * Gets the command that starts SWI-Prolog running the "serve" loop of "syntax.pl".
+     * @return the command and its arguments.
+     */
+    static String[] command() {
+        return new String[]{"swipl", "-q", "-g", "serve", "-t", "halt", PrologSyntax.FILE};
+    }
+
+    /**
+     * Encodes the tokens as a request line of the "serve" loop, i.e. the language followed by the tokens,
+     * separated by tabs.
+     * @param parser the parser that decides the language used.
+     * @param tokens the tokens of the theorem, none of which contains white space.
+     * @return the request without line break.
+     */
+    static String request(Parser parser, String[] tokens) {
+        StringBuilder request = new StringBuilder(parser.languageUsed().toString());
+        for (String t : tokens) {
+            request.append('\t');
+            request.append(t);
+        }
+        return request.toString();
+    }
+}
@@ -0,0 +1,108 @@
+package logic.parser;
+
+import java.io.FileWriter;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+
+/**
+ * Grammar of the languages in SWI-Prolog, with the "serve" loop used by the Prolog parser back ends, which is
+ * written to "syntax.pl" before any of them is used.
+ */
+public final class PrologSyntax {
+    public static final String DIRECTORY = "prolog";
+    public static final String FILE = String.format("%s/%s", DIRECTORY, "syntax.pl");
+
+    private static final String CONTENT = "coq_term(l(X)) --> [X], {string(X)}.\n" +
+            "coq_term(l(X)) --> [\"(\"], coq_prop(X), [\")\"].\n" +
+            "\n" +
+            "coq_prop(X) --> coq_term(X).\n" +
+            "coq_prop(and(X,Y)) --> coq_term(X), coq_and, coq_term(Y).\n" +
+            "coq_prop(not(X)) --> coq_not, coq_term(X).\n" +
+            "coq_prop(not(and(not(X),not(Y)))) --> coq_term(X), coq_or, coq_term(Y).\n" +
+            "coq_prop(not(and(X,not(Y)))) --> coq_term(X), coq_imply, coq_term(Y).\n" +
+            "coq_prop(and(not(and(X,not(Y))),not(and(Y,not(X))))) -->\n" +
+            "  coq_term(X), coq_biconditional, coq_term(Y).\n" +
+            "\n" +
+            "coq_and --> [\"/\\\\\"].\n" +
+            "coq_or --> [\"\\\\/\"].\n" +
+            "coq_not --> [\"~\"].\n" +
+            "coq_imply --> [\"->\"].\n" +
+            "coq_biconditional --> [\"<->\"].\n" +
+            "\n" +
+            "latex_term(l(X)) --> [X], {string(X)}.\n" +
+            "latex_term(l(X)) --> [\"(\"], latex_prop(X), [\")\"].\n" +
+            "\n" +
+            "latex_prop(X) --> latex_term(X).\n" +
+            "latex_prop(and(X,Y)) --> latex_term(X), latex_and, latex_term(Y).\n" +
+            "latex_prop(not(X)) --> latex_not, latex_term(X).\n" +
+            "latex_prop(not(and(not(X),not(Y)))) --> latex_term(X), latex_or, latex_term(Y).\n" +
+            "latex_prop(not(and(X,not(Y)))) --> latex_term(X), latex_imply, latex_term(Y).\n" +
+            "latex_prop(and(not(and(X,not(Y))),not(and(Y,not(X))))) --> latex_term(X), latex_biconditional, latex_term(Y).\n" +
+            "\n" +
+            "latex_and --> [\"\\\\land\"].\n" +
+            "latex_and --> [\"\\\\wedge\"].\n" +
+            "latex_or --> [\"\\\\lor\"].\n" +
+            "latex_or --> [\"\\\\vee\"].\n" +
+            "latex_not --> [\"\\\\lnot\"].\n" +
+            "latex_not --> [\"\\\\neg\"].\n" +
+            "latex_not --> [\"\\\\sim\"].\n" +
+            "latex_imply --> [\"\\\\Rightarrow\"].\n" +
+            "latex_imply --> [\"\\\\to\"].\n" +
+            "latex_imply --> [\"\\\\rightarrow\"].\n" +
+            "latex_imply --> [\"\\\\supset\"].\n" +
+            "latex_imply --> [\"\\\\implies\"].\n" +
+            "latex_biconditional --> [\"\\\\Leftrightarrow\"].\n" +
+            "latex_biconditional --> [\"\\\\equiv\"].\n" +
+            "latex_biconditional --> [\"\\\\leftrightarrow\"].\n" +
+            "latex_biconditional --> [\"\\\\iff\"].\n" +
+            "\n" +
+            "functor_to_peirce(X,[X]):-string(X),!.\n" +
+            "functor_to_peirce(l(X),L):-!, functor_to_peirce(X,L).\n" +
+            "functor_to_peirce(not(X),[frame(L)]):-!, functor_to_peirce(X,L).\n" +
+            "functor_to_peirce(and(X,Y),L):-\n" +
+            "  functor_to_peirce(X,XL), functor_to_peirce(Y,YL), append(XL,YL,L).\n" +
+            "\n" +
+            "write_to_stream([],_):-!.\n" +
+            "write_to_stream([H|T],O):-\n" +
+            "  write_literal(H,O), write_to_stream(T,O).\n" +
+            "\n" +
+            "write_literal(frame(X),O):-\n" +
+            "  !, write(O,\"[ \"), write_to_stream(X,O), write(O,\"] \").\n" +
+            "write_literal(X,O):-\n" +
+            "  string(X), write(O,X), write(O,\" \").\n" +
+            "\n" +
+            "parse_tokens(\"Coq\",Tokens,S):-\n" +
+            "  coq_prop(S,Tokens,[]).\n" +
+            "parse_tokens(\"LaTeX\",Tokens,S):-\n" +
+            "  latex_prop(S,Tokens,[]).\n" +
+            "\n" +
+            "handle_request(\"ping\"):-\n" +
+            "  !, write(user_output,\"pong\").\n" +
+            "handle_request(Line):-\n" +
+            "  split_string(Line,\"\\t\",\"\",[Lang|Tokens]),\n" +
+            "  ( once(parse_tokens(Lang,Tokens,S)) ->\n" +
+            "    functor_to_peirce(S,L), write_to_stream(L,user_output)\n" +
+            "  ; write(user_output,\"!!ERROR\") ).\n" +
+            "\n" +
+            "serve:-\n" +
+            "  repeat,\n" +
+            "  read_line_to_string(user_input,Line),\n" +
+            "  ( Line == end_of_file -> !\n" +
+            "  ; catch(handle_request(Line),_,write(user_output,\"!!ERROR\")),\n" +
+            "    nl(user_output), flush_output(user_output), fail ).";
+
+    private PrologSyntax() {
+    }
+
+    /**
+     * Writes the grammar to "syntax.pl", creating its directory if needed.
+     * @throws IOException if the file cannot be written.
+     */
+    public static void install() throws IOException {
+        Files.createDirectories(Paths.get(DIRECTORY));
+        FileWriter fw = new FileWriter(FILE);
+        fw.write(CONTENT);
+        fw.close();
+    }
+}
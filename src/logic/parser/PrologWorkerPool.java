@@ -0,0 +1,332 @@
+package logic.parser;
+
+import logic.exceptions.TheoremParseException;
+import model.Proposition;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongConsumer;
+
+/**
+ * Parser back end that keeps a pool of long-lived SWI-Prolog processes running the "serve" loop of "syntax.pl",
+ * which is safe to use from many threads as every worker serves one request at a time. A request is a single line
+ * on the standard input of a worker with the language and the tokens separated by tabs, and the response is a
+ * single line on its standard output with the canonical diagram string, or "!!ERROR" if the tokens cannot be
+ * parsed. The line "ping" is answered with "pong" and used for health checks.
+ */
+public class PrologWorkerPool implements ParserBackend, AutoCloseable {
+    public static final String PING = "ping";
+    public static final String PONG = "pong";
+    public static final String WORKER_ERR_MSG = "The Prolog parser is not responding, please try again.";
+
+    private final int size;
+    private final Duration timeout;
+    private final BlockingQueue<Worker> idleWorkers;
+    private final ExecutorService readers;
+    private final ScheduledExecutorService healthChecker;
+    private final AtomicInteger liveWorkers;
+    private final AtomicLong requests;
+    private final AtomicLong failures;
+    private final AtomicLong restarts;
+    private final AtomicLong totalLatency;
+    private final AtomicLong maxLatency;
+    private final AtomicLong lastLatency;
+    private volatile LongConsumer latencyListener;
+    private volatile boolean closed;
+
+    /**
+     * Creates a pool of Prolog workers. The workers are started and warmed up by {@link #start(Duration)}.
+     * @param size the number of worker processes.
+     * @param timeout the longest time to wait for a worker to answer a request.
+     */
+    public PrologWorkerPool(int size, Duration timeout) {
+        assert size > 0;
+        this.size = size;
+        this.timeout = timeout;
+        this.idleWorkers = new LinkedBlockingQueue<>();
+        this.readers = Executors.newCachedThreadPool(r -> {
+            Thread thread = new Thread(r, "prolog-worker-reader");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.healthChecker = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "prolog-worker-health-check");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.liveWorkers = new AtomicInteger();
+        this.requests = new AtomicLong();
+        this.failures = new AtomicLong();
+        this.restarts = new AtomicLong();
+        this.totalLatency = new AtomicLong();
+        this.maxLatency = new AtomicLong();
+        this.lastLatency = new AtomicLong();
+        this.closed = false;
+    }
+
+    /**
+     * Starts the worker processes, waits until each of them answers a ping, and schedules periodic health checks.
+     * @param healthCheckInterval the interval between two health checks of the idle workers.
+     * @throws IOException if SWI-Prolog cannot be started or does not respond.
+     */
+    public void start(Duration healthCheckInterval) throws IOException {
+        List<Worker> started = new ArrayList<>();
+        for (int i = 0; i < size; i++) {
+            started.add(new Worker());
+        }
+        for (Worker w : started) {
+            if (!w.ping()) {
+                for (Worker s : started) {
+                    s.destroy();
+                }
+                throw new IOException(WORKER_ERR_MSG);
+            }
+        }
+        liveWorkers.addAndGet(started.size());
+        idleWorkers.addAll(started);
+        long interval = healthCheckInterval.toMillis();
+        healthChecker.scheduleWithFixedDelay(this::checkHealth, interval, interval, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Sets the listener that is notified of the latency of every request in nanoseconds.
+     * @param latencyListener the listener, or null to remove it.
+     */
+    public void setLatencyListener(LongConsumer latencyListener) {
+        this.latencyListener = latencyListener;
+    }
+
+    @Override
+    public Proposition parseTokens(Parser parser, String[] tokens) throws TheoremParseException {
+        String response = send(PrologBackend.request(parser, tokens));
+        if (response.equals(PrologBackend.ERROR_RESPONSE)) {
+            throw new TheoremParseException(Parser.INVALID_SYNTAX_ERR_MSG);
+        }
+        return parser.parseFrame(response);
+    }
+
+    /**
+     * Sends a request line to an idle worker and waits for the response line.
+     * @param request the request without line break.
+     * @return the response without line break.
+     * @throws TheoremParseException if no worker answers in time.
+     */
+    private String send(String request) throws TheoremParseException {
+        long start = System.nanoTime();
+        Worker worker;
+        try {
+            worker = idleWorkers.poll(timeout.toMillis(), TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new TheoremParseException(WORKER_ERR_MSG);
+        }
+        if (worker == null || closed) {
+            release(worker);
+            failures.incrementAndGet();
+            throw new TheoremParseException(WORKER_ERR_MSG);
+        }
+        String response = worker.request(request);
+        if (response == null) {
+            failures.incrementAndGet();
+            release(restart(worker));
+            throw new TheoremParseException(WORKER_ERR_MSG);
+        }
+        release(worker);
+        recordLatency(System.nanoTime() - start);
+        return response;
+    }
+
+    /**
+     * Puts a worker back to the pool, or stops it if the pool is closed.
+     * @param worker the worker to release, null if it could not be restarted.
+     */
+    private void release(Worker worker) {
+        if (worker == null) {
+            return;
+        }
+        if (closed) {
+            worker.destroy();
+        } else {
+            idleWorkers.add(worker);
+        }
+    }
+
+    /**
+     * Replaces a worker that crashed or timed out with a new process.
+     * @param worker the broken worker.
+     * @return the new worker, or null if no new process could be started.
+     */
+    private Worker restart(Worker worker) {
+        worker.destroy();
+        liveWorkers.decrementAndGet();
+        return spawn();
+    }
+
+    /**
+     * Starts a new worker process to take the place of one that is gone.
+     * @return the new worker, or null if the pool is closed or no new process could be started.
+     */
+    private Worker spawn() {
+        if (closed) {
+            return null;
+        }
+        try {
+            Worker worker = new Worker();
+            restarts.incrementAndGet();
+            liveWorkers.incrementAndGet();
+            return worker;
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Pings every worker that is idle at the moment, restarting those that do not answer, and refills the pool
+     * if some workers could not be restarted before.
+     */
+    private void checkHealth() {
+        List<Worker> checking = new ArrayList<>();
+        idleWorkers.drainTo(checking);
+        for (Worker w : checking) {
+            release(w.ping() ? w : restart(w));
+        }
+        while (liveWorkers.get() < size && !closed) {
+            Worker worker = spawn();
+            if (worker == null) {
+                break;
+            }
+            release(worker);
+        }
+    }
+
+    /**
+     * Records the latency of a successful request.
+     * @param nanos the latency in nanoseconds.
+     */
+    private void recordLatency(long nanos) {
+        requests.incrementAndGet();
+        totalLatency.addAndGet(nanos);
+        lastLatency.set(nanos);
+        maxLatency.accumulateAndGet(nanos, Math::max);
+        LongConsumer listener = latencyListener;
+        if (listener != null) {
+            listener.accept(nanos);
+        }
+    }
+
+    /**
+     * Gets the statistics of the pool.
+     * @return the statistics at this point in time.
+     */
+    public Statistics getStatistics() {
+        long count = requests.get();
+        return new Statistics(count, failures.get(), restarts.get(), lastLatency.get(),
+                count == 0 ? 0 : totalLatency.get() / count, maxLatency.get());
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        healthChecker.shutdownNow();
+        List<Worker> remaining = new ArrayList<>();
+        idleWorkers.drainTo(remaining);
+        for (Worker w : remaining) {
+            w.destroy();
+        }
+        readers.shutdownNow();
+    }
+
+    /**
+     * Statistics of the requests served by the pool, with latencies in nanoseconds.
+     */
+    public record Statistics(long requests, long failures, long restarts,
+                             long lastLatency, long meanLatency, long maxLatency) {
+        @Override
+        public String toString() {
+            return String.format("%d requests, %d failures, %d restarts, latency last %.2f ms, "
+                            + "mean %.2f ms, max %.2f ms", requests, failures, restarts,
+                    lastLatency / 1e6, meanLatency / 1e6, maxLatency / 1e6);
+        }
+    }
+
+    /**
+     * A SWI-Prolog process running the "serve" loop.
+     */
+    private class Worker {
+        private final Process process;
+        private final BufferedWriter in;
+        private final BufferedReader out;
+
+        private Worker() throws IOException {
+            process = new ProcessBuilder(PrologBackend.command())
+                    .redirectError(ProcessBuilder.Redirect.DISCARD)
+                    .start();
+            in = new BufferedWriter(new OutputStreamWriter(process.getOutputStream(), StandardCharsets.UTF_8));
+            out = new BufferedReader(new InputStreamReader(process.getInputStream(), StandardCharsets.UTF_8));
+        }
+
+        /**
+         * Checks whether the worker answers a ping.
+         * @return true if the worker is healthy.
+         */
+        private boolean ping() {
+            return PONG.equals(request(PING));
+        }
+
+        /**
+         * Sends a request and waits for the response within the timeout of the pool.
+         * @param request the request line.
+         * @return the response line, or null if the process died or did not answer in time.
+         */
+        private String request(String request) {
+            if (!process.isAlive()) {
+                return null;
+            }
+            try {
+                in.write(request);
+                in.newLine();
+                in.flush();
+                CompletableFuture<String> response = CompletableFuture.supplyAsync(() -> {
+                    try {
+                        return out.readLine();
+                    } catch (IOException e) {
+                        return null;
+                    }
+                }, readers);
+                return response.get(timeout.toMillis(), TimeUnit.MILLISECONDS);
+            } catch (IOException | ExecutionException | TimeoutException e) {
+                destroy();
+                return null;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                destroy();
+                return null;
+            }
+        }
+
+        /**
+         * Stops the process.
+         */
+        private void destroy() {
+            process.destroyForcibly();
+        }
+    }
+}
@@ -0,0 +1,139 @@
+package logic.script;
+
+import logic.exceptions.ScriptException;
+
+import java.util.Arrays;
+
+/**
+ * Line of a proof script. A location is written as the indices of the cut literals to enter from the base
+ * proposition followed by the index of a literal in the area reached, separated by dots, e.g. "2" for the third
+ * literal of the base proposition and "1.0.2" for the third literal inside the first cut literal inside the second
+ * literal of the base proposition. An index equal to the number of literals of the area stands for its end.
+ * @param line the line number, counting from 1.
+ * @param kind the kind of the command.
+ * @param path the indices of the cut literals to enter to reach the area of the location, if any.
+ * @param index the index of the literal of the location, if any.
+ * @param count the number of literals from the location the command applies to.
+ * @param argument the text after the command name for declarations and the fragment to paste for paste.
+ */
+public record Command(int line, Kind kind, int[] path, int index, int count, String argument) {
+    /**
+     * Kinds of commands, with their names in scripts.
+     */
+    public enum Kind {
+        VARIABLES("variables"), LANGUAGE("language"), PREMISE("premise"), THEOREM("theorem"),
+        CUT("cut"), DC_INTRO("dc-intro"), DC_ELIM("dc-elim"), PASTE("paste"), UNDO("undo"), REDO("redo");
+
+        private final String name;
+
+        Kind(String name) {
+            this.name = name;
+        }
+
+        /**
+         * Checks whether commands of this kind declare the proof instead of making a step.
+         * @return true for declarations.
+         */
+        public boolean isDeclaration() {
+            return ordinal() <= THEOREM.ordinal();
+        }
+
+        @Override
+        public String toString() {
+            return name;
+        }
+    }
+
+    /**
+     * Reads a line of a script:
+     * "
+     * variables [names]*
+     * language Coq|LaTeX
+     * premise [formula]
+     * theorem [formula]
+     * cut [location] [count, 1 by default]
+     * dc-intro [location] [count, 1 by default, where 0 puts an empty double cut at the location]
+     * dc-elim [location]
+     * paste [location] [diagram in canonical form]
+     * undo
+     * redo
+     * "
+     * @param line the line number, counting from 1.
+     * @param text the line without comments, which is not blank.
+     * @return the command.
+     * @throws ScriptException if the line is not a valid command.
+     */
+    static Command parse(int line, String text) throws ScriptException {
+        String trimmed = text.trim();
+        int space = indexOfBlank(trimmed);
+        String name = space < 0 ? trimmed : trimmed.substring(0, space);
+        String rest = space < 0 ? "" : trimmed.substring(space + 1).trim();
+        Kind kind = null;
+        for (Kind k : Kind.values()) {
+            if (k.name.equals(name)) {
+                kind = k;
+            }
+        }
+        if (kind == null) {
+            throw new ScriptException(line, "Unknown command \"" + name + "\".");
+        }
+        if (kind.isDeclaration()) {
+            return new Command(line, kind, new int[0], 0, 0, rest);
+        }
+        String[] args = rest.isEmpty() ? new String[0] : rest.split("\\s+", kind == Kind.PASTE ? 2 : -1);
+        return switch (kind) {
+            case UNDO, REDO -> {
+                expect(line, args.length == 0, kind + " takes no arguments.");
+                yield new Command(line, kind, new int[0], 0, 0, "");
+            }
+            case DC_ELIM -> {
+                expect(line, args.length == 1, "dc-elim takes a location.");
+                yield located(line, kind, args[0], 1, "");
+            }
+            case PASTE -> {
+                expect(line, args.length == 2, "paste takes a location and a diagram.");
+                yield located(line, kind, args[0], 0, args[1]);
+            }
+            default -> {
+                expect(line, args.length == 1 || args.length == 2, kind + " takes a location and a count.");
+                yield located(line, kind, args[0], args.length == 2 ? number(line, args[1]) : 1, "");
+            }
+        };
+    }
+
+    private static int indexOfBlank(String s) {
+        for (int i = 0; i < s.length(); i++) {
+            if (Character.isWhitespace(s.charAt(i))) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static void expect(int line, boolean condition, String msg) throws ScriptException {
+        if (!condition) {
+            throw new ScriptException(line, msg);
+        }
+    }
+
+    private static int number(int line, String s) throws ScriptException {
+        try {
+            int n = Integer.parseInt(s);
+            expect(line, n >= 0, "\"" + s + "\" is not a non-negative number.");
+            return n;
+        } catch (NumberFormatException e) {
+            throw new ScriptException(line, "\"" + s + "\" is not a non-negative number.");
+        }
+    }
+
+    private static Command located(int line, Kind kind, String location, int count, String argument)
+            throws ScriptException {
+        String[] parts = location.split("\\.", -1);
+        int[] indices = new int[parts.length];
+        for (int i = 0; i < parts.length; i++) {
+            indices[i] = number(line, parts[i]);
+        }
+        return new Command(line, kind, Arrays.copyOf(indices, indices.length - 1), indices[indices.length - 1],
+                count, argument);
+    }
+}
@@ -0,0 +1,238 @@
+package logic.script;
+
+import logic.Logic;
+import logic.exceptions.FilePathException;
+import logic.exceptions.FileReadException;
+import logic.exceptions.InvalidInferenceException;
+import logic.exceptions.InvalidSelectionException;
+import logic.exceptions.RedoException;
+import logic.exceptions.ScriptException;
+import logic.exceptions.TheoremParseException;
+import logic.exceptions.UndoException;
+import logic.exceptions.VariableNameException;
+import model.CutLiteral;
+import model.Literal;
+import model.Proposition;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Proof written as text commands, one per line, that carry out the operations of {@link Logic} the user interface
+ * offers, so that proofs can be replayed or generated without rendering anything. The declarations come first and
+ * the proof starts with the first step, see {@link Command#parse(int, String)} for the commands. Everything after
+ * "#" on a line is a comment. For example:
+ * "
+ * variables a b
+ * premise a /\ b
+ * theorem a
+ * cut 1
+ * "
+ * The steps are recorded in the history of the logic component like those made in the user interface, so that the
+ * proof can be saved by {@code Storage}.
+ */
+public class ProofScript {
+    private final List<Command> commands;
+
+    /**
+     * Statistics of a run of a script, where the time is in nanoseconds.
+     */
+    public record Run(int commands, int steps, long time) {
+        @Override
+        public String toString() {
+            return String.format("%d commands, %d steps in %.1f ms (%.0f commands/s)", commands, steps, time / 1e6,
+                    commands / (time / 1e9));
+        }
+    }
+
+    private ProofScript(List<Command> commands) {
+        this.commands = commands;
+    }
+
+    /**
+     * Reads a script.
+     * @param content the text of the script.
+     * @return the script.
+     * @throws ScriptException if some line is not a valid command.
+     */
+    public static ProofScript parse(String content) throws ScriptException {
+        List<Command> commands = new ArrayList<>();
+        String[] lines = content.split("\n", -1);
+        for (int i = 0; i < lines.length; i++) {
+            String line = lines[i];
+            int comment = line.indexOf('#');
+            if (comment >= 0) {
+                line = line.substring(0, comment);
+            }
+            if (!line.isBlank()) {
+                commands.add(Command.parse(i + 1, line));
+            }
+        }
+        return new ProofScript(commands);
+    }
+
+    /**
+     * Reads a script file.
+     * @param filePath the path to the file, encoded in UTF-8.
+     * @return the script.
+     * @throws FilePathException if the file cannot be read.
+     * @throws ScriptException if some line is not a valid command.
+     */
+    public static ProofScript read(String filePath) throws FilePathException, ScriptException {
+        try {
+            return parse(Files.readString(Paths.get(filePath), StandardCharsets.UTF_8));
+        } catch (IOException e) {
+            throw new FilePathException(e.getMessage());
+        }
+    }
+
+    /**
+     * Gets the commands of the script.
+     * @return the unmodifiable list of commands in order.
+     */
+    public List<Command> getCommands() {
+        return List.copyOf(commands);
+    }
+
+    /**
+     * Carries out the commands on a logic component, which may hold a proof already. The proof mode is entered at
+     * the first step if the component is still in the declaration mode, and the steps are added after the current
+     * proposition.
+     * @param logic the logic component.
+     * @return the statistics of the run.
+     * @throws ScriptException if some command cannot be carried out, with the reason given by the logic component.
+     */
+    public Run execute(Logic logic) throws ScriptException {
+        long start = System.nanoTime();
+        int steps = 0;
+        for (Command c : commands) {
+            try {
+                if (c.kind().isDeclaration()) {
+                    if (!logic.canModifyDeclaration()) {
+                        throw new ScriptException(c.line(), "Declarations must come before the proof.");
+                    }
+                    declare(logic, c);
+                } else {
+                    if (logic.canModifyDeclaration()) {
+                        logic.switchMode();
+                        logic.clearHistory();
+                    }
+                    step(logic, c);
+                    steps++;
+                }
+            } catch (InvalidInferenceException | InvalidSelectionException | TheoremParseException
+                     | VariableNameException | UndoException | RedoException e) {
+                throw new ScriptException(c.line(), e.getMessage());
+            }
+        }
+        return new Run(commands.size(), steps, System.nanoTime() - start);
+    }
+
+    private static void declare(Logic logic, Command c)
+            throws ScriptException, TheoremParseException, VariableNameException {
+        switch (c.kind()) {
+            case VARIABLES -> {
+                for (String v : c.argument().split("\\s+")) {
+                    if (!v.isEmpty()) {
+                        logic.addVariable(v);
+                    }
+                }
+            }
+            case LANGUAGE -> {
+                try {
+                    logic.setLanguage(c.argument());
+                } catch (FileReadException e) {
+                    throw new ScriptException(c.line(), "Unknown language \"" + c.argument() + "\".");
+                }
+            }
+            case PREMISE -> logic.addPremise(c.argument());
+            case THEOREM -> logic.setTheorem(c.argument());
+            default -> {
+                assert false;
+            }
+        }
+    }
+
+    private static void step(Logic logic, Command c) throws InvalidInferenceException, InvalidSelectionException,
+            TheoremParseException, UndoException, RedoException {
+        switch (c.kind()) {
+            case UNDO -> logic.undo();
+            case REDO -> logic.redo();
+            case PASTE -> {
+                Proposition area = areaAt(logic.getProposition(), c.path());
+                logic.paste(logic.parseFrame(c.argument()), area, positionOf(area, c.index()));
+            }
+            case DC_INTRO -> {
+                Proposition area = areaAt(logic.getProposition(), c.path());
+                logic.addDoubleCut(literalsAt(area, c.index(), c.count()), area, positionOf(area, c.index()));
+            }
+            case DC_ELIM -> {
+                Proposition area = areaAt(logic.getProposition(), c.path());
+                logic.removeDoubleCut(literalsAt(area, c.index(), 1), area);
+            }
+            case CUT -> {
+                Proposition area = areaAt(logic.getProposition(), c.path());
+                if (c.count() == 0) {
+                    throw new InvalidSelectionException();
+                }
+                logic.cut(literalsAt(area, c.index(), c.count()), area);
+            }
+            default -> {
+                assert false;
+            }
+        }
+    }
+
+    /**
+     * Finds the area at the end of a path.
+     * @param base the base proposition.
+     * @param path the indices of the cut literals to enter.
+     * @return the area.
+     * @throws InvalidSelectionException if some index is not that of a cut literal.
+     */
+    private static Proposition areaAt(Proposition base, int[] path) throws InvalidSelectionException {
+        Proposition area = base;
+        for (int i : path) {
+            if (i >= area.getLiterals().size() || !(area.getLiterals().get(i) instanceof CutLiteral cut)) {
+                throw new InvalidSelectionException("There is no cut at the location given.");
+            }
+            area = cut.getContent();
+        }
+        return area;
+    }
+
+    /**
+     * Gets a run of literals of an area.
+     * @param area the area.
+     * @param index the index of the first literal.
+     * @param count the number of literals.
+     * @return the literals.
+     * @throws InvalidSelectionException if the area does not have that many literals from the index.
+     */
+    private static List<Literal> literalsAt(Proposition area, int index, int count)
+            throws InvalidSelectionException {
+        if (index + count > area.getLiterals().size()) {
+            throw new InvalidSelectionException("There are not so many literals at the location given.");
+        }
+        return new ArrayList<>(area.getLiterals().subList(index, index + count));
+    }
+
+    /**
+     * Gets the token index where literals are inserted before the literal at an index of an area.
+     * @param area the area.
+     * @param index the index of the literal, or the number of literals for the end of the area.
+     * @return the token index.
+     * @throws InvalidSelectionException if the index is beyond the end of the area.
+     */
+    private static int positionOf(Proposition area, int index) throws InvalidSelectionException {
+        List<Literal> literals = area.getLiterals();
+        if (index > literals.size()) {
+            throw new InvalidSelectionException("There are not so many literals at the location given.");
+        }
+        return index == literals.size() ? area.getLastIndex() : literals.get(index).getStartIndex();
+    }
+}
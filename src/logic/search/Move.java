@@ -0,0 +1,20 @@
+package logic.search;
+
+import model.Inference;
+import model.InferenceRule;
+import model.Patch;
+
+/**
+ * Inference step considered by proof search.
+ * @param patch the change made by the step.
+ * @param rule the inference rule applied.
+ */
+record Move(Patch patch, InferenceRule rule) {
+    /**
+     * Gets the inference step to record in history.
+     * @return the inference step.
+     */
+    Inference toInference() {
+        return new Inference(patch, rule);
+    }
+}
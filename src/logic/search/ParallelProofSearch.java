@@ -0,0 +1,290 @@
+package logic.search;
+
+import model.Inference;
+import model.PersistentProposition;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Proof search of {@link ProofSearch} run by the workers of a fork/join pool. Every iteration of the iterative
+ * deepening is split into tasks for the steps from a proposition, which idle workers steal, while the propositions
+ * close to the depth searched are searched by the worker that reaches them. All workers share a striped
+ * transposition table, and stop as soon as some worker finds a proof. Since an iteration only ends when it finds a
+ * proof or every proposition in it has been searched, the proof found has as few steps as that of the sequential
+ * search. In deterministic mode, the workers only stop the steps after those of the proof found first, and the
+ * proof found is exactly the one found by the sequential search, i.e. the first in the order of the steps tried.
+ */
+public class ParallelProofSearch {
+    private static final int TABLE_STRIPES = 256;
+    private static final int MIN_FORK_DEPTH = 3;
+    private static final int MAX_SURPLUS_TASKS = 3;
+    private static final int CLOCK_INTERVAL = 1024;
+
+    private final ProofSearch search;
+    private final ForkJoinPool pool;
+    private boolean deterministic;
+
+    private TranspositionTable table;
+    private LongAdder nodes;
+    private Map<Thread, AtomicLong> workerNodes;
+    private long deadline;
+    private volatile ProofSearch.Status limit;
+    private volatile Proof best;
+
+    private enum Outcome {
+        FOUND, FAILED, STOPPED
+    }
+
+    /**
+     * Proof found, with the indices of its steps among the steps tried from every proposition along it, by which
+     * the proofs are ordered in deterministic mode.
+     */
+    private record Proof(int[] key, Move[] moves) {
+    }
+
+    /**
+     * Outcome of a parallel search, where the time is in nanoseconds.
+     * @param search the outcome in the same form as that of the sequential search.
+     * @param workerNodes the number of propositions whose steps are tried by each worker.
+     */
+    public record Result(ProofSearch.Result search, List<Long> workerNodes) {
+        @Override
+        public String toString() {
+            StringBuilder sb = new StringBuilder(search.toString());
+            for (int i = 0; i < workerNodes.size(); i++) {
+                sb.append(String.format("%n  worker %d: %d nodes (%.0f nodes/s)", i, workerNodes.get(i),
+                        workerNodes.get(i) / (search.time() / 1e9)));
+            }
+            return sb.toString();
+        }
+    }
+
+    /**
+     * Creates a parallel search.
+     * @param search the sequential search that decides the propositions, the steps tried and the budgets.
+     * @param pool the pool whose workers run the search.
+     */
+    public ParallelProofSearch(ProofSearch search, ForkJoinPool pool) {
+        this.search = search;
+        this.pool = pool;
+        deterministic = false;
+    }
+
+    /**
+     * Sets whether the proof found has to be the one the sequential search finds, at the cost of searching on
+     * after a proof is found until no earlier proof is possible.
+     * @param deterministic true for the deterministic mode.
+     */
+    public void setDeterministic(boolean deterministic) {
+        this.deterministic = deterministic;
+    }
+
+    /**
+     * Searches for a proof with more and more steps until one is found or the search runs out of budget. The node
+     * budget is checked by every worker from time to time, so the search may try some more nodes than the budget.
+     * @return the outcome of the search.
+     */
+    public Result run() {
+        long begin = System.nanoTime();
+        deadline = begin + search.getTimeBudget() * 1_000_000;
+        table = new TranspositionTable(TABLE_STRIPES);
+        nodes = new LongAdder();
+        workerNodes = new ConcurrentHashMap<>();
+        limit = null;
+        best = null;
+        PersistentProposition start = search.getStart();
+        ProofSearch.Status status = start.hasSameLiterals(search.getGoal())
+                ? ProofSearch.Status.FOUND
+                : ProofSearch.Status.EXHAUSTED;
+        for (int depth = 1; depth <= search.getMaxDepth() && status != ProofSearch.Status.FOUND && limit == null;
+             depth++) {
+            pool.invoke(new Expand(start, depth, new int[depth], new Move[depth], 0));
+            if (best != null) {
+                status = ProofSearch.Status.FOUND;
+            }
+        }
+        if (status != ProofSearch.Status.FOUND && limit != null) {
+            status = limit;
+        }
+        List<Inference> steps = new ArrayList<>();
+        if (best != null) {
+            for (Move m : best.moves()) {
+                steps.add(m.toInference());
+            }
+        }
+        List<Long> perWorker = new ArrayList<>();
+        for (AtomicLong n : workerNodes.values()) {
+            perWorker.add(n.get());
+        }
+        perWorker.sort(Collections.reverseOrder());
+        table = null;
+        return new Result(new ProofSearch.Result(status, steps, nodes.sum(), System.nanoTime() - begin), perWorker);
+    }
+
+    /**
+     * Task searching for a proof from a proposition reached by some steps.
+     */
+    private class Expand extends RecursiveTask<Outcome> {
+        private final PersistentProposition state;
+        private final int depth;
+        private final int[] key;
+        private final Move[] path;
+        private final int level;
+
+        /**
+         * Creates a task.
+         * @param state the proposition.
+         * @param depth the number of steps left.
+         * @param key the indices of the steps made, owned by this task.
+         * @param path the steps made, owned by this task.
+         * @param level the number of steps made.
+         */
+        private Expand(PersistentProposition state, int depth, int[] key, Move[] path, int level) {
+            this.state = state;
+            this.depth = depth;
+            this.key = key;
+            this.path = path;
+            this.level = level;
+        }
+
+        @Override
+        protected Outcome compute() {
+            AtomicLong counter = workerNodes.computeIfAbsent(Thread.currentThread(), t -> new AtomicLong());
+            return search(state, depth, key, path, level, counter);
+        }
+    }
+
+    /**
+     * Searches for a proof of at most some steps from a proposition, which is not the same as the goal, forking
+     * tasks for the steps from it if the proposition is far enough from the depth searched and there are few tasks
+     * left for other workers to steal.
+     * @param state the proposition.
+     * @param depth the number of steps left, which is positive.
+     * @param key the indices of the steps made, whose entries from the level are overwritten.
+     * @param path the steps made, whose entries from the level are overwritten.
+     * @param level the number of steps made.
+     * @param counter the number of nodes of the current worker.
+     * @return whether a proof is found, none can be found, or the search is stopped before knowing.
+     */
+    private Outcome search(PersistentProposition state, int depth, int[] key, Move[] path, int level,
+                           AtomicLong counter) {
+        if (table.searched(state) >= depth) {
+            return Outcome.FAILED;
+        }
+        if (isStopped(key, level, counter)) {
+            return Outcome.STOPPED;
+        }
+        List<Move> moves = search.moves(state);
+        PersistentProposition goal = search.getGoal();
+        for (int i = 0; i < moves.size(); i++) {
+            Move m = moves.get(i);
+            if (m.patch().hashAfter(state) == goal.getStructuralHash()
+                    && m.patch().applyTo(state).hasSameLiterals(goal)) {
+                key[level] = i;
+                path[level] = m;
+                found(key, path, level + 1);
+                return Outcome.FOUND;
+            }
+        }
+        if (depth == 1) {
+            table.record(state, depth);
+            return Outcome.FAILED;
+        }
+        List<Expand> forked = new ArrayList<>();
+        Outcome outcome = Outcome.FAILED;
+        for (int i = 0; i < moves.size() && outcome != Outcome.FOUND; i++) {
+            Move m = moves.get(i);
+            key[level] = i;
+            path[level] = m;
+            PersistentProposition next = m.patch().applyTo(state);
+            if (depth - 1 >= MIN_FORK_DEPTH && ForkJoinTask.getSurplusQueuedTaskCount() < MAX_SURPLUS_TASKS) {
+                Expand task = new Expand(next, depth - 1, key.clone(), path.clone(), level + 1);
+                task.fork();
+                forked.add(task);
+            } else {
+                outcome = merge(outcome, search(next, depth - 1, key, path, level + 1, counter));
+            }
+        }
+        for (Expand task : forked) {
+            outcome = merge(outcome, task.join());
+        }
+        if (outcome == Outcome.FAILED) {
+            table.record(state, depth);
+        }
+        return outcome;
+    }
+
+    private static Outcome merge(Outcome a, Outcome b) {
+        if (a == Outcome.FOUND || b == Outcome.FOUND) {
+            return Outcome.FOUND;
+        }
+        return a == Outcome.STOPPED || b == Outcome.STOPPED ? Outcome.STOPPED : Outcome.FAILED;
+    }
+
+    /**
+     * Counts a node of the current worker, and checks whether the search from it should stop, i.e. the search is
+     * out of budget, or a proof is found, which in deterministic mode has to come before the steps made.
+     * @param key the indices of the steps made.
+     * @param level the number of steps made.
+     * @param counter the number of nodes of the current worker.
+     * @return true if the search should stop.
+     */
+    private boolean isStopped(int[] key, int level, AtomicLong counter) {
+        if (limit != null) {
+            return true;
+        }
+        Proof proof = best;
+        if (proof != null && (!deterministic || compare(key, level, proof.key()) > 0)) {
+            return true;
+        }
+        nodes.increment();
+        if (counter.incrementAndGet() % CLOCK_INTERVAL == 0) {
+            if (nodes.sum() >= search.getNodeBudget()) {
+                limit = ProofSearch.Status.NODE_LIMIT;
+            } else if (System.nanoTime() > deadline) {
+                limit = ProofSearch.Status.TIME_LIMIT;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Records a proof found, which replaces the one found before only if it comes first in deterministic mode.
+     * @param key the indices of the steps of the proof.
+     * @param path the steps of the proof.
+     * @param length the number of steps.
+     */
+    private synchronized void found(int[] key, Move[] path, int length) {
+        int[] k = Arrays.copyOf(key, length);
+        if (best == null || deterministic && compare(k, length, best.key()) < 0) {
+            best = new Proof(k, Arrays.copyOf(path, length));
+        }
+    }
+
+    /**
+     * Compares the steps made with those of a proof, by the first index that differs.
+     * @param key the indices of the steps made.
+     * @param level the number of steps made.
+     * @param other the indices of the steps of the proof.
+     * @return a negative number if the steps made come before the proof, a positive one if they come after it,
+     *         and 0 if they are the first steps of the proof.
+     */
+    private static int compare(int[] key, int level, int[] other) {
+        for (int i = 0; i < level && i < other.length; i++) {
+            if (key[i] != other[i]) {
+                return Integer.compare(key[i], other[i]);
+            }
+        }
+        return 0;
+    }
+}
@@ -0,0 +1,414 @@
+package logic.search;
+
+import logic.Logic;
+import model.Inference;
+import model.InferenceRule;
+import model.Patch;
+import model.PersistentLiteral;
+import model.PersistentProposition;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Search for proofs by the inference rules of Peirce Alpha system, which tries all steps from the proposition to
+ * start from by iterative deepening, so that the proof found is one of the shortest, and stops at a proposition
+ * with the same literals as the theorem, i.e. one that passes {@link Logic#succeeds()}. Every step changes a single
+ * literal, puts a double cut around a single literal or nothing, or removes a double cut. Since any diagram can be
+ * inserted at odd levels, only the literals of the theorem, at any depth, are inserted there, and only the literals
+ * of an area and the areas enclosing it are iterated into it, into even and odd areas alike, where an iteration into
+ * an odd area is only tried if it is not the insertion of a literal of the theorem. Propositions searched already,
+ * in any order of the literals, are kept in a transposition table keyed by their structural hashes.
+ */
+public class ProofSearch {
+    public static final long DEFAULT_NODE_BUDGET = 1_000_000;
+    public static final long DEFAULT_TIME_BUDGET = 10_000;
+    public static final int DEFAULT_MAX_DEPTH = 16;
+    private static final int CLOCK_INTERVAL = 1024;
+
+    /**
+     * Outcomes of a search.
+     */
+    public enum Status {
+        FOUND, EXHAUSTED, NODE_LIMIT, TIME_LIMIT
+    }
+
+    /**
+     * Outcome of a search, where the time is in nanoseconds.
+     * @param status whether a proof is found, or why not.
+     * @param steps the steps of the proof found, or an empty list if none is found.
+     * @param nodes the number of propositions whose steps are tried.
+     * @param time the time taken.
+     */
+    public record Result(Status status, List<Inference> steps, long nodes, long time) {
+        @Override
+        public String toString() {
+            String outcome = switch (status) {
+                case FOUND -> "proof of " + steps.size() + " steps";
+                case EXHAUSTED -> "no proof within the limits of depth and size";
+                case NODE_LIMIT -> "no proof within the node budget";
+                case TIME_LIMIT -> "no proof within the time budget";
+            };
+            return String.format("%s, %d nodes in %.1f ms (%.0f nodes/s)", outcome, nodes, time / 1e6,
+                    nodes / (time / 1e9));
+        }
+    }
+
+    private final PersistentProposition start;
+    private final PersistentProposition goal;
+    private final List<PersistentLiteral> candidates;
+    private long nodeBudget;
+    private long timeBudget;
+    private int maxDepth;
+    private int maxLength;
+
+    private TranspositionTable table;
+    private long nodes;
+    private long deadline;
+    private Status limit;
+
+    /**
+     * Creates a search for a proof from one proposition to another.
+     * @param start the proposition to start from.
+     * @param goal the proposition to reach.
+     */
+    public ProofSearch(PersistentProposition start, PersistentProposition goal) {
+        this.start = start;
+        this.goal = goal;
+        List<PersistentLiteral> subformulas = new ArrayList<>();
+        addLiterals(goal, subformulas);
+        candidates = distinct(subformulas);
+        nodeBudget = DEFAULT_NODE_BUDGET;
+        timeBudget = DEFAULT_TIME_BUDGET;
+        maxDepth = DEFAULT_MAX_DEPTH;
+        maxLength = Math.max(start.getLength(), goal.getLength()) + goal.getLength() + 4;
+    }
+
+    /**
+     * Creates a search for the proof of the theorem of a logic component from its current proposition, which is
+     * the conjunction of the premises built by {@code Model.setTheorem} if no steps have been made.
+     * @param logic the logic component in proof mode.
+     * @return the search.
+     */
+    public static ProofSearch of(Logic logic) {
+        return new ProofSearch(logic.getSnapshot(), PersistentProposition.of(logic.getTheorem()));
+    }
+
+    /**
+     * Sets the number of propositions whose steps may be tried.
+     * @param nodes the node budget.
+     */
+    public void setNodeBudget(long nodes) {
+        nodeBudget = nodes;
+    }
+
+    /**
+     * Sets the time a search may take.
+     * @param millis the time budget in milliseconds.
+     */
+    public void setTimeBudget(long millis) {
+        timeBudget = millis;
+    }
+
+    /**
+     * Sets the largest number of steps of the proofs searched.
+     * @param depth the number of steps.
+     */
+    public void setMaxDepth(int depth) {
+        maxDepth = depth;
+    }
+
+    /**
+     * Sets the largest number of tokens of the propositions in the proofs searched, which is by default that of the
+     * larger of the propositions to start from and to reach, plus that of the theorem and a double cut.
+     * @param length the number of tokens, including variable names and brackets.
+     */
+    public void setMaxLength(int length) {
+        maxLength = length;
+    }
+
+    /**
+     * Gets the proposition to start from.
+     * @return the proposition.
+     */
+    PersistentProposition getStart() {
+        return start;
+    }
+
+    /**
+     * Gets the proposition to reach.
+     * @return the proposition.
+     */
+    PersistentProposition getGoal() {
+        return goal;
+    }
+
+    /**
+     * Gets the number of propositions whose steps may be tried.
+     * @return the node budget.
+     */
+    long getNodeBudget() {
+        return nodeBudget;
+    }
+
+    /**
+     * Gets the time a search may take.
+     * @return the time budget in milliseconds.
+     */
+    long getTimeBudget() {
+        return timeBudget;
+    }
+
+    /**
+     * Gets the largest number of steps of the proofs searched.
+     * @return the number of steps.
+     */
+    int getMaxDepth() {
+        return maxDepth;
+    }
+
+    /**
+     * Searches for a proof with more and more steps until one is found or the search runs out of budget.
+     * @return the outcome of the search, whose steps can be made by {@link Logic#applySteps(List)}.
+     */
+    public Result run() {
+        long begin = System.nanoTime();
+        deadline = begin + timeBudget * 1_000_000;
+        table = new TranspositionTable(1);
+        nodes = 0;
+        limit = null;
+        List<Move> proof = new ArrayList<>();
+        Status status = start.hasSameLiterals(goal) ? Status.FOUND : Status.EXHAUSTED;
+        for (int depth = 1; depth <= maxDepth && status != Status.FOUND && limit == null; depth++) {
+            if (search(start, depth, proof)) {
+                status = Status.FOUND;
+            }
+        }
+        if (status != Status.FOUND && limit != null) {
+            status = limit;
+        }
+        List<Inference> steps = new ArrayList<>();
+        for (Move m : proof) {
+            steps.add(m.toInference());
+        }
+        table = null;
+        return new Result(status, steps, nodes, System.nanoTime() - begin);
+    }
+
+    /**
+     * Searches for a proof of at most some steps from a proposition, which is not the same as the goal. The steps
+     * reaching the goal at once are looked for first, by the structural hashes of the propositions they lead to.
+     * @param state the proposition.
+     * @param depth the number of steps left, which is positive.
+     * @param proof the steps made to reach the proposition, to which the rest of the proof is added if found.
+     * @return true if a proof is found.
+     */
+    private boolean search(PersistentProposition state, int depth, List<Move> proof) {
+        if (table.searched(state) >= depth || outOfBudget()) {
+            return false;
+        }
+        nodes++;
+        List<Move> moves = moves(state);
+        for (Move m : moves) {
+            if (m.patch().hashAfter(state) == goal.getStructuralHash()
+                    && m.patch().applyTo(state).hasSameLiterals(goal)) {
+                proof.add(m);
+                return true;
+            }
+        }
+        if (depth > 1) {
+            for (Move m : moves) {
+                proof.add(m);
+                if (search(m.patch().applyTo(state), depth - 1, proof)) {
+                    return true;
+                }
+                proof.remove(proof.size() - 1);
+                if (limit != null) {
+                    return false;
+                }
+            }
+        }
+        table.record(state, depth);
+        return false;
+    }
+
+    private boolean outOfBudget() {
+        if (nodes >= nodeBudget) {
+            limit = Status.NODE_LIMIT;
+        } else if (nodes % CLOCK_INTERVAL == 0 && System.nanoTime() > deadline) {
+            limit = Status.TIME_LIMIT;
+        }
+        return limit != null;
+    }
+
+    /**
+     * Gets the steps to try from a proposition, in the order of double cut eliminations, erasures and
+     * deiterations, double cut introductions, and insertions and iterations, each from the outer areas to the inner
+     * ones. Of the literals of an area that are the same, only the first one is considered.
+     * @param state the proposition.
+     * @return the steps.
+     */
+    List<Move> moves(PersistentProposition state) {
+        List<List<Move>> phases = List.of(new ArrayList<>(), new ArrayList<>(), new ArrayList<>(), new ArrayList<>());
+        List<PersistentProposition> areas = new ArrayList<>();
+        areas.add(state);
+        collect(state, areas, new int[0], phases);
+        List<Move> moves = new ArrayList<>();
+        for (List<Move> phase : phases) {
+            moves.addAll(phase);
+        }
+        return moves;
+    }
+
+    /**
+     * Adds the steps changing an area and the areas inside it.
+     * @param state the base proposition.
+     * @param areas the areas from the base proposition to the area, which is the last one.
+     * @param path the path to the area.
+     * @param phases the lists to add the steps to, by the order they are tried.
+     */
+    private void collect(PersistentProposition state, List<PersistentProposition> areas, int[] path,
+                         List<List<Move>> phases) {
+        PersistentProposition area = areas.get(areas.size() - 1);
+        boolean odd = path.length % 2 == 1;
+        for (int i = 0; i < area.size(); i++) {
+            PersistentLiteral l = area.get(i);
+            if (indexOfSame(area, l, i) < i) {
+                continue;
+            }
+            List<PersistentLiteral> single = List.of(l);
+            if (l.isCut() && l.getContent().size() == 1 && l.getContent().get(0).isCut()) {
+                List<PersistentLiteral> inner = l.getContent().get(0).getContent().getLiterals();
+                add(phases.get(0), state, new Patch(path, i, single, inner), InferenceRule.DOUBLE_CUT_ELIM, -4);
+            }
+            if (!odd) {
+                add(phases.get(1), state, new Patch(path, i, single, List.of()), InferenceRule.ERASURE,
+                        -l.getLength());
+            } else if (appearsElsewhere(areas, i)) {
+                add(phases.get(1), state, new Patch(path, i, single, List.of()), InferenceRule.DEITERATION,
+                        -l.getLength());
+            }
+            add(phases.get(2), state, new Patch(path, i, single, List.of(doubleCut(single))),
+                    InferenceRule.DOUBLE_CUT_INTRO, 4);
+            if (l.isCut()) {
+                int[] inner = Arrays.copyOf(path, path.length + 1);
+                inner[path.length] = i;
+                areas.add(l.getContent());
+                collect(state, areas, inner, phases);
+                areas.remove(areas.size() - 1);
+            }
+        }
+        int end = area.size();
+        add(phases.get(2), state, new Patch(path, end, List.of(), List.of(doubleCut(List.of()))),
+                InferenceRule.DOUBLE_CUT_INTRO, 4);
+        if (odd) {
+            for (PersistentLiteral l : candidates) {
+                add(phases.get(3), state, new Patch(path, end, List.of(), List.of(l)), InferenceRule.INSERTION,
+                        l.getLength());
+            }
+        }
+        for (PersistentLiteral l : iterable(areas, path)) {
+            if (!odd || !containsSame(candidates, l)) {
+                add(phases.get(3), state, new Patch(path, end, List.of(), List.of(l)), InferenceRule.ITERATION,
+                        l.getLength());
+            }
+        }
+    }
+
+    private void add(List<Move> moves, PersistentProposition state, Patch patch, InferenceRule rule, int growth) {
+        if (state.getLength() + growth <= maxLength) {
+            moves.add(new Move(patch, rule));
+        }
+    }
+
+    private static PersistentLiteral doubleCut(List<PersistentLiteral> literals) {
+        return PersistentLiteral.cut(PersistentProposition.of(List.of(
+                PersistentLiteral.cut(PersistentProposition.of(literals)))));
+    }
+
+    /**
+     * Finds the first literal of an area that is the same as a given one.
+     * @param area the area.
+     * @param literal the literal.
+     * @param end the index to search up to, exclusive.
+     * @return the index of the first same literal, or {@code end} if there is none before it.
+     */
+    private static int indexOfSame(PersistentProposition area, PersistentLiteral literal, int end) {
+        for (int j = 0; j < end; j++) {
+            if (area.get(j).isSameLiteral(literal)) {
+                return j;
+            }
+        }
+        return end;
+    }
+
+    /**
+     * Checks whether a literal of an area can be deiterated, i.e. the same literal is found elsewhere in the area
+     * or in the areas enclosing it, so that it is left after the literal is removed.
+     * @param areas the areas from the base proposition to the area of the literal, which is the last one.
+     * @param index the index of the literal in its area.
+     * @return true if the same literal is found.
+     */
+    private static boolean appearsElsewhere(List<PersistentProposition> areas, int index) {
+        int last = areas.size() - 1;
+        PersistentLiteral literal = areas.get(last).get(index);
+        for (int m = 0; m <= last; m++) {
+            PersistentProposition a = areas.get(m);
+            for (int j = 0; j < a.size(); j++) {
+                if ((m != last || j != index) && a.get(j).isSameLiteral(literal)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Gets the literals that can be iterated into an area, i.e. those of the area and the areas enclosing it,
+     * except the cuts enclosing the area.
+     * @param areas the areas from the base proposition to the area, which is the last one.
+     * @param path the path to the area.
+     * @return the literals, without literals that are the same.
+     */
+    private static List<PersistentLiteral> iterable(List<PersistentProposition> areas, int[] path) {
+        List<PersistentLiteral> literals = new ArrayList<>();
+        for (int m = 0; m < areas.size(); m++) {
+            PersistentProposition a = areas.get(m);
+            for (int j = 0; j < a.size(); j++) {
+                if (m == path.length || j != path[m]) {
+                    literals.add(a.get(j));
+                }
+            }
+        }
+        return distinct(literals);
+    }
+
+    private static void addLiterals(PersistentProposition p, List<PersistentLiteral> literals) {
+        for (PersistentLiteral l : p.getLiterals()) {
+            literals.add(l);
+            if (l.isCut()) {
+                addLiterals(l.getContent(), literals);
+            }
+        }
+    }
+
+    private static List<PersistentLiteral> distinct(List<PersistentLiteral> literals) {
+        List<PersistentLiteral> result = new ArrayList<>();
+        for (PersistentLiteral l : literals) {
+            if (!containsSame(result, l)) {
+                result.add(l);
+            }
+        }
+        return result;
+    }
+
+    private static boolean containsSame(List<PersistentLiteral> literals, PersistentLiteral literal) {
+        for (PersistentLiteral l : literals) {
+            if (l.isSameLiteral(literal)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
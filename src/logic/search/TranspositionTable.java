@@ -0,0 +1,86 @@
+package logic.search;
+
+import model.PersistentProposition;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Table of the propositions searched completely without finding a proof, keyed by their structural hashes, so that
+ * a proposition reached again by some other order of steps is not searched again. Propositions with the same
+ * literals regardless of order share an entry. The table is split into stripes by the hashes, each with a lock of
+ * its own, so that it can be shared by many workers of a parallel search.
+ */
+class TranspositionTable {
+    private final List<Map<Long, List<Entry>>> stripes;
+
+    private static final class Entry {
+        private final PersistentProposition state;
+        private int depth;
+
+        private Entry(PersistentProposition state, int depth) {
+            this.state = state;
+            this.depth = depth;
+        }
+    }
+
+    /**
+     * Creates an empty table.
+     * @param stripes the number of stripes, which is a power of 2, e.g. 1 for a table used by a single thread.
+     */
+    TranspositionTable(int stripes) {
+        assert Integer.bitCount(stripes) == 1;
+        this.stripes = new ArrayList<>(stripes);
+        for (int i = 0; i < stripes; i++) {
+            this.stripes.add(new HashMap<>());
+        }
+    }
+
+    private Map<Long, List<Entry>> stripeOf(long hash) {
+        return stripes.get(Long.hashCode(hash) & (stripes.size() - 1));
+    }
+
+    /**
+     * Gets the number of steps up to which a proposition has been searched.
+     * @param state the proposition.
+     * @return the largest number of steps searched from the proposition without finding a proof, or -1 if it has
+     *         not been searched.
+     */
+    int searched(PersistentProposition state) {
+        long hash = state.getStructuralHash();
+        Map<Long, List<Entry>> stripe = stripeOf(hash);
+        synchronized (stripe) {
+            List<Entry> bucket = stripe.get(hash);
+            if (bucket != null) {
+                for (Entry e : bucket) {
+                    if (e.state.hasSameLiterals(state)) {
+                        return e.depth;
+                    }
+                }
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Records that a proposition has been searched completely up to a number of steps without finding a proof.
+     * @param state the proposition.
+     * @param depth the number of steps searched.
+     */
+    void record(PersistentProposition state, int depth) {
+        long hash = state.getStructuralHash();
+        Map<Long, List<Entry>> stripe = stripeOf(hash);
+        synchronized (stripe) {
+            List<Entry> bucket = stripe.computeIfAbsent(hash, h -> new ArrayList<>(1));
+            for (Entry e : bucket) {
+                if (e.state.hasSameLiterals(state)) {
+                    e.depth = Math.max(e.depth, depth);
+                    return;
+                }
+            }
+            bucket.add(new Entry(state, depth));
+        }
+    }
+}
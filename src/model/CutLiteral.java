@@ -9,6 +9,8 @@ import java.util.List;
  * Cut form propositions as a literal.
  */
 public class CutLiteral extends Literal {
+    static final long CUT_SEED = 0x9e3779b97f4a7c15L;
+
     private Proposition content;
 
     /**
@@ -27,6 +29,9 @@ public class CutLiteral extends Literal {
      */
     public void setContent(Proposition content) {
         this.content = content;
+        if (getParent() != null) {
+            getParent().invalidate();
+        }
     }
 
     /**
@@ -42,6 +47,11 @@ public class CutLiteral extends Literal {
         return 2 + content.getLength();
     }
 
+    @Override
+    public long getStructuralHash() {
+        return mix(content.getStructuralHash() + CUT_SEED);
+    }
+
     @Override
     public boolean isSameLiteral(Literal l) {
         if (l instanceof CutLiteral) {
@@ -9,16 +9,43 @@ import java.util.List;
  * Literals that constitutes only one variable.
  */
 public class GroundLiteral extends Literal {
-    private final String variableName;
+    private final SymbolTable symbols;
+    private final int variableId;
 
     /**
      * Initializes a ground literal.
      * @param parent the parent of the literal.
-     * @param variableName the name of the variable in this literal.
+     * @param symbols the symbol table that the variable id refers to.
+     * @param variableId the id of the variable in this literal.
      */
-    public GroundLiteral(Proposition parent, String variableName) {
+    public GroundLiteral(Proposition parent, SymbolTable symbols, int variableId) {
         super(parent);
-        this.variableName = variableName;
+        this.symbols = symbols;
+        this.variableId = variableId;
+    }
+
+    /**
+     * Gets the id of the variable in this literal.
+     * @return the variable id in the symbol table of the literal.
+     */
+    public int getVariableId() {
+        return variableId;
+    }
+
+    /**
+     * Gets the symbol table that the variable id refers to.
+     * @return the symbol table of the literal.
+     */
+    public SymbolTable getSymbols() {
+        return symbols;
+    }
+
+    /**
+     * Gets the name of the variable in this literal.
+     * @return the variable name.
+     */
+    public String getVariableName() {
+        return symbols.nameOf(variableId);
     }
 
     @Override
@@ -26,10 +53,19 @@ public class GroundLiteral extends Literal {
         return 1;
     }
 
+    @Override
+    public long getStructuralHash() {
+        return mix(getVariableName().hashCode());
+    }
+
     @Override
     public boolean isSameLiteral(Literal l) {
         if (l instanceof GroundLiteral) {
-            return variableName.equals(((GroundLiteral) l).variableName);
+            GroundLiteral other = (GroundLiteral) l;
+            if (symbols.sharesIdsWith(other.symbols)) {
+                return variableId == other.variableId;
+            }
+            return getVariableName().equals(other.getVariableName());
         } else {
             return false;
         }
@@ -57,11 +93,11 @@ public class GroundLiteral extends Literal {
 
     @Override
     public String toString() {
-        return variableName + " ";
+        return getVariableName() + " ";
     }
 
     @Override
     public Literal copy() {
-        return new GroundLiteral(null, variableName);
+        return new GroundLiteral(null, symbols, variableId);
     }
 }
@@ -0,0 +1,608 @@
+package model;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.List;
+import java.util.function.BiConsumer;
+
+/**
+ * Tree of inference steps explored in a proof, where every node is the proposition after a step from its parent.
+ * Steps tried after an undo start new branches instead of discarding the steps undone. The propositions of the
+ * nodes are persistent, so nodes share all subtrees not changed by their steps, and memory grows with the distinct
+ * changes only.
+ * Only some nodes, called checkpoints, keep their propositions, together with the current node and the one visited
+ * just before it. The proposition of any other node is reconstructed from the nearest checkpoint before it by
+ * applying the changes of the steps in between. Checkpoints are placed every given number of steps, or adaptively
+ * when the literals copied since the last checkpoint become as many as the tokens of the diagram, and are thinned
+ * out when their estimated memory exceeds the budget. Since propositions share unchanged subtrees, a checkpoint costs
+ * at most the literals copied since the checkpoint before it, which is also the work to reconstruct the propositions
+ * in between.
+ */
+public class HistoryTree {
+    public static final int DEFAULT_CHECKPOINT_INTERVAL = 32;
+    public static final int ADAPTIVE_CHECKPOINTS = 0;
+    public static final long UNLIMITED_MEMORY = Long.MAX_VALUE;
+    private static final int MAX_ADAPTIVE_INTERVAL = 256;
+    private static final long BYTES_PER_SLOT = 4;
+
+    private final List<Node> nodes;
+    private Node root;
+    private Node current;
+    private Node previous;
+    private int checkpointInterval;
+    private long memoryBudget;
+    private long checkpointBytes;
+    private int spacing;
+
+    /**
+     * Creates a tree with only the initial proposition.
+     * @param initial the proposition before any steps.
+     */
+    public HistoryTree(PersistentProposition initial) {
+        nodes = new ArrayList<>();
+        checkpointInterval = DEFAULT_CHECKPOINT_INTERVAL;
+        memoryBudget = UNLIMITED_MEMORY;
+        checkpointBytes = 0;
+        spacing = 1;
+        root = new Node(0, null, null, initial);
+        nodes.add(root);
+        makeCheckpoint(root);
+        current = root;
+        previous = null;
+    }
+
+    /**
+     * Sets the number of steps between checkpoints, which applies to the steps added afterwards.
+     * @param interval the number of steps, or {@code ADAPTIVE_CHECKPOINTS} to place checkpoints when the literals
+     *                 copied since the last checkpoint are as many as the tokens of the diagram.
+     */
+    public void setCheckpointInterval(int interval) {
+        checkpointInterval = interval;
+        spacing = 1;
+    }
+
+    /**
+     * Sets the largest estimated memory of the propositions kept at checkpoints. Checkpoints are dropped, every
+     * other one along each branch, until the estimate is within the budget.
+     * @param bytes the budget in bytes, or {@code UNLIMITED_MEMORY}.
+     */
+    public void setMemoryBudget(long bytes) {
+        memoryBudget = bytes;
+        spacing = 1;
+        thin();
+    }
+
+    /**
+     * Gets the statistics of the checkpoints.
+     * @return the number of nodes and checkpoints, and the estimated memory of the checkpoints.
+     */
+    public Statistics getStatistics() {
+        int checkpoints = 0;
+        for (Node n : nodes) {
+            if (n != null && n.checkpoint) {
+                checkpoints++;
+            }
+        }
+        return new Statistics(size(), checkpoints, checkpointBytes);
+    }
+
+    /**
+     * Gets the node of the initial proposition.
+     * @return the root node.
+     */
+    public Node getRoot() {
+        return root;
+    }
+
+    /**
+     * Gets the node of the current proposition.
+     * @return the current node.
+     */
+    public Node getCurrent() {
+        return current;
+    }
+
+    /**
+     * Gets a node by its id.
+     * @param id the id of the node.
+     * @return the node, or null if there is no such node or it has been pruned.
+     */
+    public Node getNode(int id) {
+        return id >= 0 && id < nodes.size() ? nodes.get(id) : null;
+    }
+
+    /**
+     * Adds a step after the current node and moves to it. If the same change has been made from the current node
+     * before, the existing node is reused.
+     * @param step the inference step.
+     * @param state the proposition after the step.
+     * @return the node of the step.
+     */
+    public Node add(Inference step, PersistentProposition state) {
+        for (Node child : current.children) {
+            if (child.step.getRule() == step.getRule() && isSamePatch(child.step.getPatch(), step.getPatch())) {
+                moveTo(child);
+                return child;
+            }
+        }
+        Node node = new Node(nodes.size(), current, step, state);
+        nodes.add(node);
+        current.children.add(node);
+        current.redoChild = node;
+        if (needsCheckpoint(node)) {
+            makeCheckpoint(node);
+        }
+        setCurrent(node);
+        return node;
+    }
+
+    /**
+     * Checks whether a new node should keep its proposition.
+     * @param node the node just created.
+     * @return true if it should be a checkpoint.
+     */
+    private boolean needsCheckpoint(Node node) {
+        if (checkpointInterval == ADAPTIVE_CHECKPOINTS) {
+            return node.distance >= MAX_ADAPTIVE_INTERVAL * spacing || node.delta >= node.state.getLength() * spacing;
+        }
+        return node.distance >= checkpointInterval * spacing;
+    }
+
+    private void makeCheckpoint(Node node) {
+        placeCheckpoint(node);
+        thin();
+    }
+
+    /**
+     * Makes a node keep its proposition without checking the memory budget, for nodes not yet reachable from the
+     * root, which {@link #thin()} cannot see.
+     * @param node the node, whose distance and literals copied since the checkpoint before it are known.
+     */
+    private void placeCheckpoint(Node node) {
+        node.checkpoint = true;
+        node.distance = 0;
+        node.bytes = estimate(node);
+        node.delta = 0;
+        checkpointBytes += node.bytes;
+    }
+
+    private void dropCheckpoint(Node node) {
+        node.checkpoint = false;
+        checkpointBytes -= node.bytes;
+        node.bytes = 0;
+        if (node != current && node != previous) {
+            node.state = null;
+        }
+    }
+
+    /**
+     * Drops every other checkpoint along each branch until the estimated memory is within the budget, and places
+     * later checkpoints twice as far apart for each round of dropping.
+     */
+    private void thin() {
+        while (checkpointBytes > memoryBudget) {
+            boolean dropped = false;
+            for (Node n : preorder()) {
+                if (n.parent == null) {
+                    n.rank = 0;
+                    continue;
+                }
+                n.rank = n.parent.rank + (n.checkpoint ? 1 : 0);
+                if (n.checkpoint && n.rank % 2 == 1) {
+                    dropCheckpoint(n);
+                    dropped = true;
+                }
+            }
+            for (Node n : preorder()) {
+                if (n.parent == null) {
+                    continue;
+                }
+                n.distance = n.parent.distance + 1;
+                n.delta = n.parent.delta + n.cost;
+                if (n.checkpoint) {
+                    checkpointBytes -= n.bytes;
+                    n.bytes = estimate(n);
+                    checkpointBytes += n.bytes;
+                    n.distance = 0;
+                    n.delta = 0;
+                }
+            }
+            if (!dropped) {
+                break;
+            }
+            spacing *= 2;
+        }
+    }
+
+    /**
+     * Estimates the memory a checkpoint keeps in addition to the checkpoint before it.
+     * @param node the checkpoint, with the literals copied since the checkpoint before it.
+     * @return the estimated number of bytes.
+     */
+    private static long estimate(Node node) {
+        long length = node.state.getLength();
+        return BYTES_PER_SLOT * Math.max(1, node.parent == null ? length : Math.min(length, node.delta));
+    }
+
+    /**
+     * Estimates the work of applying a step, which copies every area on the path to the change.
+     * @param patch the change made by the step.
+     * @param state the proposition after the step.
+     * @return the number of literals copied plus the number of tokens inserted.
+     */
+    private static long copyCost(Patch patch, PersistentProposition state) {
+        long cost = state.size();
+        PersistentProposition area = state;
+        for (int index : patch.getPath()) {
+            area = area.get(index).getContent();
+            cost += area.size();
+        }
+        for (PersistentLiteral l : patch.getInserted()) {
+            cost += l.getLength();
+        }
+        return cost;
+    }
+
+    /**
+     * Moves to a node, keeping the propositions of the new current node and the node moved away from.
+     * @param node the new current node.
+     */
+    private void setCurrent(Node node) {
+        if (node == current) {
+            return;
+        }
+        Node released = previous;
+        previous = current;
+        current = node;
+        if (released != null && released != current && released != previous && !released.checkpoint) {
+            released.state = null;
+        }
+    }
+
+    private static boolean isSamePatch(Patch a, Patch b) {
+        return a.getIndex() == b.getIndex()
+                && Arrays.equals(a.getPath(), b.getPath())
+                && a.getRemoved().toString().equals(b.getRemoved().toString())
+                && a.getInserted().toString().equals(b.getInserted().toString());
+    }
+
+    /**
+     * Moves to the parent of the current node, which remembers the current node as the one to redo.
+     * @return the node moved away from, or null if the current node is the root.
+     */
+    public Node undo() {
+        if (current == root) {
+            return null;
+        }
+        Node undone = current;
+        undone.parent.redoChild = undone;
+        setCurrent(undone.parent);
+        return undone;
+    }
+
+    /**
+     * Moves to the child of the current node that was last visited.
+     * @return the node moved to, or null if there is no step to redo.
+     */
+    public Node redo() {
+        if (current.redoChild == null) {
+            return null;
+        }
+        setCurrent(current.redoChild);
+        return current;
+    }
+
+    /**
+     * Moves to any node of the tree. The nodes on the way remember the branch, so that redo follows it.
+     * @param node the node to move to.
+     */
+    public void moveTo(Node node) {
+        for (Node n = node; n.parent != null; n = n.parent) {
+            n.parent.redoChild = n;
+        }
+        setCurrent(node);
+    }
+
+    /**
+     * Gets the nodes from the root to the current node.
+     * @return the nodes on the path, starting with the root.
+     */
+    public List<Node> getPath() {
+        List<Node> path = new ArrayList<>(current.depth + 1);
+        for (Node n = current; n != null; n = n.parent) {
+            path.add(n);
+        }
+        Collections.reverse(path);
+        return path;
+    }
+
+    /**
+     * Adds steps before the initial proposition, which is useful when older steps are loaded later than newer
+     * ones. The current node is kept.
+     * @param initial the proposition before the steps, which becomes the initial proposition of the tree.
+     * @param steps the steps from the given proposition to the initial proposition of the tree, in order.
+     */
+    public void prepend(PersistentProposition initial, List<Inference> steps) {
+        if (steps.isEmpty()) {
+            return;
+        }
+        Node oldRoot = root;
+        Node first = new Node(nodes.size(), null, null, initial);
+        nodes.add(first);
+        placeCheckpoint(first);
+        Node last = first;
+        for (int i = 0; i < steps.size() - 1; i++) {
+            PersistentProposition state = steps.get(i).getPatch().applyTo(last.getState());
+            Node node = new Node(nodes.size(), last, steps.get(i), state);
+            nodes.add(node);
+            last.children.add(node);
+            last.redoChild = node;
+            if (needsCheckpoint(node)) {
+                placeCheckpoint(node);
+            }
+            if (!last.checkpoint) {
+                last.state = null;
+            }
+            last = node;
+        }
+        if (!last.checkpoint) {
+            last.state = null;
+        }
+        oldRoot.parent = last;
+        oldRoot.step = steps.get(steps.size() - 1);
+        oldRoot.cost = copyCost(oldRoot.step.getPatch(), oldRoot.state);
+        oldRoot.delta = last.delta + oldRoot.cost;
+        checkpointBytes -= oldRoot.bytes;
+        oldRoot.bytes = estimate(oldRoot);
+        checkpointBytes += oldRoot.bytes;
+        oldRoot.delta = 0;
+        last.children.add(oldRoot);
+        last.redoChild = oldRoot;
+        root = first;
+        for (Node n : preorder()) {
+            if (n.parent != null) {
+                n.depth = n.parent.depth + 1;
+            }
+        }
+        thin();
+    }
+
+    /**
+     * Gets the propositions of the nodes from the root to the current node, applying each step once.
+     * @return the propositions on the path, starting with the initial one.
+     */
+    public List<PersistentProposition> getPathStates() {
+        List<PersistentProposition> states = new ArrayList<>(current.depth + 1);
+        PersistentProposition state = null;
+        for (Node n : getPath()) {
+            state = n.state != null ? n.state : n.step.getPatch().applyTo(state);
+            states.add(state);
+        }
+        return states;
+    }
+
+    /**
+     * Visits all nodes with their propositions such that every node comes after its parent, applying each step
+     * once.
+     * @param visitor the function to call with every node and its proposition.
+     */
+    public void walk(BiConsumer<Node, PersistentProposition> visitor) {
+        Deque<Node> pending = new ArrayDeque<>();
+        Deque<PersistentProposition> states = new ArrayDeque<>();
+        pending.push(root);
+        states.push(root.state);
+        while (!pending.isEmpty()) {
+            Node n = pending.pop();
+            PersistentProposition state = states.pop();
+            visitor.accept(n, state);
+            for (int i = n.children.size() - 1; i >= 0; i--) {
+                Node child = n.children.get(i);
+                pending.push(child);
+                states.push(child.state != null ? child.state : child.step.getPatch().applyTo(state));
+            }
+        }
+    }
+
+    /**
+     * Gets the ends of all branches, i.e. the nodes without children.
+     * @return the leaves in the order of depth-first traversal.
+     */
+    public List<Node> getLeaves() {
+        List<Node> leaves = new ArrayList<>();
+        for (Node n : preorder()) {
+            if (n.children.isEmpty()) {
+                leaves.add(n);
+            }
+        }
+        return leaves;
+    }
+
+    /**
+     * Gets all nodes such that every node comes after its parent.
+     * @return the nodes in the order of depth-first traversal.
+     */
+    public List<Node> preorder() {
+        List<Node> result = new ArrayList<>();
+        Deque<Node> stack = new ArrayDeque<>();
+        stack.push(root);
+        while (!stack.isEmpty()) {
+            Node n = stack.pop();
+            result.add(n);
+            for (int i = n.children.size() - 1; i >= 0; i--) {
+                stack.push(n.children.get(i));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Removes a node and all nodes after it. If the current node is removed, the parent of the removed node
+     * becomes the current node.
+     * @param node the node to remove, which is not the root.
+     */
+    public void prune(Node node) {
+        assert node != root;
+        for (Node n = current; n != null; n = n.parent) {
+            if (n == node) {
+                setCurrent(node.parent);
+                break;
+            }
+        }
+        node.parent.children.remove(node);
+        if (node.parent.redoChild == node) {
+            node.parent.redoChild = node.parent.children.isEmpty()
+                    ? null
+                    : node.parent.children.get(node.parent.children.size() - 1);
+        }
+        Deque<Node> stack = new ArrayDeque<>();
+        stack.push(node);
+        while (!stack.isEmpty()) {
+            Node n = stack.pop();
+            nodes.set(n.id, null);
+            if (n.checkpoint) {
+                dropCheckpoint(n);
+            }
+            if (n == previous) {
+                previous = null;
+            }
+            for (Node child : n.children) {
+                stack.push(child);
+            }
+        }
+    }
+
+    /**
+     * Gets the number of nodes in the tree.
+     * @return the number of nodes, including the root.
+     */
+    public int size() {
+        int count = 0;
+        for (Node n : nodes) {
+            if (n != null) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Statistics of the checkpoints of the tree.
+     */
+    public record Statistics(int nodes, int checkpoints, long checkpointBytes) {
+        @Override
+        public String toString() {
+            return String.format("%d nodes, %d checkpoints, about %d KB kept", nodes, checkpoints,
+                    checkpointBytes >> 10);
+        }
+    }
+
+    /**
+     * Node of the history tree.
+     */
+    public class Node {
+        private final int id;
+        private Node parent;
+        private Inference step;
+        private PersistentProposition state;
+        private final List<Node> children;
+        private int depth;
+        private Node redoChild;
+        private boolean checkpoint;
+        private int distance;
+        private long cost;
+        private long delta;
+        private long bytes;
+        private int rank;
+
+        private Node(int id, Node parent, Inference step, PersistentProposition state) {
+            this.id = id;
+            this.parent = parent;
+            this.step = step;
+            this.state = state;
+            this.children = new ArrayList<>();
+            this.depth = parent == null ? 0 : parent.depth + 1;
+            this.redoChild = null;
+            this.checkpoint = false;
+            this.distance = parent == null ? 0 : parent.distance + 1;
+            this.cost = parent == null ? 0 : copyCost(step.getPatch(), state);
+            this.delta = parent == null ? 0 : parent.delta + cost;
+            this.bytes = 0;
+        }
+
+        /**
+         * Gets the id of the node, which is unique in the tree and never reused.
+         * @return the id.
+         */
+        public int getId() {
+            return id;
+        }
+
+        /**
+         * Gets the parent of the node.
+         * @return the parent, or null for the root.
+         */
+        public Node getParent() {
+            return parent;
+        }
+
+        /**
+         * Gets the step from the parent to this node.
+         * @return the inference step, or null for the root.
+         */
+        public Inference getStep() {
+            return step;
+        }
+
+        /**
+         * Gets the proposition of this node, reconstructing it from the nearest checkpoint before it if it is not
+         * kept.
+         * @return the proposition after the step.
+         */
+        public PersistentProposition getState() {
+            if (state != null) {
+                return state;
+            }
+            Deque<Node> chain = new ArrayDeque<>();
+            Node n = this;
+            while (n.state == null) {
+                chain.push(n);
+                n = n.parent;
+            }
+            PersistentProposition result = n.state;
+            while (!chain.isEmpty()) {
+                result = chain.pop().step.getPatch().applyTo(result);
+            }
+            if (this == current || this == previous) {
+                state = result;
+            }
+            return result;
+        }
+
+        /**
+         * Checks whether the node keeps its proposition as a checkpoint.
+         * @return true if it is a checkpoint.
+         */
+        public boolean isCheckpoint() {
+            return checkpoint;
+        }
+
+        /**
+         * Gets the children of the node.
+         * @return the unmodifiable list of nodes after this one, in the order they were added.
+         */
+        public List<Node> getChildren() {
+            return Collections.unmodifiableList(children);
+        }
+
+        /**
+         * Gets the number of steps from the root to this node.
+         * @return the depth of the node.
+         */
+        public int getDepth() {
+            return depth;
+        }
+    }
+}
@@ -1,71 +1,47 @@
 package model;
 
-import logic.Language;
-import logic.exceptions.TheoremParseException;
-import logic.parser.Parser;
-
-import java.util.List;
-
 /**
- * An inference step to keep track of history.
+ * An inference step to keep track of history. A step only records the structural change it makes, and the
+ * propositions before and after it are reconstructed by applying the changes along the history.
  */
 public class Inference {
-    private final String from;
-    private final String to;
+    private final Patch patch;
     private final InferenceRule rule;
 
     /**
      * Creates an inference instance.
-     * @param from the initial proposition string in canonical representation of Peirce Alpha diagram.
-     * @param to the resulting proposition string in canonical representation of Peirce Alpha diagram.
+     * @param patch the change made to the proposition.
      * @param rule the inference rule applied.
      */
-    public Inference(String from, String to, InferenceRule rule) {
-        this.from = from;
-        this.to = to;
+    public Inference(Patch patch, InferenceRule rule) {
+        this.patch = patch;
         this.rule = rule;
     }
 
     /**
-     * Gets the proposition as premise of the inference step.
-     * @param variables the list of variables to help parsing.
-     * @return the proposition Java instance.
-     */
-    public Proposition getOriginalProposition(List<String> variables) {
-        return parseProposition(variables, from);
-    }
-
-    /**
-     * Gets the proposition as conclusion of the inference step.
-     * @param variables the list of variables to help parsing.
-     * @return the proposition Java instance.
+     * Gets the change made by the inference step.
+     * @return the patch changing the initial proposition to the resulting one.
      */
-    public Proposition getResultingProposition(List<String> variables) {
-        return parseProposition(variables, to);
+    public Patch getPatch() {
+        return patch;
     }
 
     /**
-     * Gets the proposition stored in the inference.
-     * @param variables the list of variables to help parsing.
-     * @param str the string to parse.
-     * @return the proposition Java instance.
+     * Gets the inference rule applied.
+     * @return the rule.
      */
-    private Proposition parseProposition(List<String> variables, String str) {
-        try {
-            return Parser.createParser(Language.Coq, variables).parseFrame(str);
-        } catch (TheoremParseException e) {
-            assert false;
-            return new Proposition();
-        }
+    public InferenceRule getRule() {
+        return rule;
     }
 
     /**
      * Gets the display to users.
+     * @param resulting the proposition after the step.
      * @return the string containing the resulting proposition and corresponding rule.
      */
-    public String userDisplay() {
+    public String userDisplay(PersistentProposition resulting) {
         StringBuilder sb = new StringBuilder();
-        sb.append(to);
+        sb.append(resulting);
         sb.append(" by ");
         sb.append(rule.printString());
         return sb.toString();
@@ -73,15 +49,17 @@ public class Inference {
 
     /**
      * Gets the string to save to file of this inference step.
-     * @return the string to save to file with "|" as delimiter.
+     * @param original the proposition before the step.
+     * @param resulting the proposition after the step.
+     * @return the string to save to file with "&" as delimiter.
      */
-    public String fileSave() {
+    public String fileSave(PersistentProposition original, PersistentProposition resulting) {
         StringBuilder sb = new StringBuilder();
         sb.append(rule);
         sb.append("&");
-        sb.append(from);
+        sb.append(original);
         sb.append("&");
-        sb.append(to);
+        sb.append(resulting);
         return sb.toString();
     }
 }
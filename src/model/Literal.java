@@ -10,6 +10,8 @@ import java.util.List;
  */
 public abstract class Literal {
     private Proposition parent;
+    private int index;
+    private int offset;
 
     /**
      * Initializes a literal.
@@ -35,6 +37,49 @@ public abstract class Literal {
         this.parent = parent;
     }
 
+    /**
+     * Records the position of the literal, as measured by its parent.
+     * @param index the index of the literal in the parent.
+     * @param offset the number of tokens before the literal in the parent.
+     */
+    void setPosition(int index, int offset) {
+        this.index = index;
+        this.offset = offset;
+    }
+
+    /**
+     * Gets the index of the literal in the parent when it was last measured.
+     * @return the index of the literal.
+     */
+    int getIndex() {
+        return index;
+    }
+
+    /**
+     * Gets the number of tokens before the literal in the parent when it was last measured.
+     * @return the token offset of the literal relative to the start of the parent.
+     */
+    int getOffset() {
+        return offset;
+    }
+
+    /**
+     * Gets the structural hash of the literal, which is equal for literals with the same content.
+     * @return the hash of the literal.
+     */
+    abstract public long getStructuralHash();
+
+    /**
+     * Scrambles the bits of a value so that sums of scrambled values rarely collide.
+     * @param x the value to scramble.
+     * @return the scrambled value.
+     */
+    static long mix(long x) {
+        x = (x ^ (x >>> 30)) * 0xbf58476d1ce4e5b9L;
+        x = (x ^ (x >>> 27)) * 0x94d049bb133111ebL;
+        return x ^ (x >>> 31);
+    }
+
     /**
      * Checks whether a given literal has the same content as this one.
      * @param l the given literal to check.
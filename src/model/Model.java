@@ -1,5 +1,7 @@
 package model;
 
+import logic.parser.ParseCache;
+
 import java.util.ArrayList;
 import java.util.List;
 
@@ -9,6 +11,9 @@ import java.util.List;
  */
 public class Model {
     private final List<String> variables;
+    private final SymbolTable symbolTable;
+    private String variablesFingerprint;
+    private final ParseCache parseCache;
     private final List<Proposition> premises;
     private Proposition theorem;
     private Proposition proposition;
@@ -17,7 +22,19 @@ public class Model {
      * Initializes a model component with empty variables, theorem, and history.
      */
     public Model() {
+        this(new SymbolTable());
+    }
+
+    /**
+     * Initializes a model component with empty variables, theorem, and history, whose variables are interned by a
+     * given symbol table, e.g. one sharing its ids with other models so that propositions can be shared.
+     * @param symbolTable the symbol table with no variables declared.
+     */
+    public Model(SymbolTable symbolTable) {
         variables = new ArrayList<>();
+        this.symbolTable = symbolTable;
+        variablesFingerprint = null;
+        parseCache = new ParseCache();
         premises = new ArrayList<>();
         theorem = new Proposition();
         proposition = new Proposition();
@@ -32,12 +49,45 @@ public class Model {
     }
 
     /**
-     * Resets the variables in the model.
+     * Gets the symbol table that interns the variable names of this model and keeps track of the variables
+     * recognizable, in the same way as {@link #getVariables()}.
+     * @return the symbol table.
+     */
+    public SymbolTable getSymbolTable() {
+        return symbolTable;
+    }
+
+    /**
+     * Gets a fingerprint of the set of variables recognizable, which is the same for two sets of variables if
+     * and only if they contain the same names.
+     * @return the fingerprint of the variables.
+     */
+    public String getVariablesFingerprint() {
+        if (variablesFingerprint == null) {
+            variablesFingerprint = String.join(" ", variables.stream().sorted().distinct().toList());
+        }
+        return variablesFingerprint;
+    }
+
+    /**
+     * Gets the cache of parse results of this model.
+     * @return the parse cache.
+     */
+    public ParseCache getParseCache() {
+        return parseCache;
+    }
+
+    /**
+     * Resets the variables in the model, and invalidates the cached parse results that use some variable
+     * not recognizable anymore.
      * @param variables the list of variables to update.
      */
     public void setVariables(List<String> variables) {
         this.variables.clear();
         this.variables.addAll(variables);
+        symbolTable.setDeclared(variables);
+        variablesFingerprint = null;
+        parseCache.retainVariables(variables);
     }
 
     /**
@@ -87,8 +137,14 @@ public class Model {
         }
     }
 
+    /**
+     * Clears the model. The parse cache is kept, since its entries are keyed by the variables recognized, so
+     * that opening a proof again does not parse its premises and theorem again.
+     */
     public void clear() {
         variables.clear();
+        symbolTable.setDeclared(List.of());
+        variablesFingerprint = null;
         theorem = new Proposition();
         premises.clear();
         proposition = new Proposition();
@@ -100,14 +156,19 @@ public class Model {
      */
     public void insertVariable(String varName) {
         variables.add(varName);
+        symbolTable.declare(varName);
+        variablesFingerprint = null;
     }
 
     /**
-     * Removes a particular variable.
+     * Removes a particular variable, and invalidates the cached parse results that use it.
      * @param varName the name of variable to be removed.
      */
     public void removeVariable(String varName) {
         variables.removeIf(x -> x.equals(varName));
+        symbolTable.undeclare(varName);
+        variablesFingerprint = null;
+        parseCache.invalidateVariable(varName);
     }
 
     /**
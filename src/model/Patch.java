@@ -0,0 +1,205 @@
+package model;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Structural change of a proposition, which replaces a run of literals of one area by other literals. The area is
+ * addressed by its path, i.e. the indices of the cut literals to enter from the base proposition, so that a patch
+ * can be applied to both mutable and persistent propositions, and its inverse restores the proposition before.
+ */
+public final class Patch {
+    private final int[] path;
+    private final int index;
+    private final List<PersistentLiteral> removed;
+    private final List<PersistentLiteral> inserted;
+
+    /**
+     * Creates a patch.
+     * @param path the path from the base proposition to the area changed.
+     * @param index the index of the first literal replaced in the area.
+     * @param removed the literals removed from the area, starting at the index.
+     * @param inserted the literals inserted into the area in place of the removed ones.
+     */
+    public Patch(int[] path, int index, List<PersistentLiteral> removed, List<PersistentLiteral> inserted) {
+        this.path = path.clone();
+        this.index = index;
+        this.removed = List.copyOf(removed);
+        this.inserted = List.copyOf(inserted);
+    }
+
+    /**
+     * Finds the patch that changes one proposition to another, where the change is known to be inside the area at
+     * the given path. The literals shared at both ends of the area are kept, and if only one cut literal differs,
+     * the patch is taken inside that cut.
+     * @param from the proposition before the change.
+     * @param to the proposition after the change.
+     * @param path the path to an area enclosing all the changes, which exists in both propositions.
+     * @return the patch.
+     */
+    public static Patch between(PersistentProposition from, PersistentProposition to, int[] path) {
+        List<Integer> fullPath = new ArrayList<>();
+        for (int i : path) {
+            fullPath.add(i);
+        }
+        PersistentProposition a = from.at(path);
+        PersistentProposition b = to.at(path);
+        while (true) {
+            int shorter = Math.min(a.size(), b.size());
+            int prefix = 0;
+            while (prefix < shorter && isSame(a.get(prefix), b.get(prefix))) {
+                prefix++;
+            }
+            int suffix = 0;
+            while (suffix < shorter - prefix && isSame(a.get(a.size() - 1 - suffix), b.get(b.size() - 1 - suffix))) {
+                suffix++;
+            }
+            List<PersistentLiteral> removed = a.getLiterals().subList(prefix, a.size() - suffix);
+            List<PersistentLiteral> inserted = b.getLiterals().subList(prefix, b.size() - suffix);
+            if (removed.size() == 1 && inserted.size() == 1 && removed.get(0).isCut() && inserted.get(0).isCut()) {
+                fullPath.add(prefix);
+                a = removed.get(0).getContent();
+                b = inserted.get(0).getContent();
+                continue;
+            }
+            int[] result = new int[fullPath.size()];
+            for (int i = 0; i < result.length; i++) {
+                result[i] = fullPath.get(i);
+            }
+            return new Patch(result, prefix, removed, inserted);
+        }
+    }
+
+    /**
+     * Finds the patch that changes one proposition to another.
+     * @param from the proposition before the change.
+     * @param to the proposition after the change.
+     * @return the patch.
+     */
+    public static Patch between(PersistentProposition from, PersistentProposition to) {
+        return between(from, to, new int[0]);
+    }
+
+    /**
+     * Checks whether two literals are the same including the order of the literals inside cuts, since a patch
+     * addresses literals by index and keeping a literal that is only reordered would corrupt the proposition built.
+     * @param a the literal before the change.
+     * @param b the literal after the change.
+     * @return true if they are the same literal with the same order of content.
+     */
+    private static boolean isSame(PersistentLiteral a, PersistentLiteral b) {
+        if (a == b) {
+            return true;
+        }
+        if (a.getStructuralHash() != b.getStructuralHash() || a.isCut() != b.isCut()) {
+            return false;
+        }
+        if (!a.isCut()) {
+            return a.isSameLiteral(b);
+        }
+        PersistentProposition x = a.getContent();
+        PersistentProposition y = b.getContent();
+        if (x.size() != y.size()) {
+            return false;
+        }
+        for (int i = 0; i < x.size(); i++) {
+            if (!isSame(x.get(i), y.get(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Gets the patch that reverts this one.
+     * @return the inverse patch.
+     */
+    public Patch inverse() {
+        return new Patch(path, index, inserted, removed);
+    }
+
+    /**
+     * Gets the path to the area changed.
+     * @return the indices of the cut literals to enter from the base proposition.
+     */
+    public int[] getPath() {
+        return path.clone();
+    }
+
+    /**
+     * Gets the index of the first literal replaced in the area.
+     * @return the index of the change.
+     */
+    public int getIndex() {
+        return index;
+    }
+
+    /**
+     * Gets the literals removed by the patch.
+     * @return the unmodifiable list of removed literals.
+     */
+    public List<PersistentLiteral> getRemoved() {
+        return removed;
+    }
+
+    /**
+     * Gets the literals inserted by the patch.
+     * @return the unmodifiable list of inserted literals.
+     */
+    public List<PersistentLiteral> getInserted() {
+        return inserted;
+    }
+
+    /**
+     * Applies the patch to a persistent proposition, sharing everything not on the path to the area changed.
+     * @param proposition the proposition before the change.
+     * @return the proposition after the change.
+     */
+    public PersistentProposition applyTo(PersistentProposition proposition) {
+        int[] indices = new int[removed.size()];
+        Arrays.setAll(indices, i -> index + i);
+        return proposition.replace(path, indices, index, inserted);
+    }
+
+    /**
+     * Gets the structural hash of the proposition after applying the patch, without building that proposition.
+     * @param proposition the proposition before the change.
+     * @return the structural hash of the proposition after the change.
+     */
+    public long hashAfter(PersistentProposition proposition) {
+        PersistentProposition[] areas = new PersistentProposition[path.length + 1];
+        areas[0] = proposition;
+        for (int i = 0; i < path.length; i++) {
+            areas[i + 1] = areas[i].get(path[i]).getContent();
+        }
+        long hash = areas[path.length].getStructuralHash();
+        for (PersistentLiteral l : removed) {
+            hash -= l.getStructuralHash();
+        }
+        for (PersistentLiteral l : inserted) {
+            hash += l.getStructuralHash();
+        }
+        for (int i = path.length - 1; i >= 0; i--) {
+            hash = areas[i].getStructuralHash() - areas[i].get(path[i]).getStructuralHash()
+                    + Literal.mix(hash + CutLiteral.CUT_SEED);
+        }
+        return hash;
+    }
+
+    /**
+     * Applies the patch to a mutable base proposition in place.
+     * @param proposition the base proposition to change.
+     */
+    public void applyTo(Proposition proposition) {
+        Proposition area = proposition;
+        for (int i : path) {
+            area = ((CutLiteral) area.getLiterals().get(i)).getContent();
+        }
+        List<Literal> literals = new ArrayList<>(inserted.size());
+        for (PersistentLiteral l : inserted) {
+            literals.add(l.toLiteral(area));
+        }
+        area.replaceLiterals(index, removed.size(), literals);
+    }
+}
@@ -0,0 +1,160 @@
+package model;
+
+/**
+ * Immutable literal of a persistent proposition, which is either a variable or a cut enclosing a persistent
+ * proposition. Literals hold no back pointers, so the same instance can be shared by many propositions.
+ */
+public final class PersistentLiteral {
+    private final SymbolTable symbols;
+    private final int variableId;
+    private final PersistentProposition content;
+    private final long hash;
+
+    private PersistentLiteral(SymbolTable symbols, int variableId, PersistentProposition content, long hash) {
+        this.symbols = symbols;
+        this.variableId = variableId;
+        this.content = content;
+        this.hash = hash;
+    }
+
+    /**
+     * Creates a literal of a variable.
+     * @param symbols the symbol table that the variable id refers to.
+     * @param variableId the id of the variable.
+     * @return the literal.
+     */
+    public static PersistentLiteral ground(SymbolTable symbols, int variableId) {
+        return new PersistentLiteral(symbols, variableId, null,
+                Literal.mix(symbols.nameOf(variableId).hashCode()));
+    }
+
+    /**
+     * Creates a cut literal.
+     * @param content the proposition enclosed in the cut.
+     * @return the literal.
+     */
+    public static PersistentLiteral cut(PersistentProposition content) {
+        return new PersistentLiteral(null, SymbolTable.UNDECLARED, content,
+                Literal.mix(content.getStructuralHash() + CutLiteral.CUT_SEED));
+    }
+
+    /**
+     * Creates the persistent form of a mutable literal.
+     * @param literal the literal to convert.
+     * @return the persistent literal with the same content.
+     */
+    public static PersistentLiteral of(Literal literal) {
+        if (literal instanceof GroundLiteral) {
+            GroundLiteral ground = (GroundLiteral) literal;
+            return ground(ground.getSymbols(), ground.getVariableId());
+        } else {
+            return cut(PersistentProposition.of(((CutLiteral) literal).getContent()));
+        }
+    }
+
+    /**
+     * Checks whether this is a cut literal.
+     * @return true if the literal is a cut, false if it is a variable.
+     */
+    public boolean isCut() {
+        return content != null;
+    }
+
+    /**
+     * Gets the content of the cut.
+     * @return the proposition enclosed, or null if this is a variable.
+     */
+    public PersistentProposition getContent() {
+        return content;
+    }
+
+    /**
+     * Gets the id of the variable.
+     * @return the variable id, or {@code SymbolTable.UNDECLARED} if this is a cut.
+     */
+    public int getVariableId() {
+        return variableId;
+    }
+
+    /**
+     * Gets the name of the variable.
+     * @return the variable name, or null if this is a cut.
+     */
+    public String getVariableName() {
+        return isCut() ? null : symbols.nameOf(variableId);
+    }
+
+    /**
+     * Gets the length in terms of tokens of the literal.
+     * @return the number of brackets and variable names of the literal.
+     */
+    public int getLength() {
+        return isCut() ? 2 + content.getLength() : 1;
+    }
+
+    /**
+     * Gets the structural hash of the literal, which is the same as that of the corresponding mutable literal.
+     * @return the hash of the literal.
+     */
+    public long getStructuralHash() {
+        return hash;
+    }
+
+    /**
+     * Checks whether a given literal has the same content as this one.
+     * @param l the given literal to check.
+     * @return true if they contain the same content.
+     */
+    public boolean isSameLiteral(PersistentLiteral l) {
+        if (this == l) {
+            return true;
+        }
+        if (hash != l.hash || isCut() != l.isCut()) {
+            return false;
+        }
+        if (isCut()) {
+            return content.hasSameLiterals(l.content);
+        }
+        if (symbols.sharesIdsWith(l.symbols)) {
+            return variableId == l.variableId;
+        }
+        return getVariableName().equals(l.getVariableName());
+    }
+
+    /**
+     * Builds a mutable literal with the same content.
+     * @param parent the proposition the new literal belongs to, whose level is used for the enclosed propositions.
+     * @return the mutable literal.
+     */
+    public Literal toLiteral(Proposition parent) {
+        if (!isCut()) {
+            return new GroundLiteral(parent, symbols, variableId);
+        }
+        CutLiteral cut = new CutLiteral(parent, null);
+        Proposition inner = new Proposition(parent == null ? 1 : parent.getLevel() + 1, cut);
+        content.fill(inner);
+        cut.setContent(inner);
+        return cut;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        appendTo(sb);
+        return sb.toString();
+    }
+
+    /**
+     * Appends the canonical string of the literal.
+     * @param sb the builder to append to.
+     */
+    void appendTo(StringBuilder sb) {
+        if (isCut()) {
+            sb.append("[ ");
+            content.appendTo(sb);
+            sb.append("] ");
+        } else {
+            sb.append(getVariableName()).append(' ');
+        }
+    }
+}
@@ -0,0 +1,266 @@
+package model;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Immutable proposition of a Peirce Alpha diagram with structural sharing. A change to some area creates new
+ * propositions only along the path from the base proposition to that area, and all other subtrees are shared with
+ * the proposition before the change, so keeping many versions costs memory proportional to the changes only.
+ * Areas are addressed by paths, i.e. the indices of the cut literals to enter from the base proposition.
+ */
+public final class PersistentProposition {
+    public static final PersistentProposition EMPTY = new PersistentProposition(new PersistentLiteral[0]);
+
+    private final PersistentLiteral[] literals;
+    private final int length;
+    private final long hash;
+
+    private PersistentProposition(PersistentLiteral[] literals) {
+        this.literals = literals;
+        int count = 0;
+        long sum = 0;
+        for (PersistentLiteral l : literals) {
+            count += l.getLength();
+            sum += l.getStructuralHash();
+        }
+        this.length = count;
+        this.hash = sum;
+    }
+
+    /**
+     * Creates a proposition of the given literals.
+     * @param literals the literals of the proposition.
+     * @return the proposition.
+     */
+    public static PersistentProposition of(List<PersistentLiteral> literals) {
+        return literals.isEmpty() ? EMPTY : new PersistentProposition(literals.toArray(new PersistentLiteral[0]));
+    }
+
+    /**
+     * Creates the persistent form of a mutable proposition.
+     * @param proposition the proposition to convert.
+     * @return the persistent proposition with the same literals.
+     */
+    public static PersistentProposition of(Proposition proposition) {
+        List<Literal> source = proposition.getLiterals();
+        if (source.isEmpty()) {
+            return EMPTY;
+        }
+        PersistentLiteral[] literals = new PersistentLiteral[source.size()];
+        for (int i = 0; i < literals.length; i++) {
+            literals[i] = PersistentLiteral.of(source.get(i));
+        }
+        return new PersistentProposition(literals);
+    }
+
+    /**
+     * Gets the number of literals of the proposition.
+     * @return the number of literals.
+     */
+    public int size() {
+        return literals.length;
+    }
+
+    /**
+     * Gets a literal of the proposition.
+     * @param index the index of the literal.
+     * @return the literal.
+     */
+    public PersistentLiteral get(int index) {
+        return literals[index];
+    }
+
+    /**
+     * Gets the literals of the proposition.
+     * @return the unmodifiable list of literals.
+     */
+    public List<PersistentLiteral> getLiterals() {
+        return Collections.unmodifiableList(Arrays.asList(literals));
+    }
+
+    /**
+     * Gets the number of tokens of this proposition, including variable names and brackets.
+     * @return the number of tokens.
+     */
+    public int getLength() {
+        return length;
+    }
+
+    /**
+     * Gets the structural hash of this proposition, which is the same as that of the corresponding mutable one.
+     * @return the hash, which is equal for propositions with the same literals.
+     */
+    public long getStructuralHash() {
+        return hash;
+    }
+
+    /**
+     * Checks whether a given proposition has the same list of literals as this proposition.
+     * @param p the other proposition to test.
+     * @return true if they have the same literal list regardless of order.
+     */
+    public boolean hasSameLiterals(PersistentProposition p) {
+        if (this == p) {
+            return true;
+        }
+        if (p.literals.length != literals.length || p.hash != hash) {
+            return false;
+        }
+        Map<Long, List<PersistentLiteral>> buckets = new HashMap<>();
+        for (PersistentLiteral l : literals) {
+            buckets.computeIfAbsent(l.getStructuralHash(), h -> new ArrayList<>()).add(l);
+        }
+        for (PersistentLiteral l : p.literals) {
+            List<PersistentLiteral> bucket = buckets.get(l.getStructuralHash());
+            if (bucket == null || !removeSameLiteral(bucket, l)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean removeSameLiteral(List<PersistentLiteral> bucket, PersistentLiteral literal) {
+        for (int i = bucket.size() - 1; i >= 0; i--) {
+            if (bucket.get(i).isSameLiteral(literal)) {
+                bucket.set(i, bucket.get(bucket.size() - 1));
+                bucket.remove(bucket.size() - 1);
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Gets the area at the given path.
+     * @param path the indices of the cut literals to enter from this proposition.
+     * @return the proposition enclosed by the last cut of the path.
+     */
+    public PersistentProposition at(int[] path) {
+        PersistentProposition p = this;
+        for (int index : path) {
+            p = p.literals[index].getContent();
+        }
+        return p;
+    }
+
+    /**
+     * Creates the proposition after replacing some literals of an area, sharing everything not on the path.
+     * @param path the indices of the cut literals to enter from this proposition to reach the area.
+     * @param removed the indices of the literals to remove from the area, in ascending order.
+     * @param insertAt the index, among the literals left after the removal, to insert the new literals at.
+     * @param inserted the literals to insert.
+     * @return the new proposition.
+     */
+    public PersistentProposition replace(int[] path, int[] removed, int insertAt, List<PersistentLiteral> inserted) {
+        return replace(path, 0, removed, insertAt, inserted);
+    }
+
+    private PersistentProposition replace(int[] path, int depth, int[] removed, int insertAt,
+                                          List<PersistentLiteral> inserted) {
+        if (depth == path.length) {
+            return edit(removed, insertAt, inserted);
+        }
+        int index = path[depth];
+        PersistentProposition content = literals[index].getContent().replace(path, depth + 1, removed, insertAt,
+                inserted);
+        PersistentLiteral[] copied = literals.clone();
+        copied[index] = PersistentLiteral.cut(content);
+        return new PersistentProposition(copied);
+    }
+
+    private PersistentProposition edit(int[] removed, int insertAt, List<PersistentLiteral> inserted) {
+        int kept = literals.length - removed.length;
+        PersistentLiteral[] result = new PersistentLiteral[kept + inserted.size()];
+        int next = 0;
+        int r = 0;
+        for (int i = 0; i < literals.length; i++) {
+            if (r < removed.length && removed[r] == i) {
+                r++;
+                continue;
+            }
+            if (next == insertAt) {
+                next = copyInto(result, next, inserted);
+            }
+            result[next++] = literals[i];
+        }
+        if (next == insertAt) {
+            next = copyInto(result, next, inserted);
+        }
+        assert next == result.length;
+        return result.length == 0 ? EMPTY : new PersistentProposition(result);
+    }
+
+    private static int copyInto(PersistentLiteral[] target, int from, List<PersistentLiteral> literals) {
+        for (PersistentLiteral l : literals) {
+            target[from++] = l;
+        }
+        return from;
+    }
+
+    /**
+     * Creates the proposition with the literals of every area in a canonical order, i.e. ground literals sorted by
+     * name followed by cut literals sorted by the strings of their own canonical forms, so that propositions with
+     * the same literals regardless of order have the same string.
+     * @return the proposition in canonical order.
+     */
+    public PersistentProposition normalize() {
+        if (literals.length == 0) {
+            return this;
+        }
+        PersistentLiteral[] sorted = new PersistentLiteral[literals.length];
+        Map<PersistentLiteral, String> keys = new IdentityHashMap<>();
+        for (int i = 0; i < literals.length; i++) {
+            PersistentLiteral l = literals[i];
+            sorted[i] = l.isCut() ? PersistentLiteral.cut(l.getContent().normalize()) : l;
+            keys.put(sorted[i], sorted[i].isCut() ? sorted[i].toString() : sorted[i].getVariableName());
+        }
+        Arrays.sort(sorted, Comparator.comparing(PersistentLiteral::isCut).thenComparing(keys::get));
+        return new PersistentProposition(sorted);
+    }
+
+    /**
+     * Builds a mutable base proposition with the same literals.
+     * @return the mutable proposition.
+     */
+    public Proposition toProposition() {
+        Proposition proposition = new Proposition();
+        fill(proposition);
+        return proposition;
+    }
+
+    /**
+     * Adds mutable copies of the literals of this proposition to the given one.
+     * @param target the mutable proposition to add literals to.
+     */
+    void fill(Proposition target) {
+        List<Literal> converted = new ArrayList<>(literals.length);
+        for (PersistentLiteral l : literals) {
+            converted.add(l.toLiteral(target));
+        }
+        target.addLiterals(converted);
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        appendTo(sb);
+        return sb.toString();
+    }
+
+    /**
+     * Appends the canonical string of the proposition.
+     * @param sb the builder to append to.
+     */
+    void appendTo(StringBuilder sb) {
+        for (PersistentLiteral l : literals) {
+            l.appendTo(sb);
+        }
+    }
+}
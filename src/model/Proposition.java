@@ -4,15 +4,25 @@ import logic.exceptions.InvalidInferenceException;
 import logic.exceptions.InvalidSelectionException;
 
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 /**
  * Propositions data structure.
+ * The number of tokens of the proposition, the offsets of its literals and its structural hash are cached, and
+ * every change to the list of literals marks the cache of this proposition and its ancestors as outdated, so that
+ * position queries only need to walk the enclosing frames and comparisons can fail fast on different hashes.
  */
 public class Proposition {
     private int level;
     private CutLiteral enclosingLiteral;
     private final List<Literal> literals;
+    private int length;
+    private long hash;
+    private boolean measured;
+    private Map<Long, List<Literal>> index;
 
     /**
      * Constructs a proposition that is of the base form, i.e. not a proposition contained in any other propositions.
@@ -40,6 +50,7 @@ public class Proposition {
      */
     public void addLiterals(List<Literal> literals) {
         this.literals.addAll(literals);
+        invalidate();
     }
 
     /**
@@ -48,6 +59,7 @@ public class Proposition {
      */
     public void addLiteral(Literal literal) {
         this.literals.add(literal);
+        invalidate();
     }
 
     /**
@@ -60,10 +72,10 @@ public class Proposition {
 
     /**
      * Gets the list of literals of proposition.
-     * @return the list of literals.
+     * @return the unmodifiable view of the list of literals.
      */
     public List<Literal> getLiterals() {
-        return literals;
+        return Collections.unmodifiableList(literals);
     }
 
     /**
@@ -72,27 +84,48 @@ public class Proposition {
      * @return true if they have the same literal list regardless of order.
      */
     public boolean hasSameLiterals(Proposition p) {
-        if (p.literals.size() != literals.size()) {
+        if (p.literals.size() != literals.size() || p.getStructuralHash() != getStructuralHash()) {
             return false;
-        } else {
-            List<Literal> copy = new ArrayList<>(literals);
-            for (Literal l : p.literals) {
-                boolean removed = false;
-                for (Literal cl : copy) {
-                    if (cl.isSameLiteral(l)) {
-                        copy.remove(cl);
-                        removed = true;
-                        break;
-                    }
-                }
-                if (!removed) {
-                    return false;
-                }
+        }
+        Map<Long, List<Literal>> buckets = new HashMap<>();
+        for (Literal l : literals) {
+            buckets.computeIfAbsent(l.getStructuralHash(), h -> new ArrayList<>()).add(l);
+        }
+        for (Literal l : p.literals) {
+            List<Literal> bucket = buckets.get(l.getStructuralHash());
+            if (bucket == null || !removeSameLiteral(bucket, l)) {
+                return false;
             }
         }
         return true;
     }
 
+    /**
+     * Removes a literal that is the same as the given one from a list of literals with the same hash.
+     * @param bucket the literals to look into.
+     * @param literal the literal to match.
+     * @return true if some literal is found and removed.
+     */
+    private static boolean removeSameLiteral(List<Literal> bucket, Literal literal) {
+        for (int i = bucket.size() - 1; i >= 0; i--) {
+            if (bucket.get(i).isSameLiteral(literal)) {
+                bucket.set(i, bucket.get(bucket.size() - 1));
+                bucket.remove(bucket.size() - 1);
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Gets the structural hash of this proposition, which does not depend on the order of literals or the level.
+     * @return the hash, which is equal for propositions with the same literals.
+     */
+    public long getStructuralHash() {
+        measure();
+        return hash;
+    }
+
     /**
      * Checks whether this is the base proposition.
      * @return true if it is the base proposition.
@@ -102,12 +135,99 @@ public class Proposition {
     }
 
     /**
-     * Gets the index of a given literal in this proposition.
-     * @param l the literal to locate.
-     * @return the index of the literal.
+     * Marks the cached token counts of this proposition and all its ancestors as outdated.
+     * An outdated proposition always has outdated ancestors, so the walk stops at the first one found.
+     */
+    void invalidate() {
+        Proposition p = this;
+        while (p != null && p.measured) {
+            p.measured = false;
+            p.index = null;
+            p = p.enclosingLiteral == null ? null : p.enclosingLiteral.getParent();
+        }
+    }
+
+    /**
+     * Recomputes the number of tokens, the positions of literals and the structural hash of this proposition if
+     * they are outdated.
+     */
+    private void measure() {
+        if (measured) {
+            return;
+        }
+        int offset = 0;
+        long sum = 0;
+        for (int i = 0; i < literals.size(); i++) {
+            Literal l = literals.get(i);
+            l.setPosition(i, offset);
+            offset += l.getLength();
+            sum += l.getStructuralHash();
+        }
+        length = offset;
+        hash = sum;
+        measured = true;
+    }
+
+    /**
+     * Gets the literals of this proposition grouped by their structural hashes, building the index if it is
+     * outdated. The index is only kept while the cached measures are valid, so it is dropped together with them.
+     * @return the map from structural hashes to the literals having them.
+     */
+    private Map<Long, List<Literal>> getIndex() {
+        measure();
+        if (index == null) {
+            index = new HashMap<>();
+            for (Literal l : literals) {
+                index.computeIfAbsent(l.getStructuralHash(), h -> new ArrayList<>(1)).add(l);
+            }
+        }
+        return index;
+    }
+
+    /**
+     * Checks whether the cached position of a literal refers to this proposition.
+     * @param l the literal to check.
+     * @return true if the literal is at its cached index in this proposition.
+     */
+    private boolean isPositionOf(Literal l) {
+        int index = l.getIndex();
+        return index < literals.size() && literals.get(index) == l;
+    }
+
+    /**
+     * Gets the index of the last literal starting before the given offset.
+     * @param offset the token offset relative to the start of this proposition.
+     * @return the index of the literal, or -1 if no literal starts before the offset.
+     */
+    private int lastLiteralBefore(int offset) {
+        measure();
+        int low = 0;
+        int high = literals.size() - 1;
+        int found = -1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            if (literals.get(mid).getOffset() < offset) {
+                found = mid;
+                low = mid + 1;
+            } else {
+                high = mid - 1;
+            }
+        }
+        return found;
+    }
+
+    /**
+     * Gets the literal whose brackets strictly enclose the given offset.
+     * @param offset the token offset relative to the start of this proposition.
+     * @return the literal, or null if the offset is not inside any literal.
      */
-    private int getIndexOf(Literal l) {
-        return literals.indexOf(l);
+    private Literal literalAround(int offset) {
+        int index = lastLiteralBefore(offset);
+        if (index < 0) {
+            return null;
+        }
+        Literal l = literals.get(index);
+        return offset < l.getOffset() + l.getLength() ? l : null;
     }
 
     /**
@@ -116,12 +236,42 @@ public class Proposition {
      * @return the length before the given literal.
      */
     public int getLengthBefore(Literal l) {
-        int index = getIndexOf(l);
-        int acc = 0;
-        for (int i = 0; i < index; i++) {
-            acc += literals.get(i).getLength();
+        return indexOf(l) < 0 ? 0 : l.getOffset();
+    }
+
+    /**
+     * Gets the index of a given literal in this proposition.
+     * @param l the literal to locate.
+     * @return the index of the literal, or -1 if it is not a literal of this proposition.
+     */
+    public int indexOf(Literal l) {
+        measure();
+        if (!isPositionOf(l)) {
+            // The literal has been measured in another proposition since.
+            measured = false;
+            measure();
         }
-        return acc;
+        return isPositionOf(l) ? l.getIndex() : -1;
+    }
+
+    /**
+     * Gets the path from the base proposition to this proposition.
+     * @return the indices of the enclosing cut literals, starting from the one in the base proposition.
+     */
+    public int[] getPath() {
+        int depth = 0;
+        for (Proposition p = this; p.enclosingLiteral != null && p.enclosingLiteral.getParent() != null;
+                p = p.enclosingLiteral.getParent()) {
+            depth++;
+        }
+        int[] path = new int[depth];
+        Proposition p = this;
+        for (int i = depth - 1; i >= 0; i--) {
+            Proposition up = p.enclosingLiteral.getParent();
+            path[i] = up.indexOf(p.enclosingLiteral);
+            p = up;
+        }
+        return path;
     }
 
     /**
@@ -151,11 +301,8 @@ public class Proposition {
      * @return the number of tokens.
      */
     public int getLength() {
-        int count = 0;
-        for (Literal l : literals) {
-            count += l.getLength();
-        }
-        return count;
+        measure();
+        return length;
     }
 
     public boolean covers(int s, int e) {
@@ -177,15 +324,11 @@ public class Proposition {
      * @return true if the cursor is in this proposition but not in any children of this proposition.
      */
     public boolean cursorInShallow(int pos) {
-        if (!cursorIn(pos)) {
+        int start = getStartIndex();
+        if (pos < start || pos > start + getLength()) {
             return false;
         } else {
-            for (Literal l : literals) {
-                if (l.cursorIn(pos)) {
-                    return false;
-                }
-            }
-            return true;
+            return literalAround(pos - start) == null;
         }
     }
 
@@ -197,19 +340,23 @@ public class Proposition {
      * @throws InvalidSelectionException if the selected part is not valid.
      */
     public List<Literal> getSelectedLiterals(int s, int e) throws InvalidSelectionException {
-        if (cursorInShallow(s) && cursorInShallow(e)) {
+        boolean startIn = cursorInShallow(s);
+        boolean endIn = cursorInShallow(e);
+        int start = getStartIndex();
+        if (startIn && endIn) {
             List<Literal> selected = new ArrayList<>();
-            for (Literal l : literals) {
-                if (l.isSelected(s, e)) {
-                    selected.add(l);
+            for (int i = lastLiteralBefore(s - start) + 1; i < literals.size(); i++) {
+                Literal l = literals.get(i);
+                if (start + l.getOffset() + l.getLength() > e) {
+                    break;
                 }
+                selected.add(l);
             }
             return selected;
-        } else if (!(cursorInShallow(s) || cursorInShallow(e))) {
-            for (Literal l : literals) {
-                if (l.covers(s, e)) {
-                    return l.getSelectedLiterals(s, e);
-                }
+        } else if (!(startIn || endIn)) {
+            Literal l = literalAround(s - start);
+            if (l != null && l.covers(s, e)) {
+                return l.getSelectedLiterals(s, e);
             }
         }
         throw new InvalidSelectionException();
@@ -224,10 +371,9 @@ public class Proposition {
         if (cursorInShallow(pos)) {
             return this;
         } else {
-            for (Literal l : literals) {
-                if (l.cursorIn(pos)) {
-                    return l.getCursorProp(pos);
-                }
+            Literal l = literalAround(pos - getStartIndex());
+            if (l != null) {
+                return l.getCursorProp(pos);
             }
         }
         assert false;
@@ -244,6 +390,19 @@ public class Proposition {
         int index = literals.indexOf(original.get(0));
         literals.removeAll(original);
         literals.addAll(index, current);
+        invalidate();
+    }
+
+    /**
+     * Replaces a run of literals in the proposition with a new list of literals.
+     * @param index the index of the first literal to remove.
+     * @param count the number of literals to remove.
+     * @param current the literals to add in place of the removed ones, whose parent should be this proposition.
+     */
+    public void replaceLiterals(int index, int count, List<Literal> current) {
+        literals.subList(index, index + count).clear();
+        literals.addAll(index, current);
+        invalidate();
     }
 
     /**
@@ -255,24 +414,19 @@ public class Proposition {
         if (pos < 0) {
             throw new InvalidSelectionException("Please place your cursor where white spaces are");
         }
+        int start = getStartIndex();
         if (cursorInShallow(pos)) {
-            int len = this.literals.size();
-            boolean inserted = false;
-            for (int i = 0; i < len; i++) {
-                if (this.literals.get(i).getStartIndex() == pos) {
-                    this.literals.addAll(i, literals);
-                    inserted = true;
-                    break;
-                }
-            }
-            if (!inserted) {
+            int i = lastLiteralBefore(pos - start) + 1;
+            if (i < this.literals.size() && start + this.literals.get(i).getOffset() == pos) {
+                this.literals.addAll(i, literals);
+            } else {
                 this.literals.addAll(literals);
             }
+            invalidate();
         } else {
-            for (Literal l : this.literals) {
-                if (l.cursorIn(pos)) {
-                    l.insertLiterals(pos, literals);
-                }
+            Literal l = literalAround(pos - start);
+            if (l != null) {
+                l.insertLiterals(pos, literals);
             }
         }
     }
@@ -283,6 +437,9 @@ public class Proposition {
      */
     public void setEnclosingLiteral(CutLiteral literal) {
         enclosingLiteral = literal;
+        if (literal != null && literal.getParent() != null) {
+            literal.getParent().invalidate();
+        }
     }
 
     /**
@@ -307,16 +464,23 @@ public class Proposition {
      * @return true if it is found.
      */
     public boolean appearsInAncestors(Literal literal) {
-        for (Literal l : literals) {
-            if (l.isSameLiteral(literal) && l != literal) {
-                return true;
+        long h = literal.getStructuralHash();
+        Proposition p = this;
+        while (true) {
+            List<Literal> candidates = p.getIndex().get(h);
+            if (candidates != null) {
+                for (Literal l : candidates) {
+                    if (l != literal && l.isSameLiteral(literal)) {
+                        return true;
+                    }
+                }
             }
+            if (p.isBaseProp()) {
+                return false;
+            }
+            assert p.enclosingLiteral != null;
+            p = p.enclosingLiteral.getParent();
         }
-        if (isBaseProp()) {
-            return false;
-        }
-        assert enclosingLiteral != null;
-        return enclosingLiteral.getParent().appearsInAncestors(literal);
     }
 
     /**
@@ -0,0 +1,163 @@
+package model;
+
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Table that interns variable names to dense integer ids, and keeps track of which variables are declared, i.e.
+ * recognizable, at any point of time. Ids are never reused or reassigned, so literals created before a variable
+ * is removed and declared again still refer to the same variable. Tables may share their ids while declaring
+ * different variables. The table is safe to use from many threads.
+ */
+public class SymbolTable {
+    public static final int UNDECLARED = -1;
+
+    private final Names interned;
+    private final Map<String, Integer> declared;
+
+    /**
+     * Names interned to ids, which may be shared by several tables that declare different variables.
+     */
+    private static final class Names {
+        private final Map<String, Integer> ids = new ConcurrentHashMap<>();
+        private volatile String[] names = new String[16];
+        private int size = 0;
+    }
+
+    /**
+     * Creates an empty symbol table.
+     */
+    public SymbolTable() {
+        interned = new Names();
+        declared = new ConcurrentHashMap<>();
+    }
+
+    /**
+     * Creates a symbol table where the given variables are declared.
+     * @param variables the names of the variables to declare.
+     */
+    public SymbolTable(Collection<String> variables) {
+        this();
+        setDeclared(variables);
+    }
+
+    /**
+     * Creates a symbol table with no variables declared that interns names to the same ids as a given table, so
+     * that literals of either table can be used with the other.
+     * @param shared the table to share the ids with.
+     */
+    public SymbolTable(SymbolTable shared) {
+        interned = shared.interned;
+        declared = new ConcurrentHashMap<>();
+    }
+
+    /**
+     * Checks whether this table interns names to the same ids as a given table.
+     * @param other the other table.
+     * @return true if a variable has the same id in both tables.
+     */
+    public boolean sharesIdsWith(SymbolTable other) {
+        return interned == other.interned;
+    }
+
+    /**
+     * Gets the id of a variable name, allocating a new id if the name has not been seen before.
+     * @param name the variable name.
+     * @return the id of the name.
+     */
+    public int intern(String name) {
+        Integer id = interned.ids.get(name);
+        if (id != null) {
+            return id;
+        }
+        synchronized (interned) {
+            id = interned.ids.get(name);
+            if (id != null) {
+                return id;
+            }
+            String[] current = interned.names;
+            int size = interned.size;
+            if (size == current.length) {
+                String[] grown = new String[size * 2];
+                System.arraycopy(current, 0, grown, 0, size);
+                current = grown;
+            }
+            current[size] = name;
+            interned.names = current;
+            interned.ids.put(name, size);
+            interned.size = size + 1;
+            return size;
+        }
+    }
+
+    /**
+     * Gets the id of a declared variable.
+     * @param name the variable name.
+     * @return the id of the variable, or {@code UNDECLARED} if the variable is not declared.
+     */
+    public int lookup(String name) {
+        return declared.getOrDefault(name, UNDECLARED);
+    }
+
+    /**
+     * Checks whether a variable is declared.
+     * @param name the variable name.
+     * @return true if the variable is recognizable.
+     */
+    public boolean isDeclared(String name) {
+        return declared.containsKey(name);
+    }
+
+    /**
+     * Gets the name of the variable with the given id.
+     * @param id the id of the variable.
+     * @return the name of the variable.
+     */
+    public String nameOf(int id) {
+        return interned.names[id];
+    }
+
+    /**
+     * Declares a variable.
+     * @param name the variable name.
+     * @return the id of the variable.
+     */
+    public int declare(String name) {
+        int id = intern(name);
+        declared.put(name, id);
+        return id;
+    }
+
+    /**
+     * Makes a variable not recognizable anymore. Its id is kept.
+     * @param name the variable name.
+     */
+    public void undeclare(String name) {
+        declared.remove(name);
+    }
+
+    /**
+     * Makes exactly the given variables declared.
+     * @param variables the names of the variables to declare.
+     */
+    public void setDeclared(Collection<String> variables) {
+        Set<String> retained = new HashSet<>(variables);
+        declared.keySet().retainAll(retained);
+        for (String v : retained) {
+            declare(v);
+        }
+    }
+
+    /**
+     * Gets the number of ids allocated.
+     * @return the number of distinct variable names seen.
+     */
+    public int size() {
+        synchronized (interned) {
+            return interned.size;
+        }
+    }
+}
@@ -0,0 +1,396 @@
+package storage;
+
+import logic.Logic;
+import logic.exceptions.FilePathException;
+import logic.exceptions.FileReadException;
+
+import java.io.IOException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+
+/**
+ * Saves a proof in the background whenever its history changes. The first change after a save starts a delay,
+ * and all changes made during the delay are saved together. A snapshot of the proof is taken on the thread that
+ * changes the proof, which only copies the shape of the history tree, and the snapshot is written on a thread of
+ * its own, to a temporary file that then replaces the proof file. If the proof changes again while a snapshot is
+ * being written, only the latest snapshot waiting is written next, so a slow disk never builds up a queue of
+ * outdated snapshots. In the journaled save mode, see {@link #startJournal(int, int)}, the journal is forced to disk
+ * instead, and forcing it, compacting it into the proof file and removing it when the mode stops are all done by the
+ * same thread that writes the snapshots, so the thread that changes the proof never waits for the disk. Failures to
+ * write are counted in the metrics, both for snapshots and for the journal.
+ */
+public class AutosaveService {
+    public static final long DEFAULT_DELAY = 2000;
+
+    private final Logic logic;
+    private final Executor owner;
+    private final long delay;
+    private final ScheduledThreadPoolExecutor writer;
+    private final Runnable listener;
+    private final AtomicReference<Pending> latest;
+    private final AtomicBoolean scheduled;
+    private volatile boolean enabled;
+    private volatile boolean closed;
+    private boolean journaled;
+    private int unsaved;
+    private final AtomicInteger queueDepth;
+    private final AtomicLong changes;
+    private final AtomicLong saves;
+    private final AtomicLong failures;
+    private final AtomicLong bytesWritten;
+    private final AtomicLong journalBytes;
+    private final AtomicLong lastLatency;
+    private final AtomicLong maxLatency;
+    private final AtomicLong totalLatency;
+    private final AtomicLong captures;
+    private final AtomicLong totalCaptureTime;
+
+    /**
+     * Snapshot waiting to be written, with the number of changes it saves.
+     */
+    private record Pending(ProofSnapshot snapshot, int changes, long time) {
+        Pending after(Pending older) {
+            return older == null ? this : new Pending(snapshot, changes + older.changes, older.time);
+        }
+    }
+
+    /**
+     * Creates the service for a proof, which does not save anything until it is enabled.
+     * @param logic the logic instance that holds the proof.
+     * @param owner the executor that runs tasks on the thread that changes the proof, e.g.
+     *              {@code SwingUtilities::invokeLater}.
+     * @param delay the time to wait after a change for more changes before saving, in milliseconds, e.g.
+     *              {@code DEFAULT_DELAY}.
+     */
+    public AutosaveService(Logic logic, Executor owner, long delay) {
+        this.logic = logic;
+        this.owner = owner;
+        this.delay = Math.max(0, delay);
+        this.writer = new ScheduledThreadPoolExecutor(1, r -> {
+            Thread thread = new Thread(r, "autosave");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.writer.setExecuteExistingDelayedTasksAfterShutdownPolicy(false);
+        this.latest = new AtomicReference<>();
+        this.scheduled = new AtomicBoolean(false);
+        this.enabled = false;
+        this.closed = false;
+        this.journaled = false;
+        this.unsaved = 0;
+        this.queueDepth = new AtomicInteger();
+        this.changes = new AtomicLong();
+        this.saves = new AtomicLong();
+        this.failures = new AtomicLong();
+        this.bytesWritten = new AtomicLong();
+        this.journalBytes = new AtomicLong();
+        this.lastLatency = new AtomicLong();
+        this.maxLatency = new AtomicLong();
+        this.totalLatency = new AtomicLong();
+        this.captures = new AtomicLong();
+        this.totalCaptureTime = new AtomicLong();
+        this.listener = this::changed;
+        logic.addHistoryListener(listener);
+    }
+
+    /**
+     * Starts or stops saving changes automatically. Changes not saved yet are saved when stopping, and changes made
+     * while stopped are not saved until the next change after starting again. It has to be called on the thread that
+     * changes the proof.
+     * @param enabled true to save changes automatically.
+     */
+    public void setEnabled(boolean enabled) {
+        if (!enabled && this.enabled && unsaved > 0) {
+            capture();
+        }
+        this.enabled = enabled && !closed;
+        unsaved = 0;
+        if (this.enabled && journaled && !logic.isJournaled()) {
+            startJournal(Journal.DEFAULT_SYNC_BATCH, Journal.DEFAULT_COMPACT_INTERVAL);
+        }
+    }
+
+    /**
+     * Sets whether the proof is saved in the journaled save mode, see {@link #startJournal(int, int)}, with the
+     * default batch and interval. The mode starts right away if the service is enabled, and otherwise once it is
+     * enabled, i.e. once the proof has a file. It has to be called on the thread that changes the proof.
+     * @param journaled true to save in the journaled save mode.
+     */
+    public void setJournaled(boolean journaled) {
+        this.journaled = journaled;
+        if (journaled && enabled && !logic.isJournaled()) {
+            startJournal(Journal.DEFAULT_SYNC_BATCH, Journal.DEFAULT_COMPACT_INTERVAL);
+        } else if (!journaled && logic.isJournaled()) {
+            stopJournal();
+        }
+    }
+
+    /**
+     * Checks whether the proof is saved in the journaled save mode once the service is enabled.
+     * @return true if the journaled save mode is set.
+     */
+    public boolean isJournaled() {
+        return journaled;
+    }
+
+    /**
+     * Checks whether changes are saved automatically.
+     * @return true if the service is enabled.
+     */
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Saves the proof right away, whether or not it has changed, without waiting for the file to be written. It has
+     * to be called on the thread that changes the proof.
+     */
+    public void saveNow() {
+        if (!closed) {
+            capture();
+        }
+    }
+
+    /**
+     * Waits until all snapshots taken so far are written.
+     * @throws InterruptedException if the thread is interrupted while waiting.
+     */
+    public void awaitWrites() throws InterruptedException {
+        try {
+            writer.submit(() -> { }).get();
+        } catch (ExecutionException e) {
+            assert false;
+        }
+    }
+
+    /**
+     * Starts the journaled save mode of the proof, see {@link Logic#startJournal(int, int)}, where the journal and
+     * the proof file are written by the thread of this service. It has to be called on the thread that changes the
+     * proof, once the proof has a file.
+     * @param syncBatch the number of steps recorded before forcing them to disk, e.g.
+     *                  {@code Journal.DEFAULT_SYNC_BATCH}.
+     * @param compactInterval the number of steps recorded before saving the whole proof again, e.g.
+     *                        {@code Journal.DEFAULT_COMPACT_INTERVAL}.
+     */
+    public void startJournal(int syncBatch, int compactInterval) {
+        if (!closed) {
+            logic.startJournal(syncBatch, compactInterval, writer);
+        }
+    }
+
+    /**
+     * Stops the journaled save mode of the proof, see {@link Logic#stopJournal()}, where the last compaction and the
+     * removal of the journal are counted in the metrics once the thread of this service has done them.
+     */
+    private void stopJournal() {
+        Journal journal = logic.getJournal();
+        long start = System.nanoTime();
+        logic.stopJournal();
+        finished(journal, start, 0);
+    }
+
+    /**
+     * Saves the proof to another file, see {@link Logic#preparePath(String)}, and starts saving changes
+     * automatically. The journal of the file before, if any, is compacted and removed by the thread of this service
+     * while the journal of the new file is started. It has to be called on the thread that changes the proof.
+     * @param path the path of the new file.
+     * @throws FilePathException if the file path given is invalid.
+     */
+    public void saveAs(String path) throws FilePathException {
+        Journal journal = logic.getJournal();
+        long start = System.nanoTime();
+        logic.preparePath(path);
+        if (journal != null && journal != logic.getJournal()) {
+            finished(journal, start, 0);
+        }
+        saveNow();
+        setEnabled(true);
+    }
+
+    /**
+     * Opens a proof file, see {@link Logic#open(String)}, once the thread of this service has written the proof open
+     * now, including the compaction and removal of its journal, so that the file is never read while it is written
+     * and the thread that changes the proof does not wait for the disk meanwhile. Changes are not saved until the file
+     * is opened, and are saved automatically from then on. It has to be called on the thread that changes the proof,
+     * where the callback is run too.
+     * @param path the file path.
+     * @param done the callback run once the file is opened, with null, or with the exception if it cannot be opened.
+     */
+    public void open(String path, Consumer<Exception> done) {
+        if (closed) {
+            return;
+        }
+        setEnabled(false);
+        if (logic.isJournaled()) {
+            stopJournal();
+        }
+        writer.execute(() -> owner.execute(() -> {
+            try {
+                logic.open(path);
+            } catch (FilePathException | FileReadException e) {
+                done.accept(e);
+                return;
+            }
+            setEnabled(true);
+            done.accept(null);
+        }));
+    }
+
+    /**
+     * Saves the changes not saved yet and stops the service after they are written, stopping the journaled save
+     * mode if it is on. It has to be called on the thread that changes the proof, which waits for the writes since
+     * the thread of this service does not keep the application running.
+     */
+    public void close() {
+        setEnabled(false);
+        if (logic.isJournaled() && logic.getJournal().getExecutor() == writer) {
+            stopJournal();
+        }
+        closed = true;
+        logic.removeHistoryListener(listener);
+        writer.shutdown();
+        try {
+            writer.awaitTermination(1, TimeUnit.MINUTES);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Records a change of the history, and schedules a save unless one is scheduled already.
+     */
+    private void changed() {
+        if (!enabled) {
+            return;
+        }
+        unsaved++;
+        changes.incrementAndGet();
+        queueDepth.incrementAndGet();
+        if (scheduled.compareAndSet(false, true)) {
+            writer.schedule(() -> owner.execute(this::flush), delay, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Saves the changes made since the last save, if there are any.
+     */
+    private void flush() {
+        scheduled.set(false);
+        if (enabled && !closed && unsaved > 0) {
+            capture();
+        }
+    }
+
+    /**
+     * Takes a snapshot of the proof and hands it to the writer, or in the journaled save mode, has the journal
+     * forced to disk, or compacted if it cannot record the changes, by the writer.
+     */
+    private void capture() {
+        int count = unsaved;
+        unsaved = 0;
+        long start = System.nanoTime();
+        if (logic.isJournaled()) {
+            Journal journal = logic.getJournal();
+            journal.save(logic);
+            captures.incrementAndGet();
+            totalCaptureTime.addAndGet(System.nanoTime() - start);
+            finished(journal, start, count);
+            return;
+        }
+        Pending pending = new Pending(ProofSnapshot.of(logic), count, start);
+        captures.incrementAndGet();
+        totalCaptureTime.addAndGet(System.nanoTime() - start);
+        latest.accumulateAndGet(pending, (older, newer) -> newer.after(older));
+        writer.execute(this::write);
+    }
+
+    /**
+     * Writes the latest snapshot waiting, if it has not been written by an earlier call.
+     */
+    private void write() {
+        Pending pending = latest.getAndSet(null);
+        if (pending == null) {
+            return;
+        }
+        try {
+            long bytes = Storage.write(pending.snapshot().getFilePath(), pending.snapshot());
+            record(bytes, System.nanoTime() - pending.time());
+        } catch (IOException e) {
+            failures.incrementAndGet();
+        }
+        queueDepth.addAndGet(-pending.changes());
+    }
+
+    /**
+     * Records in the metrics the file operations of a journal given so far once its executor has done them, as a
+     * failure if any of them failed.
+     * @param journal the journal.
+     * @param start the time the operations were given, in nanoseconds.
+     * @param count the number of changes they save.
+     */
+    private void finished(Journal journal, long start, int count) {
+        journal.getExecutor().execute(() -> {
+            journalBytes.addAndGet(journal.takeAppendedBytes());
+            long bytes = journal.takeCompactedBytes();
+            long failed = journal.takeFailures();
+            if (failed > 0) {
+                failures.addAndGet(failed);
+            } else {
+                record(bytes, System.nanoTime() - start);
+            }
+            queueDepth.addAndGet(-count);
+        });
+    }
+
+    /**
+     * Records a save that has finished.
+     * @param bytes the number of bytes of proof files written.
+     * @param latency the time from taking the snapshot until it is on disk, in nanoseconds.
+     */
+    private void record(long bytes, long latency) {
+        saves.incrementAndGet();
+        bytesWritten.addAndGet(bytes);
+        lastLatency.set(latency);
+        maxLatency.accumulateAndGet(latency, Math::max);
+        totalLatency.addAndGet(latency);
+    }
+
+    /**
+     * Gets the measurements of the saves so far.
+     * @return the metrics.
+     */
+    public Metrics getMetrics() {
+        long saved = saves.get();
+        long captured = captures.get();
+        return new Metrics(changes.get(), saved, failures.get(), bytesWritten.get(), journalBytes.get(),
+                queueDepth.get(),
+                lastLatency.get(), maxLatency.get(), saved == 0 ? 0 : totalLatency.get() / saved,
+                captured == 0 ? 0 : totalCaptureTime.get() / captured);
+    }
+
+    /**
+     * Measurements of the saves, where times are in nanoseconds. The latency of a save is the time from taking the
+     * snapshot until the file is on disk, and the capture time is the time the thread that changes the proof spends
+     * on taking the snapshot. The bytes written are those of the proof files, including those written by compacting
+     * the journal, and the bytes journaled are those of the records appended to the journal.
+     */
+    public record Metrics(long changes, long saves, long failures, long bytesWritten, long journalBytes,
+                          int queueDepth, long lastLatency, long maxLatency, long averageLatency,
+                          long averageCaptureTime) {
+        @Override
+        public String toString() {
+            return String.format("%d changes in %d saves (%d failed), %d KB written, %d KB journaled, "
+                            + "%d changes waiting, latency %.2f ms (max %.2f ms, average %.2f ms), "
+                            + "capture %.3f ms on average",
+                    changes, saves, failures, bytesWritten >> 10, journalBytes >> 10, queueDepth, lastLatency / 1e6,
+                    maxLatency / 1e6, averageLatency / 1e6, averageCaptureTime / 1e6);
+        }
+    }
+}
@@ -0,0 +1,564 @@
+package storage;
+
+import logic.Language;
+import logic.Logic;
+import logic.exceptions.FilePathException;
+import logic.exceptions.FileReadException;
+import logic.exceptions.HistoryNodeException;
+import logic.exceptions.TheoremParseException;
+import model.HistoryTree;
+import model.InferenceRule;
+import model.Patch;
+import model.PersistentLiteral;
+import model.PersistentProposition;
+import model.SymbolTable;
+
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Binary proof file format. Propositions are written as streams of tokens, where every token is a variable-length
+ * integer: 0 opens a cut, 1 closes it, and any other value refers to a variable in the symbol table of the file.
+ * Every step of the history tree is written as the patch it makes to its parent only, so the file grows with the
+ * changes made instead of the size of the diagrams. The file format is:
+ * "
+ * [magic bytes "PRCB"] [version]
+ * [number of variables] [variable names]* [number of other variables used in propositions] [their names]*
+ * [language]
+ * [number of premises] [premises in the language chosen]*
+ * [theorem to prove in the language chosen]
+ * [number of rules] [names of the rules used]*
+ * [number of nodes, 0 if there is no history] [initial proposition]
+ * [nodes in preorder as parent position, rule, path length, path, index, number of literals removed, inserted
+ * literals]*
+ * [position of the current node]
+ * "
+ * where strings are their length followed by UTF-8 bytes, and propositions are their number of literals followed
+ * by the tokens of the literals.
+ */
+public class BinaryStorage {
+    public static final String EXTENSION = ".peirce";
+    private static final byte[] MAGIC = {'P', 'R', 'C', 'B'};
+    private static final int VERSION = 1;
+    private static final int OPEN = 0;
+    private static final int CLOSE = 1;
+    static final int FIRST_VARIABLE = 2;
+
+    /**
+     * Checks whether a file is in the binary format.
+     * @param filePath the path to the file.
+     * @return true if the file starts with the magic bytes of the format.
+     */
+    public static boolean isBinary(String filePath) {
+        return startsWith(filePath, MAGIC);
+    }
+
+    /**
+     * Checks whether a file starts with the given magic bytes.
+     * @param filePath the path to the file.
+     * @param magic the magic bytes of a file format.
+     * @return true if the file can be read and starts with the bytes.
+     */
+    static boolean startsWith(String filePath, byte[] magic) {
+        try (FileChannel channel = FileChannel.open(Paths.get(filePath), StandardOpenOption.READ)) {
+            ByteBuffer head = ByteBuffer.allocate(magic.length);
+            int read = 0;
+            while (head.hasRemaining() && read >= 0) {
+                read = channel.read(head);
+            }
+            return !head.hasRemaining() && Arrays.equals(head.array(), magic);
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Writes a snapshot of a proof to the file in the binary format, decoding the steps not loaded yet.
+     * @param filePath the file path to write.
+     * @param snapshot the snapshot of the proof.
+     * @throws IOException if the file cannot be written.
+     */
+    static void writeBinary(String filePath, ProofSnapshot snapshot) throws IOException {
+        ProofSnapshot proof = snapshot.loaded();
+        Encoder body = new Encoder();
+        Map<Integer, Integer> tokens = new HashMap<>();
+        List<String> names = new ArrayList<>(proof.getVariables());
+        SymbolTable symbols = proof.getSymbolTable();
+        for (int i = 0; i < names.size(); i++) {
+            tokens.put(symbols.intern(names.get(i)), FIRST_VARIABLE + i);
+        }
+        body.string(proof.getLanguage().toString());
+        List<String> premises = proof.getPremises();
+        body.varint(premises.size());
+        for (String p : premises) {
+            body.string(p);
+        }
+        body.string(proof.getTheorem());
+        InferenceRule[] rules = InferenceRule.values();
+        body.varint(rules.length);
+        for (InferenceRule r : rules) {
+            body.string(r.toString());
+        }
+        body.varint(proof.size());
+        if (proof.size() > 0) {
+            proof.walk((n, state) -> {
+                if (n == 0) {
+                    body.proposition(state.getLiterals(), tokens, names);
+                    return;
+                }
+                body.varint(proof.getParent(n));
+                body.varint(proof.getStep(n).getRule().ordinal());
+                writePatch(body, proof.getStep(n).getPatch(), tokens, names);
+            });
+            body.varint(proof.getCurrent());
+        }
+        Encoder header = new Encoder();
+        header.bytes(MAGIC);
+        header.varint(VERSION);
+        int declared = proof.getVariables().size();
+        header.varint(declared);
+        for (int i = 0; i < names.size(); i++) {
+            if (i == declared) {
+                header.varint(names.size() - declared);
+            }
+            header.string(names.get(i));
+        }
+        if (names.size() == declared) {
+            header.varint(0);
+        }
+        try (FileChannel channel = FileChannel.open(Paths.get(filePath), StandardOpenOption.WRITE,
+                StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer[] buffers = {header.toBuffer(), body.toBuffer()};
+            while (buffers[1].hasRemaining()) {
+                channel.write(buffers);
+            }
+        }
+    }
+
+    /**
+     * Loads a file in the binary format from disk and reconstructs the logic component.
+     * @param filePath the path to the file.
+     * @param logic the logic component.
+     * @throws FilePathException if the file path is invalid.
+     * @throws FileReadException if the file format is invalid.
+     */
+    public static void loadFile(String filePath, Logic logic) throws FilePathException, FileReadException {
+        logic.clear();
+        ByteBuffer buffer = map(filePath);
+        try {
+            read(new Decoder(buffer), logic);
+        } catch (BufferUnderflowException e) {
+            throw new FileReadException();
+        }
+        logic.updateProposition();
+        if (logic.succeeds() && logic.canModifyDeclaration()) {
+            logic.switchMode();
+        }
+    }
+
+    /**
+     * Maps a file into memory.
+     * @param filePath the path to the file.
+     * @return the content of the file.
+     * @throws FilePathException if the file cannot be read.
+     */
+    static ByteBuffer map(String filePath) throws FilePathException {
+        try (FileChannel channel = FileChannel.open(Paths.get(filePath), StandardOpenOption.READ)) {
+            return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        } catch (IOException e) {
+            throw new FilePathException(e.getMessage());
+        }
+    }
+
+    /**
+     * Reads the declarations of a file in the binary format and counts the rules of the steps to the current node,
+     * skipping the content of the steps.
+     * @param filePath the path to the file.
+     * @return the summary of the proof.
+     * @throws FilePathException if the file cannot be read.
+     * @throws FileReadException if the file format is invalid.
+     */
+    static ProofSummary summarize(String filePath) throws FilePathException, FileReadException {
+        Decoder in = new Decoder(map(filePath));
+        try {
+            byte[] magic = new byte[MAGIC.length];
+            in.buffer.get(magic);
+            if (!Arrays.equals(magic, MAGIC) || in.varint() != VERSION) {
+                throw new FileReadException();
+            }
+            List<String> variables = new ArrayList<>();
+            int declared = in.varint();
+            for (int i = 0; i < declared; i++) {
+                variables.add(in.string());
+            }
+            int others = in.varint();
+            for (int i = 0; i < others; i++) {
+                in.string();
+            }
+            Language language = ProofSummary.parseLanguage(in.string());
+            List<String> premises = new ArrayList<>();
+            int premiseCount = in.varint();
+            for (int i = 0; i < premiseCount; i++) {
+                premises.add(in.string());
+            }
+            String theorem = in.string();
+            InferenceRule[] table = readRules(in);
+            int n = in.varint();
+            int[] parents = new int[n];
+            InferenceRule[] rules = new InferenceRule[n];
+            int current = 0;
+            if (n > 0) {
+                in.skipProposition();
+                for (int i = 1; i < n; i++) {
+                    parents[i] = in.varint();
+                    int rule = in.varint();
+                    if (parents[i] >= i || rule >= table.length) {
+                        throw new FileReadException();
+                    }
+                    rules[i] = table[rule];
+                    in.skipLocation();
+                    in.skipProposition();
+                }
+                current = in.varint();
+                if (current >= n) {
+                    throw new FileReadException();
+                }
+            }
+            return new ProofSummary(variables, language, premises, theorem,
+                    ProofSummary.countPath(parents, rules, current));
+        } catch (BufferUnderflowException e) {
+            throw new FileReadException();
+        }
+    }
+
+    /**
+     * Reads the names of the rules used in a file.
+     * @param in the content of the file, at the number of rules.
+     * @return the rules by their numbers in the file.
+     * @throws FileReadException if a rule is unknown.
+     */
+    static InferenceRule[] readRules(Decoder in) throws FileReadException {
+        int ruleCount = in.varint();
+        InferenceRule[] rules = new InferenceRule[ruleCount];
+        for (int i = 0; i < ruleCount; i++) {
+            rules[i] = Storage.parseRule(in.string());
+        }
+        return rules;
+    }
+
+    /**
+     * Reads the proof from the content of a file.
+     * @param in the content of the file.
+     * @param logic the logic component.
+     * @throws FileReadException if the file format is invalid.
+     */
+    private static void read(Decoder in, Logic logic) throws FileReadException {
+        byte[] magic = new byte[MAGIC.length];
+        in.buffer.get(magic);
+        if (!Arrays.equals(magic, MAGIC) || in.varint() != VERSION) {
+            throw new FileReadException();
+        }
+        List<String> names = new ArrayList<>();
+        int declared = in.varint();
+        for (int i = 0; i < declared; i++) {
+            names.add(in.string());
+        }
+        logic.setVariables(new ArrayList<>(names));
+        int others = in.varint();
+        for (int i = 0; i < others; i++) {
+            names.add(in.string());
+        }
+        SymbolTable symbols = logic.getSymbolTable();
+        PersistentLiteral[] grounds = new PersistentLiteral[names.size()];
+        for (int i = 0; i < grounds.length; i++) {
+            grounds[i] = PersistentLiteral.ground(symbols, symbols.intern(names.get(i)));
+        }
+        logic.setLanguage(in.string());
+        try {
+            int premiseCount = in.varint();
+            for (int i = 0; i < premiseCount; i++) {
+                logic.addPremise(in.string());
+            }
+            logic.setTheorem(in.string());
+        } catch (TheoremParseException e) {
+            throw new FileReadException();
+        }
+        InferenceRule[] rules = readRules(in);
+        int n = in.varint();
+        if (n == 0) {
+            return;
+        }
+        int[] ids = new int[n];
+        logic.startHistory(PersistentProposition.of(in.proposition(grounds)));
+        HistoryTree tree = logic.getHistoryTree();
+        ids[0] = tree.getRoot().getId();
+        try {
+            for (int i = 1; i < n; i++) {
+                int parent = in.varint();
+                int rule = in.varint();
+                if (parent >= i || rule >= rules.length) {
+                    throw new FileReadException();
+                }
+                Patch patch = readPatch(in, tree.getNode(ids[parent]).getState(), grounds);
+                ids[i] = logic.addHistoryStep(ids[parent], patch, rules[rule]);
+            }
+            int current = in.varint();
+            if (current >= n) {
+                throw new FileReadException();
+            }
+            logic.jumpTo(ids[current]);
+        } catch (HistoryNodeException e) {
+            throw new FileReadException();
+        }
+    }
+
+    /**
+     * Writes the change made by a step, leaving out the literals removed, which are read from the proposition
+     * before the step.
+     * @param out the content of the file.
+     * @param patch the change made by the step.
+     * @param tokens the tokens of the variables by their ids in the symbol table of the proof.
+     * @param names the names of the variables in the symbol table of the file, which new variables are added to.
+     */
+    static void writePatch(Encoder out, Patch patch, Map<Integer, Integer> tokens, List<String> names) {
+        writeLocation(out, patch);
+        out.proposition(patch.getInserted(), tokens, names);
+    }
+
+    /**
+     * Writes where a step makes its change, i.e. the path, the index and the number of literals removed.
+     * @param out the content of the file.
+     * @param patch the change made by the step.
+     */
+    static void writeLocation(Encoder out, Patch patch) {
+        int[] path = patch.getPath();
+        out.varint(path.length);
+        for (int i : path) {
+            out.varint(i);
+        }
+        out.varint(patch.getIndex());
+        out.varint(patch.getRemoved().size());
+    }
+
+    /**
+     * Reads the change made by a step, checking that it applies to the proposition before the step.
+     * @param in the content of the file, at the start of the patch.
+     * @param parent the proposition before the step.
+     * @param grounds the literals of the variables in the symbol table of the file.
+     * @return the patch.
+     * @throws FileReadException if the patch is invalid or does not apply.
+     */
+    static Patch readPatch(Decoder in, PersistentProposition parent, PersistentLiteral[] grounds)
+            throws FileReadException {
+        return readPatch(in, parent, d -> d.proposition(grounds));
+    }
+
+    /**
+     * Reads the change made by a step, checking that it applies to the proposition before the step.
+     * @param in the content of the file, at the start of the patch.
+     * @param parent the proposition before the step.
+     * @param inserted the reader of the inserted literals, which follow where the change is made.
+     * @return the patch.
+     * @throws FileReadException if the patch is invalid or does not apply.
+     */
+    static Patch readPatch(Decoder in, PersistentProposition parent, LiteralReader inserted)
+            throws FileReadException {
+        int[] path = new int[in.varint()];
+        PersistentProposition area = parent;
+        for (int i = 0; i < path.length; i++) {
+            path[i] = in.varint();
+            if (path[i] >= area.size() || !area.get(path[i]).isCut()) {
+                throw new FileReadException();
+            }
+            area = area.get(path[i]).getContent();
+        }
+        int index = in.varint();
+        int removed = in.varint();
+        if (index > area.size() || removed > area.size() - index) {
+            throw new FileReadException();
+        }
+        return new Patch(path, index, area.getLiterals().subList(index, index + removed), inserted.read(in));
+    }
+
+    /**
+     * Reader of the literals inserted by a step.
+     */
+    interface LiteralReader {
+        List<PersistentLiteral> read(Decoder in) throws FileReadException;
+    }
+
+    /**
+     * Growable buffer of the encoded content of a file.
+     */
+    static class Encoder {
+        private byte[] bytes = new byte[1024];
+        private int size = 0;
+
+        private void ensure(int extra) {
+            if (size + extra > bytes.length) {
+                bytes = Arrays.copyOf(bytes, Math.max(bytes.length * 2, size + extra));
+            }
+        }
+
+        void bytes(byte[] data) {
+            ensure(data.length);
+            System.arraycopy(data, 0, bytes, size, data.length);
+            size += data.length;
+        }
+
+        void varint(int value) {
+            ensure(5);
+            while ((value & ~0x7f) != 0) {
+                bytes[size++] = (byte) ((value & 0x7f) | 0x80);
+                value >>>= 7;
+            }
+            bytes[size++] = (byte) value;
+        }
+
+        void int64(long value) {
+            ensure(Long.BYTES);
+            for (int shift = 56; shift >= 0; shift -= 8) {
+                bytes[size++] = (byte) (value >>> shift);
+            }
+        }
+
+        void string(String s) {
+            byte[] data = s.getBytes(StandardCharsets.UTF_8);
+            varint(data.length);
+            bytes(data);
+        }
+
+        void proposition(List<PersistentLiteral> literals, Map<Integer, Integer> tokens, List<String> names) {
+            varint(literals.size());
+            for (PersistentLiteral l : literals) {
+                literal(l, tokens, names);
+            }
+        }
+
+        private void literal(PersistentLiteral literal, Map<Integer, Integer> tokens, List<String> names) {
+            if (literal.isCut()) {
+                varint(OPEN);
+                for (PersistentLiteral l : literal.getContent().getLiterals()) {
+                    literal(l, tokens, names);
+                }
+                varint(CLOSE);
+            } else {
+                Integer token = tokens.get(literal.getVariableId());
+                if (token == null) {
+                    token = FIRST_VARIABLE + names.size();
+                    tokens.put(literal.getVariableId(), token);
+                    names.add(literal.getVariableName());
+                }
+                varint(token);
+            }
+        }
+
+        int size() {
+            return size;
+        }
+
+        byte[] array() {
+            return bytes;
+        }
+
+        ByteBuffer toBuffer() {
+            return ByteBuffer.wrap(bytes, 0, size);
+        }
+    }
+
+    /**
+     * Reader of the encoded content of a file.
+     */
+    static class Decoder {
+        final ByteBuffer buffer;
+
+        Decoder(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        int varint() throws FileReadException {
+            int value = 0;
+            for (int shift = 0; shift < 32; shift += 7) {
+                byte b = buffer.get();
+                value |= (b & 0x7f) << shift;
+                if (b >= 0) {
+                    if (value < 0) {
+                        throw new FileReadException();
+                    }
+                    return value;
+                }
+            }
+            throw new FileReadException();
+        }
+
+        long int64() {
+            return buffer.getLong();
+        }
+
+        String string() throws FileReadException {
+            int length = varint();
+            if (length > buffer.remaining()) {
+                throw new FileReadException();
+            }
+            byte[] data = new byte[length];
+            buffer.get(data);
+            return new String(data, StandardCharsets.UTF_8);
+        }
+
+        List<PersistentLiteral> proposition(PersistentLiteral[] grounds) throws FileReadException {
+            int count = varint();
+            List<PersistentLiteral> literals = new ArrayList<>(Math.min(count, buffer.remaining()));
+            for (int i = 0; i < count; i++) {
+                literals.add(literal(varint(), grounds));
+            }
+            return literals;
+        }
+
+        void skipProposition() throws FileReadException {
+            int count = varint();
+            for (int i = 0; i < count; i++) {
+                int depth = varint() == OPEN ? 1 : 0;
+                while (depth > 0) {
+                    int token = varint();
+                    if (token == OPEN) {
+                        depth++;
+                    } else if (token == CLOSE) {
+                        depth--;
+                    }
+                }
+            }
+        }
+
+        void skipLocation() throws FileReadException {
+            int length = varint();
+            for (int i = 0; i < length + 2; i++) {
+                varint();
+            }
+        }
+
+        private PersistentLiteral literal(int token, PersistentLiteral[] grounds) throws FileReadException {
+            if (token == OPEN) {
+                List<PersistentLiteral> content = new ArrayList<>();
+                for (int next = varint(); next != CLOSE; next = varint()) {
+                    content.add(literal(next, grounds));
+                }
+                return PersistentLiteral.cut(PersistentProposition.of(content));
+            }
+            if (token == CLOSE || token - FIRST_VARIABLE >= grounds.length) {
+                throw new FileReadException();
+            }
+            return grounds[token - FIRST_VARIABLE];
+        }
+    }
+}
@@ -0,0 +1,532 @@
+package storage;
+
+import logic.Logic;
+import logic.exceptions.FileReadException;
+import logic.exceptions.HistoryNodeException;
+import model.HistoryTree;
+import model.InferenceRule;
+import model.Patch;
+import model.PersistentLiteral;
+import model.SymbolTable;
+
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only journal of the changes to the history of a proof since it was last saved in full. The proof file
+ * is a snapshot, and the journal next to it holds one record per step made, node visited or branch removed, so
+ * that saving after a step costs the size of the step instead of the whole proof. Records are forced to disk in
+ * batches, and the journal is compacted into a new snapshot after a given number of records. The file format is:
+ * "
+ * [magic bytes "PRCJ"] [version] [CRC32 of the snapshot]
+ * [number of variables] [variable names]*
+ * [records as the length of the content, its CRC32 and the content]*
+ * "
+ * where the content of a record is one of
+ * "
+ * [STEP] [number of the parent node] [rule] [patch in the binary file format]
+ * [MOVE] [number of the node visited]
+ * [PRUNE] [number of the node removed with all nodes after it]
+ * "
+ * Nodes are numbered by their positions in the snapshot, followed by the nodes added in the order of the records.
+ * The journal only applies to the snapshot with the CRC32 recorded, so a journal left behind by a compaction that
+ * did not finish is ignored. When reading, the records are replayed until the end of the file or the first record
+ * that is cut short or corrupted, which is where a crash stopped writing. Steps of a snapshot not loaded from file
+ * yet are only loaded once a record refers to them.
+ */
+public class Journal {
+    public static final String SUFFIX = ".journal";
+    public static final int DEFAULT_SYNC_BATCH = 16;
+    public static final int DEFAULT_COMPACT_INTERVAL = 4096;
+    private static final byte[] MAGIC = {'P', 'R', 'C', 'J'};
+    private static final int VERSION = 1;
+    private static final int STEP = 0;
+    private static final int MOVE = 1;
+    private static final int PRUNE = 2;
+    private static final int UNLOADED = -1;
+
+    private final String filePath;
+    private final int syncBatch;
+    private final int compactInterval;
+    private final Executor io;
+    private boolean started;
+    private HistoryTree tree;
+    private HistoryTree.Node root;
+    private HistoryTree.Node current;
+    private final Map<HistoryTree.Node, Integer> numbers;
+    private int next;
+    private final Map<Integer, Integer> tokens;
+    private final List<String> names;
+    private int records;
+    private FileChannel channel;
+    private int unsynced;
+    private final AtomicLong appendedBytes;
+    private final AtomicLong compactedBytes;
+    private final AtomicLong failures;
+    private volatile boolean stale;
+
+    /**
+     * Creates a journal for a proof file, which is not written until it is compacted. The journal is kept up to
+     * date on the thread that changes the proof, while the file operations are run in order by an executor, so
+     * that forcing records to disk and compacting do not hold up that thread.
+     * @param filePath the path to the proof file, where the journal is the file with {@code SUFFIX} appended.
+     * @param syncBatch the number of records written before forcing them to disk.
+     * @param compactInterval the number of records written before compacting the journal into the proof file.
+     * @param io the executor that runs the file operations one at a time in the order given, e.g.
+     *           {@code Runnable::run} to run them on the calling thread.
+     */
+    public Journal(String filePath, int syncBatch, int compactInterval, Executor io) {
+        this.filePath = filePath;
+        this.syncBatch = Math.max(1, syncBatch);
+        this.compactInterval = Math.max(1, compactInterval);
+        this.io = io;
+        this.started = false;
+        this.tree = null;
+        this.root = null;
+        this.current = null;
+        this.numbers = new HashMap<>();
+        this.next = 0;
+        this.tokens = new HashMap<>();
+        this.names = new ArrayList<>();
+        this.records = 0;
+        this.channel = null;
+        this.unsynced = 0;
+        this.appendedBytes = new AtomicLong();
+        this.compactedBytes = new AtomicLong();
+        this.failures = new AtomicLong();
+        this.stale = false;
+    }
+
+    /**
+     * Gets the number of records written before forcing them to disk.
+     * @return the size of a batch.
+     */
+    public int getSyncBatch() {
+        return syncBatch;
+    }
+
+    /**
+     * Gets the number of records written before compacting the journal.
+     * @return the number of records.
+     */
+    public int getCompactInterval() {
+        return compactInterval;
+    }
+
+    /**
+     * Gets the executor that runs the file operations of the journal.
+     * @return the executor.
+     */
+    public Executor getExecutor() {
+        return io;
+    }
+
+    /**
+     * Gets the number of bytes of records written to the journal since the last call, not counting the proof files
+     * written by compacting.
+     * @return the number of bytes.
+     */
+    public long takeAppendedBytes() {
+        return appendedBytes.getAndSet(0);
+    }
+
+    /**
+     * Gets the number of bytes of the proof files written by compacting since the last call.
+     * @return the number of bytes.
+     */
+    public long takeCompactedBytes() {
+        return compactedBytes.getAndSet(0);
+    }
+
+    /**
+     * Gets the number of file operations of the journal that failed since the last call. Records that fail to be
+     * written are lost, and the next change is saved by compacting instead.
+     * @return the number of failures.
+     */
+    public long takeFailures() {
+        return failures.getAndSet(0);
+    }
+
+    /**
+     * Counts a file operation that failed, closing the journal file after a failed compaction since its records
+     * would no longer match the proof file.
+     * @param compacting whether the operation is a compaction.
+     */
+    private void fail(boolean compacting) {
+        failures.incrementAndGet();
+        stale = true;
+        if (compacting && channel != null) {
+            try {
+                channel.close();
+            } catch (IOException e) {
+                failures.incrementAndGet();
+            }
+            channel = null;
+        }
+    }
+
+    /**
+     * Saves the whole proof as a new snapshot and starts an empty journal for it. Only the snapshot is taken on
+     * the calling thread, and the proof file and the journal are written by the executor.
+     * @param logic the logic instance that holds the proof.
+     */
+    public void compact(Logic logic) {
+        ProofSnapshot snapshot = ProofSnapshot.of(logic);
+        started = true;
+        tree = logic.getHistoryTree();
+        root = tree == null ? null : tree.getRoot();
+        current = tree == null ? null : tree.getCurrent();
+        numbers.clear();
+        next = snapshot.getEarlierSize();
+        if (tree != null) {
+            for (HistoryTree.Node n : tree.preorder()) {
+                numbers.put(n, next++);
+            }
+        }
+        tokens.clear();
+        names.clear();
+        SymbolTable symbols = logic.getSymbolTable();
+        for (String v : logic.getVariables()) {
+            tokens.put(symbols.intern(v), BinaryStorage.FIRST_VARIABLE + names.size());
+            names.add(v);
+        }
+        records = 0;
+        stale = false;
+        List<String> header = List.copyOf(names);
+        io.execute(() -> {
+            try {
+                compactedBytes.addAndGet(Storage.write(filePath, snapshot));
+                if (channel != null) {
+                    channel.close();
+                }
+                channel = FileChannel.open(Paths.get(filePath + SUFFIX), StandardOpenOption.WRITE,
+                        StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING);
+                BinaryStorage.Encoder out = new BinaryStorage.Encoder();
+                out.bytes(MAGIC);
+                out.varint(VERSION);
+                out.bytes(ByteBuffer.allocate(4).putInt(checksum(Files.readAllBytes(Paths.get(filePath)))).array());
+                out.varint(header.size());
+                for (String name : header) {
+                    out.string(name);
+                }
+                write(out.toBuffer());
+                channel.force(false);
+                unsynced = 0;
+            } catch (IOException e) {
+                fail(true);
+            }
+        });
+    }
+
+    /**
+     * Records the change to the history since the last record, which is a step to a new node or a visit to
+     * another node. The proof is compacted instead if the change cannot be recorded, e.g. the history is cleared,
+     * older steps are loaded before the initial proposition, or writing the journal has failed.
+     * @param logic the logic instance that holds the proof.
+     */
+    public void record(Logic logic) {
+        HistoryTree now = logic.getHistoryTree();
+        if (!started || stale || now != tree || now != null && now.getRoot() != root) {
+            compact(logic);
+            return;
+        }
+        if (tree == null || tree.getCurrent() == current) {
+            return;
+        }
+        HistoryTree.Node node = tree.getCurrent();
+        BinaryStorage.Encoder content = new BinaryStorage.Encoder();
+        Integer number = numbers.get(node);
+        if (number != null) {
+            content.varint(MOVE);
+            content.varint(number);
+        } else {
+            Integer parent = numbers.get(node.getParent());
+            Patch patch = node.getStep().getPatch();
+            if (parent == null || !isKnown(patch.getInserted())) {
+                compact(logic);
+                return;
+            }
+            content.varint(STEP);
+            content.varint(parent);
+            content.varint(node.getStep().getRule().ordinal());
+            BinaryStorage.writePatch(content, patch, tokens, names);
+            numbers.put(node, next++);
+        }
+        current = node;
+        append(content, logic);
+    }
+
+    /**
+     * Records the removal of a node with all nodes after it, followed by the move to the current node if it has
+     * changed.
+     * @param logic the logic instance that holds the proof.
+     * @param node the node removed.
+     */
+    public void recordPrune(Logic logic, HistoryTree.Node node) {
+        Integer number = numbers.get(node);
+        if (!started || stale || logic.getHistoryTree() != tree || tree.getRoot() != root || number == null) {
+            compact(logic);
+            return;
+        }
+        BinaryStorage.Encoder content = new BinaryStorage.Encoder();
+        content.varint(PRUNE);
+        content.varint(number);
+        append(content, logic);
+        record(logic);
+    }
+
+    private boolean isKnown(List<PersistentLiteral> literals) {
+        for (PersistentLiteral l : literals) {
+            if (l.isCut() ? !isKnown(l.getContent().getLiterals()) : !tokens.containsKey(l.getVariableId())) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Appends a record, forcing the records to disk if a batch is complete, and compacting the journal if it has
+     * reached the interval.
+     * @param content the content of the record.
+     * @param logic the logic instance that holds the proof.
+     */
+    private void append(BinaryStorage.Encoder content, Logic logic) {
+        byte[] data = Arrays.copyOf(content.array(), content.size());
+        BinaryStorage.Encoder record = new BinaryStorage.Encoder();
+        record.varint(data.length);
+        record.bytes(ByteBuffer.allocate(4).putInt(checksum(data)).array());
+        record.bytes(data);
+        ByteBuffer buffer = record.toBuffer();
+        io.execute(() -> {
+            try {
+                int length = buffer.remaining();
+                write(buffer);
+                appendedBytes.addAndGet(length);
+                unsynced++;
+                if (unsynced >= syncBatch) {
+                    force();
+                }
+            } catch (IOException e) {
+                fail(false);
+            }
+        });
+        records++;
+        if (records >= compactInterval) {
+            compact(logic);
+        }
+    }
+
+    private void write(ByteBuffer buffer) throws IOException {
+        if (channel == null) {
+            throw new IOException("The journal file is not open.");
+        }
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+    private void force() throws IOException {
+        if (channel != null && unsynced > 0) {
+            channel.force(false);
+            unsynced = 0;
+        }
+    }
+
+    /**
+     * Forces all records written to disk.
+     */
+    public void sync() {
+        io.execute(() -> {
+            try {
+                force();
+            } catch (IOException e) {
+                fail(false);
+            }
+        });
+    }
+
+    /**
+     * Saves the proof, which only forces the records to disk if every change is recorded, and compacts otherwise,
+     * e.g. when the declarations may have changed before any step is made.
+     * @param logic the logic instance that holds the proof.
+     */
+    public void save(Logic logic) {
+        if (!started || stale || logic.getHistoryTree() == null || logic.getHistoryTree() != tree) {
+            compact(logic);
+        } else {
+            record(logic);
+            sync();
+        }
+    }
+
+    /**
+     * Compacts the journal into the proof file and removes it. Only the snapshot is taken on the calling thread,
+     * which does not wait for the executor to write the proof file and remove the journal, so a task run by the
+     * executor afterwards runs once they are done. The journal is kept for recovery if the proof file could not be
+     * written.
+     * @param logic the logic instance that holds the proof.
+     */
+    public void close(Logic logic) {
+        compact(logic);
+        io.execute(() -> {
+            try {
+                if (channel != null) {
+                    channel.close();
+                    channel = null;
+                }
+                if (!stale) {
+                    Files.deleteIfExists(Paths.get(filePath + SUFFIX));
+                }
+            } catch (IOException e) {
+                failures.incrementAndGet();
+            }
+        });
+    }
+
+    /**
+     * Replays the journal of a proof file that has just been loaded, and cuts off any record left incomplete or
+     * corrupted by a crash. A journal that does not belong to the loaded snapshot is ignored.
+     * @param filePath the path to the proof file.
+     * @param logic the logic component with the proof file loaded.
+     * @return the number of records replayed.
+     */
+    public static int recover(String filePath, Logic logic) {
+        Path path = Paths.get(filePath + SUFFIX);
+        if (!Files.exists(path)) {
+            return 0;
+        }
+        int replayed = 0;
+        try (FileChannel file = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(path));
+            BinaryStorage.Decoder in = new BinaryStorage.Decoder(buffer);
+            PersistentLiteral[] grounds;
+            try {
+                byte[] magic = new byte[MAGIC.length];
+                buffer.get(magic);
+                if (!Arrays.equals(magic, MAGIC) || in.varint() != VERSION
+                        || buffer.getInt() != checksum(Files.readAllBytes(Paths.get(filePath)))) {
+                    return 0;
+                }
+                SymbolTable symbols = logic.getSymbolTable();
+                grounds = new PersistentLiteral[in.varint()];
+                for (int i = 0; i < grounds.length; i++) {
+                    grounds[i] = PersistentLiteral.ground(symbols, symbols.intern(in.string()));
+                }
+            } catch (BufferUnderflowException | FileReadException e) {
+                return 0;
+            }
+            HistoryTree tree = logic.getHistoryTree();
+            List<Integer> ids = new ArrayList<>(Collections.nCopies(logic.getUnloadedHistorySize(), UNLOADED));
+            if (tree != null) {
+                for (HistoryTree.Node n : tree.preorder()) {
+                    ids.add(n.getId());
+                }
+            }
+            int consistent = buffer.position();
+            while (buffer.hasRemaining()) {
+                try {
+                    byte[] content = new byte[in.varint()];
+                    int expected = buffer.getInt();
+                    buffer.get(content);
+                    if (checksum(content) != expected) {
+                        break;
+                    }
+                    replay(new BinaryStorage.Decoder(ByteBuffer.wrap(content)), logic, ids, grounds);
+                } catch (BufferUnderflowException | FileReadException | HistoryNodeException e) {
+                    break;
+                }
+                consistent = buffer.position();
+                replayed++;
+            }
+            if (consistent < file.size()) {
+                file.truncate(consistent);
+            }
+        } catch (IOException e) {
+            return replayed;
+        }
+        logic.updateProposition();
+        return replayed;
+    }
+
+    /**
+     * Applies a record to the history.
+     * @param in the content of the record.
+     * @param logic the logic component.
+     * @param ids the ids in the history tree of the nodes by their numbers in the journal, which are
+     *            {@code UNLOADED} for the steps not loaded from file yet.
+     * @param grounds the literals of the variables in the symbol table of the journal.
+     * @throws FileReadException if the record is invalid.
+     * @throws HistoryNodeException if the record refers to a node that does not exist.
+     */
+    private static void replay(BinaryStorage.Decoder in, Logic logic, List<Integer> ids,
+                               PersistentLiteral[] grounds) throws FileReadException, HistoryNodeException {
+        int type = in.varint();
+        int number = in.varint();
+        if (number >= ids.size()) {
+            throw new FileReadException();
+        }
+        if (ids.get(number) == UNLOADED) {
+            pageIn(number, logic, ids);
+        }
+        switch (type) {
+            case STEP -> {
+                InferenceRule[] rules = InferenceRule.values();
+                int rule = in.varint();
+                if (rule >= rules.length) {
+                    throw new FileReadException();
+                }
+                HistoryTree.Node parent = logic.getHistoryTree().getNode(ids.get(number));
+                if (parent == null) {
+                    throw new FileReadException();
+                }
+                Patch patch = BinaryStorage.readPatch(in, parent.getState(), grounds);
+                ids.add(logic.addHistoryStep(ids.get(number), patch, rules[rule]));
+            }
+            case MOVE -> logic.jumpTo(ids.get(number));
+            case PRUNE -> logic.pruneBranch(ids.get(number));
+            default -> throw new FileReadException();
+        }
+    }
+
+    /**
+     * Loads the steps from file back to a node that is not loaded yet, and records the ids of the nodes loaded.
+     * Since the steps not loaded come before the initial proposition of the history tree, they are numbered
+     * before all the nodes of the tree.
+     * @param number the number of the node in the journal.
+     * @param logic the logic component.
+     * @param ids the ids in the history tree of the nodes by their numbers in the journal.
+     * @throws FileReadException if a step in the file is not of the correct format.
+     */
+    private static void pageIn(int number, Logic logic, List<Integer> ids) throws FileReadException {
+        int first = logic.getUnloadedHistorySize();
+        HistoryTree.Node root = logic.getHistoryTree().getRoot();
+        logic.loadEarlierHistory(first - number);
+        for (HistoryTree.Node n = root.getParent(); n != null; n = n.getParent()) {
+            ids.set(--first, n.getId());
+        }
+        if (ids.get(number) == UNLOADED) {
+            throw new FileReadException();
+        }
+    }
+
+    private static int checksum(byte[] data) {
+        CRC32 crc = new CRC32();
+        crc.update(data);
+        return (int) crc.getValue();
+    }
+}
@@ -0,0 +1,91 @@
+package storage;
+
+import logic.exceptions.FileReadException;
+import model.InferenceRule;
+
+/**
+ * Steps of a proof file in the text format that have not been loaded yet. Steps are indexed by their lines in the
+ * file and decoded one by one from the latest one backwards, as the user moves back into older history.
+ */
+public class LazyHistory {
+    private final ProofText text;
+    private final int first;
+    private int remaining;
+
+    /**
+     * Step as written in the file, of which the proposition before the step is needed only, since the proposition
+     * after it is the one before the next step.
+     */
+    public record Step(InferenceRule rule, String from) {
+    }
+
+    /**
+     * Creates the unloaded history of a file.
+     * @param text the content of the file.
+     * @param first the index of the line of the first step.
+     * @param count the number of steps.
+     */
+    LazyHistory(ProofText text, int first, int count) {
+        this.text = text;
+        this.first = first;
+        this.remaining = count;
+    }
+
+    /**
+     * Gets the number of steps not loaded yet.
+     * @return the number of steps.
+     */
+    public int size() {
+        return remaining;
+    }
+
+    /**
+     * Copies the steps not loaded yet, which are then not affected by loading steps from this history.
+     * @return the copy.
+     */
+    LazyHistory copy() {
+        return new LazyHistory(text, first, remaining);
+    }
+
+    /**
+     * Gets a step not loaded yet as written in the file.
+     * @param index the index of the step, starting from 0 for the earliest step.
+     * @return the line of the step.
+     * @throws IndexOutOfBoundsException if there is no such step in the file.
+     */
+    String line(int index) {
+        try {
+            return text.line(first + index);
+        } catch (FileReadException e) {
+            throw new IndexOutOfBoundsException(index);
+        }
+    }
+
+    /**
+     * Decodes a step not loaded yet.
+     * @param index the index of the step, starting from 0 for the earliest step.
+     * @return the step.
+     * @throws FileReadException if there is no such step or it is not of the correct format.
+     */
+    Step get(int index) throws FileReadException {
+        if (index < 0 || index >= remaining) {
+            throw new FileReadException();
+        }
+        String[] info = line(index).split("&", -1);
+        if (info.length != 3) {
+            throw new FileReadException();
+        }
+        return new Step(Storage.parseRule(info[0]), info[1]);
+    }
+
+    /**
+     * Decodes the latest step not loaded yet.
+     * @return the step.
+     * @throws FileReadException if all steps have been loaded or the step is not of the correct format.
+     */
+    public Step previous() throws FileReadException {
+        Step step = get(remaining - 1);
+        remaining--;
+        return step;
+    }
+}
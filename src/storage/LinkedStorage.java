@@ -0,0 +1,366 @@
+package storage;
+
+import logic.Language;
+import logic.Logic;
+import logic.exceptions.FilePathException;
+import logic.exceptions.FileReadException;
+import logic.exceptions.HistoryNodeException;
+import logic.exceptions.TheoremParseException;
+import model.HistoryTree;
+import model.Inference;
+import model.InferenceRule;
+import model.Patch;
+import model.PersistentProposition;
+import model.SymbolTable;
+
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Proof file format that refers to the propositions in a {@link PropositionStore} instead of holding them, so that
+ * proofs sharing premises, sub-diagrams or states store them once. It is the binary file format where the initial
+ * proposition and the literals inserted by every step are keys into the store:
+ * "
+ * [magic bytes "PRCL"] [version] [path to the store relative to the directory of the file]
+ * [number of variables] [variable names]*
+ * [language]
+ * [number of premises] [premises in the language chosen]*
+ * [theorem to prove in the language chosen]
+ * [number of rules] [names of the rules used]*
+ * [number of nodes, 0 if there is no history] [key of the initial proposition]
+ * [nodes in preorder as parent position, rule, path length, path, index, number of literals removed, key of the
+ * inserted literals]*
+ * [position of the current node]
+ * "
+ * Proofs are saved in this format if their file names end with {@code EXTENSION}. A proof read into a logic
+ * component whose symbol table comes from {@link PropositionStore#newSymbolTable()}, see
+ * {@link Storage#newSymbolTable(String)}, shares the propositions in memory with all other proofs read the same way.
+ */
+public class LinkedStorage {
+    public static final String EXTENSION = ".peircelink";
+    public static final String STORE = ".peirce-store";
+    private static final byte[] MAGIC = {'P', 'R', 'C', 'L'};
+    private static final int VERSION = 1;
+
+    /**
+     * Checks whether a file is in the linked format.
+     * @param filePath the path to the file.
+     * @return true if the file starts with the magic bytes of the format.
+     */
+    public static boolean isLinked(String filePath) {
+        return BinaryStorage.startsWith(filePath, MAGIC);
+    }
+
+    /**
+     * Gets the store of a file in the linked format, which is the one the file refers to if the file exists, and
+     * the directory {@code STORE} next to the file otherwise.
+     * @param filePath the path to the file.
+     * @return the store, opened if it is not open yet.
+     * @throws FilePathException if the path to the store is invalid.
+     * @throws FileReadException if the file or the store is not of the correct format.
+     */
+    public static PropositionStore storeOf(String filePath) throws FilePathException, FileReadException {
+        if (isLinked(filePath)) {
+            try {
+                return readStore(new BinaryStorage.Decoder(BinaryStorage.map(filePath)), Paths.get(filePath));
+            } catch (BufferUnderflowException e) {
+                throw new FileReadException();
+            }
+        }
+        return PropositionStore.open(Paths.get(filePath).toAbsolutePath().getParent().resolve(STORE).toString());
+    }
+
+    /**
+     * Writes a snapshot of a proof in the linked format, adding its propositions to the store of the file it is
+     * written for, see {@link #storeOf(String)}, which is forced to disk before the proof is written.
+     * @param filePath the file path to write, which is in the same directory as the target.
+     * @param target the path to the file that the proof is written for, which the written file will replace.
+     * @param snapshot the snapshot of the proof.
+     * @throws IOException if the file or the store cannot be written, or the store cannot be read.
+     */
+    static void writeLinked(String filePath, String target, ProofSnapshot snapshot) throws IOException {
+        ProofSnapshot proof = snapshot.loaded();
+        SymbolTable symbols = proof.getSymbolTable();
+        BinaryStorage.Encoder out = new BinaryStorage.Encoder();
+        try {
+            PropositionStore store = storeOf(target);
+            out.bytes(MAGIC);
+            out.varint(VERSION);
+            Path directory = Paths.get(target).toAbsolutePath().getParent();
+            out.string(directory.relativize(store.getDirectory()).toString().replace('\\', '/'));
+            out.varint(proof.getVariables().size());
+            for (String v : proof.getVariables()) {
+                out.string(v);
+            }
+            out.string(proof.getLanguage().toString());
+            out.varint(proof.getPremises().size());
+            for (String p : proof.getPremises()) {
+                out.string(p);
+            }
+            out.string(proof.getTheorem());
+            InferenceRule[] rules = InferenceRule.values();
+            out.varint(rules.length);
+            for (InferenceRule r : rules) {
+                out.string(r.toString());
+            }
+            out.varint(proof.size());
+            if (proof.size() > 0) {
+                writeKey(out, store.put(proof.getInitial(), symbols));
+                for (int n = 1; n < proof.size(); n++) {
+                    Inference step = proof.getStep(n);
+                    out.varint(proof.getParent(n));
+                    out.varint(step.getRule().ordinal());
+                    BinaryStorage.writeLocation(out, step.getPatch());
+                    writeKey(out, store.put(PersistentProposition.of(step.getPatch().getInserted()), symbols));
+                }
+                out.varint(proof.getCurrent());
+            }
+            store.sync();
+        } catch (FilePathException | FileReadException e) {
+            throw new IOException(e.getMessage(), e);
+        }
+        try (FileChannel channel = FileChannel.open(Paths.get(filePath), StandardOpenOption.WRITE,
+                StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer buffer = out.toBuffer();
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+        }
+    }
+
+    /**
+     * Loads a file in the linked format from disk and reconstructs the logic component, opening the store it refers
+     * to.
+     * @param filePath the path to the file.
+     * @param logic the logic component.
+     * @throws FilePathException if the file path or the path to the store is invalid.
+     * @throws FileReadException if the file or the store is not of the correct format.
+     */
+    public static void loadFile(String filePath, Logic logic) throws FilePathException, FileReadException {
+        logic.clear();
+        try {
+            read(new BinaryStorage.Decoder(BinaryStorage.map(filePath)), Paths.get(filePath), logic);
+        } catch (BufferUnderflowException e) {
+            throw new FileReadException();
+        }
+        logic.updateProposition();
+        if (logic.succeeds() && logic.canModifyDeclaration()) {
+            logic.switchMode();
+        }
+    }
+
+    /**
+     * Reads the proof from the content of a file.
+     * @param in the content of the file.
+     * @param file the path to the file.
+     * @param logic the logic component.
+     * @throws FilePathException if the path to the store is invalid.
+     * @throws FileReadException if the file or the store is not of the correct format.
+     */
+    private static void read(BinaryStorage.Decoder in, Path file, Logic logic)
+            throws FilePathException, FileReadException {
+        PropositionStore store = readStore(in, file);
+        List<String> variables = new ArrayList<>();
+        int declared = in.varint();
+        for (int i = 0; i < declared; i++) {
+            variables.add(in.string());
+        }
+        logic.setVariables(variables);
+        logic.setLanguage(in.string());
+        try {
+            int premiseCount = in.varint();
+            for (int i = 0; i < premiseCount; i++) {
+                logic.addPremise(in.string());
+            }
+            logic.setTheorem(in.string());
+        } catch (TheoremParseException e) {
+            throw new FileReadException();
+        }
+        InferenceRule[] rules = BinaryStorage.readRules(in);
+        int n = in.varint();
+        if (n == 0) {
+            return;
+        }
+        SymbolTable symbols = logic.getSymbolTable();
+        int[] ids = new int[n];
+        logic.startHistory(store.get(readKey(in), symbols));
+        HistoryTree tree = logic.getHistoryTree();
+        ids[0] = tree.getRoot().getId();
+        try {
+            for (int i = 1; i < n; i++) {
+                int parent = in.varint();
+                int rule = in.varint();
+                if (parent >= i || rule >= rules.length) {
+                    throw new FileReadException();
+                }
+                Patch patch = BinaryStorage.readPatch(in, tree.getNode(ids[parent]).getState(),
+                        d -> store.get(readKey(d), symbols).getLiterals());
+                ids[i] = logic.addHistoryStep(ids[parent], patch, rules[rule]);
+            }
+            int current = in.varint();
+            if (current >= n) {
+                throw new FileReadException();
+            }
+            logic.jumpTo(ids[current]);
+        } catch (HistoryNodeException e) {
+            throw new FileReadException();
+        }
+    }
+
+    /**
+     * Reads the header of a file and opens the store it refers to.
+     * @param in the content of the file.
+     * @param file the path to the file.
+     * @return the store.
+     * @throws FilePathException if the path to the store is invalid.
+     * @throws FileReadException if the file or the store is not of the correct format.
+     */
+    private static PropositionStore readStore(BinaryStorage.Decoder in, Path file)
+            throws FilePathException, FileReadException {
+        byte[] magic = new byte[MAGIC.length];
+        in.buffer.get(magic);
+        if (!Arrays.equals(magic, MAGIC) || in.varint() != VERSION) {
+            throw new FileReadException();
+        }
+        Path directory = file.toAbsolutePath().getParent().resolve(in.string());
+        return PropositionStore.open(directory.toString());
+    }
+
+    private static void writeKey(BinaryStorage.Encoder out, PropositionStore.Key key) {
+        out.bytes(ByteBuffer.allocate(16).putLong(key.high()).putLong(key.low()).array());
+    }
+
+    private static PropositionStore.Key readKey(BinaryStorage.Decoder in) {
+        return new PropositionStore.Key(in.buffer.getLong(), in.buffer.getLong());
+    }
+
+    /**
+     * Gets the keys of the propositions in the store that a file refers to.
+     * @param filePath the path to the file in the linked format.
+     * @return the keys.
+     * @throws FilePathException if the file cannot be read.
+     * @throws FileReadException if the file is not of the correct format.
+     */
+    public static Set<PropositionStore.Key> references(String filePath) throws FilePathException, FileReadException {
+        BinaryStorage.Decoder in = new BinaryStorage.Decoder(BinaryStorage.map(filePath));
+        Set<PropositionStore.Key> keys = new HashSet<>();
+        try {
+            byte[] magic = new byte[MAGIC.length];
+            in.buffer.get(magic);
+            if (!Arrays.equals(magic, MAGIC) || in.varint() != VERSION) {
+                throw new FileReadException();
+            }
+            in.string();
+            int declared = in.varint();
+            for (int i = 0; i < declared; i++) {
+                in.string();
+            }
+            in.string();
+            int premiseCount = in.varint();
+            for (int i = 0; i < premiseCount; i++) {
+                in.string();
+            }
+            in.string();
+            BinaryStorage.readRules(in);
+            int n = in.varint();
+            if (n > 0) {
+                keys.add(readKey(in));
+            }
+            for (int i = 1; i < n; i++) {
+                in.varint();
+                in.varint();
+                in.skipLocation();
+                keys.add(readKey(in));
+            }
+        } catch (BufferUnderflowException e) {
+            throw new FileReadException();
+        }
+        return keys;
+    }
+
+    /**
+     * Reads the declarations of a file in the linked format and counts the rules of the steps to the current node,
+     * without opening the store.
+     * @param filePath the path to the file.
+     * @return the summary of the proof.
+     * @throws FilePathException if the file cannot be read.
+     * @throws FileReadException if the file format is invalid.
+     */
+    static ProofSummary summarize(String filePath) throws FilePathException, FileReadException {
+        BinaryStorage.Decoder in = new BinaryStorage.Decoder(BinaryStorage.map(filePath));
+        try {
+            byte[] magic = new byte[MAGIC.length];
+            in.buffer.get(magic);
+            if (!Arrays.equals(magic, MAGIC) || in.varint() != VERSION) {
+                throw new FileReadException();
+            }
+            in.string();
+            List<String> variables = new ArrayList<>();
+            int declared = in.varint();
+            for (int i = 0; i < declared; i++) {
+                variables.add(in.string());
+            }
+            Language language = ProofSummary.parseLanguage(in.string());
+            List<String> premises = new ArrayList<>();
+            int premiseCount = in.varint();
+            for (int i = 0; i < premiseCount; i++) {
+                premises.add(in.string());
+            }
+            String theorem = in.string();
+            InferenceRule[] table = BinaryStorage.readRules(in);
+            int n = in.varint();
+            int[] parents = new int[n];
+            InferenceRule[] rules = new InferenceRule[n];
+            int current = 0;
+            if (n > 0) {
+                readKey(in);
+                for (int i = 1; i < n; i++) {
+                    parents[i] = in.varint();
+                    int rule = in.varint();
+                    if (parents[i] >= i || rule >= table.length) {
+                        throw new FileReadException();
+                    }
+                    rules[i] = table[rule];
+                    in.skipLocation();
+                    readKey(in);
+                }
+                current = in.varint();
+                if (current >= n) {
+                    throw new FileReadException();
+                }
+            }
+            return new ProofSummary(variables, language, premises, theorem,
+                    ProofSummary.countPath(parents, rules, current));
+        } catch (BufferUnderflowException e) {
+            throw new FileReadException();
+        }
+    }
+
+    /**
+     * Removes the propositions from a store that none of the given files refer to.
+     * @param store the store.
+     * @param filePaths the paths to all files in the linked format that use the store.
+     * @return the number of areas removed from the store.
+     * @throws FilePathException if a file cannot be read or the store cannot be written.
+     * @throws FileReadException if a file or the store is not of the correct format.
+     */
+    public static int collectGarbage(PropositionStore store, Collection<String> filePaths)
+            throws FilePathException, FileReadException {
+        Set<PropositionStore.Key> roots = new HashSet<>();
+        for (String f : filePaths) {
+            roots.addAll(references(f));
+        }
+        return store.collect(roots);
+    }
+}
@@ -0,0 +1,412 @@
+package storage;
+
+import logic.Language;
+import logic.exceptions.FilePathException;
+import logic.exceptions.FileReadException;
+import logic.exceptions.TheoremParseException;
+import logic.parser.Parser;
+import model.InferenceRule;
+import model.Proposition;
+import model.SymbolTable;
+
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Stream;
+
+/**
+ * Index of the proof files in a directory and its subdirectories, which answers which proofs prove a theorem, use
+ * a premise or apply a rule without opening the files. For every file, the index keeps its declarations, the
+ * number of times each rule is used by the steps to the current proposition, and the structural hashes of the
+ * theorem and the premises, so that formulas parsed to the same diagram match however they are written, e.g.
+ * "a -> b" and "(a -> b)". The index is saved in the directory, and updating it only reads the files whose
+ * modification time or size has changed since. The file format is:
+ * "
+ * [magic bytes "PRCX"] [version] [number of files]
+ * [files as the path relative to the directory, modification time, size, 1 if the file is a proof or 0
+ * otherwise, and for proofs: [number of variables] [variable names]* [language] [number of premises]
+ * [premises with their structural hashes]* [theorem] [structural hash of the theorem] [number of rules]
+ * [number of steps applying every rule]*]*
+ * "
+ * where a structural hash is 0 if the formula cannot be parsed.
+ */
+public class ProofIndex {
+    public static final String INDEX_FILE = ".proofindex";
+    private static final byte[] MAGIC = {'P', 'R', 'C', 'X'};
+    private static final int VERSION = 1;
+
+    private final Path directory;
+    private final Map<String, Entry> entries;
+
+    /**
+     * Indexed proof file.
+     * @param path the path to the file relative to the directory, with "/" as delimiters.
+     * @param modified the modification time of the file in milliseconds when it was read.
+     * @param size the size of the file in bytes when it was read.
+     * @param summary the declarations and rules of the proof, or null if the file is not a proof file.
+     * @param theoremKey the structural hash of the theorem, or 0 if it cannot be parsed.
+     * @param premiseKeys the structural hashes of the premises, or 0 for those that cannot be parsed.
+     */
+    public record Entry(String path, long modified, long size, ProofSummary summary, long theoremKey,
+                        long[] premiseKeys) {
+    }
+
+    /**
+     * Result of an update of the index, where times are in nanoseconds.
+     */
+    public record Update(int files, int read, int removed, int failed, long time) {
+        @Override
+        public String toString() {
+            return String.format("%d files, %d read (%d not proofs), %d removed in %.1f ms", files, read, failed,
+                    removed, time / 1e6);
+        }
+    }
+
+    private ProofIndex(Path directory) {
+        this.directory = directory;
+        this.entries = new TreeMap<>();
+    }
+
+    /**
+     * Opens the index of a directory, reading the index saved in it if there is a valid one. Call
+     * {@link #update(int)} to bring it up to date.
+     * @param directory the path to the directory of proof files.
+     * @return the index.
+     * @throws FilePathException if the directory does not exist.
+     */
+    public static ProofIndex open(String directory) throws FilePathException {
+        Path path = Paths.get(directory);
+        if (!Files.isDirectory(path)) {
+            throw new FilePathException(directory + " is not a directory.");
+        }
+        ProofIndex index = new ProofIndex(path);
+        Path file = path.resolve(INDEX_FILE);
+        if (Files.exists(file)) {
+            try {
+                index.read(new BinaryStorage.Decoder(BinaryStorage.map(file.toString())));
+            } catch (FileReadException | BufferUnderflowException e) {
+                index.entries.clear();
+            }
+        }
+        return index;
+    }
+
+    /**
+     * Gets all files indexed.
+     * @return the entries in the order of their paths.
+     */
+    public List<Entry> getEntries() {
+        return new ArrayList<>(entries.values());
+    }
+
+    /**
+     * Updates the index with the files in the directory, reading the new and changed files in parallel, and saves
+     * the index.
+     * @param threads the number of files to read at the same time.
+     * @return the numbers of files read and removed.
+     * @throws FilePathException if the directory cannot be listed or the index cannot be saved.
+     */
+    public Update update(int threads) throws FilePathException {
+        long start = System.nanoTime();
+        List<Path> files = listProofFiles(directory);
+        Map<String, Path> found = new HashMap<>();
+        List<Callable<Entry>> tasks = new ArrayList<>();
+        for (Path f : files) {
+            String name = directory.relativize(f).toString().replace('\\', '/');
+            found.put(name, f);
+            Entry old = entries.get(name);
+            try {
+                if (old == null || old.modified() != Files.getLastModifiedTime(f).toMillis()
+                        || old.size() != Files.size(f)) {
+                    tasks.add(() -> scan(name, f));
+                }
+            } catch (IOException e) {
+                tasks.add(() -> scan(name, f));
+            }
+        }
+        int removed = 0;
+        for (String name : new ArrayList<>(entries.keySet())) {
+            if (!found.containsKey(name)) {
+                entries.remove(name);
+                removed++;
+            }
+        }
+        int failed = 0;
+        ExecutorService pool = Executors.newFixedThreadPool(Math.max(1, threads));
+        try {
+            for (Future<Entry> result : pool.invokeAll(tasks)) {
+                Entry entry = result.get();
+                entries.put(entry.path(), entry);
+                if (entry.summary() == null) {
+                    failed++;
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            throw new IllegalStateException(e.getCause());
+        } finally {
+            pool.shutdown();
+        }
+        save();
+        return new Update(files.size(), tasks.size(), removed, failed, System.nanoTime() - start);
+    }
+
+    /**
+     * Lists the files in a directory and its subdirectories whose names are those of proof files.
+     * @param directory the directory.
+     * @return the paths to the files in the text, binary and linked formats.
+     * @throws FilePathException if the directory cannot be listed.
+     */
+    public static List<Path> listProofFiles(Path directory) throws FilePathException {
+        try (Stream<Path> walk = Files.walk(directory)) {
+            return walk.filter(Files::isRegularFile).filter(ProofIndex::isProofFileName).toList();
+        } catch (IOException e) {
+            throw new FilePathException(e.getMessage());
+        }
+    }
+
+    private static boolean isProofFileName(Path file) {
+        String name = file.getFileName().toString();
+        return name.endsWith(".txt") || name.endsWith(BinaryStorage.EXTENSION)
+                || name.endsWith(LinkedStorage.EXTENSION);
+    }
+
+    /**
+     * Reads a file for the index.
+     * @param name the path to the file relative to the directory.
+     * @param file the path to the file.
+     * @return the entry of the file.
+     */
+    private static Entry scan(String name, Path file) {
+        long modified = 0;
+        long size = 0;
+        try {
+            modified = Files.getLastModifiedTime(file).toMillis();
+            size = Files.size(file);
+            ProofSummary summary = Storage.summarize(file.toString());
+            List<String> variables = summary.variables();
+            long[] premiseKeys = new long[summary.premises().size()];
+            for (int i = 0; i < premiseKeys.length; i++) {
+                premiseKeys[i] = key(summary.premises().get(i), summary.language(), variables);
+            }
+            return new Entry(name, modified, size, summary, key(summary.theorem(), summary.language(), variables),
+                    premiseKeys);
+        } catch (IOException | FilePathException | FileReadException | RuntimeException e) {
+            return new Entry(name, modified, size, null, 0, new long[0]);
+        }
+    }
+
+    /**
+     * Parses a formula.
+     * @param formula the formula in the language.
+     * @param language the language of the formula.
+     * @param variables the variables declared.
+     * @return the diagram of the formula, or null if it cannot be parsed.
+     */
+    private static Proposition parse(String formula, Language language, List<String> variables) {
+        try {
+            return Parser.createParser(language, new SymbolTable(variables)).parse(formula);
+        } catch (TheoremParseException | RuntimeException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Computes the structural hash of a formula.
+     * @param formula the formula in the language.
+     * @param language the language of the formula.
+     * @param variables the variables declared.
+     * @return the hash of the diagram of the formula, or 0 if it cannot be parsed.
+     */
+    private static long key(String formula, Language language, List<String> variables) {
+        Proposition p = parse(formula, language, variables);
+        return p == null ? 0 : p.getStructuralHash();
+    }
+
+    /**
+     * Finds the proofs of a theorem, i.e. those whose theorem has the same diagram as the given one when parsed with
+     * their variables.
+     * @param theorem the theorem in the language.
+     * @param language the language of the theorem.
+     * @return the entries of the proofs.
+     */
+    public List<Entry> findByTheorem(String theorem, Language language) {
+        return find(theorem, language, false);
+    }
+
+    /**
+     * Finds the proofs using a premise, i.e. those with a premise that has the same diagram as the given one when
+     * parsed with their variables.
+     * @param premise the premise in the language.
+     * @param language the language of the premise.
+     * @return the entries of the proofs.
+     */
+    public List<Entry> findByPremise(String premise, Language language) {
+        return find(premise, language, true);
+    }
+
+    private List<Entry> find(String formula, Language language, boolean premise) {
+        Map<String, Proposition> queries = new HashMap<>();
+        List<Entry> result = new ArrayList<>();
+        for (Entry e : entries.values()) {
+            if (e.summary() == null || e.summary().language() != language) {
+                continue;
+            }
+            List<String> variables = e.summary().variables();
+            String fingerprint = String.join(" ", variables.stream().sorted().toList());
+            Proposition query = queries.computeIfAbsent(fingerprint, v -> parse(formula, language, variables));
+            if (query == null) {
+                continue;
+            }
+            long key = query.getStructuralHash();
+            if (premise) {
+                for (int i = 0; i < e.premiseKeys().length; i++) {
+                    if (e.premiseKeys()[i] == key && matches(query, e.summary().premises().get(i), e)) {
+                        result.add(e);
+                        break;
+                    }
+                }
+            } else if (e.theoremKey() == key && matches(query, e.summary().theorem(), e)) {
+                result.add(e);
+            }
+        }
+        return result;
+    }
+
+    private static boolean matches(Proposition query, String formula, Entry e) {
+        Proposition p = parse(formula, e.summary().language(), e.summary().variables());
+        return p != null && p.hasSameLiterals(query);
+    }
+
+    /**
+     * Finds the proofs applying a rule at least the given number of times in the steps to the current proposition.
+     * @param rule the inference rule.
+     * @param atLeast the smallest number of steps applying the rule.
+     * @return the entries of the proofs.
+     */
+    public List<Entry> findByRule(InferenceRule rule, int atLeast) {
+        List<Entry> result = new ArrayList<>();
+        for (Entry e : entries.values()) {
+            if (e.summary() != null && e.summary().getRuleCount(rule) >= atLeast) {
+                result.add(e);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Reads the index saved.
+     * @param in the content of the index file.
+     * @throws FileReadException if the file is not of the correct format.
+     */
+    private void read(BinaryStorage.Decoder in) throws FileReadException {
+        byte[] magic = new byte[MAGIC.length];
+        in.buffer.get(magic);
+        if (!Arrays.equals(magic, MAGIC) || in.varint() != VERSION) {
+            throw new FileReadException();
+        }
+        int n = in.varint();
+        int ruleCount = InferenceRule.values().length;
+        for (int i = 0; i < n; i++) {
+            String path = in.string();
+            long modified = in.int64();
+            long size = in.int64();
+            if (in.varint() == 0) {
+                entries.put(path, new Entry(path, modified, size, null, 0, new long[0]));
+                continue;
+            }
+            List<String> variables = new ArrayList<>();
+            int declared = in.varint();
+            for (int j = 0; j < declared; j++) {
+                variables.add(in.string());
+            }
+            Language language = ProofSummary.parseLanguage(in.string());
+            int premiseCount = in.varint();
+            List<String> premises = new ArrayList<>();
+            long[] premiseKeys = new long[premiseCount];
+            for (int j = 0; j < premiseCount; j++) {
+                premises.add(in.string());
+                premiseKeys[j] = in.int64();
+            }
+            String theorem = in.string();
+            long theoremKey = in.int64();
+            if (in.varint() != ruleCount) {
+                throw new FileReadException();
+            }
+            int[] counts = new int[ruleCount];
+            for (int j = 0; j < ruleCount; j++) {
+                counts[j] = in.varint();
+            }
+            entries.put(path, new Entry(path, modified, size,
+                    new ProofSummary(variables, language, premises, theorem, counts), theoremKey, premiseKeys));
+        }
+    }
+
+    /**
+     * Saves the index to the directory, replacing the index saved before in one step.
+     * @throws FilePathException if the index cannot be written.
+     */
+    private void save() throws FilePathException {
+        BinaryStorage.Encoder out = new BinaryStorage.Encoder();
+        out.bytes(MAGIC);
+        out.varint(VERSION);
+        out.varint(entries.size());
+        for (Entry e : entries.values()) {
+            out.string(e.path());
+            out.int64(e.modified());
+            out.int64(e.size());
+            ProofSummary summary = e.summary();
+            out.varint(summary == null ? 0 : 1);
+            if (summary == null) {
+                continue;
+            }
+            out.varint(summary.variables().size());
+            for (String v : summary.variables()) {
+                out.string(v);
+            }
+            out.string(summary.language().toString());
+            out.varint(summary.premises().size());
+            for (int i = 0; i < summary.premises().size(); i++) {
+                out.string(summary.premises().get(i));
+                out.int64(e.premiseKeys()[i]);
+            }
+            out.string(summary.theorem());
+            out.int64(e.theoremKey());
+            out.varint(summary.ruleCounts().length);
+            for (int c : summary.ruleCounts()) {
+                out.varint(c);
+            }
+        }
+        String file = directory.resolve(INDEX_FILE).toString();
+        String temp = file + ".tmp";
+        try {
+            try (FileChannel channel = FileChannel.open(Paths.get(temp), StandardOpenOption.WRITE,
+                    StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                ByteBuffer buffer = out.toBuffer();
+                while (buffer.hasRemaining()) {
+                    channel.write(buffer);
+                }
+            }
+            Storage.replace(temp, file);
+        } catch (IOException e) {
+            throw new FilePathException(e.getMessage());
+        }
+    }
+}
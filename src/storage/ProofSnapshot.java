@@ -0,0 +1,268 @@
+package storage;
+
+import logic.Language;
+import logic.Logic;
+import logic.exceptions.FileReadException;
+import logic.exceptions.TheoremParseException;
+import logic.parser.Parser;
+import model.HistoryTree;
+import model.Inference;
+import model.Patch;
+import model.PersistentProposition;
+import model.SymbolTable;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.BiConsumer;
+
+/**
+ * Immutable copy of everything saved to a proof file. Since propositions and steps are never changed once created,
+ * taking a snapshot only copies the shape of the history tree, and the snapshot can be written to disk on another
+ * thread while the proof goes on. Steps of a lazily opened file that have not been loaded are not part of the tree
+ * of the snapshot, see {@link #loaded()}.
+ */
+public class ProofSnapshot {
+    private final String filePath;
+    private final List<String> variables;
+    private final Language language;
+    private final List<String> premises;
+    private final String theorem;
+    private final SymbolTable symbols;
+    private final LazyHistory earlier;
+    private final PersistentProposition initial;
+    private final int[] parents;
+    private final Inference[] steps;
+    private final int current;
+
+    private ProofSnapshot(ProofSnapshot other, PersistentProposition initial, int[] parents, Inference[] steps,
+                          int current) {
+        filePath = other.filePath;
+        variables = other.variables;
+        language = other.language;
+        premises = other.premises;
+        theorem = other.theorem;
+        symbols = other.symbols;
+        earlier = null;
+        this.initial = initial;
+        this.parents = parents;
+        this.steps = steps;
+        this.current = current;
+    }
+
+    private ProofSnapshot(Logic logic) {
+        filePath = logic.getFilePath();
+        variables = List.copyOf(logic.getVariables());
+        language = logic.getLanguage();
+        premises = List.copyOf(logic.getPremises());
+        theorem = logic.getTheoremString();
+        symbols = logic.getSymbolTable();
+        HistoryTree tree = logic.getHistoryTree();
+        if (tree == null) {
+            earlier = null;
+            initial = null;
+            parents = new int[0];
+            steps = new Inference[0];
+            current = -1;
+            return;
+        }
+        earlier = logic.getUnloadedHistory() == null ? null : logic.getUnloadedHistory().copy();
+        List<HistoryTree.Node> nodes = tree.preorder();
+        Map<HistoryTree.Node, Integer> positions = new HashMap<>();
+        parents = new int[nodes.size()];
+        steps = new Inference[nodes.size()];
+        for (int i = 0; i < nodes.size(); i++) {
+            HistoryTree.Node n = nodes.get(i);
+            positions.put(n, i);
+            parents[i] = n.getParent() == null ? -1 : positions.get(n.getParent());
+            steps[i] = n.getStep();
+        }
+        initial = tree.getRoot().getState();
+        current = positions.get(tree.getCurrent());
+    }
+
+    /**
+     * Takes a snapshot of the proof. The steps before the history tree that have not been loaded from the file yet
+     * are kept as the lines of the file, so that taking the snapshot does not decode them. It has to be called on
+     * the thread that changes the proof.
+     * @param logic the logic instance that holds the proof.
+     * @return the snapshot.
+     */
+    public static ProofSnapshot of(Logic logic) {
+        return new ProofSnapshot(logic);
+    }
+
+    /**
+     * Gets the snapshot with the steps not loaded from the file decoded and added before the history tree, which
+     * may be called on any thread. As in {@link Logic#loadAllHistory()}, if a step cannot be decoded, the steps
+     * before it are dropped.
+     * @return the snapshot with all steps in the history tree, which is this snapshot if there are no such steps.
+     */
+    ProofSnapshot loaded() {
+        if (earlier == null) {
+            return this;
+        }
+        SymbolTable table = new SymbolTable(symbols);
+        table.setDeclared(variables);
+        Parser parser = Parser.createParser(language, table);
+        List<Inference> decoded = new ArrayList<>();
+        PersistentProposition to = initial;
+        try {
+            for (int i = earlier.size() - 1; i >= 0; i--) {
+                LazyHistory.Step step = earlier.get(i);
+                PersistentProposition from = PersistentProposition.of(parser.parseFrame(step.from()));
+                decoded.add(new Inference(Patch.between(from, to), step.rule()));
+                to = from;
+            }
+        } catch (TheoremParseException | FileReadException e) {
+            // The steps before the one that cannot be decoded are dropped.
+        }
+        Collections.reverse(decoded);
+        int count = decoded.size();
+        int[] allParents = new int[count + steps.length];
+        Inference[] allSteps = new Inference[count + steps.length];
+        for (int i = 0; i < allSteps.length; i++) {
+            allParents[i] = i <= count ? i - 1 : parents[i - count] + count;
+            allSteps[i] = i == 0 ? null : i <= count ? decoded.get(i - 1) : steps[i - count];
+        }
+        return new ProofSnapshot(this, to, allParents, allSteps, current + count);
+    }
+
+    /**
+     * Gets the number of steps before the history tree that have not been loaded from the file.
+     * @return the number of steps, which are not counted by {@link #size()}.
+     */
+    int getEarlierSize() {
+        return earlier == null ? 0 : earlier.size();
+    }
+
+    /**
+     * Gets a step before the history tree as written in the file.
+     * @param index the index of the step, starting from 0 for the earliest step.
+     * @return the line of the step in the format of RULE&from&to.
+     */
+    String getEarlierLine(int index) {
+        return earlier.line(index);
+    }
+
+    /**
+     * Gets the path of the file that the proof was opened from or is saved to.
+     * @return the file path at the time of the snapshot.
+     */
+    public String getFilePath() {
+        return filePath;
+    }
+
+    List<String> getVariables() {
+        return variables;
+    }
+
+    Language getLanguage() {
+        return language;
+    }
+
+    List<String> getPremises() {
+        return premises;
+    }
+
+    String getTheorem() {
+        return theorem;
+    }
+
+    SymbolTable getSymbolTable() {
+        return symbols;
+    }
+
+    /**
+     * Gets the proposition of the root of the history tree.
+     * @return the initial proposition, or null if no steps have been made.
+     */
+    PersistentProposition getInitial() {
+        return initial;
+    }
+
+    /**
+     * Gets the number of nodes of the history tree.
+     * @return the number of nodes, or 0 if no steps have been made.
+     */
+    int size() {
+        return steps.length;
+    }
+
+    /**
+     * Gets the position of the current node.
+     * @return the position in preorder.
+     */
+    int getCurrent() {
+        return current;
+    }
+
+    /**
+     * Gets the position of the parent of a node.
+     * @param position the position of the node in preorder.
+     * @return the position of the parent, or -1 for the initial proposition.
+     */
+    int getParent(int position) {
+        return parents[position];
+    }
+
+    /**
+     * Gets the step leading to a node.
+     * @param position the position of the node in preorder.
+     * @return the step, or null for the initial proposition.
+     */
+    Inference getStep(int position) {
+        return steps[position];
+    }
+
+    /**
+     * Gets the positions of the nodes from the root to the current node.
+     * @return the positions on the path, starting with 0 for the root, or an empty list if there is no history.
+     */
+    List<Integer> getPath() {
+        List<Integer> path = new ArrayList<>();
+        for (int n = current; n >= 0; n = parents[n]) {
+            path.add(n);
+        }
+        Collections.reverse(path);
+        return path;
+    }
+
+    /**
+     * Gets the propositions of the nodes from the root to the current node, applying each step once.
+     * @return the propositions on the path, starting with the initial one.
+     */
+    List<PersistentProposition> getPathStates() {
+        List<PersistentProposition> states = new ArrayList<>();
+        PersistentProposition state = null;
+        for (int n : getPath()) {
+            state = n == 0 ? initial : steps[n].getPatch().applyTo(state);
+            states.add(state);
+        }
+        return states;
+    }
+
+    /**
+     * Visits all nodes in preorder with their propositions, applying each step once and keeping the propositions
+     * of the nodes on the way from the root only.
+     * @param visitor the function to call with the position of every node and its proposition.
+     */
+    void walk(BiConsumer<Integer, PersistentProposition> visitor) {
+        Deque<Integer> positions = new ArrayDeque<>();
+        Deque<PersistentProposition> states = new ArrayDeque<>();
+        for (int i = 0; i < steps.length; i++) {
+            while (!positions.isEmpty() && positions.peek() != parents[i]) {
+                positions.pop();
+                states.pop();
+            }
+            PersistentProposition state = i == 0 ? initial : steps[i].getPatch().applyTo(states.peek());
+            visitor.accept(i, state);
+            positions.push(i);
+            states.push(state);
+        }
+    }
+}
@@ -0,0 +1,69 @@
+package storage;
+
+import logic.Language;
+import logic.exceptions.FileReadException;
+import model.InferenceRule;
+
+import java.util.List;
+
+/**
+ * Declarations of a proof file and the number of times each inference rule is used by the steps from the initial
+ * proposition to the current one, read without reconstructing the proof.
+ * @param variables the variables declared.
+ * @param language the language of the premises and the theorem.
+ * @param premises the premises in the language.
+ * @param theorem the theorem to prove in the language.
+ * @param ruleCounts the number of steps applying every rule, indexed by the ordinals of the rules.
+ */
+public record ProofSummary(List<String> variables, Language language, List<String> premises, String theorem,
+                           int[] ruleCounts) {
+    /**
+     * Gets the number of steps applying a rule.
+     * @param rule the inference rule.
+     * @return the number of steps.
+     */
+    public int getRuleCount(InferenceRule rule) {
+        return ruleCounts[rule.ordinal()];
+    }
+
+    /**
+     * Gets the number of steps of the proof.
+     * @return the number of steps from the initial proposition to the current one.
+     */
+    public int getStepCount() {
+        int count = 0;
+        for (int c : ruleCounts) {
+            count += c;
+        }
+        return count;
+    }
+
+    /**
+     * Gets the language saved in a file.
+     * @param name the name of the language.
+     * @return the language.
+     * @throws FileReadException if there is no such language.
+     */
+    static Language parseLanguage(String name) throws FileReadException {
+        return switch (name) {
+            case "Coq" -> Language.Coq;
+            case "LaTeX" -> Language.LaTeX;
+            default -> throw new FileReadException();
+        };
+    }
+
+    /**
+     * Counts the rules of the steps from the root of a history tree to the current node.
+     * @param parents the positions of the parents of the nodes in preorder, where the root has none.
+     * @param rules the rules of the steps leading to the nodes.
+     * @param current the position of the current node.
+     * @return the number of steps applying every rule, indexed by the ordinals of the rules.
+     */
+    static int[] countPath(int[] parents, InferenceRule[] rules, int current) {
+        int[] counts = new int[InferenceRule.values().length];
+        for (int n = current; n > 0; n = parents[n]) {
+            counts[rules[n].ordinal()]++;
+        }
+        return counts;
+    }
+}
@@ -0,0 +1,156 @@
+package storage;
+
+import logic.exceptions.FilePathException;
+import logic.exceptions.FileReadException;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.Arrays;
+
+/**
+ * Content of a proof file in the text format, indexed by the offsets of its lines so that any line can be decoded
+ * on its own when it is needed. The file is read into memory as it is, one byte per character for the usual ASCII
+ * diagrams, rather than mapped, since the lines kept for later would keep a mapped file open and a file that is
+ * mapped cannot be replaced on some systems, e.g. by saving the proof to the file it was opened from.
+ */
+class ProofText {
+    private final ByteBuffer content;
+    private final int length;
+    private final int[] starts;
+    private final int size;
+
+    private ProofText(ByteBuffer content) {
+        this.content = content;
+        this.length = content.limit();
+        int[] found = new int[64];
+        int count = 0;
+        int start = 0;
+        while (start < length) {
+            if (count == found.length) {
+                found = Arrays.copyOf(found, count * 2);
+            }
+            found[count++] = start;
+            int end = start;
+            while (end < length && content.get(end) != '\n') {
+                end++;
+            }
+            start = end + 1;
+        }
+        this.starts = Arrays.copyOf(found, count + 1);
+        this.starts[count] = start;
+        this.size = count;
+    }
+
+    /**
+     * Reads a proof file and indexes its lines.
+     * @param filePath the path to the file.
+     * @return the indexed content.
+     * @throws FilePathException if the file cannot be read.
+     */
+    static ProofText read(String filePath) throws FilePathException {
+        try {
+            return new ProofText(ByteBuffer.wrap(Files.readAllBytes(Paths.get(filePath))));
+        } catch (IOException e) {
+            throw new FilePathException(e.getMessage());
+        }
+    }
+
+    private String decode(int start, int end) {
+        byte[] bytes = new byte[end - start];
+        content.get(start, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Gets the number of lines.
+     * @return the number of lines, where a line break at the end of the file does not start another line.
+     */
+    int size() {
+        return size;
+    }
+
+    /**
+     * Decodes a line.
+     * @param index the index of the line.
+     * @return the line without its line break.
+     * @throws FileReadException if there is no such line.
+     */
+    String line(int index) throws FileReadException {
+        if (index < 0 || index >= size) {
+            throw new FileReadException();
+        }
+        int start = starts[index];
+        int end = Math.min(starts[index + 1] - 1, length);
+        if (end > start && content.get(end - 1) == '\r') {
+            end--;
+        }
+        return decode(start, end);
+    }
+
+    /**
+     * Decodes the start of a line up to the first occurrence of a character.
+     * @param index the index of the line.
+     * @param delimiter the ASCII character that ends the field.
+     * @return the field, or the whole line if it does not contain the character.
+     * @throws FileReadException if there is no such line.
+     */
+    String field(int index, char delimiter) throws FileReadException {
+        if (index < 0 || index >= size) {
+            throw new FileReadException();
+        }
+        int start = starts[index];
+        int end = start;
+        while (end < starts[index + 1] - 1 && end < length && content.get(end) != delimiter
+                && content.get(end) != '\n' && content.get(end) != '\r') {
+            end++;
+        }
+        return decode(start, end);
+    }
+
+    /**
+     * Decodes a line holding a number.
+     * @param index the index of the line.
+     * @return the number.
+     * @throws FileReadException if there is no such line or it is not a number.
+     */
+    int number(int index) throws FileReadException {
+        try {
+            return Integer.parseInt(line(index).trim());
+        } catch (NumberFormatException e) {
+            throw new FileReadException();
+        }
+    }
+
+    /**
+     * Checks whether a line holds a number.
+     * @param index the index of the line.
+     * @return true if the line exists and is a number.
+     */
+    boolean isNumber(int index) {
+        try {
+            number(index);
+            return true;
+        } catch (FileReadException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Counts the occurrences of a character in a line without decoding it.
+     * @param index the index of the line.
+     * @param c the ASCII character to count.
+     * @return the number of occurrences.
+     */
+    int count(int index, char c) {
+        int count = 0;
+        for (int i = starts[index]; i < starts[index + 1] - 1 && i < length; i++) {
+            if (content.get(i) == c) {
+                count++;
+            }
+        }
+        return count;
+    }
+}
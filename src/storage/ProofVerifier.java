@@ -0,0 +1,505 @@
+package storage;
+
+import logic.Logic;
+import logic.exceptions.FilePathException;
+import logic.exceptions.FileReadException;
+import logic.exceptions.TheoremParseException;
+import logic.parser.Parser;
+import model.CutLiteral;
+import model.InferenceRule;
+import model.Literal;
+import model.Model;
+import model.Patch;
+import model.PersistentLiteral;
+import model.PersistentProposition;
+import model.Proposition;
+import model.SymbolTable;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Checker of saved proofs that does not trust the steps recorded in the files. Every step from the initial
+ * proposition to the current one has to be an application of its rule under the conditions the application checks
+ * when the step is made, see {@link Literal#getDeleteRule()}, {@link Proposition#getInsertRule(Literal)} and the
+ * double cut methods of {@link Logic}: literals are erased from areas enclosed by an even number of cuts and inserted
+ * into areas enclosed by an odd number, a literal is iterated or deiterated only if the same literal is in the area
+ * or an enclosing one, and a double cut is put around or taken from literals of one area. The proof also has to
+ * start from the premises and every step has to start from the proposition the step before ends with, which only
+ * files in the text format can break. Steps are independent once their propositions are known, so they are parsed
+ * and checked in parallel on a fork/join pool, and so are the files of a directory.
+ */
+public class ProofVerifier {
+    private static final int STEPS_PER_TASK = 16;
+
+    private final ForkJoinPool pool;
+
+    /**
+     * Outcome of the check of a proof file.
+     */
+    public enum Status {
+        VALID, INCOMPLETE, INVALID, UNREADABLE
+    }
+
+    /**
+     * Result of the check of a proof file.
+     * @param path the path to the file.
+     * @param status whether the steps are valid and reach the theorem.
+     * @param steps the number of steps from the initial proposition to the current one.
+     * @param step the number of the first invalid step counting from 1, or 0 if the file is not invalid because of a
+     *             step.
+     * @param reason the reason the proof is not valid, or null if it is.
+     */
+    public record Result(String path, Status status, int steps, int step, String reason) {
+        @Override
+        public String toString() {
+            return switch (status) {
+                case VALID -> String.format("%s: valid, %d steps", path, steps);
+                case INCOMPLETE -> String.format("%s: incomplete, %d steps. %s", path, steps, reason);
+                case INVALID -> step == 0
+                        ? String.format("%s: invalid. %s", path, reason)
+                        : String.format("%s: invalid at step %d of %d. %s", path, step, steps, reason);
+                case UNREADABLE -> String.format("%s: unreadable. %s", path, reason);
+            };
+        }
+    }
+
+    /**
+     * Results of the check of all proof files in a directory, where the time is in nanoseconds.
+     */
+    public record Report(List<Result> results, long steps, long bytes, long time) {
+        /**
+         * Counts the files with an outcome.
+         * @param status the outcome.
+         * @return the number of files.
+         */
+        public int count(Status status) {
+            int count = 0;
+            for (Result r : results) {
+                if (r.status() == status) {
+                    count++;
+                }
+            }
+            return count;
+        }
+
+        @Override
+        public String toString() {
+            double seconds = time / 1e9;
+            return String.format("%d files (%d valid, %d incomplete, %d invalid, %d unreadable), %d steps in "
+                            + "%.1f ms: %.0f files/s, %.0f steps/s, %.1f MB/s", results.size(), count(Status.VALID),
+                    count(Status.INCOMPLETE), count(Status.INVALID), count(Status.UNREADABLE), steps, time / 1e6,
+                    results.size() / seconds, steps / seconds, bytes / 1e6 / seconds);
+        }
+    }
+
+    /**
+     * First invalid step found.
+     * @param step the index of the step, or -1 if the failure is not about a single step.
+     * @param reason the reason it is invalid.
+     */
+    private record Failure(int step, String reason) {
+    }
+
+    /**
+     * Check of one step, which gives the reason the step is invalid, or null if it is valid.
+     */
+    private interface StepCheck {
+        String check(int step) throws FileReadException;
+    }
+
+    /**
+     * Check of a range of steps, split in halves until the ranges are small enough.
+     */
+    private static class Range extends RecursiveTask<Failure> {
+        private final int from;
+        private final int to;
+        private final StepCheck check;
+
+        Range(int from, int to, StepCheck check) {
+            this.from = from;
+            this.to = to;
+            this.check = check;
+        }
+
+        @Override
+        protected Failure compute() {
+            if (to - from <= STEPS_PER_TASK) {
+                for (int i = from; i < to; i++) {
+                    String reason;
+                    try {
+                        reason = check.check(i);
+                    } catch (FileReadException e) {
+                        reason = e.getMessage();
+                    }
+                    if (reason != null) {
+                        return new Failure(i, reason);
+                    }
+                }
+                return null;
+            }
+            int middle = (from + to) >>> 1;
+            Range left = new Range(from, middle, check);
+            left.fork();
+            Failure right = new Range(middle, to, check).compute();
+            Failure first = left.join();
+            return first != null ? first : right;
+        }
+    }
+
+    /**
+     * Steps from the initial proposition to the current one.
+     */
+    private static class Steps {
+        private final PersistentProposition[] from;
+        private final PersistentProposition[] to;
+        private final InferenceRule[] rules;
+        private Failure failure;
+
+        Steps(int size) {
+            from = new PersistentProposition[size];
+            to = new PersistentProposition[size];
+            rules = new InferenceRule[size];
+        }
+
+        int size() {
+            return rules.length;
+        }
+    }
+
+    /**
+     * Check of a proof file.
+     */
+    private static class FileCheck extends RecursiveTask<Result> {
+        private final String filePath;
+
+        FileCheck(String filePath) {
+            this.filePath = filePath;
+        }
+
+        @Override
+        protected Result compute() {
+            try {
+                return check(filePath);
+            } catch (FilePathException | FileReadException e) {
+                return new Result(filePath, Status.UNREADABLE, 0, 0, e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Creates a verifier.
+     * @param pool the pool to check the steps and the files in.
+     */
+    public ProofVerifier(ForkJoinPool pool) {
+        this.pool = pool;
+    }
+
+    /**
+     * Checks a proof file in any format.
+     * @param filePath the path to the file.
+     * @return the result of the check.
+     */
+    public Result verify(String filePath) {
+        return pool.invoke(new FileCheck(filePath));
+    }
+
+    /**
+     * Checks all proof files in a directory and its subdirectories, i.e. those whose names end with ".txt",
+     * {@code BinaryStorage.EXTENSION} or {@code LinkedStorage.EXTENSION}.
+     * @param directory the path to the directory.
+     * @return the results of all files in the order of their paths, and the time taken.
+     * @throws FilePathException if the directory cannot be listed.
+     */
+    public Report verifyDirectory(String directory) throws FilePathException {
+        long start = System.nanoTime();
+        List<Path> files = new ArrayList<>(ProofIndex.listProofFiles(Paths.get(directory)));
+        files.sort(null);
+        List<FileCheck> checks = new ArrayList<>();
+        long bytes = 0;
+        for (Path f : files) {
+            FileCheck check = new FileCheck(f.toString());
+            pool.execute(check);
+            checks.add(check);
+            try {
+                bytes += Files.size(f);
+            } catch (IOException e) {
+                // The file is reported as unreadable by its check.
+            }
+        }
+        List<Result> results = new ArrayList<>();
+        long steps = 0;
+        for (FileCheck c : checks) {
+            Result r = c.join();
+            results.add(r);
+            steps += r.steps();
+        }
+        return new Report(results, steps, bytes, System.nanoTime() - start);
+    }
+
+    /**
+     * Checks a proof file on a thread of the pool.
+     * @param filePath the path to the file.
+     * @return the result of the check.
+     * @throws FilePathException if the file cannot be read.
+     * @throws FileReadException if the file format is invalid.
+     */
+    private static Result check(String filePath) throws FilePathException, FileReadException {
+        ProofSummary summary = Storage.summarize(filePath);
+        SymbolTable symbols = Storage.newSymbolTable(filePath);
+        symbols.setDeclared(summary.variables());
+        Parser parser = Parser.createParser(summary.language(), symbols);
+        PersistentProposition premises;
+        PersistentProposition theorem;
+        try {
+            List<PersistentLiteral> literals = new ArrayList<>();
+            for (String p : summary.premises()) {
+                literals.addAll(PersistentProposition.of(parser.parse(p)).getLiterals());
+            }
+            premises = PersistentProposition.of(literals);
+            theorem = PersistentProposition.of(parser.parse(summary.theorem()));
+        } catch (TheoremParseException e) {
+            throw new FileReadException();
+        }
+        Steps steps;
+        Failure failure;
+        if (BinaryStorage.isBinary(filePath) || LinkedStorage.isLinked(filePath)) {
+            steps = loadSteps(filePath, symbols);
+            failure = null;
+        } else {
+            ProofText text = ProofText.read(filePath);
+            int first = summary.premises().size() + 5;
+            int count = text.number(first - 1);
+            if (count < 0 || first + count > text.size()) {
+                throw new FileReadException();
+            }
+            if (text.isNumber(first + count)) {
+                steps = loadSteps(filePath, symbols);
+                failure = matchList(text, first, steps, parser);
+            } else {
+                steps = readSteps(text, first, count, parser);
+                failure = steps.failure;
+            }
+        }
+        int n = steps.size();
+        if (failure == null && n > 0 && !steps.from[0].hasSameLiterals(premises)) {
+            return new Result(filePath, Status.INVALID, n, 0, "The proof does not start from the premises.");
+        }
+        if (failure == null) {
+            failure = new Range(0, n, i -> i > 0 && !steps.to[i - 1].hasSameLiterals(steps.from[i])
+                    ? "The step does not start from the proposition the step before ends with."
+                    : checkStep(steps.from[i], steps.to[i], steps.rules[i])).invoke();
+        }
+        if (failure != null) {
+            return new Result(filePath, Status.INVALID, n, failure.step() + 1, failure.reason());
+        }
+        PersistentProposition last = n == 0 ? premises : steps.to[n - 1];
+        if (!last.hasSameLiterals(theorem)) {
+            return new Result(filePath, Status.INCOMPLETE, n, 0, "The proof does not reach the theorem.");
+        }
+        return new Result(filePath, Status.VALID, n, 0, null);
+    }
+
+    /**
+     * Reads the steps of a file in the text format, parsing the propositions of the steps in parallel.
+     * @param text the content of the file.
+     * @param first the index of the line of the first step.
+     * @param n the number of steps.
+     * @param parser the parser of the variables declared in the file.
+     * @return the steps, with the first step that cannot be parsed as the failure if there is any.
+     */
+    private static Steps readSteps(ProofText text, int first, int n, Parser parser) {
+        Steps steps = new Steps(n);
+        steps.failure = new Range(0, n, i -> {
+            String[] info = text.line(first + i).split("&", -1);
+            if (info.length != 3) {
+                return "The step is not in the format of RULE&from&to.";
+            }
+            steps.rules[i] = Storage.parseRule(info[0]);
+            try {
+                steps.from[i] = PersistentProposition.of(parser.parseFrame(info[1]));
+                steps.to[i] = PersistentProposition.of(parser.parseFrame(info[2]));
+            } catch (TheoremParseException e) {
+                return "The propositions of the step are not valid diagrams.";
+            }
+            return null;
+        }).invoke();
+        return steps;
+    }
+
+    /**
+     * Loads the steps of a file in the binary or the linked format, where the propositions are produced by applying
+     * the changes saved for the steps.
+     * @param filePath the path to the file.
+     * @param symbols the symbol table of the variables declared in the file.
+     * @return the steps.
+     * @throws FilePathException if the file cannot be read.
+     * @throws FileReadException if the file format is invalid.
+     */
+    private static Steps loadSteps(String filePath, SymbolTable symbols) throws FilePathException, FileReadException {
+        Logic logic = new Logic(new Model(symbols));
+        Storage.loadFile(filePath, logic);
+        ProofSnapshot snapshot = ProofSnapshot.of(logic).loaded();
+        List<Integer> path = snapshot.getPath();
+        List<PersistentProposition> states = snapshot.getPathStates();
+        Steps steps = new Steps(Math.max(0, path.size() - 1));
+        for (int i = 0; i < steps.size(); i++) {
+            steps.from[i] = states.get(i);
+            steps.to[i] = states.get(i + 1);
+            steps.rules[i] = snapshot.getStep(path.get(i + 1)).getRule();
+        }
+        return steps;
+    }
+
+    /**
+     * Checks that the list of steps of a file in the text format is the same as the steps from the root of its
+     * history tree to the current node, since the tree is what the application loads when both are in the file. A
+     * step is parsed only if its propositions are not written the way the loaded ones are.
+     * @param text the content of the file.
+     * @param first the index of the line of the first step.
+     * @param loaded the steps loaded from the tree.
+     * @param parser the parser of the variables declared in the file.
+     * @return the first step that differs, or null if there is none.
+     * @throws FileReadException if the file format is invalid.
+     */
+    private static Failure matchList(ProofText text, int first, Steps loaded, Parser parser)
+            throws FileReadException {
+        if (text.number(first - 1) != loaded.size()) {
+            return new Failure(-1, "The history tree does not have the same number of steps as the list of steps.");
+        }
+        return new Range(0, loaded.size(), i -> {
+            String[] info = text.line(first + i).split("&", -1);
+            if (info.length != 3) {
+                return "The step is not in the format of RULE&from&to.";
+            }
+            if (Storage.parseRule(info[0]) != loaded.rules[i] || !isSame(info[1], loaded.from[i], parser)
+                    || !isSame(info[2], loaded.to[i], parser)) {
+                return "The step is not the same in the history tree.";
+            }
+            return null;
+        }).invoke();
+    }
+
+    private static boolean isSame(String diagram, PersistentProposition p, Parser parser) {
+        if (diagram.equals(p.toString())) {
+            return true;
+        }
+        try {
+            return PersistentProposition.of(parser.parseFrame(diagram)).hasSameLiterals(p);
+        } catch (TheoremParseException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Checks that a step is an application of its rule, comparing the area of the propositions where they differ.
+     * @param from the proposition before the step.
+     * @param to the proposition after the step.
+     * @param rule the rule of the step.
+     * @return the reason the step is invalid, or null if it is valid.
+     */
+    static String checkStep(PersistentProposition from, PersistentProposition to, InferenceRule rule) {
+        Patch patch = Patch.between(from, to);
+        List<PersistentLiteral> removed = patch.getRemoved();
+        List<PersistentLiteral> inserted = patch.getInserted();
+        if (removed.isEmpty() && inserted.isEmpty()) {
+            return "The step does not change the proposition.";
+        }
+        return switch (rule) {
+            case ERASURE, DEITERATION, REMOVE_BOTH -> inserted.isEmpty()
+                    ? checkDeletion(areaOf(to, patch.getPath()), removed, rule)
+                    : rule.printString() + " does not insert literals.";
+            case INSERTION, ITERATION, INSERT_BOTH -> removed.isEmpty()
+                    ? checkInsertion(areaOf(from, patch.getPath()), inserted, rule)
+                    : rule.printString() + " does not remove literals.";
+            case DOUBLE_CUT_INTRO -> isDoubleCutOf(inserted, removed)
+                    ? null
+                    : "The step does not put a double cut around some literals of an area.";
+            case DOUBLE_CUT_ELIM -> isDoubleCutOf(removed, inserted)
+                    ? null
+                    : "The step does not remove a double cut.";
+        };
+    }
+
+    /**
+     * Checks that literals are removed from an area by a rule. A deiterated literal has to be found among the
+     * literals left after the step, so that two copies of a literal cannot justify the removal of each other.
+     * @param area the area after the literals are removed.
+     * @param removed the literals removed.
+     * @param rule the rule of the step.
+     * @return the reason the step is invalid, or null if it is valid.
+     */
+    private static String checkDeletion(Proposition area, List<PersistentLiteral> removed, InferenceRule rule) {
+        boolean even = area.getLevel() % 2 == 0;
+        for (PersistentLiteral l : removed) {
+            boolean erasable = even && rule != InferenceRule.DEITERATION;
+            boolean deiterable = rule != InferenceRule.ERASURE && area.appearsInAncestors(l.toLiteral(area));
+            if (!erasable && !deiterable) {
+                return "The literal " + l + "cannot be removed by " + rule.printString() + ".";
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Checks that literals are inserted into an area by a rule.
+     * @param area the area before the literals are inserted.
+     * @param inserted the literals inserted.
+     * @param rule the rule of the step.
+     * @return the reason the step is invalid, or null if it is valid.
+     */
+    private static String checkInsertion(Proposition area, List<PersistentLiteral> inserted, InferenceRule rule) {
+        boolean odd = area.getLevel() % 2 == 1;
+        for (PersistentLiteral l : inserted) {
+            boolean insertable = odd && rule != InferenceRule.ITERATION;
+            boolean iterable = rule != InferenceRule.INSERTION && area.appearsInAncestors(l.toLiteral(area));
+            if (!insertable && !iterable) {
+                return "The literal " + l + "cannot be inserted by " + rule.printString() + ".";
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Checks whether some literals are other literals with a double cut put around some of them.
+     * @param outer the literals with the double cut.
+     * @param inner the literals without the double cut.
+     * @return true if exactly one of the outer literals is a double cut, such that replacing it by the literals it
+     *         encloses gives the inner literals regardless of order.
+     */
+    private static boolean isDoubleCutOf(List<PersistentLiteral> outer, List<PersistentLiteral> inner) {
+        for (int i = 0; i < outer.size(); i++) {
+            PersistentLiteral l = outer.get(i);
+            if (!l.isCut() || l.getContent().size() != 1 || !l.getContent().get(0).isCut()) {
+                continue;
+            }
+            List<PersistentLiteral> opened = new ArrayList<>(outer);
+            opened.remove(i);
+            opened.addAll(l.getContent().get(0).getContent().getLiterals());
+            if (PersistentProposition.of(opened).hasSameLiterals(PersistentProposition.of(inner))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Builds the mutable form of a proposition and finds an area in it.
+     * @param proposition the proposition.
+     * @param path the indices of the cut literals to enter from the base proposition.
+     * @return the area, whose level is the length of the path.
+     */
+    private static Proposition areaOf(PersistentProposition proposition, int[] path) {
+        Proposition area = proposition.toProposition();
+        for (int i : path) {
+            area = ((CutLiteral) area.getLiterals().get(i)).getContent();
+        }
+        return area;
+    }
+}
@@ -0,0 +1,637 @@
+package storage;
+
+import logic.exceptions.FilePathException;
+import logic.exceptions.FileReadException;
+import model.PersistentLiteral;
+import model.PersistentProposition;
+import model.SymbolTable;
+
+import java.io.IOException;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.WeakHashMap;
+
+/**
+ * Content-addressed store of propositions shared by many proof files. Every area of a proposition is stored once,
+ * under the hash of its literals, where a cut refers to the area it encloses by its key, so equal subtrees of any
+ * propositions in any proofs are stored once. The store is a directory of two files:
+ * "
+ * objects.dat: [magic bytes "PRCO"] [version] [areas as the length of the content followed by the content]*
+ * objects.idx: [magic bytes "PRCI"] [version] [capacity] [number of areas] [length of objects.dat covered]
+ *              [slots as the key, the position of the content in objects.dat and its length]*
+ * "
+ * where the content of an area is its number of literals followed by the literals, each being 0 and the key of the
+ * area enclosed for a cut, or 1 and the name for a variable, and the key is the first 16 bytes of the SHA-256 of
+ * the content. The index is a hash table with linear probing that is mapped into memory, and it is rebuilt from
+ * the areas if it does not cover the whole of objects.dat, e.g. after a crash. Propositions read from the store are
+ * kept in memory as long as they are used, and are shared by all proofs whose symbol tables share their ids with
+ * the one of the store, see {@link #newSymbolTable()}.
+ */
+public class PropositionStore {
+    public static final String DATA_FILE = "objects.dat";
+    public static final String INDEX_FILE = "objects.idx";
+    private static final byte[] DATA_MAGIC = {'P', 'R', 'C', 'O'};
+    private static final byte[] INDEX_MAGIC = {'P', 'R', 'C', 'I'};
+    private static final int VERSION = 1;
+    private static final int DATA_HEADER = 8;
+    private static final int INDEX_HEADER = 32;
+    private static final int SLOT = 32;
+    private static final int INITIAL_CAPACITY = 1024;
+    private static final int CUT = 0;
+    private static final int VARIABLE = 1;
+    private static final Map<Path, PropositionStore> OPEN = new HashMap<>();
+
+    private final Path directory;
+    private final SymbolTable symbols;
+    private final MessageDigest digest;
+    private FileChannel data;
+    private long dataSize;
+    private MappedByteBuffer index;
+    private int capacity;
+    private int count;
+    private final Map<Key, Shared> shared;
+    private final ReferenceQueue<PersistentProposition> released;
+    private final Map<PersistentProposition, Key> keys;
+
+    /**
+     * Key of an area in the store.
+     */
+    public record Key(long high, long low) {
+        @Override
+        public String toString() {
+            return String.format("%016x%016x", high, low);
+        }
+    }
+
+    /**
+     * Statistics of the store, where the areas shared are those read from the store and still in memory.
+     */
+    public record Statistics(int areas, long dataBytes, int shared) {
+        @Override
+        public String toString() {
+            return String.format("%d areas, %d KB of data, %d areas shared in memory", areas, dataBytes >> 10,
+                    shared);
+        }
+    }
+
+    /**
+     * Proposition read from the store, which is dropped from the shared ones once no proof uses it.
+     */
+    private static class Shared extends WeakReference<PersistentProposition> {
+        private final Key key;
+
+        Shared(Key key, PersistentProposition proposition, ReferenceQueue<PersistentProposition> queue) {
+            super(proposition, queue);
+            this.key = key;
+        }
+    }
+
+    private PropositionStore(Path directory) throws IOException, FileReadException {
+        this.directory = directory;
+        this.symbols = new SymbolTable();
+        try {
+            this.digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+        this.shared = new HashMap<>();
+        this.released = new ReferenceQueue<>();
+        this.keys = new WeakHashMap<>();
+        Files.createDirectories(directory);
+        openData();
+        if (!openIndex()) {
+            rebuildIndex();
+        }
+    }
+
+    /**
+     * Opens the store in a directory, creating it if it does not exist. A store that is open already is shared, so
+     * that the proofs using it share the propositions read.
+     * @param directory the path to the directory of the store.
+     * @return the store.
+     * @throws FilePathException if the directory cannot be read or written.
+     * @throws FileReadException if the files of the store are not of the correct format.
+     */
+    public static PropositionStore open(String directory) throws FilePathException, FileReadException {
+        Path path = Paths.get(directory).toAbsolutePath().normalize();
+        synchronized (OPEN) {
+            PropositionStore store = OPEN.get(path);
+            if (store == null) {
+                try {
+                    store = new PropositionStore(path);
+                } catch (IOException e) {
+                    throw new FilePathException(e.getMessage());
+                }
+                OPEN.put(path, store);
+            }
+            return store;
+        }
+    }
+
+    /**
+     * Gets the directory of the store.
+     * @return the absolute path to the directory.
+     */
+    public Path getDirectory() {
+        return directory;
+    }
+
+    /**
+     * Creates a symbol table that shares its ids with the store, for the model of a proof that shares the
+     * propositions read from the store with other proofs.
+     * @return the symbol table with no variables declared.
+     */
+    public SymbolTable newSymbolTable() {
+        return new SymbolTable(symbols);
+    }
+
+    /**
+     * Opens objects.dat, writing its header if it is new.
+     * @throws IOException if the file cannot be read or written.
+     * @throws FileReadException if the file is not of the correct format.
+     */
+    private void openData() throws IOException, FileReadException {
+        data = FileChannel.open(directory.resolve(DATA_FILE), StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+        dataSize = data.size();
+        ByteBuffer header = ByteBuffer.allocate(DATA_HEADER);
+        if (dataSize == 0) {
+            header.put(DATA_MAGIC).putInt(VERSION).flip();
+            data.write(header, 0);
+            dataSize = DATA_HEADER;
+            return;
+        }
+        if (dataSize < DATA_HEADER) {
+            throw new FileReadException();
+        }
+        data.read(header, 0);
+        header.flip();
+        byte[] magic = new byte[DATA_MAGIC.length];
+        header.get(magic);
+        if (!Arrays.equals(magic, DATA_MAGIC) || header.getInt() != VERSION) {
+            throw new FileReadException();
+        }
+    }
+
+    /**
+     * Maps objects.idx into memory if it is valid and covers the whole of objects.dat.
+     * @return true if the index is mapped, false if it has to be rebuilt.
+     * @throws IOException if the file cannot be read.
+     */
+    private boolean openIndex() throws IOException {
+        Path path = directory.resolve(INDEX_FILE);
+        if (!Files.exists(path) || Files.size(path) < INDEX_HEADER) {
+            return false;
+        }
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            MappedByteBuffer map = channel.map(FileChannel.MapMode.READ_WRITE, 0, channel.size());
+            byte[] magic = new byte[INDEX_MAGIC.length];
+            map.get(0, magic);
+            int slots = map.getInt(8);
+            if (!Arrays.equals(magic, INDEX_MAGIC) || map.getInt(4) != VERSION || Integer.bitCount(slots) != 1
+                    || channel.size() != INDEX_HEADER + (long) slots * SLOT || map.getLong(16) != dataSize) {
+                return false;
+            }
+            index = map;
+            capacity = slots;
+            count = map.getInt(12);
+            return true;
+        }
+    }
+
+    /**
+     * Creates an empty index file of the given capacity and maps it into memory.
+     * @param path the path to the file.
+     * @param slots the number of slots, which is a power of two.
+     * @return the mapped file.
+     * @throws IOException if the file cannot be written.
+     */
+    private MappedByteBuffer createIndex(Path path, int slots) throws IOException {
+        Files.deleteIfExists(path);
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE_NEW, StandardOpenOption.READ,
+                StandardOpenOption.WRITE)) {
+            MappedByteBuffer map = channel.map(FileChannel.MapMode.READ_WRITE, 0, INDEX_HEADER + (long) slots * SLOT);
+            map.put(0, INDEX_MAGIC);
+            map.putInt(4, VERSION);
+            map.putInt(8, slots);
+            map.putInt(12, 0);
+            map.putLong(16, DATA_HEADER);
+            return map;
+        }
+    }
+
+    /**
+     * Rebuilds the index from the areas in objects.dat, dropping an area at the end that is cut short.
+     * @throws IOException if the files cannot be read or written.
+     */
+    private void rebuildIndex() throws IOException {
+        List<long[]> entries = new ArrayList<>();
+        List<Key> found = new ArrayList<>();
+        long position = DATA_HEADER;
+        ByteBuffer length = ByteBuffer.allocate(Integer.BYTES);
+        while (position + Integer.BYTES <= dataSize) {
+            length.clear();
+            data.read(length, position);
+            int size = length.flip().getInt();
+            if (size < 0 || position + Integer.BYTES + size > dataSize) {
+                break;
+            }
+            ByteBuffer content = ByteBuffer.allocate(size);
+            data.read(content, position + Integer.BYTES);
+            found.add(hash(content.array(), size));
+            entries.add(new long[] {position + Integer.BYTES, size});
+            position += Integer.BYTES + size;
+        }
+        data.truncate(position);
+        dataSize = position;
+        int slots = INITIAL_CAPACITY;
+        while (slots < entries.size() * 2) {
+            slots *= 2;
+        }
+        Path temp = directory.resolve(INDEX_FILE + ".tmp");
+        index = createIndex(temp, slots);
+        capacity = slots;
+        count = 0;
+        for (int i = 0; i < entries.size(); i++) {
+            if (find(found.get(i)) < 0) {
+                insert(found.get(i), entries.get(i)[0], (int) entries.get(i)[1]);
+            }
+        }
+        index.putLong(16, dataSize);
+        index.force();
+        Files.move(temp, directory.resolve(INDEX_FILE), StandardCopyOption.REPLACE_EXISTING,
+                StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Finds the slot of a key in the index.
+     * @param key the key.
+     * @return the slot of the key, or -1 - the empty slot where it would be inserted if it is not in the index.
+     */
+    private int find(Key key) {
+        int slot = (int) (key.low() & (capacity - 1));
+        while (true) {
+            int at = INDEX_HEADER + slot * SLOT;
+            if (index.getLong(at + 16) == 0) {
+                return -1 - slot;
+            }
+            if (index.getLong(at) == key.high() && index.getLong(at + 8) == key.low()) {
+                return slot;
+            }
+            slot = (slot + 1) & (capacity - 1);
+        }
+    }
+
+    /**
+     * Adds a key that is not in the index, growing the index if it is half full.
+     * @param key the key.
+     * @param offset the position of the content in objects.dat.
+     * @param length the length of the content.
+     * @throws IOException if the index cannot be grown.
+     */
+    private void insert(Key key, long offset, int length) throws IOException {
+        if ((count + 1) * 2 > capacity) {
+            grow();
+        }
+        int at = INDEX_HEADER + (-1 - find(key)) * SLOT;
+        index.putLong(at, key.high());
+        index.putLong(at + 8, key.low());
+        index.putInt(at + 24, length);
+        index.putLong(at + 16, offset);
+        count++;
+        index.putInt(12, count);
+    }
+
+    /**
+     * Doubles the capacity of the index.
+     * @throws IOException if the index cannot be written.
+     */
+    private void grow() throws IOException {
+        MappedByteBuffer old = index;
+        int oldCapacity = capacity;
+        Path temp = directory.resolve(INDEX_FILE + ".tmp");
+        index = createIndex(temp, capacity * 2);
+        capacity *= 2;
+        count = 0;
+        for (int slot = 0; slot < oldCapacity; slot++) {
+            int at = INDEX_HEADER + slot * SLOT;
+            long offset = old.getLong(at + 16);
+            if (offset != 0) {
+                insert(new Key(old.getLong(at), old.getLong(at + 8)), offset, old.getInt(at + 24));
+            }
+        }
+        index.putLong(16, dataSize);
+        Files.move(temp, directory.resolve(INDEX_FILE), StandardCopyOption.REPLACE_EXISTING,
+                StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Computes the key of the content of an area.
+     * @param content the encoded content.
+     * @param length the length of the content.
+     * @return the key.
+     */
+    private Key hash(byte[] content, int length) {
+        digest.update(content, 0, length);
+        ByteBuffer hash = ByteBuffer.wrap(digest.digest());
+        return new Key(hash.getLong(), hash.getLong());
+    }
+
+    /**
+     * Stores a proposition and all areas in it that are not stored yet.
+     * @param proposition the proposition to store.
+     * @param owner the symbol table that the variables of the proposition refer to.
+     * @return the key of the proposition.
+     * @throws FilePathException if the store cannot be written.
+     */
+    public synchronized Key put(PersistentProposition proposition, SymbolTable owner) throws FilePathException {
+        try {
+            return store(proposition, owner.sharesIdsWith(symbols));
+        } catch (IOException e) {
+            throw new FilePathException(e.getMessage());
+        }
+    }
+
+    private Key store(PersistentProposition proposition, boolean share) throws IOException {
+        Key known = keys.get(proposition);
+        if (known != null) {
+            return known;
+        }
+        BinaryStorage.Encoder content = new BinaryStorage.Encoder();
+        content.varint(proposition.size());
+        for (PersistentLiteral l : proposition.getLiterals()) {
+            if (l.isCut()) {
+                content.varint(CUT);
+                Key child = store(l.getContent(), share);
+                content.bytes(ByteBuffer.allocate(16).putLong(child.high()).putLong(child.low()).array());
+            } else {
+                content.varint(VARIABLE);
+                content.string(l.getVariableName());
+            }
+        }
+        Key key = hash(content.array(), content.size());
+        if (find(key) < 0) {
+            ByteBuffer length = ByteBuffer.allocate(Integer.BYTES).putInt(content.size()).flip();
+            ByteBuffer[] buffers = {length, content.toBuffer()};
+            long position = dataSize;
+            for (ByteBuffer b : buffers) {
+                while (b.hasRemaining()) {
+                    position += data.write(b, position);
+                }
+            }
+            insert(key, dataSize + Integer.BYTES, content.size());
+            dataSize = position;
+            index.putLong(16, dataSize);
+        }
+        keys.put(proposition, key);
+        if (share) {
+            release();
+            if (fromShared(key) == null) {
+                shared.put(key, new Shared(key, proposition, released));
+            }
+        }
+        return key;
+    }
+
+    /**
+     * Checks whether an area is in the store.
+     * @param key the key of the area.
+     * @return true if the area is stored.
+     */
+    public synchronized boolean contains(Key key) {
+        return find(key) >= 0;
+    }
+
+    /**
+     * Reads a proposition from the store. If the symbol table shares its ids with the store, areas already in memory
+     * are reused, and the areas read are shared with later reads.
+     * @param key the key of the proposition.
+     * @param owner the symbol table that the variables of the proposition should refer to.
+     * @return the proposition.
+     * @throws FileReadException if there is no such proposition or the store is corrupted.
+     */
+    public synchronized PersistentProposition get(Key key, SymbolTable owner) throws FileReadException {
+        boolean share = owner.sharesIdsWith(symbols);
+        if (share) {
+            release();
+        }
+        try {
+            return load(key, owner, share ? null : new HashMap<>());
+        } catch (IOException | BufferUnderflowException e) {
+            throw new FileReadException();
+        }
+    }
+
+    private PersistentProposition load(Key key, SymbolTable owner, Map<Key, PersistentProposition> local)
+            throws IOException, FileReadException {
+        PersistentProposition known = local == null ? fromShared(key) : local.get(key);
+        if (known != null) {
+            return known;
+        }
+        byte[] content = read(key);
+        BinaryStorage.Decoder in = new BinaryStorage.Decoder(ByteBuffer.wrap(content));
+        int size = in.varint();
+        List<PersistentLiteral> literals = new ArrayList<>(Math.min(size, content.length));
+        for (int i = 0; i < size; i++) {
+            int tag = in.varint();
+            if (tag == CUT) {
+                Key child = new Key(in.buffer.getLong(), in.buffer.getLong());
+                literals.add(PersistentLiteral.cut(load(child, owner, local)));
+            } else if (tag == VARIABLE) {
+                literals.add(PersistentLiteral.ground(owner, owner.intern(in.string())));
+            } else {
+                throw new FileReadException();
+            }
+        }
+        PersistentProposition proposition = PersistentProposition.of(literals);
+        keys.put(proposition, key);
+        if (local == null) {
+            shared.put(key, new Shared(key, proposition, released));
+        } else {
+            local.put(key, proposition);
+        }
+        return proposition;
+    }
+
+    private PersistentProposition fromShared(Key key) {
+        Shared reference = shared.get(key);
+        return reference == null ? null : reference.get();
+    }
+
+    /**
+     * Drops the shared propositions that are not used any more.
+     */
+    private void release() {
+        for (Object r = released.poll(); r != null; r = released.poll()) {
+            Shared reference = (Shared) r;
+            if (shared.get(reference.key) == reference) {
+                shared.remove(reference.key);
+            }
+        }
+    }
+
+    /**
+     * Reads the content of an area, checking it against its key.
+     * @param key the key of the area.
+     * @return the content.
+     * @throws IOException if objects.dat cannot be read.
+     * @throws FileReadException if there is no such area or its content does not match the key.
+     */
+    private byte[] read(Key key) throws IOException, FileReadException {
+        int slot = find(key);
+        if (slot < 0) {
+            throw new FileReadException();
+        }
+        int at = INDEX_HEADER + slot * SLOT;
+        int length = index.getInt(at + 24);
+        ByteBuffer content = ByteBuffer.allocate(length);
+        long position = index.getLong(at + 16);
+        while (content.hasRemaining()) {
+            if (data.read(content, position + content.position()) < 0) {
+                throw new FileReadException();
+            }
+        }
+        if (!hash(content.array(), length).equals(key)) {
+            throw new FileReadException();
+        }
+        return content.array();
+    }
+
+    /**
+     * Gets the keys of the areas enclosed by the cuts of an area.
+     * @param content the content of the area.
+     * @return the keys.
+     * @throws FileReadException if the content is not of the correct format.
+     */
+    private static List<Key> children(byte[] content) throws FileReadException {
+        BinaryStorage.Decoder in = new BinaryStorage.Decoder(ByteBuffer.wrap(content));
+        List<Key> children = new ArrayList<>();
+        int size = in.varint();
+        for (int i = 0; i < size; i++) {
+            int tag = in.varint();
+            if (tag == CUT) {
+                children.add(new Key(in.buffer.getLong(), in.buffer.getLong()));
+            } else if (tag == VARIABLE) {
+                in.string();
+            } else {
+                throw new FileReadException();
+            }
+        }
+        return children;
+    }
+
+    /**
+     * Forces all areas stored to disk, which is needed before a proof file refers to them.
+     * @throws FilePathException if the store cannot be written.
+     */
+    public synchronized void sync() throws FilePathException {
+        try {
+            data.force(true);
+            index.force();
+        } catch (IOException e) {
+            throw new FilePathException(e.getMessage());
+        }
+    }
+
+    /**
+     * Removes all areas that cannot be reached from the given propositions, e.g. the ones referred to by all proof
+     * files using the store, and rewrites the store with the remaining ones.
+     * @param roots the keys of the propositions to keep.
+     * @return the number of areas removed.
+     * @throws FilePathException if the store cannot be written.
+     * @throws FileReadException if a proposition to keep is not in the store or the store is corrupted.
+     */
+    public synchronized int collect(Collection<Key> roots) throws FilePathException, FileReadException {
+        try {
+            Set<Key> live = new HashSet<>();
+            Deque<Key> pending = new ArrayDeque<>(roots);
+            while (!pending.isEmpty()) {
+                Key key = pending.pop();
+                if (live.add(key)) {
+                    pending.addAll(children(read(key)));
+                }
+            }
+            int removed = count - live.size();
+            if (removed == 0) {
+                return 0;
+            }
+            Path temp = directory.resolve(DATA_FILE + ".tmp");
+            try (FileChannel out = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                    StandardOpenOption.TRUNCATE_EXISTING)) {
+                out.write(ByteBuffer.allocate(DATA_HEADER).put(DATA_MAGIC).putInt(VERSION).flip());
+                ByteBuffer length = ByteBuffer.allocate(Integer.BYTES);
+                long position = DATA_HEADER;
+                while (position + Integer.BYTES <= dataSize) {
+                    length.clear();
+                    data.read(length, position);
+                    int size = length.flip().getInt();
+                    ByteBuffer content = ByteBuffer.allocate(size);
+                    data.read(content, position + Integer.BYTES);
+                    if (live.contains(hash(content.array(), size))) {
+                        length.rewind();
+                        out.write(length);
+                        out.write(content.flip());
+                    }
+                    position += Integer.BYTES + size;
+                }
+                out.force(true);
+            }
+            data.close();
+            Files.move(temp, directory.resolve(DATA_FILE), StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+            openData();
+            rebuildIndex();
+            shared.keySet().retainAll(live);
+            keys.values().retainAll(live);
+            return removed;
+        } catch (IOException e) {
+            throw new FilePathException(e.getMessage());
+        }
+    }
+
+    /**
+     * Gets the statistics of the store.
+     * @return the statistics.
+     */
+    public synchronized Statistics getStatistics() {
+        release();
+        return new Statistics(count, dataSize, shared.size());
+    }
+
+    /**
+     * Forces the store to disk and closes it. Opening the directory again gives a new instance.
+     * @throws FilePathException if the store cannot be written.
+     */
+    public void close() throws FilePathException {
+        synchronized (OPEN) {
+            sync();
+            OPEN.remove(directory);
+            try {
+                data.close();
+            } catch (IOException e) {
+                throw new FilePathException(e.getMessage());
+            }
+        }
+    }
+}
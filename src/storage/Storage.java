@@ -1,23 +1,27 @@
 package storage;
 
+import logic.Language;
 import logic.Logic;
 import logic.exceptions.FilePathException;
 import logic.exceptions.FileReadException;
+import logic.exceptions.HistoryNodeException;
 import logic.exceptions.TheoremParseException;
-import model.Inference;
 import model.InferenceRule;
+import model.Model;
+import model.PersistentProposition;
+import model.SymbolTable;
 
-import java.io.File;
-import java.io.FileNotFoundException;
 import java.io.FileWriter;
 import java.io.IOException;
+import java.nio.channels.FileChannel;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
-import java.util.Scanner;
-import java.util.Stack;
 
 public class Storage {
     /**
@@ -34,7 +38,7 @@ public class Storage {
     }
 
     /**
-     * Saves the proof stored in logic to the file. The file format is:
+     * Writes a snapshot of a proof to the file in the text format. The file format is:
      * "
      * [list of variables with white space as delimiters]
      * [language]
@@ -44,116 +48,332 @@ public class Storage {
      * [number of steps]
      * [inference steps in the format of RULE&from&to where both from and to are canonical]*
      * "
-     * @param filePath the file path to save.
-     * @param logic the logic instance that holds the proof.
+     * If steps in other branches of the history tree have been explored, the whole tree follows:
+     * "
+     * [number of nodes]
+     * [initial proposition in canonical form]
+     * [other nodes in the format of parent&RULE&to where parent is the position of the parent node in the list
+     * of nodes starting from 0 for the initial proposition]*
+     * [position of the current node]
+     * "
+     * Files without the tree are still read, so that the history is the list of steps only.
+     * @param filePath the file path to write.
+     * @param snapshot the snapshot of the proof.
+     * @throws IOException if the file cannot be written.
      */
-    public static void saveProof(String filePath, Logic logic) {
-        try {
-            FileWriter fw = new FileWriter(filePath);
-            for (String s : logic.getVariables()) {
-                fw.write(s);
-                fw.write(" ");
-            }
-            fw.write("\n");
-            fw.write(logic.getLanguage().toString());
-            fw.write("\n");
-            List<String> premises = logic.getPremises();
-            fw.write(String.format("%d", premises.size()));
+    private static void writeText(String filePath, ProofSnapshot snapshot) throws IOException {
+        FileWriter fw = new FileWriter(filePath);
+        for (String s : snapshot.getVariables()) {
+            fw.write(s);
+            fw.write(" ");
+        }
+        fw.write("\n");
+        fw.write(snapshot.getLanguage().toString());
+        fw.write("\n");
+        List<String> premises = snapshot.getPremises();
+        fw.write(String.format("%d", premises.size()));
+        fw.write("\n");
+        for (String p : premises) {
+            fw.write(p);
             fw.write("\n");
-            for (String p : premises) {
-                fw.write(p);
-                fw.write("\n");
-            }
-            fw.write(logic.getTheoremString());
+        }
+        fw.write(snapshot.getTheorem());
+        fw.write("\n");
+        List<Integer> path = snapshot.getPath();
+        int earlier = snapshot.getEarlierSize();
+        int steps = Math.max(path.size() - 1, 0);
+        fw.write(String.format("%d", earlier + steps));
+        fw.write("\n");
+        for (int i = 0; i < earlier; i++) {
+            fw.write(snapshot.getEarlierLine(i));
             fw.write("\n");
-            Stack<Inference> history = logic.getHistory();
-            fw.write(String.format("%d", history.size()));
+        }
+        List<PersistentProposition> states = snapshot.getPathStates();
+        for (int i = 0; i < steps; i++) {
+            fw.write(snapshot.getStep(path.get(i + 1)).fileSave(states.get(i), states.get(i + 1)));
             fw.write("\n");
-            for (Inference i : logic.getHistory()) {
-                fw.write(i.fileSave());
-                fw.write("\n");
+        }
+        if (snapshot.size() > steps + 1) {
+            saveTree(fw, snapshot);
+        }
+        fw.close();
+    }
+
+    /**
+     * Writes the whole history tree, starting with the steps before it that have not been loaded, which are copied
+     * from the file without decoding them.
+     * @param fw the writer of the file.
+     * @param snapshot the snapshot of the proof.
+     * @throws IOException if the file cannot be written.
+     */
+    private static void saveTree(FileWriter fw, ProofSnapshot snapshot) throws IOException {
+        StringBuilder sb = new StringBuilder();
+        int earlier = snapshot.getEarlierSize();
+        sb.append(earlier + snapshot.size()).append("\n");
+        for (int i = 0; i < earlier; i++) {
+            String[] info = snapshot.getEarlierLine(i).split("&", -1);
+            if (i == 0) {
+                sb.append(info[1]).append("\n");
             }
-            fw.close();
-        } catch (IOException e) {
-            assert false;
+            sb.append(i).append("&").append(info[0]).append("&").append(info[2]).append("\n");
         }
+        snapshot.walk((n, state) -> {
+            if (n > 0) {
+                sb.append(snapshot.getParent(n) + earlier).append("&").append(snapshot.getStep(n).getRule())
+                        .append("&");
+            } else if (earlier > 0) {
+                return;
+            }
+            sb.append(state).append("\n");
+        });
+        sb.append(snapshot.getCurrent() + earlier).append("\n");
+        fw.write(sb.toString());
     }
 
     /**
-     * Loads a file from disk and reconstructs the logic component.
-     * @param filePath the path to the file.
+     * Reads the whole history tree.
+     * @param text the content of the file.
+     * @param start the index of the line right after the list of steps.
      * @param logic the logic component.
-     * @throws FilePathException if the file path is invalid.
      * @throws FileReadException if the file format is invalid.
      */
-    public static void loadFile(String filePath, Logic logic) throws FilePathException, FileReadException {
-        logic.clear();
-        File file = new File(filePath);
-        Scanner sc;
+    private static void loadTree(ProofText text, int start, Logic logic) throws FileReadException {
+        int next = start;
+        int n = text.number(next++);
+        if (n < 1) {
+            throw new FileReadException();
+        }
+        int[] ids = new int[n];
+        try {
+            logic.startHistory(text.line(next++));
+            ids[0] = logic.getHistoryTree().getRoot().getId();
+            for (int i = 1; i < n; i++) {
+                String[] info = text.line(next++).split("&", -1);
+                if (info.length != 3) {
+                    throw new FileReadException();
+                }
+                int parent = Integer.parseInt(info[0]);
+                if (parent < 0 || parent >= i) {
+                    throw new FileReadException();
+                }
+                ids[i] = logic.addHistoryNode(ids[parent], info[2], parseRule(info[1]));
+            }
+            int current = text.number(next);
+            if (current < 0 || current >= n) {
+                throw new FileReadException();
+            }
+            logic.jumpTo(ids[current]);
+        } catch (TheoremParseException | HistoryNodeException | NumberFormatException e) {
+            throw new FileReadException();
+        }
+    }
+
+    /**
+     * Gets the inference rule saved.
+     * @param rule the name of the rule.
+     * @return the rule.
+     * @throws FileReadException if there is no such rule.
+     */
+    static InferenceRule parseRule(String rule) throws FileReadException {
+        return switch (rule) {
+            case "ERASURE" -> InferenceRule.ERASURE;
+            case "INSERTION" -> InferenceRule.INSERTION;
+            case "DEITERATION" -> InferenceRule.DEITERATION;
+            case "ITERATION" -> InferenceRule.ITERATION;
+            case "DOUBLE_CUT_INTRO" -> InferenceRule.DOUBLE_CUT_INTRO;
+            case "DOUBLE_CUT_ELIM" -> InferenceRule.DOUBLE_CUT_ELIM;
+            case "REMOVE_BOTH" -> InferenceRule.REMOVE_BOTH;
+            case "INSERT_BOTH" -> InferenceRule.INSERT_BOTH;
+            default -> throw new FileReadException();
+        };
+    }
+
+    /**
+     * Converts a proof file between the text, binary and linked formats, where the format of the target is decided
+     * by its extension and the format of the source is detected.
+     * @param source the path to the file to read.
+     * @param target the path to the file to write, which is in the binary format if it ends with
+     *               {@code BinaryStorage.EXTENSION}, in the linked format if it ends with
+     *               {@code LinkedStorage.EXTENSION}, and in the text format otherwise.
+     * @throws FilePathException if the source file path is invalid or the target cannot be written.
+     * @throws FileReadException if the source file format is invalid.
+     */
+    public static void convert(String source, String target) throws FilePathException, FileReadException {
+        Logic logic = new Logic(new Model(newSymbolTable(source)));
+        loadFile(source, logic);
         try {
-            sc = new Scanner(file);
-        } catch (FileNotFoundException e) {
+            write(target, ProofSnapshot.of(logic));
+        } catch (IOException e) {
             throw new FilePathException(e.getMessage());
         }
-        if (!sc.hasNextLine()) {
-            throw new FileReadException();
+    }
+
+    /**
+     * Creates a symbol table for the model of a proof to be read from a file. For a file in the linked format, the
+     * table shares its ids with the store of the file, so that the proof shares the propositions read from the
+     * store with the other proofs using it.
+     * @param filePath the path to the file.
+     * @return the symbol table with no variables declared.
+     * @throws FilePathException if the store of a file in the linked format cannot be opened.
+     * @throws FileReadException if the store of a file in the linked format is not of the correct format.
+     */
+    public static SymbolTable newSymbolTable(String filePath) throws FilePathException, FileReadException {
+        return LinkedStorage.isLinked(filePath) ? LinkedStorage.storeOf(filePath).newSymbolTable() : new SymbolTable();
+    }
+
+    /**
+     * Saves the proof stored in logic to the file, in the binary format if the file name ends with
+     * {@code BinaryStorage.EXTENSION}, in the linked format if it ends with {@code LinkedStorage.EXTENSION}, and in
+     * the text format otherwise. The proof is written to a temporary file first, which then replaces the file, so
+     * that the file is never left half written.
+     * @param filePath the file path to save.
+     * @param logic the logic instance that holds the proof.
+     */
+    public static void save(String filePath, Logic logic) {
+        try {
+            write(filePath, logic);
+        } catch (IOException e) {
+            assert false;
         }
-        List<String> variables = Arrays.asList(sc.nextLine().split(" ").clone());
-        logic.setVariables(variables);
-        if (!sc.hasNextLine()) {
-            throw new FileReadException();
+    }
+
+    /**
+     * Saves the proof stored in logic to the file the same way as {@link #save(String, Logic)}, for callers that
+     * report the files that cannot be written.
+     * @param filePath the file path to save.
+     * @param logic the logic instance that holds the proof.
+     * @return the number of bytes written.
+     * @throws IOException if the file cannot be written.
+     */
+    public static long write(String filePath, Logic logic) throws IOException {
+        return write(filePath, ProofSnapshot.of(logic));
+    }
+
+    /**
+     * Writes a snapshot of a proof to the file the same way as {@link #save(String, Logic)}.
+     * @param filePath the file path to write.
+     * @param snapshot the snapshot of the proof.
+     * @return the number of bytes written.
+     * @throws IOException if the file cannot be written.
+     */
+    static long write(String filePath, ProofSnapshot snapshot) throws IOException {
+        String temp = filePath + ".tmp";
+        if (filePath.endsWith(BinaryStorage.EXTENSION)) {
+            BinaryStorage.writeBinary(temp, snapshot);
+        } else if (filePath.endsWith(LinkedStorage.EXTENSION)) {
+            LinkedStorage.writeLinked(temp, filePath, snapshot);
+        } else {
+            writeText(temp, snapshot);
         }
-        logic.setLanguage(sc.nextLine());
-        if (!sc.hasNextInt()) {
-            throw new FileReadException();
+        return replace(temp, filePath);
+    }
+
+    /**
+     * Forces a temporary file to disk and moves it in place of a file in one step.
+     * @param temp the path to the temporary file.
+     * @param filePath the path to the file to replace.
+     * @return the size of the file in bytes.
+     * @throws IOException if the file cannot be moved.
+     */
+    static long replace(String temp, String filePath) throws IOException {
+        long bytes;
+        try (FileChannel channel = FileChannel.open(Paths.get(temp), StandardOpenOption.WRITE)) {
+            bytes = channel.size();
+            channel.force(true);
         }
-        int n = sc.nextInt();
-        sc.nextLine();
-        for (int i = 0; i < n; i++) {
-            if (!sc.hasNextLine()) {
-                throw new FileReadException();
-            }
-            String premise = sc.nextLine();
-            try {
-                logic.addPremise(premise);
-            } catch (TheoremParseException e) {
-                throw new FileReadException();
+        Files.move(Paths.get(temp), Paths.get(filePath), StandardCopyOption.REPLACE_EXISTING,
+                StandardCopyOption.ATOMIC_MOVE);
+        return bytes;
+    }
+
+    /**
+     * Reads the declarations of a proof file in any format and counts the rules of the steps to the current
+     * proposition, without parsing any propositions.
+     * @param filePath the path to the file.
+     * @return the summary of the proof.
+     * @throws FilePathException if the file cannot be read.
+     * @throws FileReadException if the file format is invalid.
+     */
+    public static ProofSummary summarize(String filePath) throws FilePathException, FileReadException {
+        if (BinaryStorage.isBinary(filePath)) {
+            return BinaryStorage.summarize(filePath);
+        }
+        if (LinkedStorage.isLinked(filePath)) {
+            return LinkedStorage.summarize(filePath);
+        }
+        ProofText text = ProofText.read(filePath);
+        int next = 0;
+        List<String> variables = new ArrayList<>();
+        for (String v : text.line(next++).split(" ")) {
+            if (!v.isEmpty()) {
+                variables.add(v);
             }
         }
-        if (!sc.hasNextLine()) {
-            throw new FileReadException();
+        Language language = ProofSummary.parseLanguage(text.line(next++));
+        int n = text.number(next++);
+        List<String> premises = new ArrayList<>();
+        for (int i = 0; i < n; i++) {
+            premises.add(text.line(next++));
+        }
+        String theorem = text.line(next++);
+        int m = text.number(next++);
+        int[] counts = new int[InferenceRule.values().length];
+        for (int i = 0; i < m; i++) {
+            counts[parseRule(text.field(next++, '&')).ordinal()]++;
         }
+        return new ProofSummary(variables, language, premises, theorem, counts);
+    }
+
+    /**
+     * Loads a file from disk and reconstructs the logic component. Files in the binary format are detected by
+     * their first bytes and read by {@link BinaryStorage}, and so are files in the linked format, read by
+     * {@link LinkedStorage}. If the steps have no branches, only the proposition after the last step is parsed,
+     * and older steps are decoded from the file when they are needed, see {@link Logic#loadEarlierHistory(int)}.
+     * @param filePath the path to the file.
+     * @param logic the logic component.
+     * @throws FilePathException if the file path is invalid.
+     * @throws FileReadException if the file format is invalid.
+     */
+    public static void loadFile(String filePath, Logic logic) throws FilePathException, FileReadException {
+        if (BinaryStorage.isBinary(filePath)) {
+            BinaryStorage.loadFile(filePath, logic);
+            return;
+        }
+        if (LinkedStorage.isLinked(filePath)) {
+            LinkedStorage.loadFile(filePath, logic);
+            return;
+        }
+        logic.clear();
+        ProofText text = ProofText.read(filePath);
+        int next = 0;
+        List<String> variables = Arrays.asList(text.line(next++).split(" ").clone());
+        logic.setVariables(variables);
+        logic.setLanguage(text.line(next++));
+        int n = text.number(next++);
         try {
-            logic.setTheorem(sc.nextLine());
+            for (int i = 0; i < n; i++) {
+                logic.addPremise(text.line(next++));
+            }
+            logic.setTheorem(text.line(next++));
         } catch (TheoremParseException e) {
             throw new FileReadException();
         }
-        if (!sc.hasNextInt()) {
-            throw new FileReadException();
-        }
-        int m = sc.nextInt();
-        sc.nextLine();
+        int m = text.number(next++);
+        int first = next;
         for (int i = 0; i < m; i++) {
-            if (!sc.hasNextLine()) {
+            if (next >= text.size() || text.count(next++, '&') != 2) {
                 throw new FileReadException();
             }
-            String inference = sc.nextLine();
-            String[] info = inference.split("&");
-            if (info.length != 3) {
+        }
+        if (text.isNumber(next)) {
+            loadTree(text, next, logic);
+        } else if (m > 0) {
+            String[] last = text.line(first + m - 1).split("&", -1);
+            try {
+                logic.startHistory(last[2], new LazyHistory(text, first, m));
+            } catch (TheoremParseException e) {
                 throw new FileReadException();
             }
-            InferenceRule rule = switch (info[0]) {
-                case "ERASURE" -> InferenceRule.ERASURE;
-                case "INSERTION" -> InferenceRule.INSERTION;
-                case "DEITERATION" -> InferenceRule.DEITERATION;
-                case "ITERATION" -> InferenceRule.ITERATION;
-                case "DOUBLE_CUT_INTRO" -> InferenceRule.DOUBLE_CUT_INTRO;
-                case "DOUBLE_CUT_ELIM" -> InferenceRule.DOUBLE_CUT_ELIM;
-                case "REMOVE_BOTH" -> InferenceRule.REMOVE_BOTH;
-                case "INSERT_BOTH" -> InferenceRule.INSERT_BOTH;
-                default -> throw new FileReadException();
-            };
-            logic.insertHistory(new Inference(info[1], info[2], rule));
         }
         logic.updateProposition();
         if (logic.succeeds() && logic.canModifyDeclaration()) {
@@ -2,7 +2,7 @@ package ui;
 
 import logic.Logic;
 import logic.exceptions.FilePathException;
-import logic.exceptions.FileReadException;
+import storage.AutosaveService;
 
 import javax.swing.*;
 
@@ -15,9 +15,12 @@ public class MenuBar extends JMenuBar {
     /**
      * Initializes the menubar.
      * @param logic the logic component to control.
+     * @param autosave the service that saves the proof in the background, which starts saving changes once the
+     *                 proof has been saved or opened, in the journaled save mode if it is set, e.g. by the system
+     *                 property "peirce.journal".
      * @param refresh the runnable procedure that refreshes the UI.
      */
-    public MenuBar(Logic logic, Runnable refresh) {
+    public MenuBar(Logic logic, AutosaveService autosave, Runnable refresh) {
         super();
         this.logic = logic;
 
@@ -25,11 +28,15 @@ public class MenuBar extends JMenuBar {
         JMenuItem fileSave = new JMenuItem("Save");
         JMenuItem fileSaveAs = new JMenuItem("Save as ...");
         JMenuItem fileOpen = new JMenuItem("Open ...");
+        JCheckBoxMenuItem fileJournal = new JCheckBoxMenuItem("Journaled save", autosave.isJournaled());
         fileMenu.add(fileSave);
         fileMenu.add(fileSaveAs);
         fileMenu.add(fileOpen);
+        fileMenu.addSeparator();
+        fileMenu.add(fileJournal);
         fileSave.addActionListener(e -> {
-            logic.save();
+            autosave.saveNow();
+            autosave.setEnabled(true);
         });
         fileSaveAs.addActionListener(e -> {
             boolean loopContinue = true;
@@ -39,8 +46,7 @@ public class MenuBar extends JMenuBar {
                     if (filePath == null) {
                         loopContinue = false;
                     }
-                    logic.preparePath(filePath);
-                    logic.save();
+                    autosave.saveAs(filePath);
                     loopContinue = false;
                 } catch (FilePathException fpe) {
                     JOptionPane.showMessageDialog(JOptionPane.getRootFrame(), fpe.getMessage(),
@@ -49,22 +55,21 @@ public class MenuBar extends JMenuBar {
             }
         });
         fileOpen.addActionListener(e -> {
-            boolean loopContinue = true;
-            while (loopContinue) {
-                String filePath = JOptionPane.showInputDialog("Please specify file path");
-                try {
-                    if (filePath == null) {
-                        loopContinue = false;
-                    }
-                    logic.open(filePath);
+            String filePath = JOptionPane.showInputDialog("Please specify file path");
+            if (filePath == null) {
+                return;
+            }
+            autosave.open(filePath, err -> {
+                if (err == null) {
                     refresh.run();
-                    loopContinue = false;
-                } catch (FilePathException | FileReadException err) {
+                } else {
                     JOptionPane.showMessageDialog(JOptionPane.getRootFrame(), err.getMessage(),
                             "Invalid File Path Error", JOptionPane.ERROR_MESSAGE);
+                    fileOpen.doClick();
                 }
-            }
+            });
         });
+        fileJournal.addActionListener(e -> autosave.setJournaled(fileJournal.isSelected()));
 
         add(fileMenu);
     }
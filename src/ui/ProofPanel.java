@@ -2,6 +2,7 @@ package ui;
 
 import static javax.swing.JOptionPane.YES_OPTION;
 import logic.Logic;
+import logic.exceptions.FileReadException;
 import logic.exceptions.InvalidInferenceException;
 import logic.exceptions.InvalidSelectionException;
 import logic.exceptions.RedoException;
@@ -9,6 +10,8 @@ import logic.exceptions.TheoremParseException;
 import logic.exceptions.UndoException;
 import model.Inference;
 import model.Literal;
+import model.PersistentLiteral;
+import model.PersistentProposition;
 import model.Proposition;
 import static ui.Ui.DC_IMG;
 import static ui.Ui.RDC_IMG;
@@ -52,7 +55,7 @@ public class ProofPanel extends JPanel {
     private final Clipboard clipboard;
     private final List<JLabel> historyLabels;
     private final List<JButton> buttons;
-    private List<LiteralDiagram> copied;
+    private List<PersistentLiteral> copied;
 
     /**
      * Constructs the proof panel.
@@ -130,11 +133,17 @@ public class ProofPanel extends JPanel {
             JButton copyBtn, JButton cutBtn, JButton pasteBtn, JButton dciBtn, JButton dceBtn) {
         undoBtn.addActionListener(e -> {
             try {
+                int unloaded = logic.getUnloadedHistorySize();
                 logic.undo();
-                historyPanel.removeAll();
-                historyLabels.remove(historyLabels.size() - 1);
-                for (JLabel l : historyLabels) {
-                    historyPanel.add(l);
+                if (unloaded != logic.getUnloadedHistorySize()) {
+                    refreshHistory();
+                } else {
+                    historyPanel.removeAll();
+                    historyLabels.remove(historyLabels.size() - 1);
+                    addEarlierHistoryButton();
+                    for (JLabel l : historyLabels) {
+                        historyPanel.add(l);
+                    }
                 }
                 theoremDisplay.setText(logic.getProposition().toString());
                 resultDisplay.setForeground(Color.BLACK);
@@ -148,9 +157,10 @@ public class ProofPanel extends JPanel {
         });
         redoBtn.addActionListener(e -> {
             try {
-                Inference inference = logic.redo();
+                logic.redo();
                 historyPanel.removeAll();;
-                historyLabels.add(new JLabel(inference.userDisplay()));
+                historyLabels.add(new JLabel(logic.getLastLog()));
+                addEarlierHistoryButton();
                 for (JLabel l : historyLabels) {
                     historyPanel.add(l);
                 }
@@ -249,14 +259,14 @@ public class ProofPanel extends JPanel {
                         options,
                         options[1]);
                 if (fromDraft == YES_OPTION) {
-                    copied = draftSelected;
+                    copied = toSnapshots(draftSelected);
                 } else {
-                    copied = propSelected;
+                    copied = toSnapshots(propSelected);
                 }
             } else if (propSelected.isEmpty()) {
-                copied = draftSelected;
+                copied = toSnapshots(draftSelected);
             } else {
-                copied = propSelected;
+                copied = toSnapshots(propSelected);
             }
         });
         cutBtn.addActionListener(e -> {
@@ -283,13 +293,10 @@ public class ProofPanel extends JPanel {
                     if (!copied.isEmpty()) {
                         Proposition toInsert = new Proposition();
                         List<Literal> literals = new ArrayList<>();
-                        for (LiteralDiagram ld : copied) {
-                            literals.add(ld.getLiteral().copy());
+                        for (PersistentLiteral pl : copied) {
+                            literals.add(pl.toLiteral(toInsert));
                         }
                         toInsert.addLiterals(literals);
-                        for (Literal l : literals) {
-                            l.setParent(toInsert);
-                        }
                         try {
                             logic.paste(toInsert, prop, prop.getStartIndex());
                             updateResult();
@@ -469,6 +476,19 @@ public class ProofPanel extends JPanel {
         return theoremDisplay;
     }
 
+    /**
+     * Takes snapshots of the selected literals, so that the copied diagrams are not affected by later steps.
+     * @param diagrams the diagrams of the literals selected.
+     * @return the snapshots of the literals.
+     */
+    private static List<PersistentLiteral> toSnapshots(List<LiteralDiagram> diagrams) {
+        List<PersistentLiteral> snapshots = new ArrayList<>();
+        for (LiteralDiagram ld : diagrams) {
+            snapshots.add(PersistentLiteral.of(ld.getLiteral()));
+        }
+        return snapshots;
+    }
+
     /**
      * Refresh this panel.
      */
@@ -489,12 +509,46 @@ public class ProofPanel extends JPanel {
         currentDiagram.setSelectMode(true);
         draftDiagram.setSelectMode(true);
         goalDiagram.refresh(logic.getTheorem());
-        for (Inference i : logic.getHistory()) {
-            JLabel l = new JLabel(i.userDisplay());
+        refreshHistory();
+        checkSuccess();
+    }
+
+    /**
+     * Shows the steps loaded on the current branch of the history.
+     */
+    private void refreshHistory() {
+        historyPanel.removeAll();
+        historyLabels.clear();
+        addEarlierHistoryButton();
+        List<Inference> steps = logic.getHistory();
+        List<PersistentProposition> snapshots = logic.getHistorySnapshots();
+        for (int i = 0; i < steps.size(); i++) {
+            JLabel l = new JLabel(steps.get(i).userDisplay(snapshots.get(i + 1)));
             historyLabels.add(l);
             historyPanel.add(l);
         }
-        checkSuccess();
+        historyPanel.revalidate();
+        historyPanel.repaint();
+    }
+
+    /**
+     * Adds the button to load older steps to the top of the history if some steps are not loaded from file yet.
+     */
+    private void addEarlierHistoryButton() {
+        int unloaded = logic.getUnloadedHistorySize();
+        if (unloaded == 0) {
+            return;
+        }
+        JButton earlierBtn = new JButton(String.format("Show earlier steps (%d)", unloaded));
+        earlierBtn.addActionListener(e -> {
+            try {
+                logic.loadEarlierHistory(Logic.HISTORY_PAGE);
+            } catch (FileReadException err) {
+                displayError(err);
+            }
+            refreshHistory();
+        });
+        historyPanel.add(earlierBtn);
     }
 
     /**
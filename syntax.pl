@@ -1,12 +1,3 @@
-read_file(Lang,Tokens):-
-  open("prolog/tokens.txt",read,S), 
-  read_line_to_string(S,Lang), read_tokens(S,Tokens).
-
-read_tokens(S,[]):-
-  at_end_of_stream(S), !.
-read_tokens(S,[H|T]):-
-  read_line_to_string(S,H), read_tokens(S,T).
-
 coq_term(l(X)) --> [X], {string(X)}.
 coq_term(l(X)) --> ["("], coq_prop(X), [")"].
 
@@ -66,18 +57,22 @@ write_literal(frame(X),O):-
 write_literal(X,O):-
   string(X), write(O,X), write(O," ").
 
-write_file(P):-
-  open("prolog/peirce.txt",write,O), write_to_stream(P,O), close(O).
-
-get_structure(S):-
-  read_file("Coq",Tokens), !, coq_prop(S,Tokens,[]).
-get_structure(S):-
-  read_file("LaTeX",Tokens), latex_prop(S,Tokens,[]).
-
-execute:-
-  open("prolog/peirce.txt",write,O), write(O,"!!ERROR"), close(O),
-  get_structure(S), functor_to_peirce(S,L), write_file(L).
+parse_tokens("Coq",Tokens,S):-
+  coq_prop(S,Tokens,[]).
+parse_tokens("LaTeX",Tokens,S):-
+  latex_prop(S,Tokens,[]).
 
-:-execute.
+handle_request("ping"):-
+  !, write(user_output,"pong").
+handle_request(Line):-
+  split_string(Line,"\t","",[Lang|Tokens]),
+  ( once(parse_tokens(Lang,Tokens,S)) ->
+    functor_to_peirce(S,L), write_to_stream(L,user_output)
+  ; write(user_output,"!!ERROR") ).
 
-:-halt.
\ No newline at end of file
+serve:-
+  repeat,
+  read_line_to_string(user_input,Line),
+  ( Line == end_of_file -> !
+  ; catch(handle_request(Line),_,write(user_output,"!!ERROR")),
+    nl(user_output), flush_output(user_output), fail ).
\ No newline at end of file